@@ -0,0 +1,70 @@
+/**
+ * @(#)Benchmark.java        1.6 26/10/18
+ */
+
+package ml.bench;
+
+import ml.dataset.DataSet;
+
+/**
+ * A benchmark of a single operation, run by {@link BenchmarkRunner} on the synthetic data
+ * set of each combination of the benchmark parameters.
+ * <p>
+ * Only <i>run</i> is measured. An operation changing the state it works on, such as grouping
+ * the cases or pruning a tree, restores the state in <i>prepare</i>, which is called before
+ * each operation but neither timed nor counted in the allocation.
+ * </p>
+ *
+ * @see ml.bench.BenchmarkRunner
+ */
+public abstract class Benchmark {
+	// The name of the benchmark
+	private final String name;
+
+	/**
+	 * Initialize a benchmark with the specified name.
+	 */
+	protected Benchmark(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Get the name of the benchmark.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Set up the benchmark on the data set of a combination of the benchmark parameters.
+	 * @param dataSet the synthetic data set, loaded from the files of the specified base name
+	 * @param baseName the base name of the .names and .data files of the data set
+	 */
+	public void setUp(DataSet dataSet, String baseName) throws Exception {
+	}
+
+	/**
+	 * Query whether <i>prepare</i> must be called before each operation.
+	 */
+	public boolean isPrepared() {
+		return false;
+	}
+
+	/**
+	 * Prepare the state of the next operation, without being measured.
+	 */
+	public void prepare() throws Exception {
+	}
+
+	/**
+	 * Run the measured operation once.
+	 * @return the result of the operation, which is consumed so that the operation is not eliminated
+	 */
+	public abstract Object run() throws Exception;
+
+	/**
+	 * Release the state of the benchmark after all the iterations on a data set.
+	 */
+	public void tearDown() {
+	}
+}
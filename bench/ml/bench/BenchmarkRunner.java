@@ -0,0 +1,256 @@
+/**
+ * @(#)BenchmarkRunner.java        1.6 26/10/18
+ */
+
+package ml.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import ml.classifier.dt.TreeBenchmarks;
+import ml.dataset.DataSet;
+import ml.dataset.UciDataGenerator;
+import ml.dataset.UciDataSet;
+import ml.util.Statistics;
+
+/**
+ * The runner of the microbenchmarks of the tree building and scoring hot paths.
+ * <p>
+ * Every benchmark is run on a synthetic data set for each combination of the numbers of
+ * rows, attributes and classes, the rate of missing values and the depth of the planted concept. After the warm-up iterations,
+ * each measured iteration runs the operation repeatedly for the iteration time, and reports
+ * the time per operation, the bytes allocated per operation by the running thread, the
+ * allocation rate, and the number and time of the garbage collections in the iterations.
+ * </p>
+ * <p>
+ * Usage: java ml.bench.BenchmarkRunner [-rows 1000,100000] [-attributes 10] [-classes 2]
+ * [-missing 0,0.05] [-depth 5] [-warmup 5] [-iterations 10] [-time 500] [benchmark ...]
+ * </p>
+ *
+ * @see ml.bench.Benchmark
+ */
+public class BenchmarkRunner {
+	// The seed of the synthetic data sets
+	private static final long SEED = 20090423L;
+
+	// The numbers of rows, attributes and classes, the rates of missing values and the depths
+	// of the planted concept to be combined
+	private int[] rows = {10000, 100000};
+	private int[] attributes = {10};
+	private int[] classes = {2};
+	private double[] missing = {0, 0.05};
+	private int[] depths = {5};
+	// The number of the warm-up iterations
+	private int warmup = 5;
+	// The number of the measured iterations
+	private int iterations = 10;
+	// The minimal time of an iteration, in milliseconds
+	private long iterationTime = 500;
+
+	// The bean counting the bytes allocated by a thread
+	private final com.sun.management.ThreadMXBean threadBean =
+		(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+	// The results of the operations, consumed so that the operations are not eliminated
+	private volatile Object sink;
+
+	/**
+	 * Run the specified benchmarks on all the combinations of the parameters.
+	 */
+	public void run(List<Benchmark> benchmarks) throws Exception {
+		System.out.printf("%-20s %8s %5s %5s %7s %5s %14s %12s %10s %5s %7s\n", "Benchmark", "rows", "attrs",
+				"class", "missing", "depth", "ns/op(std)", "B/op", "MB/s", "gc", "gc ms");
+		for(int rowCount : rows)
+			for(int attributeCount : attributes)
+				for(int classCount : classes)
+					for(double missingRate : missing)
+						for(int depth : depths) {
+			String baseName = generate(rowCount, attributeCount, classCount, missingRate, depth);
+			DataSet dataSet = new UciDataSet(baseName);
+			for(Benchmark benchmark : benchmarks) {
+				benchmark.setUp(dataSet, baseName);
+				try {
+					float[] result = measure(benchmark);
+					System.out.printf("%-20s %8d %5d %5d %7.2f %5d %14s %12.0f %10.1f %5.0f %7.0f\n",
+							benchmark.getName(), rowCount, attributeCount, classCount, missingRate, depth,
+							String.format("%.0f(%.0f)", result[0], result[1]), result[2], result[3], result[4], result[5]);
+				}
+				finally {
+					benchmark.tearDown();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Generate a synthetic data set into a temporary directory, deleted on exit.
+	 * Half of the attributes are continuous, and the other half are discrete.
+	 * @return the base name of the files of the data set
+	 */
+	private static String generate(int rowCount, int attributeCount, int classCount, double missingRate, int depth)
+			throws IOException {
+		File directory = File.createTempFile("bench", "");
+		directory.delete();
+		directory.mkdir();
+		directory.deleteOnExit();
+		String baseName = new File(directory, "syn").getPath();
+		for(String extension : new String[]{".names", ".data", ".cache"}) {
+			new File(baseName + extension).deleteOnExit();
+		}
+
+		UciDataGenerator generator = new UciDataGenerator(SEED);
+		generator.setContinuousCount((attributeCount + 1) / 2);
+		generator.setDiscreteCount(attributeCount / 2);
+		generator.setClassCount(classCount);
+		generator.setMissingRatio(missingRate);
+		generator.setDepth(depth);
+		generator.generate(baseName, rowCount, 0);
+		return baseName;
+	}
+
+	/**
+	 * Measure a benchmark set up on a data set.
+	 * @return the mean and the standard deviation of the time per operation in nanoseconds,
+	 *         the bytes allocated per operation, the allocation rate in MB per second,
+	 *         and the number and time of the garbage collections in all the measured iterations
+	 */
+	private float[] measure(Benchmark benchmark) throws Exception {
+		for(int i = 0; i < warmup; i ++) {
+			iterate(benchmark);
+		}
+
+		float[] times = new float[iterations];
+		double operations = 0, allocated = 0, elapsed = 0;
+		long collections = -collectionCount(), collectionTime = -collectionTime();
+		for(int i = 0; i < iterations; i ++) {
+			double[] iteration = iterate(benchmark);
+			times[i] = (float)(iteration[1] / iteration[0]);
+			operations += iteration[0];
+			elapsed += iteration[1];
+			allocated += iteration[2];
+		}
+		collections += collectionCount();
+		collectionTime += collectionTime();
+
+		return new float[]{Statistics.mean(times), Statistics.std(times), (float)(allocated / operations),
+				(float)(allocated / elapsed * 1e9 / (1 << 20)), collections, collectionTime};
+	}
+
+	/**
+	 * Run the operation of a benchmark repeatedly for the iteration time.
+	 * @return the number of the operations, the measured nanoseconds and the allocated bytes
+	 */
+	private double[] iterate(Benchmark benchmark) throws Exception {
+		long thread = Thread.currentThread().getId();
+		long operations = 0, elapsed = 0, allocated = 0;
+		long deadline = System.nanoTime() + iterationTime * 1000000L;
+
+		if(benchmark.isPrepared()) {
+			// Measure each operation alone, leaving its preparation out
+			do {
+				benchmark.prepare();
+				long bytes = threadBean.getThreadAllocatedBytes(thread);
+				long start = System.nanoTime();
+				sink = benchmark.run();
+				elapsed += System.nanoTime() - start;
+				allocated += threadBean.getThreadAllocatedBytes(thread) - bytes;
+				operations ++;
+			}
+			while(System.nanoTime() < deadline);
+		}
+		else {
+			long bytes = threadBean.getThreadAllocatedBytes(thread);
+			long start = System.nanoTime();
+			do {
+				sink = benchmark.run();
+				operations ++;
+			}
+			while(System.nanoTime() < deadline);
+			elapsed = System.nanoTime() - start;
+			allocated = threadBean.getThreadAllocatedBytes(thread) - bytes;
+		}
+		return new double[]{operations, elapsed, allocated};
+	}
+
+	private static long collectionCount() {
+		long count = 0;
+		for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, bean.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long collectionTime() {
+		long time = 0;
+		for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += Math.max(0, bean.getCollectionTime());
+		}
+		return time;
+	}
+
+	/**
+	 * All the benchmarks, of the data set loading, the presort and the tree building and scoring.
+	 */
+	public static List<Benchmark> createBenchmarks() {
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.addAll(DataSetBenchmarks.create());
+		benchmarks.addAll(TreeBenchmarks.create());
+		return benchmarks;
+	}
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkRunner runner = new BenchmarkRunner();
+		List<String> names = new ArrayList<String>();
+		for(int i = 0; i < args.length; i ++) {
+			if(args[i].equals("-h") || args[i].equals("-help")) {
+				usage();
+				return;
+			}
+			else if(args[i].equals("-rows")) runner.rows = parseInts(args[++ i]);
+			else if(args[i].equals("-attributes")) runner.attributes = parseInts(args[++ i]);
+			else if(args[i].equals("-classes")) runner.classes = parseInts(args[++ i]);
+			else if(args[i].equals("-missing")) runner.missing = parseDoubles(args[++ i]);
+			else if(args[i].equals("-depth")) runner.depths = parseInts(args[++ i]);
+			else if(args[i].equals("-warmup")) runner.warmup = Integer.parseInt(args[++ i]);
+			else if(args[i].equals("-iterations")) runner.iterations = Integer.parseInt(args[++ i]);
+			else if(args[i].equals("-time")) runner.iterationTime = Long.parseLong(args[++ i]);
+			else names.add(args[i]);
+		}
+
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for(Benchmark benchmark : createBenchmarks()) {
+			if(names.isEmpty() || names.contains(benchmark.getName())) benchmarks.add(benchmark);
+		}
+		if(benchmarks.isEmpty()) {
+			usage();
+			return;
+		}
+		runner.run(benchmarks);
+	}
+
+	private static int[] parseInts(String list) {
+		String[] values = list.split(",");
+		int[] result = new int[values.length];
+		for(int i = 0; i < values.length; i ++) result[i] = Integer.parseInt(values[i].trim());
+		return result;
+	}
+
+	private static double[] parseDoubles(String list) {
+		String[] values = list.split(",");
+		double[] result = new double[values.length];
+		for(int i = 0; i < values.length; i ++) result[i] = Double.parseDouble(values[i].trim());
+		return result;
+	}
+
+	private static void usage() {
+		System.out.println("Usage: java ml.bench.BenchmarkRunner [-rows 10000,100000] [-attributes 10] [-classes 2]"
+				+ " [-missing 0,0.05] [-depth 5] [-warmup 5] [-iterations 10] [-time 500] [benchmark ...]");
+		StringBuilder line = new StringBuilder("Benchmarks:");
+		for(Benchmark benchmark : createBenchmarks()) {
+			line.append(' ').append(benchmark.getName());
+		}
+		System.out.println(line);
+	}
+}
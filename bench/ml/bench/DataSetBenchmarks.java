@@ -0,0 +1,120 @@
+/**
+ * @(#)DataSetBenchmarks.java        1.6 26/10/18
+ */
+
+package ml.bench;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import ml.dataset.Attribute;
+import ml.dataset.ContinuousAttribute;
+import ml.dataset.DataSet;
+import ml.dataset.MetaData;
+import ml.dataset.UciDataParser;
+import ml.dataset.UciDataSet;
+import ml.util.Statistics;
+
+/**
+ * The benchmarks of the data set loading and the presort of the continuous attributes.
+ */
+public class DataSetBenchmarks {
+	/**
+	 * Create the benchmarks: parsing the .data file into typed columns, loading the data set
+	 * from its binary cache, and indirectly sorting a continuous attribute.
+	 */
+	public static List<Benchmark> create() {
+		return Arrays.asList(new Parse(), new LoadCached(), new IndirectSort());
+	}
+
+	/**
+	 * Parse the .data file of the data set into typed columns.
+	 */
+	static class Parse extends Benchmark {
+		private MetaData metaData;
+		private String filename;
+
+		Parse() {
+			super("parse");
+		}
+
+		public void setUp(DataSet dataSet, String baseName) {
+			this.metaData = dataSet.getMetaData();
+			this.filename = baseName + ".data";
+		}
+
+		public Object run() throws Exception {
+			return new UciDataParser(metaData).parse(filename);
+		}
+	}
+
+	/**
+	 * Load the data set from its binary columnar cache, written into the directory of the data set
+	 * by the first loading. The data sets are cached only during this benchmark.
+	 */
+	static class LoadCached extends Benchmark {
+		private String baseName;
+		private File directory;
+
+		LoadCached() {
+			super("loadCached");
+		}
+
+		public void setUp(DataSet dataSet, String baseName) {
+			this.baseName = baseName;
+			this.directory = new File(baseName).getAbsoluteFile().getParentFile();
+			run();
+		}
+
+		public Object run() {
+			UciDataSet.setCacheDirectory(directory);
+			try {
+				return new UciDataSet(baseName);
+			} finally {
+				UciDataSet.setCacheDirectory(null);
+			}
+		}
+	}
+
+	/**
+	 * Indirectly sort the values of the first continuous attribute.
+	 */
+	static class IndirectSort extends Benchmark {
+		private float[] values;
+		private float[] data;
+
+		IndirectSort() {
+			super("indirectSort");
+		}
+
+		public void setUp(DataSet dataSet, String baseName) {
+			for(Attribute attribute : dataSet.getAttributes()) {
+				if(attribute instanceof ContinuousAttribute) {
+					this.values = ((ContinuousAttribute)attribute).getValues();
+					break;
+				}
+			}
+			this.data = new float[values.length];
+		}
+
+		public boolean isPrepared() {
+			return true;
+		}
+
+		public void prepare() {
+			// The sort is in place, so the values are copied back before every sort
+			for(int i = 0; i < values.length; i ++) {
+				data[i] = Float.isNaN(values[i]) ? Float.NEGATIVE_INFINITY : values[i];
+			}
+		}
+
+		public Object run() {
+			return Statistics.indirectSort(data);
+		}
+
+		public void tearDown() {
+			this.values = null;
+			this.data = null;
+		}
+	}
+}
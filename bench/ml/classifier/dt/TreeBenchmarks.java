@@ -0,0 +1,386 @@
+/**
+ * @(#)TreeBenchmarks.java        1.6 26/10/18
+ */
+
+package ml.classifier.dt;
+
+import java.util.Arrays;
+import java.util.List;
+import ml.bench.Benchmark;
+import ml.classifier.BoostingEnsemble;
+import ml.dataset.ContinuousAttribute;
+import ml.dataset.DataSet;
+
+/**
+ * The benchmarks of the tree building and scoring hot paths.
+ * <p>
+ * The benchmarks of the attribute delegates and the gain calculation work on all the cases
+ * of the data set, <i>ie</i> on the root of the tree, where those operations are the most
+ * expensive.
+ * </p>
+ *
+ * @see ml.bench.BenchmarkRunner
+ */
+public class TreeBenchmarks {
+	// The number of the rounds of the boosting benchmarks
+	private static final int ROUNDS = 10;
+
+	/**
+	 * Create the benchmarks: evaluating a continuous and a discrete attribute, grouping the cases
+	 * by a continuous test, computing the entropies of a split, building by sorting the cases of
+	 * each tree node, by keeping attribute lists and with 256 quantile bins, pruning, classifying
+	 * with the pruned tree and its compiled tree, boosting 10 rounds against building 10 independent
+	 * trees, and classifying with the boosted forest.
+	 */
+	public static List<Benchmark> create() {
+		return Arrays.<Benchmark>asList(new Evaluation("evaluateContinuous", true), new Evaluation("evaluateDiscrete", false),
+				new Grouping(), new Entropy(), new Build("build", false, 0), new Build("buildAttributeLists", true, 0),
+				new Build("buildHistogram", false, 256), new Build("buildMapped", false, 0, true),
+				new Prune(), new Classification("classify", false), new Classification("classifyCompiled", true),
+				new Boosting(), new IndependentTrees(), new ForestClassification());
+	}
+
+	/**
+	 * The delegates of the attributes working on all the cases of a data set with unit weight.
+	 */
+	private static class Delegates {
+		final int[] cases;
+		final float[] weight;
+		final AttributeDelegate[] delegates;
+		final AttributeDelegate classDelegate;
+
+		Delegates(DataSet dataSet) {
+			this.cases = new int[dataSet.getCaseCount()];
+			for(int i = 0; i < cases.length; i ++) cases[i] = i;
+			this.weight = new float[cases.length];
+			Arrays.fill(weight, 1.0f);
+			this.delegates = new Presort(dataSet).share(cases, weight);
+			this.classDelegate = delegates[dataSet.getClassAttributeIndex()];
+		}
+
+		/**
+		 * Find the first continuous or discrete attribute except the class attribute.
+		 */
+		AttributeDelegate find(boolean continuous) {
+			for(AttributeDelegate delegate : delegates) {
+				if(delegate != classDelegate && (delegate instanceof ContinuousAttributeDelegate) == continuous) return delegate;
+			}
+			throw new IllegalArgumentException("No " + (continuous ? "continuous" : "discrete") + " attribute");
+		}
+	}
+
+	/**
+	 * Evaluate the gain of an attribute on all the cases.
+	 */
+	static class Evaluation extends Benchmark {
+		private final boolean continuous;
+		private Delegates delegates;
+		private AttributeDelegate delegate;
+		private final SplitEvaluation evaluation = new SplitEvaluation();
+
+		Evaluation(String name, boolean continuous) {
+			super(name);
+			this.continuous = continuous;
+		}
+
+		public void setUp(DataSet dataSet, String baseName) {
+			this.delegates = new Delegates(dataSet);
+			this.delegate = delegates.find(continuous);
+		}
+
+		public Object run() {
+			delegate.evaluate(0, delegates.cases.length, delegates.classDelegate, evaluation);
+			return evaluation;
+		}
+
+		public void tearDown() {
+			this.delegates = null;
+			this.delegate = null;
+		}
+	}
+
+	/**
+	 * Group all the cases by the best cut of a continuous attribute: the missing values forward,
+	 * the values below the cut forward, and the missing values backward again.
+	 */
+	static class Grouping extends Benchmark {
+		private Delegates delegates;
+		private AttributeDelegate delegate;
+		private int[] originalCases;
+		private int cutRank;
+		private final float[] branchDistribution = new float[2];
+		// The result of the last operation, kept so that the operation is not eliminated
+		private int result;
+
+		Grouping() {
+			super("group");
+		}
+
+		public void setUp(DataSet dataSet, String baseName) {
+			this.delegates = new Delegates(dataSet);
+			this.delegate = delegates.find(true);
+			this.originalCases = delegates.cases.clone();
+			SplitEvaluation evaluation = new SplitEvaluation();
+			this.cutRank = !delegate.evaluate(0, delegates.cases.length, delegates.classDelegate, evaluation)
+					? delegates.cases.length / 2 : delegate.findCutRank(evaluation.getSplitRank(), evaluation.getPreSplitRank());
+		}
+
+		public boolean isPrepared() {
+			return true;
+		}
+
+		public void prepare() {
+			System.arraycopy(originalCases, 0, delegates.cases, 0, originalCases.length);
+			Arrays.fill(branchDistribution, 0.0f);
+		}
+
+		public Object run() {
+			int last = delegates.cases.length;
+			int missingEnd = delegate.groupForward(0, last, -1, branchDistribution);
+			int knownEnd = delegate.groupForward(missingEnd, last, cutRank, branchDistribution);
+			result = delegate.groupBackward(0, knownEnd);
+			return branchDistribution;
+		}
+
+		public void tearDown() {
+			this.delegates = null;
+			this.delegate = null;
+			this.originalCases = null;
+		}
+	}
+
+	/**
+	 * Compute the state entropy, the gain and the split information of the median split of a
+	 * continuous attribute.
+	 */
+	static class Entropy extends Benchmark {
+		private float[] branchDistribution;
+		private float[][] classDistribution;
+		private float knownWeight;
+		private float totalWeight;
+		// The result of the last operation, kept so that the operation is not eliminated
+		private float result;
+
+		Entropy() {
+			super("entropy");
+		}
+
+		public void setUp(DataSet dataSet, String baseName) {
+			Delegates delegates = new Delegates(dataSet);
+			ContinuousAttribute attribute = null;
+			for(int i = 0; i < delegates.delegates.length; i ++) {
+				if(delegates.delegates[i] instanceof ContinuousAttributeDelegate) {
+					attribute = (ContinuousAttribute)dataSet.getAttributes()[i];
+					break;
+				}
+			}
+			int[] ranks = attribute.getRanks();
+
+			this.branchDistribution = new float[3];
+			this.classDistribution = new float[3][delegates.classDelegate.getBranchCount()];
+			for(int i = 0; i < ranks.length; i ++) {
+				int branch = (ranks[i] < 0) ? 0 : (ranks[i] < ranks.length / 2) ? 1 : 2;
+				branchDistribution[branch] ++;
+				classDistribution[branch][delegates.classDelegate.getClassBranch(i)] ++;
+			}
+			this.totalWeight = ranks.length;
+			this.knownWeight = totalWeight - branchDistribution[0];
+		}
+
+		public Object run() {
+			float stateEntropy = GainCalculator.computeStateEntropy(classDistribution, knownWeight);
+			float gain = GainCalculator.computeGain(stateEntropy, branchDistribution, classDistribution,
+					branchDistribution[0] / totalWeight);
+			result = gain + GainCalculator.computeSplitInfo(branchDistribution, totalWeight);
+			return branchDistribution;
+		}
+	}
+
+	/**
+	 * Build the unpruned tree, sorting the cases of each tree node, keeping attribute lists or
+	 * trying the cuts between quantile bins, with the presort on the heap or in a memory-mapped file.
+	 * The presort is prepared by each operation, as a single tree does.
+	 */
+	static class Build extends Benchmark {
+		private final boolean attributeLists;
+		private final int binCount;
+		private final boolean mapped;
+		private DataSet dataSet;
+
+		Build(String name, boolean attributeLists, int binCount) {
+			this(name, attributeLists, binCount, false);
+		}
+
+		Build(String name, boolean attributeLists, int binCount, boolean mapped) {
+			super(name);
+			this.attributeLists = attributeLists;
+			this.binCount = binCount;
+			this.mapped = mapped;
+		}
+
+		public void setUp(DataSet dataSet, String baseName) {
+			this.dataSet = dataSet;
+		}
+
+		public Object run() throws Exception {
+			Presort presort;
+			if(mapped) presort = new Presort(dataSet, null, attributeLists, binCount);
+			else presort = (binCount > 0) ? new Presort(dataSet, binCount) : new Presort(dataSet, attributeLists);
+			return new DecisionTree(dataSet, presort, null);
+		}
+
+		public void tearDown() {
+			this.dataSet = null;
+		}
+	}
+
+	/**
+	 * Prune a freshly built tree.
+	 */
+	static class Prune extends Benchmark {
+		private DataSet dataSet;
+		private DecisionTree tree;
+
+		Prune() {
+			super("prune");
+		}
+
+		public void setUp(DataSet dataSet, String baseName) {
+			this.dataSet = dataSet;
+		}
+
+		public boolean isPrepared() {
+			return true;
+		}
+
+		public void prepare() {
+			this.tree = new DecisionTree(dataSet);
+		}
+
+		public Object run() {
+			tree.prune();
+			return tree;
+		}
+
+		public void tearDown() {
+			this.dataSet = null;
+			this.tree = null;
+		}
+	}
+
+	/**
+	 * Boost the trees for 10 rounds on a single presort, which is prepared by each operation.
+	 */
+	static class Boosting extends Benchmark {
+		private DataSet dataSet;
+
+		Boosting() {
+			super("boost");
+		}
+
+		public void setUp(DataSet dataSet, String baseName) {
+			this.dataSet = dataSet;
+		}
+
+		public Object run() {
+			return new BoostingEnsemble(dataSet, ROUNDS, 0, new Presort(dataSet), null, Configuration.getDefault());
+		}
+
+		public void tearDown() {
+			this.dataSet = null;
+		}
+	}
+
+	/**
+	 * Build, prune and compile as many independent trees as the rounds of the boosting benchmark,
+	 * each preparing its presort as a single tree does.
+	 */
+	static class IndependentTrees extends Benchmark {
+		private DataSet dataSet;
+
+		IndependentTrees() {
+			super("buildTrees");
+		}
+
+		public void setUp(DataSet dataSet, String baseName) {
+			this.dataSet = dataSet;
+		}
+
+		public Object run() {
+			CompiledTree[] trees = new CompiledTree[ROUNDS];
+			for(int i = 0; i < ROUNDS; i ++) {
+				DecisionTree tree = new DecisionTree(dataSet, new Presort(dataSet), null);
+				tree.prune();
+				trees[i] = tree.compile();
+			}
+			return trees;
+		}
+
+		public void tearDown() {
+			this.dataSet = null;
+		}
+	}
+
+	/**
+	 * Classify all the cases of the data set with the forest of 10 boosted rounds.
+	 */
+	static class ForestClassification extends Benchmark {
+		private DataSet dataSet;
+		private CompiledForest forest;
+		private int[] results;
+
+		ForestClassification() {
+			super("classifyBoosted");
+		}
+
+		public void setUp(DataSet dataSet, String baseName) {
+			this.dataSet = dataSet;
+			this.forest = new BoostingEnsemble(dataSet, ROUNDS, 0, new Presort(dataSet), null, Configuration.getDefault()).getForest();
+			this.results = new int[dataSet.getCaseCount()];
+		}
+
+		public Object run() {
+			forest.classify(dataSet, results);
+			return results;
+		}
+
+		public void tearDown() {
+			this.dataSet = null;
+			this.forest = null;
+			this.results = null;
+		}
+	}
+
+	/**
+	 * Classify all the cases of the data set with the pruned tree, or with its compiled tree.
+	 */
+	static class Classification extends Benchmark {
+		private final boolean compiled;
+		private DataSet dataSet;
+		private DecisionTree tree;
+		private CompiledTree compiledTree;
+
+		Classification(String name, boolean compiled) {
+			super(name);
+			this.compiled = compiled;
+		}
+
+		public void setUp(DataSet dataSet, String baseName) {
+			this.dataSet = dataSet;
+			this.tree = new DecisionTree(dataSet);
+			tree.prune();
+			this.compiledTree = tree.compile();
+		}
+
+		public Object run() {
+			if(compiled) return compiledTree.classify(dataSet);
+			return tree.classify(dataSet);
+		}
+
+		public void tearDown() {
+			this.dataSet = null;
+			this.tree = null;
+			this.compiledTree = null;
+		}
+	}
+}
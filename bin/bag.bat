@@ -0,0 +1,13 @@
+@echo off
+if "%1"=="" goto HELP
+
+:START
+@java -cp ../lib/c45.jar ml.classifier.BaggingEnsemble %*
+goto END
+
+:HELP
+echo Usage: bag ^<dataSetName^> [-trees count] [-subspace count] [-threads count] [-seed seed]
+echo Example: bag ..\dataset\UCI\golf -trees 25 -subspace 2 
+goto END
+
+:END
@@ -0,0 +1,9 @@
+@echo off
+rem Compile and run the microbenchmarks, e.g. bench -rows 10000 -missing 0 build prune
+if not exist ..\work\bench mkdir ..\work\bench
+dir /s /b ..\bench\*.java > ..\work\bench\sources.txt
+javac -encoding GBK -cp ../lib/c45.jar -d ../work/bench @../work/bench/sources.txt
+if errorlevel 1 goto END
+java -cp ../lib/c45.jar;../work/bench ml.bench.BenchmarkRunner %*
+
+:END
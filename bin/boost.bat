@@ -0,0 +1,13 @@
+@echo off
+if "%1"=="" goto HELP
+
+:START
+@java -cp ../lib/c45.jar ml.classifier.BoostingEnsemble %*
+goto END
+
+:HELP
+echo Usage: boost ^<dataSetName^> [-rounds count] [-patience count] [-threads count]
+echo Example: boost ..\dataset\UCI\golf -rounds 10 -patience 3 
+goto END
+
+:END
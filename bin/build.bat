@@ -0,0 +1,12 @@
+@echo off
+rem Compile the sources into ..\lib\classes and package them into ..\lib\c45.jar, which the other scripts run
+if exist ..\lib\classes rmdir /s /q ..\lib\classes
+mkdir ..\lib\classes
+dir /s /b ..\src\*.java > ..\lib\classes\sources.txt
+javac -encoding GBK --release 8 -cp ../lib/xstream-1.3.1.jar -d ../lib/classes @../lib/classes/sources.txt
+if errorlevel 1 goto END
+echo Main-Class: ml.classifier.dt.C45> ..\lib\classes\manifest.txt
+jar cfm ../lib/c45.jar ../lib/classes/manifest.txt -C ../lib/classes ml
+del ..\lib\classes\sources.txt ..\lib\classes\manifest.txt
+
+:END
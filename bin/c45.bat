@@ -2,7 +2,7 @@
 if "%1"=="" goto HELP
 
 :START
-java -cp %classpath%;../lib/c45.jar ml.classifier.dt.C45 %1 %2 %3 %4 %5
+java -cp %classpath%;../lib/c45.jar ml.classifier.dt.C45 %*
 goto END
 
 :HELP
@@ -2,11 +2,11 @@
 if "%1"=="" goto HELP
 
 :START
-@java -cp ../lib/c45.jar ml.classifier.CrossValidator %1 %2 %3 %4 %5
+@java -cp ../lib/c45.jar ml.classifier.CrossValidator %*
 goto END
 
 :HELP
-echo Usage: cv ^<dataSetName^> [fold]
+echo Usage: cv ^<dataSetName^> [fold [repeats]] [-seed seed] [-cache directory]
 echo Example: cv ..\dataset\UCI\golf 10 
 goto END
 
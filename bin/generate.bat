@@ -0,0 +1,15 @@
+@echo off
+if "%1"=="" goto HELP
+
+:START
+java -cp %classpath%;../lib/c45.jar ml.dataset.UciDataGenerator %*
+goto END
+
+:HELP
+echo Usage: generate ^<dataSetName^> -rows count [-test count] [-continuous count] [-discrete count]
+echo                 [-cardinality count] [-classes count] [-depth depth] [-duplicates ratio]
+echo                 [-missing ratio] [-noise ratio] [-seed seed]
+echo Example: generate ..\dataset\UCI\synthetic -rows 1000000 -test 100000 -missing 0.01
+goto END
+
+:END
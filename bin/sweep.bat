@@ -0,0 +1,13 @@
+@echo off
+if "%1"=="" goto HELP
+
+:START
+@java -cp ../lib/c45.jar ml.classifier.ParameterSweep %*
+goto END
+
+:HELP
+echo Usage: sweep ^<dataSetName^> [fold] [-minweights 2,5,10] [-confidences 0.1,0.25] [-threads count] [-seed seed] [-cache directory]
+echo Example: sweep ..\dataset\UCI\golf 10 -minweights 2,5 -confidences 0.1,0.25,0.4 
+goto END
+
+:END
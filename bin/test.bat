@@ -0,0 +1,9 @@
+@echo off
+rem Compile and run the tests, e.g. test foldTree
+if not exist ..\work\test mkdir ..\work\test
+dir /s /b ..\test\*.java > ..\work\test\sources.txt
+javac -encoding GBK -cp ../lib/c45.jar -d ../work/test @../work/test/sources.txt
+if errorlevel 1 goto END
+java -cp ../lib/c45.jar;../work/test ml.test.TestRunner %*
+
+:END
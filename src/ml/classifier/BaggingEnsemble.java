@@ -0,0 +1,293 @@
+/**
+ * @(#)BaggingEnsemble.java        1.6 26/10/18
+ */
+
+package ml.classifier;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import ml.dataset.DataSet;
+import ml.dataset.UciDataSet;
+import ml.classifier.dt.CompiledForest;
+import ml.classifier.dt.CompiledTree;
+import ml.classifier.dt.Configuration;
+import ml.classifier.dt.DecisionTree;
+import ml.classifier.dt.Presort;
+import ml.util.Statistics;
+import ml.util.Stopwatch;
+
+/**
+ * A bagging ensemble of C4.5 trees, each built on a bootstrap sample of the train data and,
+ * optionally, on a random subspace of the attributes, classifying by the plurality vote of its trees.
+ * <p>
+ * A bootstrap sample is given to its tree as the number of times each train data is drawn, as the
+ * weight of the data, so all the trees are built on a single presort of the data set: they share the
+ * presorted values, the ranks and the discrete codes, and each tree only has its own sequence and
+ * weight of the cases. The trees are built and pruned concurrently in a ForkJoinPool, and compiled.
+ * <br>
+ * The samples and the subspaces are drawn in order from the random generator before the trees are
+ * built, so a generator with a fixed seed builds the same ensemble.
+ * </p>
+ * <p>
+ * The compiled trees vote together in a {@link CompiledForest}, which classifies a batch block by
+ * block, each tree classifying all the cases of a block before the next tree.
+ * </p>
+ *
+ * @see ml.classifier.dt.DecisionTree#DecisionTree(DataSet, float[], boolean[], Presort, ForkJoinPool, Configuration)
+ */
+public class BaggingEnsemble implements Classifier {
+	// The compiled trees of the ensemble, while they are built
+	private final CompiledTree[] trees;
+	// The forest of the compiled trees, voting with equal weight
+	private final CompiledForest forest;
+	// The size of each tree
+	private final int[] treeSizes;
+	// The class values, indexed by the class ordinals
+	private final String[] classValues;
+	// The index of the class attribute
+	private final int classAttributeIndex;
+	// The pool building the trees
+	private final ForkJoinPool pool;
+
+	/**
+	 * Build a bagging ensemble of the specified number of trees on bootstrap samples of the data set.
+	 * @param dataSet the data set to build the trees with
+	 * @param treeCount the number of the trees
+	 * @param pool the pool building the trees and classifying large batches
+	 */
+	public BaggingEnsemble(DataSet dataSet, int treeCount, ForkJoinPool pool) {
+		this(dataSet, treeCount, 0, new Presort(dataSet), pool, Configuration.getDefault(), new Random());
+	}
+
+	/**
+	 * Build a bagging ensemble of the specified number of trees, each on a bootstrap sample of the data
+	 * set and a random subspace of the attributes.
+	 * @param dataSet the data set to build the trees with, the presorted data set or a view of it
+	 * @param treeCount the number of the trees
+	 * @param subspaceSize the number of the attributes each tree may test, or 0 for all the attributes
+	 * @param presort the presort of the data set shared by all the trees
+	 * @param pool the pool building the trees and classifying large batches
+	 * @param configuration the parameter setting of all the trees
+	 * @param random the random generator drawing the samples and the subspaces
+	 */
+	public BaggingEnsemble(DataSet dataSet, int treeCount, int subspaceSize, Presort presort, ForkJoinPool pool,
+			Configuration configuration, Random random) {
+		if(treeCount < 1) {
+			throw new IllegalArgumentException("Illegal number of trees: " + treeCount);
+		}
+		int attributeCandidates = dataSet.getAttributeCount() - 1;
+		if(subspaceSize < 0 || subspaceSize > attributeCandidates) {
+			throw new IllegalArgumentException("Illegal subspace size: " + subspaceSize);
+		}
+		this.trees = new CompiledTree[treeCount];
+		this.treeSizes = new int[treeCount];
+		this.classValues = dataSet.getClassValues();
+		this.classAttributeIndex = dataSet.getClassAttributeIndex();
+		this.pool = pool;
+
+		// Draw the samples and the subspaces in order, before the trees are built concurrently
+		MemberConstruction[] constructions = new MemberConstruction[treeCount];
+		for(int i = 0; i < treeCount; i ++) {
+			float[] caseWeights = sample(dataSet.getCaseCount(), random);
+			boolean[] candidateAttributes = (subspaceSize == 0 || subspaceSize == attributeCandidates) ? null
+				: subspace(dataSet.getAttributeCount(), classAttributeIndex, subspaceSize, random);
+			constructions[i] = new MemberConstruction(i, dataSet, caseWeights, candidateAttributes, presort, configuration);
+		}
+		if(ForkJoinTask.inForkJoinPool()) ForkJoinTask.invokeAll(constructions);
+		else pool.invoke(new RecursiveAction() {
+			protected void compute() {
+				invokeAll(constructions);
+			}
+		});
+		this.forest = new CompiledForest(trees, pool);
+	}
+
+	/**
+	 * Draw a bootstrap sample of the specified number of cases, as the number of times each case is drawn.
+	 */
+	private static float[] sample(int caseCount, Random random) {
+		float[] caseWeights = new float[caseCount];
+		for(int i = 0; i < caseCount; i ++) {
+			caseWeights[random.nextInt(caseCount)] += 1.0f;
+		}
+		return caseWeights;
+	}
+
+	/**
+	 * Draw a random subspace of the specified number of attributes other than the class attribute.
+	 */
+	private static boolean[] subspace(int attributeCount, int classAttributeIndex, int subspaceSize, Random random) {
+		int[] attributes = new int[attributeCount - 1];
+		for(int i = 0, k = 0; i < attributeCount; i ++) {
+			if(i != classAttributeIndex) attributes[k ++] = i;
+		}
+		boolean[] candidateAttributes = new boolean[attributeCount];
+		// A partial shuffle selects the first subspaceSize attributes
+		for(int i = 0; i < subspaceSize; i ++) {
+			int selected = i + random.nextInt(attributes.length - i);
+			int temp = attributes[selected];
+			attributes[selected] = attributes[i];
+			attributes[i] = temp;
+			candidateAttributes[temp] = true;
+		}
+		return candidateAttributes;
+	}
+
+	/**
+	 * A task building, pruning and compiling a tree of the ensemble.
+	 */
+	private class MemberConstruction extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int index;
+		private final DataSet dataSet;
+		private final float[] caseWeights;
+		private final boolean[] candidateAttributes;
+		private final Presort presort;
+		private final Configuration configuration;
+
+		MemberConstruction(int index, DataSet dataSet, float[] caseWeights, boolean[] candidateAttributes,
+				Presort presort, Configuration configuration) {
+			this.index = index;
+			this.dataSet = dataSet;
+			this.caseWeights = caseWeights;
+			this.candidateAttributes = candidateAttributes;
+			this.presort = presort;
+			this.configuration = configuration;
+		}
+
+		protected void compute() {
+			DecisionTree tree = new DecisionTree(dataSet, caseWeights, candidateAttributes, presort, pool, configuration);
+			tree.prune();
+			treeSizes[index] = tree.size();
+			trees[index] = tree.compile();
+		}
+	}
+
+	/**
+	 * Get the number of the trees of the ensemble.
+	 */
+	public int getTreeCount() {
+		return trees.length;
+	}
+
+	/**
+	 * Get the forest of the compiled trees, voting with equal weight.
+	 */
+	public CompiledForest getForest() {
+		return forest;
+	}
+
+	/**
+	 * Get the sizes of the pruned trees of the ensemble.
+	 */
+	public float[] getTreeSizes() {
+		float[] sizes = new float[treeSizes.length];
+		for(int i = 0; i < sizes.length; i ++) sizes[i] = treeSizes[i];
+		return sizes;
+	}
+
+	/**
+	 * Get the class values, indexed by the class ordinals.
+	 */
+	public String[] getClassValues() {
+		return classValues.clone();
+	}
+
+	/**
+	 * Classify the test data by the plurality vote of the trees.
+	 */
+	public String[] classify(String[][] testData) {
+		int[] ordinals = new int[testData.length];
+		forest.classify(testData, ordinals);
+		String[] results = new String[testData.length];
+		for(int i = 0; i < results.length; i ++) results[i] = classValues[ordinals[i]];
+		return results;
+	}
+
+	/**
+	 * Classify the cases of the typed columns of a data set by the plurality vote of the trees.
+	 * @param testSet the data set to be classified, sharing the meta data of the train data set
+	 * @return the ordinals of the class values
+	 */
+	public int[] classify(DataSet testSet) {
+		int[] ordinals = new int[testSet.getCaseCount()];
+		forest.classify(testSet, ordinals);
+		return ordinals;
+	}
+
+	public int getTestError(String[][] testData) {
+		String[] classificationResults = classify(testData);
+		int testError = 0;
+		for(int i = 0; i < classificationResults.length; i ++)
+			if(!classificationResults[i].equals(testData[i][classAttributeIndex]))
+				testError ++;
+		return testError;
+	}
+
+	public double getTestErrorRatio(String[][] testData) {
+		return 1.0*getTestError(testData)/testData.length;
+	}
+
+	/**
+	 * Get the classification error on the typed columns of the specified data set.
+	 * @param testSet the data set to be classified, sharing the meta data of the train data set
+	 */
+	public int getTestError(DataSet testSet) {
+		return testSet.getClassificationError(classify(testSet));
+	}
+
+	/**
+	 * Build a bagging ensemble on the data set with the specified data set name, and report
+	 * its test error on the .test file.
+	 * <br>
+	 * Usage: java BaggingEnsemble dataSetName [-trees count] [-subspace count] [-threads count] [-seed seed]
+	 */
+	public static void main(String[] args) {
+		if(args.length < 1 || args[0].startsWith("-") || args.length % 2 != 1) {
+			System.out.println("Usage: java BaggingEnsemble dataSetName [-trees count] [-subspace count] [-threads count] [-seed seed]");
+			return;
+		}
+
+		String dataSetName = args[0];
+		int treeCount = 10;
+		int subspaceSize = 0;
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		Random random = new Random();
+		for(int i = 1; i < args.length; i += 2) {
+			if(args[i].equals("-trees") || args[i].equals("-n")) {
+				treeCount = Integer.parseInt(args[i+1]);
+			}
+			else if(args[i].equals("-subspace") || args[i].equals("-k")) {
+				subspaceSize = Integer.parseInt(args[i+1]);
+			}
+			else if(args[i].equals("-threads") || args[i].equals("-t")) {
+				pool = new ForkJoinPool(Integer.parseInt(args[i+1]));
+			}
+			else if(args[i].equals("-seed") || args[i].equals("-s")) {
+				random = new Random(Long.parseLong(args[i+1]));
+			}
+		}
+
+		DataSet dataSet = new UciDataSet(dataSetName);
+		Stopwatch.start();
+		BaggingEnsemble ensemble = new BaggingEnsemble(dataSet, treeCount, subspaceSize, new Presort(dataSet), pool,
+			Configuration.getDefault(), random);
+		Stopwatch.stop();
+
+		System.out.println("trees : " + ensemble.getTreeCount());
+		float[] treeSizes = ensemble.getTreeSizes();
+		// The standard deviation of a single tree size is not defined
+		if(treeSizes.length > 1) System.out.printf("tree size : %.1f(%.2f)\n", Statistics.mean(treeSizes), Statistics.std(treeSizes));
+		else System.out.printf("tree size : %.1f\n", treeSizes[0]);
+		System.out.println("build time : " + Stopwatch.runtime() + " ms");
+		System.out.println("train error : " + ensemble.getTestError(dataSet));
+		if(new File(dataSetName + ".test").isFile()) {
+			String[][] testData = UciDataSet.loadData(dataSetName + ".test");
+			System.out.printf("test error : %d(%.1f%%)\n", ensemble.getTestError(testData), 100 * ensemble.getTestErrorRatio(testData));
+		}
+		if(pool != ForkJoinPool.commonPool()) pool.shutdown();
+	}
+}
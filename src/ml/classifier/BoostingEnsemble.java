@@ -0,0 +1,341 @@
+/**
+ * @(#)BoostingEnsemble.java        1.6 26/10/18
+ */
+
+package ml.classifier;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import ml.dataset.DataSet;
+import ml.dataset.DiscreteAttribute;
+import ml.dataset.UciDataSet;
+import ml.classifier.dt.CompiledForest;
+import ml.classifier.dt.CompiledTree;
+import ml.classifier.dt.Configuration;
+import ml.classifier.dt.DecisionTree;
+import ml.classifier.dt.Presort;
+import ml.util.Stopwatch;
+
+/**
+ * A boosted ensemble of C4.5 trees in the manner of AdaBoost.M1, as the boosting of C5.0.
+ * <p>
+ * Each round builds and prunes a tree with the current weight of the train data, and the weight
+ * of the train data the tree classifies correctly is multiplied by e/(1-e), where e is the weighted
+ * error ratio of the tree, so the next tree concentrates on the train data misclassified so far.
+ * The weight is then normalized to sum to the number of the train data, as the weight of a tree
+ * built without boosting does, so the minimal weight of a branch keeps its meaning. The tree votes
+ * with the weight ln((1-e)/e).<br>
+ * The boosting stops before the specified number of rounds when a tree has an error ratio of 0.5 or
+ * more, which is dropped unless it is the first tree, or when a tree classifies all the train data
+ * correctly, which votes as if it misclassified half a case.
+ * </p>
+ * <p>
+ * The weight of each round is given to the tree as the weight of the train data, so all the rounds
+ * are built on a single presort of the data set: the data set is neither loaded nor sorted again, and
+ * the presorted values, ranks and discrete codes of the attribute delegates are shared by the trees of
+ * all the rounds. The train data are classified between the rounds by the compiled trees.<br>
+ * A train data whose weight has decreased below a thousandth of the mean weight is left out of the
+ * tree of the round, like a train data of zero weight, so it neither supplies the cuts of the tree
+ * nor weighs in its tests. It keeps its weight in the boosting, and is back in the tree of a later
+ * round once its weight has increased again.
+ * </p>
+ * <p>
+ * With a patience, the boosting also stops once the training error of the ensemble has not decreased
+ * for that many rounds, and the ensemble keeps the rounds up to its least training error.
+ * </p>
+ * <p>
+ * The compiled trees vote together in a {@link CompiledForest} with the weights of their rounds.
+ * </p>
+ *
+ * @see ml.classifier.dt.DecisionTree#DecisionTree(DataSet, float[], boolean[], Presort, ForkJoinPool, Configuration)
+ */
+public class BoostingEnsemble implements Classifier {
+	// The weight below which a train data is left out of the tree of a round, against the mean weight 1
+	private static final float NEGLIGIBLE_WEIGHT = 1e-3f;
+	// The forest of the compiled trees of the kept rounds, voting with the weights of their rounds
+	private final CompiledForest forest;
+	// The size, the weighted error ratio and the ensemble training error of each round built
+	private final List<Integer> treeSizes = new ArrayList<Integer>();
+	private final List<Float> errorRatios = new ArrayList<Float>();
+	private final List<Integer> trainErrors = new ArrayList<Integer>();
+	// The class values, indexed by the class ordinals
+	private final String[] classValues;
+	// The index of the class attribute
+	private final int classAttributeIndex;
+
+	/**
+	 * Boost the trees on the data set for at most the specified number of rounds.
+	 * @param dataSet the data set to build the trees with
+	 * @param rounds the maximal number of the rounds
+	 * @param pool the pool building each tree and classifying large batches
+	 */
+	public BoostingEnsemble(DataSet dataSet, int rounds, ForkJoinPool pool) {
+		this(dataSet, rounds, 0, new Presort(dataSet), pool, Configuration.getDefault());
+	}
+
+	/**
+	 * Boost the trees on the data set for at most the specified number of rounds.
+	 * @param dataSet the data set to build the trees with, the presorted data set or a view of it
+	 * @param rounds the maximal number of the rounds
+	 * @param patience the number of the rounds without a decrease of the ensemble training error,
+	 *        after which the boosting stops, or 0 not to stop early
+	 * @param presort the presort of the data set shared by all the rounds
+	 * @param pool the pool building each tree and classifying large batches, or <i>null</i> to build
+	 *        the trees and classify sequentially
+	 * @param configuration the parameter setting of all the trees
+	 */
+	public BoostingEnsemble(DataSet dataSet, int rounds, int patience, Presort presort, ForkJoinPool pool,
+			Configuration configuration) {
+		if(rounds < 1) {
+			throw new IllegalArgumentException("Illegal number of rounds: " + rounds);
+		}
+		if(patience < 0) {
+			throw new IllegalArgumentException("Illegal patience: " + patience);
+		}
+		this.classValues = dataSet.getClassValues();
+		this.classAttributeIndex = dataSet.getClassAttributeIndex();
+		int caseCount = dataSet.getCaseCount();
+		int classCount = classValues.length;
+
+		// The class ordinal of each train data, -1 for a missing class value which no tree classifies correctly
+		int[] classOrdinals = new int[caseCount];
+		DiscreteAttribute classAttribute = (DiscreteAttribute)dataSet.getAttributes()[classAttributeIndex];
+		for(int i = 0; i < caseCount; i ++) {
+			classOrdinals[i] = classAttribute.getCode(dataSet.getCaseIndex(i)) - 1;
+		}
+
+		float[] caseWeights = new float[caseCount];
+		Arrays.fill(caseWeights, 1.0f);
+		// The votes of the ensemble for each train data, row by row
+		float[] votes = new float[caseCount * classCount];
+		List<CompiledTree> trees = new ArrayList<CompiledTree>();
+		List<Float> voteWeights = new ArrayList<Float>();
+		int leastTrainError = Integer.MAX_VALUE;
+		int bestRoundCount = 0;
+		for(int round = 0; round < rounds; round ++) {
+			DecisionTree tree = new DecisionTree(dataSet, leaveOutNegligible(caseWeights), null, presort, pool, configuration);
+			tree.prune();
+			CompiledTree compiledTree = tree.compile();
+			int[] ordinals = compiledTree.classify(dataSet);
+
+			double totalWeight = 0;
+			double errorWeight = 0;
+			for(int i = 0; i < caseCount; i ++) {
+				totalWeight += caseWeights[i];
+				if(ordinals[i] != classOrdinals[i]) errorWeight += caseWeights[i];
+			}
+			double errorRatio = errorWeight / totalWeight;
+			// A tree no better than chance ends the boosting, and is only kept as the first tree
+			if(errorRatio >= 0.5 && round > 0) break;
+
+			double voteWeight;
+			if(errorRatio >= 0.5) voteWeight = 1.0;
+			else if(errorRatio == 0) voteWeight = Math.log((totalWeight - 0.5) / 0.5);
+			else voteWeight = Math.log((1 - errorRatio) / errorRatio);
+			trees.add(compiledTree);
+			voteWeights.add((float)voteWeight);
+
+			// The training error of the ensemble of the rounds so far
+			int trainError = 0;
+			for(int i = 0; i < caseCount; i ++) {
+				int offset = i * classCount;
+				votes[offset + ordinals[i]] += (float)voteWeight;
+				int selected = 0;
+				for(int c = 1; c < classCount; c ++) {
+					if(votes[offset + c] > votes[offset + selected]) selected = c;
+				}
+				if(selected != classOrdinals[i]) trainError ++;
+			}
+			treeSizes.add(tree.size());
+			errorRatios.add((float)errorRatio);
+			trainErrors.add(trainError);
+
+			if(trainError < leastTrainError) {
+				leastTrainError = trainError;
+				bestRoundCount = trees.size();
+			}
+			else if(patience > 0 && trees.size() - bestRoundCount >= patience) break;
+			if(errorRatio >= 0.5 || errorRatio == 0) break;
+
+			// Decrease the weight of the train data classified correctly, and normalize the weight
+			float beta = (float)(errorRatio / (1 - errorRatio));
+			double newTotalWeight = 0;
+			for(int i = 0; i < caseCount; i ++) {
+				if(ordinals[i] == classOrdinals[i]) caseWeights[i] *= beta;
+				newTotalWeight += caseWeights[i];
+			}
+			float scale = (float)(caseCount / newTotalWeight);
+			for(int i = 0; i < caseCount; i ++) caseWeights[i] *= scale;
+		}
+
+		// Without a patience, all the rounds built are kept
+		int roundCount = (patience > 0) ? bestRoundCount : trees.size();
+		float[] weights = new float[roundCount];
+		for(int i = 0; i < roundCount; i ++) weights[i] = voteWeights.get(i);
+		this.forest = new CompiledForest(trees.subList(0, roundCount).toArray(new CompiledTree[roundCount]), weights, pool);
+	}
+
+	/**
+	 * Get the weight of the train data of the tree of a round, where the negligible weight is 0.
+	 */
+	private static float[] leaveOutNegligible(float[] caseWeights) {
+		float[] weights = new float[caseWeights.length];
+		for(int i = 0; i < caseWeights.length; i ++) {
+			if(caseWeights[i] >= NEGLIGIBLE_WEIGHT) weights[i] = caseWeights[i];
+		}
+		return weights;
+	}
+
+	/**
+	 * Get the number of the rounds kept by the ensemble.
+	 */
+	public int getRoundCount() {
+		return forest.getTreeCount();
+	}
+
+	/**
+	 * Get the number of the rounds built, including those dropped by the early stopping.
+	 */
+	public int getBuiltRoundCount() {
+		return treeSizes.size();
+	}
+
+	/**
+	 * Get the forest of the compiled trees of the kept rounds, voting with the weights of their rounds.
+	 */
+	public CompiledForest getForest() {
+		return forest;
+	}
+
+	/**
+	 * Get the size of the pruned tree of each round built.
+	 */
+	public float[] getTreeSizes() {
+		float[] sizes = new float[treeSizes.size()];
+		for(int i = 0; i < sizes.length; i ++) sizes[i] = treeSizes.get(i);
+		return sizes;
+	}
+
+	/**
+	 * Get the weighted error ratio of the tree of each round built, on the weight of its round.
+	 */
+	public float[] getErrorRatios() {
+		float[] ratios = new float[errorRatios.size()];
+		for(int i = 0; i < ratios.length; i ++) ratios[i] = errorRatios.get(i);
+		return ratios;
+	}
+
+	/**
+	 * Get the training error of the ensemble of the rounds up to each round built.
+	 */
+	public int[] getTrainErrors() {
+		int[] errors = new int[trainErrors.size()];
+		for(int i = 0; i < errors.length; i ++) errors[i] = trainErrors.get(i);
+		return errors;
+	}
+
+	/**
+	 * Get the class values, indexed by the class ordinals.
+	 */
+	public String[] getClassValues() {
+		return classValues.clone();
+	}
+
+	/**
+	 * Classify the test data by the weighted vote of the rounds.
+	 */
+	public String[] classify(String[][] testData) {
+		int[] ordinals = new int[testData.length];
+		forest.classify(testData, ordinals);
+		String[] results = new String[testData.length];
+		for(int i = 0; i < results.length; i ++) results[i] = classValues[ordinals[i]];
+		return results;
+	}
+
+	/**
+	 * Classify the cases of the typed columns of a data set by the weighted vote of the rounds.
+	 * @param testSet the data set to be classified, sharing the meta data of the train data set
+	 * @return the ordinals of the class values
+	 */
+	public int[] classify(DataSet testSet) {
+		int[] ordinals = new int[testSet.getCaseCount()];
+		forest.classify(testSet, ordinals);
+		return ordinals;
+	}
+
+	public int getTestError(String[][] testData) {
+		String[] classificationResults = classify(testData);
+		int testError = 0;
+		for(int i = 0; i < classificationResults.length; i ++)
+			if(!classificationResults[i].equals(testData[i][classAttributeIndex]))
+				testError ++;
+		return testError;
+	}
+
+	public double getTestErrorRatio(String[][] testData) {
+		return 1.0*getTestError(testData)/testData.length;
+	}
+
+	/**
+	 * Get the classification error on the typed columns of the specified data set.
+	 * @param testSet the data set to be classified, sharing the meta data of the train data set
+	 */
+	public int getTestError(DataSet testSet) {
+		return testSet.getClassificationError(classify(testSet));
+	}
+
+	/**
+	 * Boost the trees on the data set with the specified data set name, and report the rounds and
+	 * the test error on the .test file.
+	 * <br>
+	 * Usage: java BoostingEnsemble dataSetName [-rounds count] [-patience count] [-threads count]
+	 */
+	public static void main(String[] args) {
+		if(args.length < 1 || args[0].startsWith("-") || args.length % 2 != 1) {
+			System.out.println("Usage: java BoostingEnsemble dataSetName [-rounds count] [-patience count] [-threads count]");
+			return;
+		}
+
+		String dataSetName = args[0];
+		int rounds = 10;
+		int patience = 0;
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		for(int i = 1; i < args.length; i += 2) {
+			if(args[i].equals("-rounds") || args[i].equals("-n")) {
+				rounds = Integer.parseInt(args[i+1]);
+			}
+			else if(args[i].equals("-patience") || args[i].equals("-p")) {
+				patience = Integer.parseInt(args[i+1]);
+			}
+			else if(args[i].equals("-threads") || args[i].equals("-t")) {
+				pool = new ForkJoinPool(Integer.parseInt(args[i+1]));
+			}
+		}
+
+		DataSet dataSet = new UciDataSet(dataSetName);
+		Stopwatch.start();
+		BoostingEnsemble ensemble = new BoostingEnsemble(dataSet, rounds, patience, new Presort(dataSet), pool,
+			Configuration.getDefault());
+		Stopwatch.stop();
+
+		float[] treeSizes = ensemble.getTreeSizes();
+		float[] errorRatios = ensemble.getErrorRatios();
+		int[] trainErrors = ensemble.getTrainErrors();
+		System.out.println("round    size   error   train error");
+		for(int i = 0; i < treeSizes.length; i ++) {
+			System.out.printf("%5d %7.0f %6.1f%% %13d%s\n", i + 1, treeSizes[i], 100 * errorRatios[i], trainErrors[i],
+				(i < ensemble.getRoundCount()) ? "" : " (dropped)");
+		}
+		System.out.println("rounds : " + ensemble.getRoundCount());
+		System.out.println("build time : " + Stopwatch.runtime() + " ms");
+		System.out.println("train error : " + ensemble.getTestError(dataSet));
+		if(new File(dataSetName + ".test").isFile()) {
+			String[][] testData = UciDataSet.loadData(dataSetName + ".test");
+			System.out.printf("test error : %d(%.1f%%)\n", ensemble.getTestError(testData), 100 * ensemble.getTestErrorRatio(testData));
+		}
+		if(pool != ForkJoinPool.commonPool()) pool.shutdown();
+	}
+}
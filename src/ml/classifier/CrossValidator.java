@@ -4,26 +4,52 @@
 
 package ml.classifier;
 
+import java.io.File;
 import java.util.Random;
-import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import ml.dataset.UciDataSet;
 import ml.dataset.DataSet;
+import ml.dataset.DataSetView;
+import ml.dataset.DiscreteAttribute;
+import ml.classifier.dt.Configuration;
 import ml.classifier.dt.DecisionTree;
+import ml.classifier.dt.ModelCache;
+import ml.classifier.dt.Presort;
 import ml.util.Statistics;
 
 /**
  * Cross validate a classifier to get its average classification performance.
+ * <p>
+ * The folds of cross validation are run concurrently in a ForkJoinPool. The train data and
+ * the test data of each fold are immutable views of the cross validated data set, sharing
+ * its typed columns, so the data set itself is never changed.<br>
+ * The trees of all the folds are built on a single presort of the data set, which can also
+ * be shared by repeated cross validations of the same data set. The tree of a fold only takes
+ * its cuts from the train data of the fold, so it is the tree built on that train data alone.
+ * </p>
  *
  * @author 	    Ping He
  * @author 	    Xiaohua Xu
  */
 public class CrossValidator {
-	/* The whole cross validation data, used to generates different train and test data.*/
-	private String[][] crossValidationData;
+	/* The indices of the whole cross validation data in the data set, used to generates different train and test data.*/
+	private int[] crossValidationData;
 	/* The number of fold to cross validate.*/
 	private int fold;
-	/* The changeable dataSet constructed in different folds of cross validation.*/
+	/* The data set to be cross validated, viewed by the train data and test data of all the folds.*/
 	private DataSet dataSet;
+	/* The pool running the folds of cross validation and building their trees.*/
+	private ForkJoinPool pool;
+	/* The presort of the data set shared by the trees of all the folds.*/
+	private Presort presort;
+	/* The cache of the trees of the folds, or null to build them all.*/
+	private ModelCache cache;
+	/* The random generator shuffling the cross validation data.*/
+	private Random random;
+	/* The parameter setting of the trees of all the folds.*/
+	private Configuration configuration;
 	/**
 	 * One recorded result of the cross validation.
 	 * For decision tree classifier, the size of constructed need to be recorded.
@@ -46,13 +72,62 @@ public class CrossValidator {
 	 *
 	 * @param dataSet The data set to be cross validated
 	 * @param fold    The folds of cross validation
+	 * @param presort The presort of the data set shared by the trees of all the folds
+	 * @param pool    The pool running the folds concurrently and building their trees in parallel
 	 */
-	public CrossValidator(DataSet dataSet, int fold) {
+	public CrossValidator(DataSet dataSet, int fold, Presort presort, ForkJoinPool pool) {
+		this(dataSet, fold, presort, pool, null, new Random());
+	}
+
+	/**
+	 * Initialize a cross validator with the specified fold of cross validation, loading the
+	 * trees of the folds from the specified cache if they have been built before.
+	 * <p>
+	 * The trees of the folds are only found in the cache if the folds are the same, so the
+	 * cross validation data should be shuffled by a random generator with a fixed seed.
+	 * </p>
+	 *
+	 * @param dataSet The data set to be cross validated
+	 * @param fold    The folds of cross validation
+	 * @param presort The presort of the data set shared by the trees of all the folds
+	 * @param pool    The pool running the folds concurrently and building their trees in parallel
+	 * @param cache   The cache of the built and pruned trees, or null to build them all
+	 * @param random  The random generator shuffling the cross validation data
+	 */
+	public CrossValidator(DataSet dataSet, int fold, Presort presort, ForkJoinPool pool, ModelCache cache, Random random) {
+		this(dataSet, fold, presort, pool, cache, random, Configuration.getDefault());
+	}
+
+	/**
+	 * Initialize a cross validator with the specified fold of cross validation, building and
+	 * pruning the trees of the folds with the specified configuration.
+	 * <p>
+	 * Cross validators of different configurations can run at the same time on the same presort.
+	 * </p>
+	 *
+	 * @param dataSet The data set to be cross validated
+	 * @param fold    The folds of cross validation
+	 * @param presort The presort of the data set shared by the trees of all the folds
+	 * @param pool    The pool running the folds concurrently and building their trees in parallel
+	 * @param cache   The cache of the built and pruned trees, or null to build them all
+	 * @param random  The random generator shuffling the cross validation data
+	 * @param configuration The parameter setting of the trees of all the folds
+	 * @see ml.classifier.ParameterSweep
+	 */
+	public CrossValidator(DataSet dataSet, int fold, Presort presort, ForkJoinPool pool, ModelCache cache, Random random,
+			Configuration configuration) {
 		// Load the data for cross validation
 		this.dataSet = dataSet;
-		this.crossValidationData = new String[dataSet.getCaseCount()][];
-		System.arraycopy(dataSet.getTrainData(), 0, crossValidationData, 0, dataSet.getCaseCount());
+		this.presort = presort;
+		this.cache = cache;
+		this.random = random;
+		this.configuration = configuration;
+		this.crossValidationData = new int[dataSet.getCaseCount()];
+		for(int i = 0; i < crossValidationData.length; i ++) {
+			crossValidationData[i] = i;
+		}
 		this.fold = fold;
+		this.pool = pool;
 
 		// Shuffle the crossValidationData to random sequence
 		shuffle();
@@ -64,6 +139,27 @@ public class CrossValidator {
 		crossValidate();
 	}
 
+	/**
+	 * Initialize a cross validator with the specified fold of cross validation,
+	 * presorting the data set once for all the folds.
+	 * @param dataSet The data set to be cross validated
+	 * @param fold    The folds of cross validation
+	 * @param pool    The pool running the folds concurrently and building their trees in parallel
+	 */
+	public CrossValidator(DataSet dataSet, int fold, ForkJoinPool pool) {
+		this(dataSet, fold, new Presort(dataSet), pool);
+	}
+
+	/**
+	 * Initialize a cross validator with the specified fold of cross validation,
+	 * running the folds in the common ForkJoinPool.
+	 * @param dataSet The data set to be cross validated
+	 * @param fold    The folds of cross validation
+	 */
+	public CrossValidator(DataSet dataSet, int fold) {
+		this(dataSet, fold, ForkJoinPool.commonPool());
+	}
+
 	/**
 	 * Initialize a cross validator of the default 10 fold cross validation
 	 * @param dataSet The data set to be cross validated
@@ -76,7 +172,6 @@ public class CrossValidator {
 	 * Make a random perturbation of the whole cross validation data
 	 */
 	private void shuffle() {
-		Random random = new Random();
 		for(int i = crossValidationData.length-1; i > 0; i --) {
 			int selectedIndex = random.nextInt(i+1);
 			swap(crossValidationData, selectedIndex, i);
@@ -91,14 +186,15 @@ public class CrossValidator {
 	 * </p>
 	 */
 	private void cluster() {
-		int classIndex = dataSet.getClassAttributeIndex();
+		DiscreteAttribute classAttribute = (DiscreteAttribute)dataSet.getAttributes()[dataSet.getClassAttributeIndex()];
 
 		int first = 0, last;
 		int max = crossValidationData.length;
 		while(first < max) {
 			last = first;
+			int classCode = classAttribute.getCode(dataSet.getCaseIndex(crossValidationData[last]));
 			for(int i = first + 1; i < max; i ++) {
-				if(crossValidationData[i][classIndex].equals(crossValidationData[last][classIndex])) {
+				if(classAttribute.getCode(dataSet.getCaseIndex(crossValidationData[i])) == classCode) {
 					last ++;
 					if(i == last) continue;
 					swap(crossValidationData, i, last);
@@ -117,7 +213,7 @@ public class CrossValidator {
 	 * (suppose 3 fold cross validation).
 	 */
 	private void distribute() {
-    	String[][] result = new String[crossValidationData.length][];
+    	int[] result = new int[crossValidationData.length];
     	int count = 0;
 
     	for(int i = 0; i < fold; i ++) {
@@ -134,7 +230,7 @@ public class CrossValidator {
 	 * Partition the cross validation data to different train data and test data in different
 	 * folds, build a classifier for each train data and use it to classify the corresponding
 	 * test data.
-	 * The cross validation result of each fold is all recorded.
+	 * The folds are run concurrently, and the cross validation result of each fold is all recorded.
 	 */
 	private void crossValidate() {
 		// The number of cases which cannot be equally distributed into all the folds
@@ -143,14 +239,14 @@ public class CrossValidator {
  		int testSize = crossValidationData.length / fold + 1;
 
 		// Ready to record the error ratio of each fold
-		float[] testErrorRatios = new float[fold];
+		this.testErrorRatios = new float[fold];
 		// Ready to record the
-		float[] treeSizes = new float[fold];
+		this.treeSizes = new float[fold];
 
 		// The start index of the train data in the crossValidationData
 		int start = 0;
-		int attributeCount = dataSet.getAttributeCount();
-		// Execute tree construction and test data evaluation for each fold of cross validation
+		FoldValidation[] validations = new FoldValidation[fold];
+		// Partition the train data and the test data for each fold of cross validation
  		for(int i = 0; i < fold; i ++) {
 			/* For the folds belonging to [0, fraction), their testSize equals the default testSize
 			 *     i.e. crossValidationData.length / fold + 1;
@@ -161,9 +257,9 @@ public class CrossValidator {
 			int trainSize = crossValidationData.length-testSize;
 
 			// Train data used for tree construction (it changes with cross validation)
-			String[][] trainData = new String[trainSize][attributeCount];
+			int[] trainData = new int[trainSize];
 			// Test data used for classification (it changes with cross validation)
-			String[][] testData = new String[testSize][attributeCount];
+			int[] testData = new int[testSize];
 
 			// Partition the train data and the test data for the current fold
 			int trainCount = 0;
@@ -180,40 +276,68 @@ public class CrossValidator {
 					testData[testCount ++] = crossValidationData[index];
 				}
 			}
+			validations[i] = new FoldValidation(i, trainData, testData);
+
+			// Ready to partite the train data and the test data for the next fold
+			start += testSize;
+		}
+
+		// Execute tree construction and test data evaluation for all the folds concurrently
+		if(ForkJoinTask.inForkJoinPool()) ForkJoinTask.invokeAll(validations);
+		else pool.invoke(new RecursiveAction() {
+			protected void compute() {
+				invokeAll(validations);
+			}
+		});
+	}
+
+	/**
+	 * A task building and testing the tree classifier of a fold of cross validation.
+	 */
+	private class FoldValidation extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		// The index of the fold
+		private final int index;
+		// The indices of the train data and the test data in the data set
+		private final int[] trainData;
+		private final int[] testData;
 
-			// Renew the data set for the classifier construction in different folds
-			dataSet.setTrainData(trainData);
-			dataSet.addColumnSetView();
+		FoldValidation(int index, int[] trainData, int[] testData) {
+			this.index = index;
+			this.trainData = trainData;
+			this.testData = testData;
+		}
 
-			// Construct the tree classifier
-			TreeClassifier tree = new DecisionTree(dataSet);
-			tree.prune();
+		protected void compute() {
+			// Construct the tree classifier on the view of the train data
+			DecisionTree tree;
+			if(cache == null) {
+				tree = new DecisionTree(new DataSetView(dataSet, trainData), presort, pool, configuration);
+				tree.prune();
+			}
+			else {
+				tree = cache.build(new DataSetView(dataSet, trainData), presort, pool, configuration);
+				cache.prune(tree);
+			}
 
 			// Compute the tree size and the test error ratio of the constructed tree classifier
 			int size = tree.size();
-	    	int error = tree.getTestError(testData);
-	    	float errorRatio = (float)(100.0f * error / testCount);
+	    	int error = tree.getTestError(new DataSetView(dataSet, testData));
+	    	float errorRatio = 100.0f * error / testData.length;
 
 			// Record the tree size and the test error ratio
-			testErrorRatios[i] = errorRatio;
-			treeSizes[i] = size;
-
-			// Ready to partite the train data and the test data for the next fold
-			start += testSize;
+			testErrorRatios[index] = errorRatio;
+			treeSizes[index] = size;
 		}
-
-		// Record the tree size and the test error ratio in the CrossValidator instance
-		this.testErrorRatios = testErrorRatios;
-		this.treeSizes = treeSizes;
 	}
 
 	/**
-	 * Change the position of two String arrays in a 2D string array
+	 * Change the position of two indices in an index array
 	 */
-	private static void swap(String[][] str, int i, int j) {
-		String[] temp = str[i];
-		str[i] = str[j];
-		str[j] = temp;
+	private static void swap(int[] indices, int i, int j) {
+		int temp = indices[i];
+		indices[i] = indices[j];
+		indices[j] = temp;
 	}
 
 	/**
@@ -230,6 +354,13 @@ public class CrossValidator {
 		return this.testErrorRatios;
 	}
 
+	/**
+	 * Get the parameter setting of the trees of all the folds.
+	 */
+	public Configuration getConfiguration() {
+		return this.configuration;
+	}
+
 	/**
 	 * Get the fold of cross validation
 	 */
@@ -238,30 +369,43 @@ public class CrossValidator {
 	}
 
 	/**
-	 * Cross validate a data set with the specified data set name.
+	 * Cross validate a data set with the specified data set name, repeatedly if required.
 	 * <br>
-	 * Usage: java CrossValidator dataSetName [fold]
+	 * Usage: java CrossValidator dataSetName [fold [repeats]] [-seed seed] [-cache directory]
 	 */
 	public static void main(String[] args) {
-		CrossValidator cross;
-
-		if(args.length > 2 || args[0].equalsIgnoreCase("-h")
-                           || args[0].equalsIgnoreCase("-help")){
-            System.out.println("Usage: java CrossValidator dataSetName [fold]");
+		// Separate the options from the positional arguments
+		int count = 0;
+		while(count < args.length && !args[count].startsWith("-")) count ++;
+		if(count < 1 || count > 3 || (args.length - count) % 2 != 0){
+            System.out.println("Usage: java CrossValidator dataSetName [fold [repeats]] [-seed seed] [-cache directory]");
 			return;
 		}
-		else if(args.length == 1) {
-			String dataSetName = args[0];
-			cross = new CrossValidator(new UciDataSet(dataSetName));
-		}
-		else{
-			String dataSetName = args[0];
-			int fold = Integer.parseInt(args[1]);
-			cross = new CrossValidator(new UciDataSet(dataSetName), fold);
+
+		String dataSetName = args[0];
+		int fold = (count > 1) ? Integer.parseInt(args[1]) : 10;
+		int repeats = (count > 2) ? Integer.parseInt(args[2]) : 1;
+		Random random = new Random();
+		ModelCache cache = null;
+		for(int i = count; i < args.length; i += 2) {
+			if(args[i].equals("-seed") || args[i].equals("-s")) {
+				random = new Random(Long.parseLong(args[i+1]));
+			}
+			else if(args[i].equals("-cache") || args[i].equals("-c")) {
+				cache = new ModelCache(new File(args[i+1]));
+			}
 		}
 
-		float[] treeSizes = cross.getTreeSizes();
-		float[] testErrorRatios = cross.getTestErrorRatios();
+		// All the repeats share the presort of the data set
+		DataSet dataSet = new UciDataSet(dataSetName);
+		Presort presort = new Presort(dataSet);
+		float[] treeSizes = new float[fold * repeats];
+		float[] testErrorRatios = new float[fold * repeats];
+		for(int i = 0; i < repeats; i ++) {
+			CrossValidator cross = new CrossValidator(dataSet, fold, presort, ForkJoinPool.commonPool(), cache, random);
+			System.arraycopy(cross.getTreeSizes(), 0, treeSizes, i * fold, fold);
+			System.arraycopy(cross.getTestErrorRatios(), 0, testErrorRatios, i * fold, fold);
+		}
 
 		// Print the tree size, test error ratios and their corresponding standard deviations
 		System.out.printf("%-15s %-15s\n", "Size(std)", "Ratio(std)");
@@ -271,5 +415,6 @@ public class CrossValidator {
 						   Statistics.mean(testErrorRatios),
 						   Statistics.std(testErrorRatios)
 						 );
+		if(cache != null) System.err.println(cache);
 	}
 }
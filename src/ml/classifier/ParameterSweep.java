@@ -0,0 +1,212 @@
+/**
+ * @(#)ParameterSweep.java        1.6 26/10/18
+ */
+
+package ml.classifier;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import ml.dataset.UciDataSet;
+import ml.dataset.DataSet;
+import ml.classifier.dt.Configuration;
+import ml.classifier.dt.ModelCache;
+import ml.classifier.dt.Presort;
+import ml.util.Statistics;
+
+/**
+ * Cross validate the decision trees of a grid of configurations to select their parameters.
+ * <p>
+ * The cross validations of all the configurations run concurrently in a ForkJoinPool, each
+ * with its folds run concurrently as well. They share the typed columns of the data set and
+ * a single presort of it, which is loaded and prepared once for the whole grid, since every
+ * tree keeps its own configuration. The tree of a fold only takes its cuts from the train data
+ * of the fold, like the trees of any cross validation.<br>
+ * All the configurations are cross validated on the same folds, shuffled by random generators
+ * with the same seed, so their test error ratios are compared on the same train and test data.
+ * </p>
+ *
+ * @see ml.classifier.CrossValidator
+ * @see ml.classifier.dt.Configuration
+ */
+public class ParameterSweep {
+	/* The configurations of the grid, the confidence levels varying fastest.*/
+	private final Configuration[] configurations;
+	/* The cross validation of each configuration.*/
+	private final CrossValidator[] validations;
+
+	/**
+	 * Cross validate the grid of the specified minimal weights and confidence levels.
+	 *
+	 * @param dataSet The data set to be cross validated
+	 * @param fold    The folds of cross validation
+	 * @param minWeights  The minimal weights to construct an internal tree node
+	 * @param confidences The confidence levels of the pruning
+	 * @param presort The presort of the data set shared by all the trees
+	 * @param pool    The pool running the configurations and their folds concurrently
+	 * @param cache   The cache of the built and pruned trees, or null to build them all
+	 * @param seed    The seed of the random generators shuffling the cross validation data
+	 */
+	public ParameterSweep(DataSet dataSet, int fold, float[] minWeights, float[] confidences, Presort presort,
+			ForkJoinPool pool, ModelCache cache, long seed) {
+		this.configurations = new Configuration[minWeights.length * confidences.length];
+		for(int i = 0; i < minWeights.length; i ++) {
+			for(int j = 0; j < confidences.length; j ++) {
+				configurations[i * confidences.length + j] = new Configuration(minWeights[i], confidences[j]);
+			}
+		}
+		this.validations = new CrossValidator[configurations.length];
+
+		ConfigurationValidation[] tasks = new ConfigurationValidation[configurations.length];
+		for(int i = 0; i < tasks.length; i ++) {
+			tasks[i] = new ConfigurationValidation(i, dataSet, fold, presort, pool, cache, seed);
+		}
+		if(ForkJoinTask.inForkJoinPool()) ForkJoinTask.invokeAll(tasks);
+		else pool.invoke(new RecursiveAction() {
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	/**
+	 * A task cross validating the trees of a configuration.
+	 */
+	private class ConfigurationValidation extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int index;
+		private final DataSet dataSet;
+		private final int fold;
+		private final Presort presort;
+		private final ForkJoinPool pool;
+		private final ModelCache cache;
+		private final long seed;
+
+		ConfigurationValidation(int index, DataSet dataSet, int fold, Presort presort, ForkJoinPool pool, ModelCache cache, long seed) {
+			this.index = index;
+			this.dataSet = dataSet;
+			this.fold = fold;
+			this.presort = presort;
+			this.pool = pool;
+			this.cache = cache;
+			this.seed = seed;
+		}
+
+		protected void compute() {
+			validations[index] = new CrossValidator(dataSet, fold, presort, pool, cache, new Random(seed), configurations[index]);
+		}
+	}
+
+	/**
+	 * Get the configurations of the grid, the confidence levels varying fastest.
+	 */
+	public Configuration[] getConfigurations() {
+		return configurations.clone();
+	}
+
+	/**
+	 * Get the cross validation of the configuration of the specified index.
+	 */
+	public CrossValidator getCrossValidator(int index) {
+		return validations[index];
+	}
+
+	/**
+	 * Get the index of the configuration with the least average test error ratio, and of the
+	 * smallest average tree size among those.
+	 */
+	public int getBestIndex() {
+		int best = 0;
+		for(int i = 1; i < validations.length; i ++) {
+			float error = Statistics.mean(validations[i].getTestErrorRatios());
+			float bestError = Statistics.mean(validations[best].getTestErrorRatios());
+			if(error < bestError || (error == bestError
+					&& Statistics.mean(validations[i].getTreeSizes()) < Statistics.mean(validations[best].getTreeSizes()))) {
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Get the configuration with the least average test error ratio.
+	 * @see #getBestIndex()
+	 */
+	public Configuration getBest() {
+		return configurations[getBestIndex()];
+	}
+
+	/**
+	 * Parse a comma separated list of float values.
+	 */
+	private static float[] parseFloats(String list) {
+		String[] items = list.split(",");
+		float[] values = new float[items.length];
+		for(int i = 0; i < items.length; i ++) {
+			values[i] = Float.parseFloat(items[i].trim());
+		}
+		return values;
+	}
+
+	/**
+	 * Cross validate a data set with the specified data set name on a grid of configurations.
+	 * <br>
+	 * Usage: java ParameterSweep dataSetName [fold] [-minweights 2,5,10] [-confidences 0.1,0.25]
+	 *        [-threads count] [-seed seed] [-cache directory]
+	 */
+	public static void main(String[] args) {
+		// Separate the options from the positional arguments
+		int count = 0;
+		while(count < args.length && !args[count].startsWith("-")) count ++;
+		if(count < 1 || count > 2 || (args.length - count) % 2 != 0){
+            System.out.println("Usage: java ParameterSweep dataSetName [fold] [-minweights 2,5,10] [-confidences 0.1,0.25] [-threads count] [-seed seed] [-cache directory]");
+			return;
+		}
+
+		String dataSetName = args[0];
+		int fold = (count > 1) ? Integer.parseInt(args[1]) : 10;
+		float[] minWeights = {Configuration.getDefault().getMinWeight()};
+		float[] confidences = {Configuration.getDefault().getConfidence()};
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		long seed = new Random().nextLong();
+		ModelCache cache = null;
+		for(int i = count; i < args.length; i += 2) {
+			if(args[i].equals("-minweights") || args[i].equals("-m")) {
+				minWeights = parseFloats(args[i+1]);
+			}
+			else if(args[i].equals("-confidences") || args[i].equals("-f")) {
+				confidences = parseFloats(args[i+1]);
+			}
+			else if(args[i].equals("-threads") || args[i].equals("-t")) {
+				pool = new ForkJoinPool(Integer.parseInt(args[i+1]));
+			}
+			else if(args[i].equals("-seed") || args[i].equals("-s")) {
+				seed = Long.parseLong(args[i+1]);
+			}
+			else if(args[i].equals("-cache") || args[i].equals("-c")) {
+				cache = new ModelCache(new File(args[i+1]));
+			}
+		}
+
+		// All the configurations share the loaded data set and its presort
+		DataSet dataSet = new UciDataSet(dataSetName);
+		Presort presort = new Presort(dataSet);
+		ParameterSweep sweep = new ParameterSweep(dataSet, fold, minWeights, confidences, presort, pool, cache, seed);
+		if(pool != ForkJoinPool.commonPool()) pool.shutdown();
+
+		// Print the tree size, test error ratios and their corresponding standard deviations of each configuration
+		int best = sweep.getBestIndex();
+		System.out.printf("%-11s %-11s %-15s %s\n", "MinWeight", "Confidence", "Size(std)", "Ratio(std)");
+		for(int i = 0; i < sweep.configurations.length; i ++) {
+			CrossValidator cross = sweep.getCrossValidator(i);
+			String size = String.format("%.1f(%.2f)", Statistics.mean(cross.getTreeSizes()), Statistics.std(cross.getTreeSizes()));
+			String ratio = String.format("%.1f%%(%.2f)", Statistics.mean(cross.getTestErrorRatios()), Statistics.std(cross.getTestErrorRatios()));
+			System.out.printf("%-11s %-11s %-15s %s%s\n", sweep.configurations[i].getMinWeight(),
+				sweep.configurations[i].getConfidence(), size, ratio, (i == best) ? " *" : "");
+		}
+		System.out.println();
+		if(cache != null) System.err.println(cache);
+	}
+}
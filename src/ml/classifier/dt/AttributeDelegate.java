@@ -13,11 +13,15 @@ package ml.classifier.dt;
  * @see ml.classifier.dt.DiscreteAttributeDelegate
  * @see ml.classifier.dt.ContinuousAttributeDelegate
  */
-public abstract class AttributeDelegate{
+public abstract class AttributeDelegate implements Cloneable {
 	/**
 	 * Whether there is any missing data on the attribute
 	 */
 	protected boolean hasMissingData;
+	/**
+	 * The minimal weight to construct an internal tree node, of the configuration of the tree
+	 */
+	protected float minWeight;
 
  	/**
  	 * Initialize an attribute delegate
@@ -25,6 +29,7 @@ public abstract class AttributeDelegate{
 	protected AttributeDelegate(){
 		// Before we find missing data, it is false
 		this.hasMissingData = false;
+		this.minWeight = Parameter.MINWEIGHT;
 	}
 
 	/**
@@ -41,24 +46,67 @@ public abstract class AttributeDelegate{
 		hasMissingData = value;
 	}
 
+	/**
+	 * Retrieve the minimal weight to construct an internal tree node
+	 */
+	public float getMinWeight(){
+		return minWeight;
+	}
+
+	/**
+	 * Set the minimal weight to construct an internal tree node, which bounds the weight of the branches
+	 */
+	public void setMinWeight(float minWeight){
+		this.minWeight = minWeight;
+	}
+
 	/**
 	 * Set the original sequence and weight for each data.
 	 */
 	public abstract void setCasesWeight(int[] cases, float[] weight);
 
+	/**
+	 * Create a delegate sharing the processed information of this delegate, but working on
+	 * the specified sequence and weight of the data.
+	 * <p>
+	 * The processed information is read only during tree building, so the shared delegates
+	 * can be used by different threads as long as they work on different cases and weight.
+	 * </p>
+	 * @param cases the sequence of the data for the shared delegate
+	 * @param weight the weight of each data for the shared delegate
+	 * @return The shared delegate
+	 */
+	public AttributeDelegate share(int[] cases, float[] weight) {
+		try {
+			AttributeDelegate delegate = (AttributeDelegate)clone();
+			delegate.setCasesWeight(cases, weight);
+			return delegate;
+		}
+		catch(CloneNotSupportedException e) {
+			throw new InternalError(e.toString());
+		}
+	}
+
 	/**
 	 * Evaluate the Gain and splitInfo value for the specified data when it splits on
 	 * the attribute.
+	 * <p>
+	 * The evaluation works in the workspace of the current thread and records its result in
+	 * the specified evaluation, so it allocates nothing once the workspace is big enough.
+	 * </p>
 	 *
 	 * @param first the begin (inclusive) index of the data to be evaluated
 	 * @param last the end (exclusive) index of the data to be evaluated
 	 * @param classAttributeDelegate the delegate of the class attribute. It helps when computing
 	 *         data's class distribution.
-	 * @return The evaluation result
+	 * @param evaluation Actually an output of this method, recording the evaluation result
+	 * @return Whether the attribute is valid as the test attribute
 	 *
 	 * @see ml.classifier.dt.GainCalculator
+	 * @see ml.classifier.dt.EvaluationWorkspace
 	 */
-	protected abstract float[] evaluate(int first, int last, AttributeDelegate classAttributeDelegate);
+	protected abstract boolean evaluate(int first, int last, AttributeDelegate classAttributeDelegate,
+			SplitEvaluation evaluation);
 
 	/**
 	 * Group the data with the specified branch value forward and compute its branch weight.
@@ -86,6 +134,17 @@ public abstract class AttributeDelegate{
 	 */
 	protected abstract int groupBackward(int first, int last);
 
+	/**
+	 * Find the branch of the specified data when the attribute is selected as the test attribute.
+	 *
+	 * @param caseIndex the index of the specified data
+	 * @param cutRank For continuous attribute, the rank of the cut value;
+	 *                For discrete attribute, ignored.
+	 * @return The branch index of the specified data, 0 for missing data and
+	 *         the index of the child tree node plus 1 for the others
+	 */
+	protected abstract int findBranch(int caseIndex, int cutRank);
+
 	/**
 	 * Get the number of branches if the attribute is selected as the test attribute.
 	 * <p>
@@ -123,6 +182,19 @@ public abstract class AttributeDelegate{
 		throw new UnsupportedOperationException("Only Supported By Continuous Attribute!");
 	}
 
+	/**
+	 * Find the rank of the specified cut value in the test attribute, the rank of the largest
+	 * value not greater than it.
+	 * <p>Only supported by continuous attribute delegates.</p>
+	 *
+	 * @param cut the cut value
+	 * @return The rank of the cut value
+	 * @see ml.classifier.dt.ContinuousAttributeDelegate#findCutRank(float cut)
+	 */
+	protected int findCutRank(float cut) {
+		throw new UnsupportedOperationException("Only Supported By Continuous Attribute!");
+	}
+
 	/**
 	 * Find the cut value of the test attribute when provided with its rank.
 	 * <p> Only supported by continuous attribute delegates.</p>
@@ -0,0 +1,68 @@
+/**
+ * @(#)AttributeListPartition.java        1.6 26/10/18
+ */
+
+package ml.classifier.dt;
+
+/**
+ * The attribute lists of a tree node partitioned by the branches of its test attribute.
+ * <p>
+ * Every attribute list is partitioned stably, so each branch keeps its cases in the order of
+ * the attribute. The cases with unknown value on the test attribute are kept in branch 0, and
+ * merged into the attribute list of every child tree node by their ranks.
+ * </p>
+ *
+ * @see ml.classifier.dt.Presort#Presort(ml.dataset.DataSet dataSet, boolean attributeLists)
+ */
+class AttributeListPartition {
+	// The begin index of each branch in the partitioned lists, followed by their end index
+	private final int[] branchBegins;
+	// The partitioned list of each attribute, null for the attributes without attribute list
+	private final int[][] lists;
+
+	/**
+	 * Partition the attribute lists of the [first, last) cases of a tree node.
+	 * @param delegates the attribute delegates working on the cases
+	 * @param cases the sequence of the cases
+	 * @param first the begin (inclusive) index of the cases of the tree node
+	 * @param last the end (exclusive) index of the cases of the tree node
+	 * @param testAttributeDelegate the delegate of the test attribute of the tree node
+	 * @param cutRank the rank of the cut if the test attribute is continuous
+	 */
+	AttributeListPartition(AttributeDelegate[] delegates, int[] cases, int first, int last,
+			AttributeDelegate testAttributeDelegate, int cutRank) {
+		// Count the cases of each branch, branch 0 for the unknown cases
+		this.branchBegins = new int[testAttributeDelegate.getBranchCount() + 2];
+		for(int i = first; i < last; i ++) {
+			branchBegins[testAttributeDelegate.findBranch(cases[i], cutRank) + 1] ++;
+		}
+		for(int branch = 1; branch < branchBegins.length; branch ++) {
+			branchBegins[branch] += branchBegins[branch-1];
+		}
+
+		this.lists = new int[delegates.length][];
+		for(int i = 0; i < delegates.length; i ++) {
+			if(delegates[i] instanceof ContinuousAttributeDelegate && ((ContinuousAttributeDelegate)delegates[i]).hasList()) {
+				lists[i] = ((ContinuousAttributeDelegate)delegates[i]).partitionList(first, last, testAttributeDelegate,
+						cutRank, branchBegins);
+			}
+		}
+	}
+
+	/**
+	 * Fill the attribute lists of a child tree node, whose cases are placed from the specified
+	 * begin index with the unknown cases first.
+	 * @param index the index of the child tree node
+	 * @param delegates the attribute delegates the child tree node is constructed with
+	 * @param begin the begin index of the cases of the child tree node
+	 */
+	void inherit(int index, AttributeDelegate[] delegates, int begin) {
+		int branch = index + 1;
+		for(int i = 0; i < lists.length; i ++) {
+			if(lists[i] != null) {
+				((ContinuousAttributeDelegate)delegates[i]).mergeList(lists[i], branchBegins[0], branchBegins[1],
+						branchBegins[branch], branchBegins[branch+1], begin);
+			}
+		}
+	}
+}
@@ -4,6 +4,9 @@
 
 package ml.classifier.dt;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
 import ml.dataset.DataSet;
 import ml.dataset.UciDataSet;
 import ml.util.TreeView;
@@ -30,8 +33,89 @@ public class C45 {
 	 * @param dataSetName the base name of the .names, .data and .test files
 	 */
 	public C45(String dataSetName){
+		this(dataSetName, null);
+	}
+
+	/**
+	 * Build a decision tree with the specified data set files, evaluating the candidate
+	 * test attributes in parallel with the specified pool.
+	 * @param dataSetName the base name of the .names, .data and .test files
+	 * @param pool the pool evaluating the candidate test attributes, or <i>null</i> to
+	 *        evaluate them sequentially
+	 */
+	public C45(String dataSetName, ForkJoinPool pool){
+		this(dataSetName, pool, false);
+	}
+
+	/**
+	 * Build a decision tree with the specified data set files, sorting the cases of each tree node
+	 * or keeping attribute lists of the continuous attributes.
+	 * @param dataSetName the base name of the .names, .data and .test files
+	 * @param pool the pool evaluating the candidate test attributes, or <i>null</i> to
+	 *        evaluate them sequentially
+	 * @param attributeLists whether to keep attribute lists instead of sorting the cases of each tree node
+	 * @see ml.classifier.dt.Presort#Presort(DataSet dataSet, boolean attributeLists)
+	 */
+	public C45(String dataSetName, ForkJoinPool pool, boolean attributeLists){
+		this(dataSetName, pool, attributeLists, 0);
+	}
+
+	/**
+	 * Build a decision tree with the specified data set files, trying the cuts between at most
+	 * the specified number of quantile bins of each continuous attribute.
+	 * @param dataSetName the base name of the .names, .data and .test files
+	 * @param pool the pool evaluating the candidate test attributes, or <i>null</i> to
+	 *        evaluate them sequentially
+	 * @param attributeLists whether to keep attribute lists instead of sorting the cases of each
+	 *        tree node, ignored with approximate splits which sort nothing
+	 * @param binCount the maximal number of the bins, or 0 to try the cuts between all the distinct values
+	 * @see ml.classifier.dt.Presort#Presort(DataSet dataSet, int binCount)
+	 */
+	public C45(String dataSetName, ForkJoinPool pool, boolean attributeLists, int binCount){
+		DataSet dataSet = new UciDataSet(dataSetName);
+		Presort presort = (binCount > 0) ? new Presort(dataSet, binCount) : new Presort(dataSet, attributeLists);
+		this.tree = new DecisionTree(dataSet, presort, pool);
+	}
+
+	/**
+	 * Build a decision tree with the specified data set files, keeping the processed information
+	 * of the attributes in a memory-mapped file instead of on the heap.
+	 * @param dataSetName the base name of the .names, .data and .test files
+	 * @param pool the pool evaluating the candidate test attributes, or <i>null</i> to
+	 *        evaluate them sequentially
+	 * @param attributeLists whether to keep attribute lists instead of sorting the cases of each tree node
+	 * @param binCount the maximal number of the bins, or 0 to try the cuts between all the distinct values
+	 * @param directory the directory of the mapped file, or <i>null</i> for the temporary directory
+	 * @throws IOException if the mapped file can not be written
+	 * @see ml.classifier.dt.Presort#Presort(DataSet dataSet, File directory, boolean attributeLists, int binCount)
+	 */
+	public C45(String dataSetName, ForkJoinPool pool, boolean attributeLists, int binCount, File directory)
+			throws IOException {
 		DataSet dataSet = new UciDataSet(dataSetName);
-		this.tree = new DecisionTree(dataSet);
+		Presort presort = new Presort(dataSet, directory, attributeLists, binCount);
+		this.tree = new DecisionTree(dataSet, presort, pool);
+	}
+
+	/**
+	 * Build a decision tree with the specified data set files, or load it from the specified cache
+	 * if it has been built with the same data and parameters before.
+	 * @param dataSetName the base name of the .names, .data and .test files
+	 * @param pool the pool evaluating the candidate test attributes, or <i>null</i> to
+	 *        evaluate them sequentially
+	 * @param attributeLists whether to keep attribute lists instead of sorting the cases of each tree node
+	 * @param binCount the maximal number of the bins, or 0 to try the cuts between all the distinct values
+	 * @param cache the cache of the trees
+	 * @see ml.classifier.dt.ModelCache#load(DataSet dataSet, int binCount, ForkJoinPool pool)
+	 */
+	public C45(String dataSetName, ForkJoinPool pool, boolean attributeLists, int binCount, ModelCache cache){
+		DataSet dataSet = new UciDataSet(dataSetName);
+		// The data set is only presorted on a miss
+		this.tree = cache.load(dataSet, binCount, pool);
+		if(this.tree == null) {
+			Presort presort = (binCount > 0) ? new Presort(dataSet, binCount) : new Presort(dataSet, attributeLists);
+			this.tree = new DecisionTree(dataSet, presort, pool);
+			cache.store(tree);
+		}
 	}
 
 	/**
@@ -50,9 +134,16 @@ public class C45 {
 		String dataSetName;
 		String output = "plain";
 		int repeat = 0;
+		int threads = 1;
+		ForkJoinPool pool = null;
 		TreeView view = null;
 		String buildTime = "";
-		//String persistenceFilename = "";
+		String modelFilename = "";
+		String engine = "sort";
+		int bins = 0;
+		String mapDirectory = null;
+		ModelCache cache = null;
+		String entropy = "table";
 
 		// Illegal input
 		if (args.length == 0) {
@@ -79,14 +170,102 @@ public class C45 {
 				repeat = Integer.parseInt(args[i+1]);
 				continue;
 			}
+
+			if (args[i].equals("-threads") || args[i].equals("-t")) {
+				threads = Integer.parseInt(args[i+1]);
+				continue;
+			}
+
+			if (args[i].equals("-model") || args[i].equals("-m")) {
+				modelFilename = args[i+1];
+				continue;
+			}
+
+			if (args[i].equals("-engine") || args[i].equals("-e")) {
+				engine = args[i+1];
+				continue;
+			}
+
+			if (args[i].equals("-bins") || args[i].equals("-b")) {
+				bins = Integer.parseInt(args[i+1]);
+				continue;
+			}
+
+			if (args[i].equals("-mmap")) {
+				mapDirectory = args[i+1];
+				continue;
+			}
+
+			if (args[i].equals("-cache") || args[i].equals("-c")) {
+				cache = new ModelCache(new File(args[i+1]));
+				continue;
+			}
+
+			if (args[i].equals("-entropy")) {
+				entropy = args[i+1];
+				continue;
+			}
+
+			if (args[i].equals("-datacache")) {
+				UciDataSet.setCacheDirectory(new File(args[i+1]));
+				continue;
+			}
+		}
+
+		if (!engine.equals("sort") && !engine.equals("lists")) {
+			System.out.println("Waring:Unsupported Engine!");
+			engine = "sort";
+		}
+
+		// The verification runs the fast entropy kernel against the exact math
+		if (entropy.equals("verify")) {
+			EntropyKernel.setMode(EntropyKernel.Mode.FAST);
+			EntropyKernel.setVerification(true);
+		}
+		else if (entropy.equals("exact") || entropy.equals("table") || entropy.equals("fast")) {
+			EntropyKernel.setMode(EntropyKernel.Mode.valueOf(entropy.toUpperCase()));
+		}
+		else {
+			System.out.println("Waring:Unsupported Entropy Kernel!");
+		}
+
+		// Evaluate the candidate test attributes in parallel if more than one thread is asked for
+		if (threads > 1) {
+			pool = new ForkJoinPool(threads);
+		}
+
+		if (cache != null && mapDirectory != null) {
+			System.out.println("Waring:The Mapped Presort Is Not Cached!");
+			mapDirectory = null;
 		}
 
 		Stopwatch.start();
 		for(int i = 0; i < Math.max(1, repeat); i ++) {
-			c45 = new C45(dataSetName);
+			if (cache != null) {
+				c45 = new C45(dataSetName, pool, engine.equals("lists"), bins, cache);
+				continue;
+			}
+			if (mapDirectory == null) {
+				c45 = new C45(dataSetName, pool, engine.equals("lists"), bins);
+				continue;
+			}
+			try {
+				c45 = new C45(dataSetName, pool, engine.equals("lists"), bins, new File(mapDirectory));
+			}
+			catch (IOException e) {
+				System.err.println(e);
+				if (pool != null) {
+					pool.shutdown();
+				}
+				return;
+			}
 		}
 		Stopwatch.stop();
 
+		if (pool != null) {
+			pool.shutdown();
+		}
+
 		// Compute the averaged tree building time
 		if (repeat > 0) {
 		    buildTime = "" + Stopwatch.runtime()/repeat + " ms";
@@ -100,21 +279,36 @@ public class C45 {
         }
 
         if(output.equals("plain")) {
-        	view = plainView(tree, buildTime);
+        	view = plainView(tree, buildTime, cache);
         }
 
         if(output.equals("html")) {
-        	view = htmlView(tree, buildTime);
+        	view = htmlView(tree, buildTime, cache);
         }
 
         if(output.equals("xml")) {
-        	view = xmlView(tree, buildTime);
+        	view = xmlView(tree, buildTime, cache);
         }
         
 		System.out.println(view);
+
+		// Report the hits and misses of the cache apart from the printed tree
+		if (cache != null) {
+			System.err.println(cache);
+		}
+
+		// Save the pruned tree as a binary model
+		if (!modelFilename.equals("")) {
+			try {
+				tree.compile().write(modelFilename);
+			}
+			catch (IOException e) {
+				System.err.println(e);
+			}
+		}
  	}
 
-	private static TreeView plainView(DecisionTree tree, String buildTime){
+	private static TreeView plainView(DecisionTree tree, String buildTime, ModelCache cache){
 		TreeView v1 = new PlainTreeView(tree);
 		v1.insert("Tree Before Pruning");
 		v1.append("tree size : " + tree.size());
@@ -125,7 +319,7 @@ public class C45 {
 		}
         v1.append(TreeView.CR);
 
-		tree.prune();
+		prune(tree, cache);
 
 		TreeView v2 = new PlainTreeView(tree);
 		v2.insert("Tree After Pruning");
@@ -135,7 +329,7 @@ public class C45 {
 		return v1.union(v2);
 	}
 
-	private static TreeView htmlView(DecisionTree tree, String buildTime) {
+	private static TreeView htmlView(DecisionTree tree, String buildTime, ModelCache cache) {
 		TreeView v1 = new HtmlTreeView(tree);
 		v1.insert("<h2>Tree Before Pruning</h2>");
 		v1.append("<p>tree size : " + tree.size()+"<br>");
@@ -146,7 +340,7 @@ public class C45 {
 		} 
 		v1.append(TreeView.CR);
 
-		tree.prune();
+		prune(tree, cache);
 
 		TreeView v2 = new HtmlTreeView(tree);
 		v2.insert("<h2>Tree After Pruning</h2>");
@@ -156,7 +350,7 @@ public class C45 {
 		return v1.union(v2);
 	}
 
-    private static TreeView xmlView(DecisionTree tree, String buildTime) {
+    private static TreeView xmlView(DecisionTree tree, String buildTime, ModelCache cache) {
 		TreeView v1 = new XmlTreeView(tree);
 		String prefix = TreeView.LEVEL_PREFIX + TreeView.LEVEL_GAP;
 		String prefix2 = prefix + TreeView.LEVEL_GAP;
@@ -174,7 +368,7 @@ public class C45 {
 	    v1.insert(prefix + "<version>1.5.3</version>");
         v1.insert(prefix + "<algorithm>FastC45</algorithm>");
         
-		tree.prune();
+		prune(tree, cache);
 
 		TreeView v2 = new XmlTreeView(tree);
 		v2.insert(prefix2 + "<description>After Pruning</description>"); 
@@ -187,8 +381,20 @@ public class C45 {
 		return v1.union(v2);
 	}
 
+	/**
+	 * Prune the tree, through the cache if there is one.
+	 */
+	private static void prune(DecisionTree tree, ModelCache cache) {
+		if (cache == null) {
+			tree.prune();
+		}
+		else {
+			cache.prune(tree);
+		}
+	}
+
  	private static void usage(String... messages) {
- 	    System.out.println("Usage: java " + C45.class + " dataSetName [-output plain | html | xml  -repeat times]");
+ 	    System.out.println("Usage: java " + C45.class + " dataSetName [-output plain | html | xml  -repeat times  -threads count  -model filename  -engine sort | lists  -bins count  -mmap directory  -cache directory  -entropy exact | table | fast | verify  -datacache directory]");
  	    for (String line : messages) {
  	    	System.out.println(line);
  	    }
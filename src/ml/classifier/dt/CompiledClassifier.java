@@ -0,0 +1,106 @@
+/**
+ * @(#)CompiledClassifier.java        1.6 26/10/18
+ */
+
+package ml.classifier.dt;
+
+import ml.classifier.Classifier;
+
+/**
+ * A classifier working on a compiled decision tree.
+ * <p>
+ * A compiled classifier interprets the flat arrays of its compiled tree, while its subclasses
+ * generated by {@link TreeClassGenerator} select the class with straight-line bytecode.<br>
+ * The test data are encoded into records first, and the class values are
+ * selected with the same fractional semantics of missing values as
+ * {@link DecisionTree#classify(String[][] testData)}.
+ * </p>
+ *
+ * @see ml.classifier.dt.CompiledTree
+ * @see ml.classifier.dt.TreeClassGenerator
+ */
+public class CompiledClassifier implements Classifier {
+	/**
+	 * The compiled tree to be interpreted
+	 */
+	protected final CompiledTree tree;
+	// The class values
+	private final String[] classValues;
+
+	/**
+	 * Initialize a classifier interpreting the specified compiled tree.
+	 */
+	public CompiledClassifier(CompiledTree tree) {
+		this.tree = tree;
+		this.classValues = tree.getClassValues();
+	}
+
+	/**
+	 * Get the compiled tree of the classifier.
+	 */
+	public CompiledTree getCompiledTree() {
+		return tree;
+	}
+
+	/**
+	 * Query whether the classifier runs generated bytecode rather than interpreting the compiled tree.
+	 */
+	public boolean isGenerated() {
+		return getClass() != CompiledClassifier.class;
+	}
+
+	/**
+	 * Select the class of a record from the root to a leaf node.
+	 * @return the ordinal of the class value, or <i>-2-node</i> if the record is
+	 *         missing the value of the test attribute of the internal node
+	 */
+	protected int select(float[] record) {
+		return tree.classify(record, null);
+	}
+
+	/**
+	 * Classify a record of encoded attribute values.
+	 * @see ml.classifier.dt.CompiledTree#classify(float[] record, float[] distribution)
+	 * @return the ordinal of the class value
+	 */
+	public int classify(float[] record) {
+		return classify(record, null);
+	}
+
+	/**
+	 * Classify a record of encoded attribute values.
+	 * @param distribution the scratch for the class distribution of a record with missing values,
+	 *        whose length is the number of the class values, or null to allocate one when required
+	 * @see ml.classifier.dt.CompiledTree#classify(float[] record, float[] distribution)
+	 * @return the ordinal of the class value
+	 */
+	public int classify(float[] record, float[] distribution) {
+		int result = select(record);
+		// Distribute the record from the node missing its test attribute value
+		if(result < 0) result = tree.classifyFrom(-2 - result, record, distribution);
+		return result;
+	}
+
+	public String[] classify(String[][] testData) {
+		String[] results = new String[testData.length];
+		float[] record = new float[tree.getAttributeCount()];
+		for(int testIndex = 0; testIndex < testData.length; testIndex ++) {
+			results[testIndex] = classValues[classify(tree.encode(testData[testIndex], record))];
+		}
+		return results;
+	}
+
+	public int getTestError(String[][] testData) {
+		String[] classificationResults = classify(testData);
+		int testError = 0;
+		int classAttributeIndex = tree.getClassAttributeIndex();
+		for(int i = 0; i < classificationResults.length; i ++)
+			if(!classificationResults[i].equals(testData[i][classAttributeIndex]))
+				testError ++;
+		return testError;
+	}
+
+	public double getTestErrorRatio(String[][] testData) {
+		return 1.0*getTestError(testData)/testData.length;
+	}
+}
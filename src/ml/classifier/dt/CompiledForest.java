@@ -0,0 +1,340 @@
+/**
+ * @(#)CompiledForest.java        1.6 26/10/18
+ */
+
+package ml.classifier.dt;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import ml.dataset.Attribute;
+import ml.dataset.DataSet;
+
+/**
+ * Compiled trees classifying together by their weighted votes, such as the trees of a bagging
+ * or a boosting ensemble, safe for any number of concurrent callers.
+ * <p>
+ * Each tree votes for the class it selects with the vote weight of the tree, and the forest
+ * selects the class of the largest total vote, the first class value among the ties. The
+ * probabilities predicted by the forest are the normalized votes.
+ * </p>
+ * <p>
+ * A batch is scored block by block: the test data of a block are encoded once, over all the
+ * attributes tested by any tree, then each tree classifies all the cases of the block before the
+ * next tree, so the arrays of a tree stay in the cache while they are used, and the votes of the
+ * block are counted in a scratch of the block. Each thread keeps its scratch arrays, reused from
+ * call to call, and large batches are split across the ForkJoinPool of the forest, as the
+ * {@link TreeScorer} does for a single tree.
+ * </p>
+ *
+ * @see ml.classifier.BaggingEnsemble
+ * @see ml.classifier.BoostingEnsemble
+ */
+public final class CompiledForest {
+	// The number of the cases whose votes are counted together
+	private static final int BLOCK_SIZE = 256;
+	// The number of the cases, below which a batch is scored by a single thread
+	private static final int SPLIT_THRESHOLD = 1 << 11;
+
+	// The compiled trees
+	private final CompiledTree[] trees;
+	// The vote weight of each tree
+	private final float[] voteWeights;
+	// The class values, indexed by the class ordinals
+	private final String[] classValues;
+	// The number of the attributes in a record
+	private final int attributeCount;
+	// The column indices of the attributes tested by any tree, the only ones encoded into a record
+	private final int[] testedAttributes;
+	// The pool of the threads scoring large batches
+	private final ForkJoinPool pool;
+	// The scratch arrays of each thread
+	private final ThreadLocal<Scratch> scratches = new ThreadLocal<Scratch>(){
+		protected Scratch initialValue(){
+			return new Scratch();
+		}
+	};
+
+	/**
+	 * Initialize a forest of the trees with equal vote weight.
+	 * @param trees the compiled trees of the same data set
+	 * @param pool the pool of the threads scoring large batches, or <i>null</i> to score in the calling thread
+	 */
+	public CompiledForest(CompiledTree[] trees, ForkJoinPool pool) {
+		this(trees, null, pool);
+	}
+
+	/**
+	 * Initialize a forest of the trees with the specified vote weights.
+	 * @param trees the compiled trees of the same data set
+	 * @param voteWeights the positive vote weight of each tree, or <i>null</i> for equal vote weight
+	 * @param pool the pool of the threads scoring large batches, or <i>null</i> to score in the calling thread
+	 */
+	public CompiledForest(CompiledTree[] trees, float[] voteWeights, ForkJoinPool pool) {
+		if(trees.length == 0) {
+			throw new IllegalArgumentException("A forest needs at least a tree");
+		}
+		if(voteWeights != null && voteWeights.length != trees.length) {
+			throw new IllegalArgumentException("The vote weights of " + voteWeights.length + " of " + trees.length + " trees");
+		}
+		this.trees = trees.clone();
+		this.classValues = trees[0].getClassValues();
+		this.attributeCount = trees[0].getAttributeCount();
+		this.pool = pool;
+		if(voteWeights == null) {
+			this.voteWeights = new float[trees.length];
+			Arrays.fill(this.voteWeights, 1.0f);
+		}
+		else this.voteWeights = voteWeights.clone();
+
+		boolean[] isTested = new boolean[attributeCount];
+		int testedCount = 0;
+		for(int i = 0; i < trees.length; i ++) {
+			if(trees[i].getAttributeCount() != attributeCount || !Arrays.equals(trees[i].getClassValues(), classValues)) {
+				throw new IllegalArgumentException("The tree " + i + " is not compiled from the same data set");
+			}
+			if(!(this.voteWeights[i] > 0)) {
+				throw new IllegalArgumentException("Illegal vote weight of the tree " + i + ": " + this.voteWeights[i]);
+			}
+			for(int attribute : trees[i].getTestedAttributes()) {
+				if(!isTested[attribute]) {
+					isTested[attribute] = true;
+					testedCount ++;
+				}
+			}
+		}
+		this.testedAttributes = new int[testedCount];
+		for(int i = 0, j = 0; i < attributeCount; i ++) {
+			if(isTested[i]) testedAttributes[j ++] = i;
+		}
+	}
+
+	/**
+	 * Get the number of the trees.
+	 */
+	public int getTreeCount() {
+		return trees.length;
+	}
+
+	/**
+	 * Get the compiled tree of the specified index.
+	 */
+	public CompiledTree getTree(int index) {
+		return trees[index];
+	}
+
+	/**
+	 * Get the vote weight of the tree of the specified index.
+	 */
+	public float getVoteWeight(int index) {
+		return voteWeights[index];
+	}
+
+	/**
+	 * Get the number of the class values, <i>ie</i> the length of a probability vector.
+	 */
+	public int getClassCount() {
+		return classValues.length;
+	}
+
+	/**
+	 * Get the class values, indexed by the class ordinals.
+	 */
+	public String[] getClassValues() {
+		return classValues.clone();
+	}
+
+	/**
+	 * Encode the attribute values of a test data into a record, as {@link CompiledTree#encode(String[], float[])}
+	 * does, over all the attributes tested by any tree.
+	 * @param data the attribute values of the test data
+	 * @param record the record to be filled, or null to allocate one
+	 * @return the record of the encoded attribute values
+	 */
+	public float[] encode(String[] data, float[] record) {
+		if(record == null) record = new float[attributeCount];
+		for(int i : testedAttributes) record[i] = trees[0].encode(data[i], i);
+		return record;
+	}
+
+	/**
+	 * Classify a single record of encoded attribute values.
+	 * @return the ordinal of the class value
+	 */
+	public int classify(float[] record) {
+		Scratch scratch = scratches.get();
+		Arrays.fill(scratch.votes, 0, classValues.length, 0.0f);
+		for(int t = 0; t < trees.length; t ++) {
+			scratch.votes[trees[t].classify(record, scratch.distribution)] += voteWeights[t];
+		}
+		return selectClass(scratch.votes, 0, classValues.length);
+	}
+
+	/**
+	 * Classify a batch of test data.
+	 * @param results the array receiving the ordinals of the class values
+	 */
+	public void classify(String[][] testData, int[] results) {
+		checkLength(results.length, testData.length);
+		score(new Scoring(testData, null, null, results, null, 0, testData.length));
+	}
+
+	/**
+	 * Classify a batch of records of encoded attribute values.
+	 * @param results the array receiving the ordinals of the class values
+	 */
+	public void classify(float[][] records, int[] results) {
+		checkLength(results.length, records.length);
+		score(new Scoring(null, records, null, results, null, 0, records.length));
+	}
+
+	/**
+	 * Classify the cases of the typed columns of a data set.
+	 * @param testSet the data set to be classified, sharing the meta data of the train data set
+	 * @param results the array receiving the ordinals of the class values
+	 */
+	public void classify(DataSet testSet, int[] results) {
+		checkLength(results.length, testSet.getCaseCount());
+		score(new Scoring(null, null, testSet, results, null, 0, testSet.getCaseCount()));
+	}
+
+	/**
+	 * Predict the probabilities of the class values for a batch of test data, as the normalized votes.
+	 * @param probabilities the array receiving the probabilities row by row
+	 */
+	public void predict(String[][] testData, float[] probabilities) {
+		checkLength(probabilities.length, (long)testData.length * getClassCount());
+		score(new Scoring(testData, null, null, null, probabilities, 0, testData.length));
+	}
+
+	/**
+	 * Predict the probabilities of the class values for the cases of the typed columns of a data set,
+	 * as the normalized votes.
+	 * @param testSet the data set to be classified, sharing the meta data of the train data set
+	 * @param probabilities the array receiving the probabilities row by row
+	 */
+	public void predict(DataSet testSet, float[] probabilities) {
+		checkLength(probabilities.length, (long)testSet.getCaseCount() * getClassCount());
+		score(new Scoring(null, null, testSet, null, probabilities, 0, testSet.getCaseCount()));
+	}
+
+	/**
+	 * Score a batch in the current thread if the batch is small or the forest has no pool,
+	 * otherwise across the pool.
+	 */
+	private void score(Scoring scoring) {
+		if(pool == null || scoring.last - scoring.first < SPLIT_THRESHOLD) scoring.score();
+		else if(ForkJoinTask.inForkJoinPool()) scoring.invoke();
+		else pool.invoke(scoring);
+	}
+
+	private static void checkLength(long length, long requiredLength) {
+		if(length < requiredLength) {
+			throw new IllegalArgumentException("The result array holds " + length + " of " + requiredLength + " results");
+		}
+	}
+
+	/**
+	 * Select the class of the largest vote, the first class value among the ties.
+	 */
+	private static int selectClass(float[] votes, int offset, int classCount) {
+		int selected = 0;
+		for(int c = 1; c < classCount; c ++) {
+			if(votes[offset + c] > votes[offset + selected]) selected = c;
+		}
+		return selected;
+	}
+
+	/**
+	 * The scratch arrays of a thread.
+	 */
+	private class Scratch {
+		// The records of the encoded attribute values of a block
+		private final float[][] records = new float[BLOCK_SIZE][attributeCount];
+		// The votes of the cases of a block, row by row
+		private final float[] votes = new float[BLOCK_SIZE * classValues.length];
+		// The class distribution of a case with missing values
+		private final float[] distribution = new float[classValues.length];
+	}
+
+	/**
+	 * A task scoring the cases from first to last(exclusive) of a batch,
+	 * which is given as either test data, records or a data set.
+	 */
+	private class Scoring extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final String[][] testData;
+		private final float[][] records;
+		private final DataSet testSet;
+		private final Attribute[] columns;
+		// The array receiving the ordinals of the class values, or null if the probabilities are predicted
+		private final int[] results;
+		// The array receiving the probabilities of the class values, or null if the ordinals are classified
+		private final float[] probabilities;
+		private final int first;
+		private final int last;
+
+		Scoring(String[][] testData, float[][] records, DataSet testSet, int[] results,
+				float[] probabilities, int first, int last) {
+			this.testData = testData;
+			this.records = records;
+			this.testSet = testSet;
+			this.columns = (testSet != null) ? testSet.getAttributes() : null;
+			this.results = results;
+			this.probabilities = probabilities;
+			this.first = first;
+			this.last = last;
+		}
+
+		protected void compute() {
+			if(last - first < SPLIT_THRESHOLD) {
+				score();
+				return;
+			}
+			int middle = (first + last) >>> 1;
+			invokeAll(new Scoring(testData, records, testSet, results, probabilities, first, middle),
+					new Scoring(testData, records, testSet, results, probabilities, middle, last));
+		}
+
+		void score() {
+			Scratch scratch = scratches.get();
+			int classCount = classValues.length;
+			float[] votes = scratch.votes;
+			for(int begin = first; begin < last; begin += BLOCK_SIZE) {
+				int end = Math.min(begin + BLOCK_SIZE, last);
+				int blockLength = end - begin;
+				Arrays.fill(votes, 0, blockLength * classCount, 0.0f);
+				if(testData != null) {
+					for(int i = 0; i < blockLength; i ++) encode(testData[begin + i], scratch.records[i]);
+				}
+
+				// Each tree votes for all the cases of the block in turn
+				for(int t = 0; t < trees.length; t ++) {
+					CompiledTree tree = trees[t];
+					float voteWeight = voteWeights[t];
+					for(int i = 0; i < blockLength; i ++) {
+						int ordinal;
+						if(columns != null) ordinal = tree.classify(columns, testSet.getCaseIndex(begin + i), scratch.distribution);
+						else if(records != null) ordinal = tree.classify(records[begin + i], scratch.distribution);
+						else ordinal = tree.classify(scratch.records[i], scratch.distribution);
+						votes[i * classCount + ordinal] += voteWeight;
+					}
+				}
+
+				for(int i = 0; i < blockLength; i ++) {
+					int offset = i * classCount;
+					if(results != null) {
+						results[begin + i] = selectClass(votes, offset, classCount);
+						continue;
+					}
+					float total = 0;
+					for(int c = 0; c < classCount; c ++) total += votes[offset + c];
+					for(int c = 0; c < classCount; c ++) {
+						probabilities[(begin + i) * classCount + c] = votes[offset + c] / total;
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,734 @@
+/**
+ * @(#)CompiledTree.java        1.6 26/10/18
+ */
+
+package ml.classifier.dt;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import ml.dataset.Attribute;
+import ml.dataset.ContinuousAttribute;
+import ml.dataset.DataSet;
+import ml.dataset.DiscreteAttribute;
+import ml.tree.InternalNode;
+import ml.tree.LeafNode;
+import ml.tree.TreeNode;
+import ml.tree.TreeNodeContent;
+
+/**
+ * A decision tree compiled into flat arrays for fast classification.
+ * <p>
+ * The tree nodes are numbered in breadth-first order, so that the children of each internal
+ * node are numbered consecutively. Each node is described by the entries of the arrays at its
+ * number: the column index of its test attribute (-1 for leaf nodes), the threshold of its
+ * continuous test, the number of its first child, the ratio of its train weight to its
+ * parent's, and for leaf nodes, the normalized class distribution and the selected class.<br>
+ * All the attributes, nominal values and class values are resolved at compile time, so the
+ * classification does nothing but compare floats, index arrays by codes and return the ordinal
+ * of the class value.
+ * </p>
+ * <p>
+ * A case is given either as a record of the encoded attribute values, <i>ie</i> the continuous
+ * values (<i>Float.NaN</i> for missing values) and the codes of the discrete values
+ * ({@link DiscreteAttribute#MISSING_CODE} for missing values) in the column order of the
+ * data set, or as a case of the typed columns of a data set.<br>
+ * A case with a missing value on a test attribute is passed to all the children with the
+ * partitioned weight, the same as {@link DecisionTree#classify(String[][] testData)} does.
+ * </p>
+ * <p>
+ * A compiled tree is immutable and thus can be shared by many threads.
+ * </p>
+ * <p>
+ * A compiled tree can be written into a binary model file, which keeps nothing but what the
+ * classification needs, and read back by memory-mapping the file.
+ * The model file begins with a magic number, a version and the length of the header.
+ * The header records the index of the class attribute, the name and the nominal values of
+ * each attribute, the class values, and the numbers of the nodes and of the distribution
+ * entries. Then follow the arrays of the nodes in order: the test attributes, the thresholds,
+ * the first children, the child counts, the weight ratios and the leaf class distributions.
+ * </p>
+ *
+ * @see ml.classifier.dt.DecisionTree#compile()
+ */
+public final class CompiledTree {
+	// The magic number of the model file, "C45M"
+	private static final int MAGIC = 0x4334354D;
+	// The version of the model file format
+	private static final int VERSION = 1;
+
+	// The class values
+	private final String[] classValues;
+	// The names of the attributes in the column order
+	private final String[] attributeNames;
+	// The nominal values of the discrete attributes, null for continuous attributes
+	private final String[][] nominalValues;
+	// The number of the attributes in a record
+	private final int attributeCount;
+	// The index of the class attribute in a record
+	private final int classAttributeIndex;
+	// The dictionaries of the discrete attributes for the encoding of records, null for continuous attributes
+	private final Map<String, Integer>[] dictionaries;
+	// The column indices of the attributes tested by the tree, the only ones encoded into a record
+	private final int[] testedAttributes;
+	// The column index of the test attribute of each node, -1 for leaf nodes
+	private final int[] testAttributes;
+	// Whether the test attribute of each internal node is continuous
+	private final boolean[] isContinuous;
+	// The threshold of each continuous test: a case goes to the first child iff its value < threshold
+	private final float[] thresholds;
+	// The number of the first child of each internal node, or the offset of the class distribution of each leaf node
+	private final int[] offsets;
+	// The number of the children of each internal node
+	private final int[] childCounts;
+	// The train weight of each node divided by the train weight of its parent
+	private final float[] weightRatios;
+	// The selected class of each leaf node, -1 for internal nodes
+	private final int[] leafClasses;
+	// The normalized class distributions of the leaf nodes
+	private final float[] distributions;
+
+	/**
+	 * Compile the specified decision tree.
+	 */
+	CompiledTree(TreeNode root, DataSet dataSet) {
+		this.classValues = dataSet.getClassValues();
+		this.attributeNames = dataSet.getMetaData().getAttributeNames();
+		this.attributeCount = attributeNames.length;
+		this.classAttributeIndex = dataSet.getClassAttributeIndex();
+		int classCount = classValues.length;
+
+		this.nominalValues = new String[attributeCount][];
+		for(int i = 0; i < attributeCount; i ++) {
+			if(!dataSet.getMetaData().isAttributeContinuousAt(i)) {
+				nominalValues[i] = dataSet.getMetaData().getAttributeNominalValuesAt(i);
+			}
+		}
+		this.dictionaries = createDictionaries(nominalValues);
+
+		// Number the nodes in breadth-first order
+		List<TreeNode> nodes = new ArrayList<TreeNode>();
+		nodes.add(root);
+		int leafCount = 0;
+		for(int i = 0; i < nodes.size(); i ++) {
+			TreeNode node = nodes.get(i);
+			if(node instanceof LeafNode) leafCount ++;
+			else nodes.addAll(Arrays.asList(node.getChildren()));
+		}
+
+		int nodeCount = nodes.size();
+		this.testAttributes = new int[nodeCount];
+		this.isContinuous = new boolean[nodeCount];
+		this.thresholds = new float[nodeCount];
+		this.offsets = new int[nodeCount];
+		this.childCounts = new int[nodeCount];
+		this.weightRatios = new float[nodeCount];
+		this.leafClasses = new int[nodeCount];
+		this.distributions = new float[leafCount * classCount];
+
+		weightRatios[0] = 1.0f;
+		int childNumber = 1;
+		int distributionOffset = 0;
+		for(int i = 0; i < nodeCount; i ++) {
+			TreeNode node = nodes.get(i);
+			TreeNodeContent content = node.getContent();
+			if(node instanceof LeafNode) {
+				testAttributes[i] = -1;
+				offsets[i] = distributionOffset;
+				// A leaf without train data gives all the weight to its classification
+				if(content.getTrainWeight() <= 0) {
+					distributions[distributionOffset + indexOf(content.getClassification(), classValues)] = 1.0f;
+				}
+				else {
+					float[] trainClassDistribution = content.getTrainClassDistribution();
+					for(int j = 0; j < classCount; j ++) {
+						distributions[distributionOffset + j] = trainClassDistribution[j]/content.getTrainWeight();
+					}
+				}
+				leafClasses[i] = selectClass(distributions, distributionOffset, classCount);
+				distributionOffset += classCount;
+				continue;
+			}
+
+			InternalNode internalNode = (InternalNode)node;
+			Attribute testAttribute = internalNode.getTestAttribute();
+			testAttributes[i] = indexOf(testAttribute.getName(), attributeNames);
+			leafClasses[i] = -1;
+			if(testAttribute instanceof ContinuousAttribute) {
+				isContinuous[i] = true;
+				// The least float not less than (cut + PRECISION), so that the float comparison
+				// value < threshold is the same as value < (cut + PRECISION)
+				double cut = internalNode.getCut() + Parameter.PRECISION;
+				float threshold = (float)cut;
+				if(threshold < cut) threshold = Math.nextUp(threshold);
+				thresholds[i] = threshold;
+			}
+
+			TreeNode[] children = node.getChildren();
+			offsets[i] = childNumber;
+			childCounts[i] = children.length;
+			for(int k = 0; k < children.length; k ++) {
+				weightRatios[childNumber + k] = children[k].getContent().getTrainWeight()/content.getTrainWeight();
+			}
+			childNumber += children.length;
+		}
+		this.testedAttributes = findTestedAttributes(testAttributes, attributeCount);
+	}
+
+	/**
+	 * Initialize a compiled tree with the arrays read from a model file.
+	 */
+	private CompiledTree(String[] classValues, int classAttributeIndex, String[] attributeNames, String[][] nominalValues,
+			int[] testAttributes, float[] thresholds, int[] offsets, int[] childCounts, float[] weightRatios,
+			float[] distributions) {
+		this.classValues = classValues;
+		this.classAttributeIndex = classAttributeIndex;
+		this.attributeNames = attributeNames;
+		this.attributeCount = attributeNames.length;
+		this.nominalValues = nominalValues;
+		this.dictionaries = createDictionaries(nominalValues);
+		this.testAttributes = testAttributes;
+		this.thresholds = thresholds;
+		this.offsets = offsets;
+		this.childCounts = childCounts;
+		this.weightRatios = weightRatios;
+		this.distributions = distributions;
+
+		int nodeCount = testAttributes.length;
+		this.isContinuous = new boolean[nodeCount];
+		this.leafClasses = new int[nodeCount];
+		for(int i = 0; i < nodeCount; i ++) {
+			if(testAttributes[i] < 0) {
+				leafClasses[i] = selectClass(distributions, offsets[i], classValues.length);
+			}
+			else {
+				isContinuous[i] = (nominalValues[testAttributes[i]] == null);
+				leafClasses[i] = -1;
+			}
+		}
+		this.testedAttributes = findTestedAttributes(testAttributes, attributeCount);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Integer>[] createDictionaries(String[][] nominalValues) {
+		Map<String, Integer>[] dictionaries = (Map<String, Integer>[])new Map<?, ?>[nominalValues.length];
+		for(int i = 0; i < nominalValues.length; i ++) {
+			if(nominalValues[i] != null) dictionaries[i] = DiscreteAttribute.createDictionary(nominalValues[i]);
+		}
+		return dictionaries;
+	}
+
+	/**
+	 * Find the column indices of the attributes tested by the nodes, in the column order.
+	 */
+	private static int[] findTestedAttributes(int[] testAttributes, int attributeCount) {
+		boolean[] isTested = new boolean[attributeCount];
+		int testedCount = 0;
+		for(int i = 0; i < testAttributes.length; i ++) {
+			if(testAttributes[i] >= 0 && !isTested[testAttributes[i]]) {
+				isTested[testAttributes[i]] = true;
+				testedCount ++;
+			}
+		}
+		int[] testedAttributes = new int[testedCount];
+		for(int i = 0, j = 0; i < attributeCount; i ++) {
+			if(isTested[i]) testedAttributes[j ++] = i;
+		}
+		return testedAttributes;
+	}
+
+	/**
+	 * Write the compiled tree into a binary model file.
+	 * <p>
+	 * The model is written into a temporary file first and then renamed,
+	 * so that a partially written model file is never read.
+	 * </p>
+	 * @param filename the name of the model file
+	 */
+	public void write(String filename) throws IOException {
+		ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(headerBytes);
+		out.writeInt(classAttributeIndex);
+		out.writeInt(attributeCount);
+		for(int i = 0; i < attributeCount; i ++) {
+			out.writeUTF(attributeNames[i]);
+			out.writeBoolean(nominalValues[i] == null);
+			if(nominalValues[i] != null) {
+				out.writeInt(nominalValues[i].length);
+				for(String nominalValue : nominalValues[i]) {
+					out.writeUTF(nominalValue);
+				}
+			}
+		}
+		out.writeInt(classValues.length);
+		for(String classValue : classValues) {
+			out.writeUTF(classValue);
+		}
+		out.writeInt(testAttributes.length);
+		out.writeInt(distributions.length);
+		out.close();
+		byte[] header = headerBytes.toByteArray();
+
+		int nodeCount = testAttributes.length;
+		long size = 12L + header.length + 4L * (5L * nodeCount + distributions.length);
+		if(size > Integer.MAX_VALUE) throw new IOException("The tree is too large for a model file");
+		ByteBuffer buffer = ByteBuffer.allocate((int)size);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(header.length).put(header);
+		buffer.asIntBuffer().put(testAttributes);
+		buffer.position(buffer.position() + 4 * nodeCount);
+		buffer.asFloatBuffer().put(thresholds);
+		buffer.position(buffer.position() + 4 * nodeCount);
+		buffer.asIntBuffer().put(offsets);
+		buffer.position(buffer.position() + 4 * nodeCount);
+		buffer.asIntBuffer().put(childCounts);
+		buffer.position(buffer.position() + 4 * nodeCount);
+		buffer.asFloatBuffer().put(weightRatios);
+		buffer.position(buffer.position() + 4 * nodeCount);
+		buffer.asFloatBuffer().put(distributions);
+		buffer.clear();
+
+		File modelFile = new File(filename);
+		File tempFile = File.createTempFile(modelFile.getName(), ".tmp", modelFile.getAbsoluteFile().getParentFile());
+		try {
+			RandomAccessFile file = new RandomAccessFile(tempFile, "rw");
+			try {
+				FileChannel channel = file.getChannel();
+				while(buffer.hasRemaining()) channel.write(buffer);
+			}
+			finally {
+				file.close();
+			}
+
+			try {
+				Files.move(tempFile.toPath(), modelFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch(AtomicMoveNotSupportedException e) {
+				Files.move(tempFile.toPath(), modelFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			tempFile = null;
+		}
+		finally {
+			if(tempFile != null) tempFile.delete();
+		}
+	}
+
+	/**
+	 * Read a compiled tree from a binary model file, by memory-mapping the file.
+	 * @param filename the name of the model file
+	 * @throws IOException if the model file cannot be read, or is not a valid model file
+	 */
+	public static CompiledTree read(String filename) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			if(channel.size() < 12 || channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Invalid model file " + filename);
+			}
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.getInt() != MAGIC) throw new IOException("Invalid model file " + filename);
+			int version = buffer.getInt();
+			if(version != VERSION) throw new IOException("Unsupported version " + version + " of model file " + filename);
+
+			int headerLength = buffer.getInt();
+			if(headerLength < 0 || headerLength > buffer.remaining()) throw new IOException("Truncated model file " + filename);
+			byte[] header = new byte[headerLength];
+			buffer.get(header);
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+			int classAttributeIndex = in.readInt();
+			int attributeCount = in.readInt();
+			if(classAttributeIndex < 0 || classAttributeIndex >= attributeCount) {
+				throw new IOException("Corrupted model file " + filename);
+			}
+			String[] attributeNames = new String[attributeCount];
+			String[][] nominalValues = new String[attributeCount][];
+			for(int i = 0; i < attributeCount; i ++) {
+				attributeNames[i] = in.readUTF();
+				if(!in.readBoolean()) {
+					nominalValues[i] = new String[in.readInt()];
+					for(int j = 0; j < nominalValues[i].length; j ++) {
+						nominalValues[i][j] = in.readUTF();
+					}
+				}
+			}
+			String[] classValues = new String[in.readInt()];
+			for(int j = 0; j < classValues.length; j ++) {
+				classValues[j] = in.readUTF();
+			}
+			int nodeCount = in.readInt();
+			int distributionLength = in.readInt();
+			if(nodeCount <= 0 || distributionLength < 0
+					|| buffer.remaining() != 4L * (5L * nodeCount + distributionLength)) {
+				throw new IOException("Truncated model file " + filename);
+			}
+
+			int[] testAttributes = new int[nodeCount];
+			float[] thresholds = new float[nodeCount];
+			int[] offsets = new int[nodeCount];
+			int[] childCounts = new int[nodeCount];
+			float[] weightRatios = new float[nodeCount];
+			float[] distributions = new float[distributionLength];
+			buffer.asIntBuffer().get(testAttributes);
+			buffer.position(buffer.position() + 4 * nodeCount);
+			buffer.asFloatBuffer().get(thresholds);
+			buffer.position(buffer.position() + 4 * nodeCount);
+			buffer.asIntBuffer().get(offsets);
+			buffer.position(buffer.position() + 4 * nodeCount);
+			buffer.asIntBuffer().get(childCounts);
+			buffer.position(buffer.position() + 4 * nodeCount);
+			buffer.asFloatBuffer().get(weightRatios);
+			buffer.position(buffer.position() + 4 * nodeCount);
+			buffer.asFloatBuffer().get(distributions);
+
+			// Validate the topology, so that a corrupted model never indexes out of its arrays
+			for(int i = 0; i < nodeCount; i ++) {
+				int attribute = testAttributes[i];
+				if(attribute < 0) {
+					if(offsets[i] < 0 || offsets[i] > distributionLength - classValues.length) {
+						throw new IOException("Corrupted model file " + filename);
+					}
+				}
+				else if(attribute >= attributeCount || attribute == classAttributeIndex || offsets[i] <= i
+						|| childCounts[i] != ((nominalValues[attribute] == null) ? 2 : nominalValues[attribute].length)
+						|| offsets[i] > nodeCount - childCounts[i]) {
+					throw new IOException("Corrupted model file " + filename);
+				}
+			}
+
+			return new CompiledTree(classValues, classAttributeIndex, attributeNames, nominalValues,
+					testAttributes, thresholds, offsets, childCounts, weightRatios, distributions);
+		}
+		catch(RuntimeException e) {
+			// Such as negative array sizes or buffer underflows of a corrupted header
+			throw new IOException("Corrupted model file " + filename, e);
+		}
+		finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Get the class values, indexed by the class ordinals returned by the classification.
+	 */
+	public String[] getClassValues() {
+		return classValues.clone();
+	}
+
+	/**
+	 * Get the number of the class values.
+	 */
+	public int getClassCount() {
+		return classValues.length;
+	}
+
+	/**
+	 * Get the number of the attributes expected in a record.
+	 */
+	public int getAttributeCount() {
+		return attributeCount;
+	}
+
+	/**
+	 * Get the index of the class attribute in a record.
+	 */
+	public int getClassAttributeIndex() {
+		return classAttributeIndex;
+	}
+
+	/**
+	 * Encode the String exhibition of a test data into a record.
+	 * Only the attributes tested by the tree are encoded, the rest of the record is left untouched.
+	 * @param data the attribute values of the test data
+	 * @param record the record to be filled, or null to allocate one
+	 * @return the record of the encoded attribute values
+	 */
+	public float[] encode(String[] data, float[] record) {
+		if(record == null) record = new float[attributeCount];
+		for(int i : testedAttributes) {
+			if(dictionaries[i] == null) record[i] = ContinuousAttribute.parseValue(data[i]);
+			else record[i] = DiscreteAttribute.encode(dictionaries[i], data[i]);
+		}
+		return record;
+	}
+
+	/**
+	 * Encode the value of the specified attribute, which need not be tested by the tree.
+	 */
+	float encode(String value, int attribute) {
+		if(dictionaries[attribute] == null) return ContinuousAttribute.parseValue(value);
+		return DiscreteAttribute.encode(dictionaries[attribute], value);
+	}
+
+	/**
+	 * Get the column indices of the attributes tested by the tree, in the column order.
+	 */
+	int[] getTestedAttributes() {
+		return testedAttributes;
+	}
+
+	/**
+	 * Get the number of the nodes in the compiled tree.
+	 */
+	public int getNodeCount() {
+		return testAttributes.length;
+	}
+
+	/**
+	 * Classify a record of encoded attribute values.
+	 * @param record the continuous values and the codes of the discrete values, in the column order
+	 * @param distribution the scratch for the class distribution of a case with missing values,
+	 *        whose length is the number of the class values, or null to allocate one when required
+	 * @return the ordinal of the class value
+	 */
+	public int classify(float[] record, float[] distribution) {
+		int node = descend(0, record);
+		if(testAttributes[node] < 0) return leafClasses[node];
+
+		// The record is missing the value of the test attribute of the node
+		return classifyFrom(node, record, distribution);
+	}
+
+	/**
+	 * Classify a record from the specified node, which the record reaches with the whole weight.
+	 * @see #classify(float[] record, float[] distribution)
+	 */
+	int classifyFrom(int node, float[] record, float[] distribution) {
+		if(distribution == null) distribution = new float[classValues.length];
+		else Arrays.fill(distribution, 0, classValues.length, 0.0f);
+		distribute(node, record, 1.0f, distribution, 0);
+		return selectClass(distribution, 0, classValues.length);
+	}
+
+	/**
+	 * Predict the class distribution of a record, <i>ie</i> the probability of each class value.
+	 * @param record the continuous values and the codes of the discrete values, in the column order
+	 * @param probabilities the array receiving the probabilities of the class values
+	 * @param offset the index in the array of the probability of the first class value
+	 */
+	public void predict(float[] record, float[] probabilities, int offset) {
+		int node = descend(0, record);
+		if(testAttributes[node] < 0) {
+			System.arraycopy(distributions, offsets[node], probabilities, offset, classValues.length);
+		}
+		else {
+			Arrays.fill(probabilities, offset, offset + classValues.length, 0.0f);
+			distribute(node, record, 1.0f, probabilities, offset);
+		}
+	}
+
+	/**
+	 * Classify a case of the typed columns.
+	 * @param columns the typed columns of a data set sharing the meta data of the train data set
+	 * @param caseIndex the index of the case in the columns
+	 * @param distribution the scratch for the class distribution of a case with missing values,
+	 *        whose length is the number of the class values, or null to allocate one when required
+	 * @return the ordinal of the class value
+	 */
+	public int classify(Attribute[] columns, int caseIndex, float[] distribution) {
+		int node = descend(0, columns, caseIndex);
+		if(testAttributes[node] < 0) return leafClasses[node];
+
+		// The case is missing the value of the test attribute of the node
+		if(distribution == null) distribution = new float[classValues.length];
+		else Arrays.fill(distribution, 0, classValues.length, 0.0f);
+		distribute(node, columns, caseIndex, 1.0f, distribution, 0);
+		return selectClass(distribution, 0, classValues.length);
+	}
+
+	/**
+	 * Predict the class distribution of a case of the typed columns.
+	 * @param columns the typed columns of a data set sharing the meta data of the train data set
+	 * @param caseIndex the index of the case in the columns
+	 * @param probabilities the array receiving the probabilities of the class values
+	 * @param offset the index in the array of the probability of the first class value
+	 */
+	public void predict(Attribute[] columns, int caseIndex, float[] probabilities, int offset) {
+		int node = descend(0, columns, caseIndex);
+		if(testAttributes[node] < 0) {
+			System.arraycopy(distributions, offsets[node], probabilities, offset, classValues.length);
+		}
+		else {
+			Arrays.fill(probabilities, offset, offset + classValues.length, 0.0f);
+			distribute(node, columns, caseIndex, 1.0f, probabilities, offset);
+		}
+	}
+
+	/**
+	 * Classify all the cases of the specified data set.
+	 * @param testSet the data set to be classified, sharing the meta data of the train data set
+	 * @return the ordinals of the class values
+	 */
+	public int[] classify(DataSet testSet) {
+		Attribute[] columns = testSet.getAttributes();
+		int[] results = new int[testSet.getCaseCount()];
+		float[] distribution = new float[classValues.length];
+		for(int i = 0; i < results.length; i ++) {
+			results[i] = classify(columns, testSet.getCaseIndex(i), distribution);
+		}
+		return results;
+	}
+
+	/**
+	 * Pass a record down from the specified node as long as its test attribute values are known.
+	 * @return the leaf node reached, or the internal node whose test attribute value is missing
+	 */
+	private int descend(int node, float[] record) {
+		while(true) {
+			int attribute = testAttributes[node];
+			if(attribute < 0) return node;
+
+			float value = record[attribute];
+			int branch;
+			if(isContinuous[node]) {
+				if(value != value) return node;
+				branch = (value < thresholds[node]) ? 0 : 1;
+			}
+			else {
+				branch = (int)value - 1;
+				if(branch < 0) return node;
+			}
+			node = offsets[node] + branch;
+		}
+	}
+
+	/**
+	 * Pass a case of the typed columns down from the specified node as long as its test attribute values are known.
+	 * @return the leaf node reached, or the internal node whose test attribute value is missing
+	 */
+	private int descend(int node, Attribute[] columns, int caseIndex) {
+		while(true) {
+			int attribute = testAttributes[node];
+			if(attribute < 0) return node;
+
+			int branch;
+			if(isContinuous[node]) {
+				float value = ((ContinuousAttribute)columns[attribute]).getValues()[caseIndex];
+				if(value != value) return node;
+				branch = (value < thresholds[node]) ? 0 : 1;
+			}
+			else {
+				branch = ((DiscreteAttribute)columns[attribute]).getCode(caseIndex) - 1;
+				if(branch < 0) return node;
+			}
+			node = offsets[node] + branch;
+		}
+	}
+
+	/**
+	 * Get the column index of the test attribute of the specified node, -1 for leaf nodes.
+	 */
+	int getTestAttribute(int node) {
+		return testAttributes[node];
+	}
+
+	/**
+	 * Query whether the test attribute of the specified internal node is continuous.
+	 */
+	boolean isContinuousTest(int node) {
+		return isContinuous[node];
+	}
+
+	/**
+	 * Get the threshold of the continuous test of the specified internal node.
+	 */
+	float getThreshold(int node) {
+		return thresholds[node];
+	}
+
+	/**
+	 * Get the number of the first child of the specified internal node.
+	 */
+	int getFirstChild(int node) {
+		return offsets[node];
+	}
+
+	/**
+	 * Get the number of the children of the specified internal node.
+	 */
+	int getChildCount(int node) {
+		return childCounts[node];
+	}
+
+	/**
+	 * Get the selected class of the specified leaf node.
+	 */
+	int getLeafClass(int node) {
+		return leafClasses[node];
+	}
+
+	/**
+	 * Distribute the weight of a record reaching the specified node to the class values,
+	 * adding to the distribution from the specified offset on.
+	 */
+	private void distribute(int node, float[] record, float weight, float[] distribution, int offset) {
+		node = descend(node, record);
+		if(testAttributes[node] < 0) {
+			addDistribution(node, weight, distribution, offset);
+		}
+		// Pass the record to all the children with the partitioned weight
+		else for(int child = offsets[node], end = child + childCounts[node]; child < end; child ++) {
+			distribute(child, record, weight * weightRatios[child], distribution, offset);
+		}
+	}
+
+	/**
+	 * Distribute the weight of a case of the typed columns reaching the specified node to the class values,
+	 * adding to the distribution from the specified offset on.
+	 */
+	private void distribute(int node, Attribute[] columns, int caseIndex, float weight, float[] distribution, int offset) {
+		node = descend(node, columns, caseIndex);
+		if(testAttributes[node] < 0) {
+			addDistribution(node, weight, distribution, offset);
+		}
+		// Pass the case to all the children with the partitioned weight
+		else for(int child = offsets[node], end = child + childCounts[node]; child < end; child ++) {
+			distribute(child, columns, caseIndex, weight * weightRatios[child], distribution, offset);
+		}
+	}
+
+	/**
+	 * Add the weighted class distribution of the specified leaf node.
+	 */
+	private void addDistribution(int node, float weight, float[] distribution, int offset) {
+		int leafOffset = offsets[node];
+		for(int j = 0; j < classValues.length; j ++) {
+			distribution[offset + j] += weight * distributions[leafOffset + j];
+		}
+	}
+
+	/**
+	 * Select the class whose probability is the greatest in the specified class distribution.
+	 * @return the index of the selected class value
+	 */
+	private static int selectClass(float[] distribution, int offset, int classCount) {
+		float max = -1.0f;
+		int maxIndex = -1;
+		for(int j = 0; j < classCount; j ++) {
+			if(distribution[offset + j] > max) {
+				maxIndex = j;
+				max = distribution[offset + j];
+			}
+		}
+		return maxIndex;
+	}
+
+	private static int indexOf(String value, String[] values) {
+		for(int i = 0; i < values.length; i ++) {
+			if(values[i].equals(value)) return i;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,138 @@
+/**
+ * @(#)Configuration.java        1.6 26/10/18
+ */
+
+package ml.classifier.dt;
+
+import java.util.Arrays;
+
+/**
+ * The immutable parameter setting of building and pruning a decision tree.
+ * <p>
+ * A tree keeps the configuration it is built with, so trees of different settings can be built
+ * and pruned at the same time in one JVM, sharing the data set and its presort.<br>
+ * The trees built without a configuration follow the default one whenever they are built, pruned
+ * or updated, as the global setting did before. It starts as the setting of
+ * {@link ml.classifier.dt.Parameter} and is replaced by {@link #setDefault(Configuration)} or by
+ * {@link ml.classifier.dt.Estimator#setConfidence(float)}, which must not happen during a build.
+ * </p>
+ *
+ * @see ml.classifier.dt.DecisionTree#DecisionTree(ml.dataset.DataSet, Presort, java.util.concurrent.ForkJoinPool, Configuration)
+ */
+public final class Configuration {
+	// The number of the integral weights whose extra error without leaf error is cached
+	private static final int TABLE_SIZE = 1 << 16;
+
+	// The configuration of the trees built without one
+	private static volatile Configuration defaultConfiguration = new Configuration(Parameter.MINWEIGHT, Parameter.CONFIDENCE);
+
+	// The minimal weight to construct an internal tree node
+	private final float minWeight;
+	// The confidence level of the pruning and its corresponding squared standard deviation
+	private final float confidence;
+	private final float squaredStd;
+	// The extra error without leaf error of the integral weights, created when first used
+	// and filled when each is first used, NaN for the ones not yet computed
+	private transient volatile float[] zeroErrors;
+
+	/**
+	 * Create a configuration.
+	 * @param minWeight the minimal weight to construct an internal tree node
+	 * @param confidence the confidence level in c4.5's error-based pruning, in (0, 1]
+	 */
+	public Configuration(float minWeight, float confidence) {
+		if(!(minWeight > 0)) {
+			throw new IllegalArgumentException("The minimal weight must be positive");
+		}
+		this.minWeight = minWeight;
+		this.confidence = confidence;
+		this.squaredStd = Estimator.computeSquaredStd(confidence);
+	}
+
+	/**
+	 * Get the configuration of the trees built without one.
+	 */
+	public static Configuration getDefault() {
+		return defaultConfiguration;
+	}
+
+	/**
+	 * Set the configuration of the trees built afterwards without one.
+	 */
+	public static void setDefault(Configuration configuration) {
+		if(configuration == null) {
+			throw new IllegalArgumentException("The default configuration must not be null");
+		}
+		defaultConfiguration = configuration;
+	}
+
+	/**
+	 * Get the minimal weight to construct an internal tree node.
+	 */
+	public float getMinWeight() {
+		return minWeight;
+	}
+
+	/**
+	 * Get the pruning confidence level.
+	 */
+	public float getConfidence() {
+		return confidence;
+	}
+
+	/**
+	 * Get the squared standard deviation corresponding to the pruning confidence level.
+	 */
+	public float getSquaredStd() {
+		return squaredStd;
+	}
+
+	/**
+	 * Create a configuration like this one, but with the specified minimal weight.
+	 */
+	public Configuration withMinWeight(float minWeight) {
+		return new Configuration(minWeight, confidence);
+	}
+
+	/**
+	 * Create a configuration like this one, but with the specified confidence level.
+	 */
+	public Configuration withConfidence(float confidence) {
+		return new Configuration(minWeight, confidence);
+	}
+
+	/**
+	 * Get the table of the extra error without leaf error of the integral weights, whose
+	 * entries are NaN until they are computed.
+	 * <p>
+	 * The entries only depend on the confidence level, so the threads pruning with this
+	 * configuration may fill them at the same time. The threads first using the table at the
+	 * same time may create one each, and all but the last published one are discarded.
+	 * </p>
+	 * @see ml.classifier.dt.Estimator#getExtraError(float totalWeight, float leafError, Configuration configuration)
+	 */
+	float[] getZeroErrors() {
+		float[] table = zeroErrors;
+		if(table == null) {
+			table = new float[TABLE_SIZE];
+			Arrays.fill(table, Float.NaN);
+			zeroErrors = table;
+		}
+		return table;
+	}
+
+	public boolean equals(Object object) {
+		if(!(object instanceof Configuration)) return false;
+		Configuration other = (Configuration)object;
+		return Float.floatToIntBits(minWeight) == Float.floatToIntBits(other.minWeight)
+			&& Float.floatToIntBits(confidence) == Float.floatToIntBits(other.confidence);
+	}
+
+	public int hashCode() {
+		return 31 * Float.floatToIntBits(minWeight) + Float.floatToIntBits(confidence);
+	}
+
+	public String toString() {
+		return "minWeight " + minWeight + ", confidence " + confidence;
+	}
+}
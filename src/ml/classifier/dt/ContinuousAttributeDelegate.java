@@ -4,9 +4,9 @@
 
 package ml.classifier.dt;
 
+import java.util.Arrays;
 import java.util.BitSet;
 import ml.dataset.ContinuousAttribute;
-import ml.util.Statistics;
 
 /**
  * A delegate of a continuous attribute, containing some essential processed
@@ -19,63 +19,133 @@ import ml.util.Statistics;
  */
 public class ContinuousAttributeDelegate extends AttributeDelegate{
 	// The attribute values on the corresponding attribute
-	private float[] sortedData;
+	private FloatColumn sortedData;
 
 	// The original ids of the sorted continuous values in data array
-	private int[] id;
+	private IntColumn id;
 	// The ranks of the continuous values in original sequence
-	private int[] rank;
-	// The buckets for bucket-sorting in tree construction
-	private BitSet buckets;
+	private IntColumn rank;
+	/**
+	 * The attribute list of the cases, only kept by the delegates of a presort with attribute lists.
+	 * <p>
+	 * The list holds the same cases as the cases array on the range of every tree node being
+	 * constructed, but ordered by their ranks with the missing data in the front, so that the
+	 * evaluation on a tree node needs no sort.<br>
+	 * A known case is held by its rank, and a case with missing data by the complement of its index,
+	 * so the list itself is the sorted ranks of the known cases after the negative missing data.
+	 * </p>
+	 * @see ml.classifier.dt.Presort#Presort(ml.dataset.DataSet dataSet, boolean attributeLists)
+	 */
+	private int[] list;
+	/**
+	 * The quantile bin of each case, -1 for missing data, only kept by the delegates of a presort
+	 * with approximate splits.
+	 */
+	private int[] bin;
+	// The rank of the largest value in each bin
+	private int[] binEnds;
 
-	// The following two structures are actually shared by all attributes and generated by TreeBuilder
+	// The following three structures are actually shared by all attributes and generated by TreeBuilder
 	// The sequence of the train data
 	private int[] cases;
 	// The weight of each train data
 	private float[] weight;
+	// Whether each case of the presort is a train data, null if all of them are
+	private boolean[] isTrainData;
 
 	/**
 	 * Initialize a delegate for the specified continuous attribute.
 	 * <p>
 	 * The initialization of a continuous attribute delegate is a preprocessing
 	 * of the attribute values on the continuous attribute.<br>
-	 * It mainly indirect-sorts the attribute values, extracts the mapping relationship 
+	 * It mainly gathers the attribute values in the order of the attribute presort, which records the mapping relationship 
 	 * between the original data sequence and the sorted data sequence.
 	 * </p>
-	 * @param attribute The corrsponding discrete attribute
+	 * @param attribute The corrsponding continuous attribute
 	 */
 	public ContinuousAttributeDelegate(ContinuousAttribute attribute) {
 		super();
 
-		String[] data = attribute.getData();
-		// Parse the String[] type attribute values to float[]
-		this.sortedData = new float[data.length];
-		for(int i = 0; i < sortedData.length; i ++) {
-			if(data[i].equals("?")) {
-				sortedData[i] = Float.NEGATIVE_INFINITY;
+		float[] values = attribute.getValues();
+		// id records the new arrangement of the original data, shared with the attribute presort
+		int[] sortedIds = attribute.getSortedIds();
+		this.id = IntColumn.of(sortedIds);
+		// rank records the ranks of each original data, -1 for missing data
+		this.rank = IntColumn.of(attribute.getRanks());
+		// Gather the sorted attribute values, missing data are sorted to the most front
+		float[] gathered = new float[values.length];
+		for(int j = 0; j < gathered.length; j ++) {
+			float value = values[sortedIds[j]];
+			if(Float.isNaN(value)) {
+				gathered[j] = Float.NEGATIVE_INFINITY;
 				setHasMissingData(true);
 			}
-			else sortedData[i] = Float.parseFloat(data[i]);
+			else gathered[j] = value;
 		}
+		this.sortedData = FloatColumn.of(gathered);
+	}
 
-		// id records the new arrangement of the original data
-		this.id = Statistics.indirectSort(sortedData);
-		// rank records the ranks of each original data
-		this.rank = new int[sortedData.length];
-		// If there are missing data, their ranks are set all -1
-		int knownIndex = 0;
-		for(int i = 0; i < sortedData.length && sortedData[i] == Float.NEGATIVE_INFINITY; i ++) {
-			knownIndex ++;
-			rank[id[i]] = -1;
-		}
-		// For the rest of the known data, their rank values start from the knownIndex
-		// to make sure rank[id[j]] = j, so that bucket sorting can be correctly executed
-		for(int j = knownIndex; j < id.length; j ++) {
-			rank[id[j]] = j;
-		}
+	/**
+	 * Initialize a delegate for a continuous attribute with its processed information
+	 * kept elsewhere, such as in a memory-mapped file.
+	 * @param sortedData the attribute values in the order of the presort, missing data as
+	 *        <i>Float.NEGATIVE_INFINITY</i> in the most front
+	 * @param id the case ids in the order of the presort
+	 * @param rank the rank of each case, -1 for missing data
+	 */
+	ContinuousAttributeDelegate(FloatColumn sortedData, IntColumn id, IntColumn rank) {
+		super();
+
+		this.sortedData = sortedData;
+		this.id = id;
+		this.rank = rank;
+		setHasMissingData(rank.length() > 0 && rank.get(id.get(0)) < 0);
+	}
+
+	/**
+	 * Initialize a delegate for the specified continuous attribute, which evaluates the cuts
+	 * between at most the specified number of quantile bins instead of the cuts between all
+	 * the distinct values.
+	 * <p>
+	 * The bins hold about the same number of known cases. The cases of the same value, or of values
+	 * nearer than the precision, fall into the same bin, so a bin may grow bigger and there may be
+	 * fewer bins.
+	 * </p>
+	 * @param attribute The corrsponding continuous attribute
+	 * @param binCount the maximal number of the bins
+	 */
+	public ContinuousAttributeDelegate(ContinuousAttribute attribute, int binCount) {
+		this(attribute);
+		createBins(binCount);
+	}
 
-		// Prepare for the bucket sorting for each tree node construction
-		this.buckets = new BitSet(sortedData.length);
+	/**
+	 * Divide the known values into at most the specified number of quantile bins.
+	 * @see #ContinuousAttributeDelegate(ContinuousAttribute attribute, int binCount)
+	 */
+	void createBins(int binCount) {
+		int missingCount = 0;
+		while(missingCount < rank.length() && rank.get(id.get(missingCount)) < 0) missingCount ++;
+		int knownCount = rank.length() - missingCount;
+		int binSize = Math.max(1, (knownCount + binCount - 1) / binCount);
+
+		this.bin = new int[rank.length()];
+		int[] ends = new int[Math.max(1, Math.min(binCount, knownCount))];
+		int count = 0, size = 0;
+		for(int j = 0; j < rank.length(); j ++) {
+			if(j < missingCount) {
+				bin[id.get(j)] = -1;
+				continue;
+			}
+			bin[id.get(j)] = count;
+			size ++;
+			// Close the bin between two distinct values once it is full
+			if(j == rank.length() - 1 || (size >= binSize && sortedData.get(j) <= sortedData.get(j+1) - Parameter.PRECISION)) {
+				ends[count ++] = j;
+				size = 0;
+			}
+		}
+		this.binEnds = Arrays.copyOf(ends, count);
 	}
 
 	public void setCasesWeight(int[] casesValue, float[] weightValue) {
@@ -84,38 +154,134 @@ public class ContinuousAttributeDelegate extends AttributeDelegate{
 	}
 
 	/**
-	 * @return If the attribute is evaluated as an invalid test attribute, then <i>null</i> is returned;<br>
-	 *         Otherwise, a 1-by-4 float array with<br>
-	 *         &nbsp;&nbsp;&nbsp; the 1<sup>st</sup> element recording the Gain,<br>
-	 *         &nbsp;&nbsp;&nbsp; the 2<sup>nd</sup> element recording the splitInfo and<br>
-	 *         &nbsp;&nbsp;&nbsp; the 3<sup>rd</sup> and 4<sup>th</sup> elements recording the two ranks 
-	 *                            the average of whose corresponding values are the best split value.
+	 * Set which cases of the presort are the train data, whose values are the only candidate cuts.
+	 * @param isTrainData whether each case of the presort is a train data, or <i>null</i> if all of them are
+	 * @see ml.classifier.dt.Presort#share(int[] cases, float[] weight, float minWeight)
+	 */
+	void setTrainData(boolean[] isTrainData) {
+		this.isTrainData = isTrainData;
+	}
+
+	/**
+	 * A delegate sharing an attribute list gets its own list if it works on other cases,
+	 * which is filled by the tree builder before the construction on them.
+	 */
+	public AttributeDelegate share(int[] cases, float[] weight) {
+		ContinuousAttributeDelegate delegate = (ContinuousAttributeDelegate)super.share(cases, weight);
+		if(list != null && cases != this.cases) delegate.list = new int[cases.length];
+		return delegate;
+	}
+
+	/**
+	 * Create the attribute list of all the cases, gathering them in the order of the presort.
+	 * A case appearing more than once in the cases is gathered as many times.
+	 */
+	void createList() {
+		int[] multiplicity = new int[id.length()];
+		for(int caseIndex : cases) multiplicity[caseIndex] ++;
+
+		this.list = new int[cases.length];
+		int count = 0;
+		for(int j = 0; j < id.length(); j ++) {
+			int item = (rank.get(id.get(j)) < 0) ? ~id.get(j) : rank.get(id.get(j));
+			for(int k = multiplicity[id.get(j)]; k > 0; k --) list[count ++] = item;
+		}
+	}
+
+	/**
+	 * Query whether the delegate keeps an attribute list.
+	 */
+	boolean hasList() {
+		return list != null;
+	}
+
+	/**
+	 * Release the attribute list after the tree construction.
+	 */
+	void releaseList() {
+		this.list = null;
+	}
+
+	/**
+	 * Partition the attribute list of the [first, last) cases by the branches of a test attribute,
+	 * keeping the order of the cases in each branch.
+	 * @param first the begin (inclusive) index of the cases of the tree node
+	 * @param last the end (exclusive) index of the cases of the tree node
+	 * @param testAttributeDelegate the delegate of the test attribute of the tree node
+	 * @param cutRank the rank of the cut if the test attribute is continuous
+	 * @param branchBegins the begin index of each branch in the partitioned list, branch 0
+	 *        for the cases with unknown value on the test attribute
+	 * @return the partitioned list
+	 */
+	int[] partitionList(int first, int last, AttributeDelegate testAttributeDelegate, int cutRank, int[] branchBegins) {
+		int[] partitioned = new int[last - first];
+		int[] positions = branchBegins.clone();
+		for(int i = first; i < last; i ++) {
+			int caseIndex = (list[i] < 0) ? ~list[i] : id.get(list[i]);
+			partitioned[positions[testAttributeDelegate.findBranch(caseIndex, cutRank)] ++] = list[i];
+		}
+		return partitioned;
+	}
+
+	/**
+	 * Fill the attribute list of a branch from the specified begin index, by merging the cases
+	 * with unknown value on the test attribute into the known cases of the branch by their ranks.
+	 * The missing data are negative, therefore they are still merged to the front.
+	 * @param partitioned the partitioned list of the parent tree node
+	 * @param unknownBegin the begin (inclusive) index of the unknown cases in the partitioned list
+	 * @param unknownEnd the end (exclusive) index of the unknown cases in the partitioned list
+	 * @param branchBegin the begin (inclusive) index of the branch in the partitioned list
+	 * @param branchEnd the end (exclusive) index of the branch in the partitioned list
+	 * @param begin the index of the list from which the attribute list of the branch is filled
+	 */
+	void mergeList(int[] partitioned, int unknownBegin, int unknownEnd, int branchBegin, int branchEnd, int begin) {
+		int i = unknownBegin, j = branchBegin, k = begin;
+		while(i < unknownEnd && j < branchEnd) {
+			list[k ++] = (partitioned[i] <= partitioned[j]) ? partitioned[i ++] : partitioned[j ++];
+		}
+		System.arraycopy(partitioned, i, list, k, unknownEnd - i);
+		System.arraycopy(partitioned, j, list, k + unknownEnd - i, branchEnd - j);
+	}
+
+	/**
+	 * A valid evaluation records the two ranks the average of whose corresponding values
+	 * is the best split value.
 	 *
 	 * @see ml.classifier.dt.GainCalculator
 	 */
-	public float[] evaluate(int first, int last, AttributeDelegate classAttributeDelegate) {
+	public boolean evaluate(int first, int last, AttributeDelegate classAttributeDelegate, SplitEvaluation evaluation) {
+		if(bin != null) {
+			return evaluateBins(first, last, classAttributeDelegate, evaluation);
+		}
+
 		// This variable records the total weight of the [first last) cases
 		float totalWeight = 0.0f;
+		// The workspace of the current thread, with the distributions and the ranks of the known cases
+		EvaluationWorkspace workspace = EvaluationWorkspace.get();
 	    // This variable records the weight distribution of the [first last)
 	    // cases in different branches of the current attribute
-		float[] branchDistri = new float[3];
+		float[] branchDistri = workspace.getBranchDistribution(3);
 
 		// This variable records the weight distribution of the [first last)
      	// cases in different classes of the different branches of the attribute
-		float[][] branchClassDistribution = new float[3][classAttributeDelegate.getBranchCount()];
+		float[][] branchClassDistribution = workspace.getBranchClassDistribution(3, classAttributeDelegate.getBranchCount());
 		// The minimal weight of the known cases
-		float MINKNOWNWEIGHT = Parameter.MINWEIGHT;
+		float MINKNOWNWEIGHT = minWeight;
 		double PRECISION = Parameter.PRECISION;
 
+		int[] knownRanks = workspace.getRanks(last - first);
+		int knownCount = 0;
+
 		// Minimal rank value of the cases from first to last(exclusive)
-    	int minRank = sortedData.length;
+    	int minRank = sortedData.length();
     	int maxRank = -1;
 
 		/* Initialize the branchDistribition and its branchClassDistrition
          * i.e. Distribute all the [first, last) cases into the right branch
          * and compute its class distribution.
          *
-         * At the same time, bucket sorting the cases with BitSet buckets
+         * At the same time, collect the ranks of the known cases to be sorted,
+         * unless they are taken in order from the attribute list
          */
         for(int i = first ; i < last; i ++)  {
         	totalWeight += weight[cases[i]];
@@ -123,7 +289,7 @@ public class ContinuousAttributeDelegate extends AttributeDelegate{
     		int classLabel = classAttributeDelegate.getClassBranch(cases[i]);
 
 			// rank < 0 means missing data
-    		if(rank[cases[i]] < 0 ) {
+    		if(rank.get(cases[i]) < 0 ) {
     			branchDistri[0] += weight[cases[i]];
                 branchClassDistribution[0][classLabel] += weight[cases[i]];
             }
@@ -131,11 +297,10 @@ public class ContinuousAttributeDelegate extends AttributeDelegate{
                 branchDistri[2] += weight[cases[i]];
             	branchClassDistribution[2][classLabel] += weight[cases[i]];
 
-	        	// BucketSort the [first last) cases
-	        	buckets.set(rank[cases[i]]);
+				if(list == null) knownRanks[knownCount ++] = rank.get(cases[i]);
 				// Find the minimal and maximal rank values
-				if(rank[cases[i]] < minRank) minRank = rank[cases[i]];
-				if(rank[cases[i]] > maxRank) maxRank = rank[cases[i]];
+				if(rank.get(cases[i]) < minRank) minRank = rank.get(cases[i]);
+				if(rank.get(cases[i]) > maxRank) maxRank = rank.get(cases[i]);
             }
     	}
 
@@ -145,13 +310,33 @@ public class ContinuousAttributeDelegate extends AttributeDelegate{
 
 		// If there is too much missing data on this attribute, just try the next attribute
         if(knownWeight < 2 * MINKNOWNWEIGHT) {
-        	// If there is any known case, clear the BitSet
-			if(minRank <= maxRank) buckets.clear(minRank, maxRank+1);
-        	return null;
+        	evaluation.invalidate();
+        	return false;
         }
 
+		// Sort the known cases by their ranks, with the buckets if the ranks are dense enough,
+		// or take them from the attribute list which is already sorted
+		BitSet buckets = null;
+		boolean bucketSorted = false;
+		// The position of the current rank in the sorted known ranks
+		int position = 0;
+		if(list != null) {
+			knownRanks = list;
+			position = first;
+			while(list[position] < 0) position ++;
+		}
+		else if(isBucketSortCheaper(knownCount, maxRank - minRank + 1)) {
+			bucketSorted = true;
+			buckets = workspace.buckets;
+			for(int k = 0; k < knownCount; k ++) buckets.set(knownRanks[k]);
+		}
+		else Arrays.sort(knownRanks, 0, knownCount);
+
 		// Compute the entropy of the tree node as a Leaf
         float stateEntropy = GainCalculator.computeStateEntropy(branchClassDistribution, knownWeight);
+		// Whether to evaluate the cuts with the exact math as well to verify the entropy kernels
+		boolean verification = EntropyKernel.isVerification();
+		float exactStateEntropy = verification ? GainCalculator.computeStateEntropy(branchClassDistribution, knownWeight, true) : 0;
 
 		// Set the minimum weight for each branch of the attribute
         float minBranchWeight = 0.1f * knownWeight / classAttributeDelegate.getBranchCount();
@@ -161,6 +346,9 @@ public class ContinuousAttributeDelegate extends AttributeDelegate{
 		// Ready to record the maximal Gain and its corresponding splitInfo and two ranks for continuous attribute
 		float maxGain = Float.NEGATIVE_INFINITY, bestSplitInfo = -1;
 		int bestSplitRank = -1, bestPreSplitRank = -1;
+		// The best cut with the exact math
+		float exactMaxGain = Float.NEGATIVE_INFINITY, exactSplitInfo = -1;
+		int exactSplitRank = -1, exactPreSplitRank = -1;
 
 		// The number of tries for finding the bet split value
 		int tries = 0;
@@ -172,7 +360,7 @@ public class ContinuousAttributeDelegate extends AttributeDelegate{
 
 		do{
 			// Update the branch distribution and its class distribution
-			int caseIndex = id[currentRank];
+			int caseIndex = id.get(currentRank);
 			float caseWeight = weight[caseIndex];
 			int classLabel = classAttributeDelegate.getClassBranch(caseIndex);
 	        branchDistri[1] += caseWeight;
@@ -180,9 +368,9 @@ public class ContinuousAttributeDelegate extends AttributeDelegate{
 			branchClassDistribution[1][classLabel] += caseWeight;
 			branchClassDistribution[2][classLabel] -= caseWeight;
 
-	        float currentValue = sortedData[currentRank];
-	        nextRank = buckets.nextSetBit(currentRank+1);
-	        float nextValue = sortedData[nextRank];
+	        float currentValue = sortedData.get(currentRank);
+	        nextRank = bucketSorted ? buckets.nextSetBit(currentRank+1) : knownRanks[++ position];
+	        float nextValue = sortedData.get(nextRank);
 
 			// Each branch weight must be equal or greater than minBranchWeight
 			// For the left branch, it omitted the first several values
@@ -204,13 +392,22 @@ public class ContinuousAttributeDelegate extends AttributeDelegate{
 				// Begin to evaluate the current split value
 				tries ++;
 				// Compute Gain for the current branch weight distribution
-				float tempGain = GainCalculator.computeGain(stateEntropy, branchDistri, branchClassDistribution, unknownRatio);
+				float tempGain = GainCalculator.computeGain(stateEntropy, branchDistri, branchClassDistribution, unknownRatio, minWeight, false);
 				if(tempGain >= maxGain + PRECISION) {
 					maxGain = tempGain;
 					bestSplitInfo = GainCalculator.computeSplitInfo(branchDistri, totalWeight);
 					bestSplitRank = nextRank;
 					bestPreSplitRank = preRank;
 				}
+				if(verification) {
+					float exactGain = GainCalculator.computeGain(exactStateEntropy, branchDistri, branchClassDistribution, unknownRatio, minWeight, true);
+					if(exactGain >= exactMaxGain + PRECISION) {
+						exactMaxGain = exactGain;
+						exactSplitInfo = GainCalculator.computeSplitInfo(branchDistri, totalWeight, true);
+						exactSplitRank = nextRank;
+						exactPreSplitRank = preRank;
+					}
+				}
 				preRank = nextRank;
 			}
 			currentRank = nextRank;
@@ -218,20 +415,167 @@ public class ContinuousAttributeDelegate extends AttributeDelegate{
 		while(nextRank < maxRank);
 
 		// Clear the sort result
- 		buckets.clear(minRank,maxRank+1);
+ 		if(bucketSorted) buckets.clear(minRank,maxRank+1);
 
  		// Compute the threshold value according to the Information theory
         float threshCost = GainCalculator.log(tries)/totalWeight;
         // The adjusted Gain should be the maximal Gain minus the threshold
         float adjustedGain = maxGain - threshCost;
+        float exactAdjustedGain = exactMaxGain - threshCost;
 
-        float[] result = null;
         // If the adjustedGain is still valid, record the related information
         if(adjustedGain > 0) {
-        	result = new float[]{adjustedGain, bestSplitInfo, bestSplitRank, bestPreSplitRank};
+        	evaluation.set(adjustedGain, bestSplitInfo, bestSplitRank, bestPreSplitRank);
+        	if(verification) setExact(evaluation, exactAdjustedGain, exactSplitInfo, exactSplitRank, exactPreSplitRank);
+        	return true;
         }
         // If the adjustedGain is invalid, this attribute has no Gain
-        return result;
+        evaluation.invalidate();
+        if(verification) setExact(evaluation, exactAdjustedGain, exactSplitInfo, exactSplitRank, exactPreSplitRank);
+        return false;
+	}
+
+	/**
+	 * Evaluate the cuts between the quantile bins, by scanning the class distribution of the
+	 * [first, last) cases in each bin instead of the sorted cases.
+	 * <p>
+	 * The branch weight, the Gain and the threshold cost are computed as those of the cuts between
+	 * the distinct values, but only a cut at the end of a bin is tried. The two ranks of the best cut
+	 * are the end of its bin and the next rank, so the cut value is the largest value of the bin.
+	 * </p>
+	 * @see #evaluate(int first, int last, AttributeDelegate classAttributeDelegate, SplitEvaluation evaluation)
+	 */
+	private boolean evaluateBins(int first, int last, AttributeDelegate classAttributeDelegate, SplitEvaluation evaluation) {
+		float totalWeight = 0.0f;
+		int classCount = classAttributeDelegate.getBranchCount();
+		EvaluationWorkspace workspace = EvaluationWorkspace.get();
+		float[] branchDistri = workspace.getBranchDistribution(3);
+		float[][] branchClassDistribution = workspace.getBranchClassDistribution(3, classCount);
+		// The weight and the class distribution of the cases in each bin, one row of classes after another,
+		// kept by the workspace of the current thread and left cleared
+		float[] binWeight = workspace.getBinWeight(binEnds.length);
+		float[] binClassDistribution = workspace.getBinClassDistribution(binEnds.length * classCount);
+		float MINKNOWNWEIGHT = minWeight;
+		double PRECISION = Parameter.PRECISION;
+
+		// Distribute the cases into the branches as the evaluation of all the cuts, and into the bins
+		int minBin = binEnds.length, maxBin = -1;
+		for(int i = first; i < last; i ++) {
+			float caseWeight = weight[cases[i]];
+			totalWeight += caseWeight;
+			int classLabel = classAttributeDelegate.getClassBranch(cases[i]);
+			int caseBin = bin[cases[i]];
+			if(caseBin < 0) {
+				branchDistri[0] += caseWeight;
+				branchClassDistribution[0][classLabel] += caseWeight;
+			}
+			else {
+				branchDistri[2] += caseWeight;
+				branchClassDistribution[2][classLabel] += caseWeight;
+				binWeight[caseBin] += caseWeight;
+				binClassDistribution[caseBin * classCount + classLabel] += caseWeight;
+				if(caseBin < minBin) minBin = caseBin;
+				if(caseBin > maxBin) maxBin = caseBin;
+			}
+		}
+
+		float knownWeight = totalWeight - branchDistri[0];
+		float unknownRatio = branchDistri[0] / totalWeight;
+		if(knownWeight < 2 * MINKNOWNWEIGHT) {
+			workspace.clearBins(minBin, maxBin, classCount);
+			evaluation.invalidate();
+			return false;
+		}
+
+		float stateEntropy = GainCalculator.computeStateEntropy(branchClassDistribution, knownWeight);
+		boolean verification = EntropyKernel.isVerification();
+		float exactStateEntropy = verification ? GainCalculator.computeStateEntropy(branchClassDistribution, knownWeight, true) : 0;
+		float minBranchWeight = 0.1f * knownWeight / classCount;
+		minBranchWeight  = (minBranchWeight < MINKNOWNWEIGHT) ? MINKNOWNWEIGHT :
+		                   (minBranchWeight > 25) ?  25 : minBranchWeight;
+
+		float maxGain = Float.NEGATIVE_INFINITY, bestSplitInfo = -1;
+		int bestBin = -1;
+		float exactMaxGain = Float.NEGATIVE_INFINITY, exactSplitInfo = -1;
+		int exactBin = -1;
+		int tries = 0;
+		// Move the bins one after another to the left branch, and try the cut after each of them
+		for(int b = minBin; b < maxBin; b ++) {
+			if(binWeight[b] == 0) continue;
+
+			branchDistri[1] += binWeight[b];
+			branchDistri[2] -= binWeight[b];
+			for(int c = 0; c < classCount; c ++) {
+				branchClassDistribution[1][c] += binClassDistribution[b * classCount + c];
+				branchClassDistribution[2][c] -= binClassDistribution[b * classCount + c];
+			}
+
+			// Each branch weight must be equal or greater than minBranchWeight
+			if(branchDistri[1] <= minBranchWeight - PRECISION) {
+				continue;
+			}
+			if(branchDistri[2] <= minBranchWeight - PRECISION) {
+				break;
+			}
+			tries ++;
+			float tempGain = GainCalculator.computeGain(stateEntropy, branchDistri, branchClassDistribution, unknownRatio, minWeight, false);
+			if(tempGain >= maxGain + PRECISION) {
+				maxGain = tempGain;
+				bestSplitInfo = GainCalculator.computeSplitInfo(branchDistri, totalWeight);
+				bestBin = b;
+			}
+			if(verification) {
+				float exactGain = GainCalculator.computeGain(exactStateEntropy, branchDistri, branchClassDistribution, unknownRatio, minWeight, true);
+				if(exactGain >= exactMaxGain + PRECISION) {
+					exactMaxGain = exactGain;
+					exactSplitInfo = GainCalculator.computeSplitInfo(branchDistri, totalWeight, true);
+					exactBin = b;
+				}
+			}
+		}
+		workspace.clearBins(minBin, maxBin, classCount);
+
+		float threshCost = GainCalculator.log(tries)/totalWeight;
+		float adjustedGain = maxGain - threshCost;
+		float exactAdjustedGain = exactMaxGain - threshCost;
+		int exactSplitRank = (exactBin < 0) ? -1 : binEnds[exactBin] + 1;
+		int exactPreSplitRank = (exactBin < 0) ? -1 : binEnds[exactBin];
+		if(adjustedGain > 0) {
+			evaluation.set(adjustedGain, bestSplitInfo, binEnds[bestBin] + 1, binEnds[bestBin]);
+			if(verification) setExact(evaluation, exactAdjustedGain, exactSplitInfo, exactSplitRank, exactPreSplitRank);
+			return true;
+		}
+		evaluation.invalidate();
+		if(verification) setExact(evaluation, exactAdjustedGain, exactSplitInfo, exactSplitRank, exactPreSplitRank);
+		return false;
+	}
+
+	/**
+	 * Record the best cut found with the exact math into the evaluation, as an invalid one
+	 * if its adjusted Gain is not positive.
+	 */
+	private static void setExact(SplitEvaluation evaluation, float exactAdjustedGain, float exactSplitInfo,
+			int exactSplitRank, int exactPreSplitRank) {
+		if(exactAdjustedGain > 0) {
+			evaluation.setExact(exactAdjustedGain, exactSplitInfo, exactSplitRank, exactPreSplitRank);
+		}
+		else evaluation.setExact(0, 0, -1, -1);
+	}
+
+	/**
+	 * Decide whether the bucket sort is cheaper than a direct sort of the ranks of the known cases.
+	 * <p>
+	 * The bucket sort sets and visits a bit per case, but also scans the words of the whole rank
+	 * range, which is much wider than the number of the cases deep in the tree; the direct sort
+	 * takes about log2(count) steps per case. The costs are weighed in units of a scanned word.
+	 * </p>
+	 * @param count the number of the known cases
+	 * @param span the width of the rank range of the known cases
+	 */
+	static boolean isBucketSortCheaper(int count, int span) {
+		long bucketSortCost = 3L * count + (span >>> 6);
+		long directSortCost = (long)count * (32 - Integer.numberOfLeadingZeros(count));
+		return bucketSortCost <= directSortCost;
 	}
 
 	public int groupForward(int begin, int last, int groupBranch, float[] branchDistri) {
@@ -241,11 +585,11 @@ public class ContinuousAttributeDelegate extends AttributeDelegate{
 
 		int i, j;
 		for(i = begin, j = last - 1; i <= j; ) {
-			while(i <= j && rank[cases[i]] <= cutRank) {
+			while(i <= j && rank.get(cases[i]) <= cutRank) {
 				branchDistri[branchIndex] += weight[cases[i]];
 				i ++;
 			}
-			while(i <= j && rank[cases[j]] > cutRank) {
+			while(i <= j && rank.get(cases[j]) > cutRank) {
 				j --;
 			}
 
@@ -262,16 +606,23 @@ public class ContinuousAttributeDelegate extends AttributeDelegate{
 		return i;
 	}
 
+	/**
+	 * @return 0 for missing data, 1 for the data not greater than the cut, otherwise 2
+	 */
+	public int findBranch(int caseIndex, int cutRank) {
+		return (rank.get(caseIndex) < 0) ? 0 : (rank.get(caseIndex) <= cutRank) ? 1 : 2;
+	}
+
 	public int groupBackward(int begin, int last) {
 		int i, j;
 		int index = 0;
 		int cutRank = -1;
 
 		for(i = last-1, j = begin; i >= j; ) {
-			while(i >= j && rank[cases[i]] <= cutRank) {
+			while(i >= j && rank.get(cases[i]) <= cutRank) {
 				i --;
 			}
-			while(i >= j && rank[cases[j]] > cutRank) {
+			while(i >= j && rank.get(cases[j]) > cutRank) {
 				j ++;
 			}
 
@@ -288,25 +639,49 @@ public class ContinuousAttributeDelegate extends AttributeDelegate{
 	}
 
 	/**
-	 * Find the rank of the cut value in the test attribute.
+	 * Find the rank of the cut value in the test attribute: the largest value of the train data
+	 * not greater than the middle of the values of the two ranks.
+	 * <p>
+	 * The values of the cases of the presort which are not train data, such as the test data of
+	 * a fold, are skipped, so the cut is the same as on a presort of the train data alone.
+	 * </p>
 	 */
 	public int findCutRank(int splitRank, int preSplitRank) {
-		float localThreshold = (sortedData[preSplitRank] + sortedData[splitRank])/2;
+		float localThreshold = (sortedData.get(preSplitRank) + sortedData.get(splitRank))/2;
 		int low = preSplitRank, high = splitRank;
 
 		while(low <= high) {
 			int mid = (low + high)/2;
-			if(sortedData[mid] > localThreshold) high = mid-1;
-			else if(sortedData[mid] <= localThreshold) low = mid + 1;
+			if(sortedData.get(mid) > localThreshold) high = mid-1;
+			else if(sortedData.get(mid) <= localThreshold) low = mid + 1;
+		}
+		int cutRank = low-1;
+		if(isTrainData != null) {
+			while(cutRank > 0 && !isTrainData[id.get(cutRank)]) cutRank --;
+		}
+		return cutRank;
+	}
+
+	/**
+	 * Find the rank of the largest value not greater than the specified cut value, which is
+	 * a missing data if all the known values are greater.
+	 */
+	public int findCutRank(float cut) {
+		int low = 0, high = sortedData.length() - 1;
+
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			if(sortedData.get(mid) > cut) high = mid - 1;
+			else low = mid + 1;
 		}
-		return low-1;
+		return low - 1;
 	}
 
 	/**
 	 * Find the cut value of the test attribute when provided with its rank.
 	 */
 	public float findCut(int cutRank) {
-		return sortedData[cutRank];
+		return sortedData.get(cutRank);
 	}
 
 	public int getBranchCount(){
@@ -5,6 +5,12 @@
 package ml.classifier.dt;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 import ml.dataset.DataSet;
 import ml.dataset.Attribute;
 import ml.dataset.ContinuousAttribute;
@@ -25,16 +31,308 @@ public class DecisionTree implements TreeClassifier {
 	private DataSet dataSet;
 	// The delegate of attributes to assist tree building and tree pruning
 	private AttributeDelegate[] attributeDelegates;
+	// The pool building the tree in parallel, null for sequential building
+	private transient ForkJoinPool pool;
+	// The presort of the data set shared with other trees, null to prepare one for the tree
+	private transient Presort presort;
+	// Whether the tree has been pruned, which can not be updated any more
+	private boolean pruned;
+	// The parameter setting the tree is built and pruned with
+	private final Configuration configuration;
+	// The weight of each train data in the order of the data set, such as the number of times a bootstrap
+	// sample draws it, or null for weight 1.0 of all the train data
+	private float[] caseWeights;
+	// Whether each attribute may be selected as a test attribute, or null for all the attributes
+	private boolean[] candidateAttributes;
+	/**
+	 * The weight of the internal tree nodes kept by the updates when their test attributes
+	 * were selected, only recorded for the tree nodes whose weight has changed since then.
+	 * @see #update(DataSet dataSet, float tolerance)
+	 */
+	private transient Map<TreeNode, Float> evaluatedWeights;
+
+	/**
+	 * The minimal amount of work, measured in (candidate attributes * cases), for which
+	 * the candidate test attributes of a tree node are evaluated in parallel.
+	 */
+	private static final int PARALLEL_EVALUATION_THRESHOLD = 1 << 15;
+	/**
+	 * The minimal number of cases on a tree node for which its children tree nodes are
+	 * constructed in parallel.
+	 */
+	private static final int PARALLEL_CONSTRUCTION_THRESHOLD = 1 << 12;
 
 	/**
 	 * Build a decision tree with the specified data set
 	 */
 	public DecisionTree(DataSet dataSet) {
+		this(dataSet, null);
+	}
+
+	/**
+	 * Build a decision tree with the specified data set in parallel with the specified pool.
+	 * <p>
+	 * The candidate test attributes of each large enough tree node are evaluated in parallel,
+	 * and the children of each large enough tree node are constructed in parallel.
+	 * The parallel building selects exactly the same test attributes and cuts as
+	 * the sequential one, so the built tree is identical.
+	 * </p>
+	 * @param dataSet the data set to build the tree with
+	 * @param pool the pool building the tree, or <i>null</i> to build it sequentially
+	 */
+	public DecisionTree(DataSet dataSet, ForkJoinPool pool) {
+		this(dataSet, null, pool);
+	}
+
+	/**
+	 * Build a decision tree with the specified data set and the presort shared with other trees,
+	 * such as the trees of the other folds of a cross validation.
+	 * @param dataSet the data set to build the tree with, the presorted data set or a view of it
+	 * @param presort the presort of the data set, or <i>null</i> to prepare one for the tree
+	 * @param pool the pool building the tree, or <i>null</i> to build it sequentially
+	 */
+	public DecisionTree(DataSet dataSet, Presort presort, ForkJoinPool pool) {
+		this(dataSet, presort, pool, (Configuration)null);
+	}
+
+	/**
+	 * Build a decision tree with the specified data set, the presort shared with other trees and
+	 * the specified configuration, which the tree keeps for its pruning and updates.
+	 * <p>
+	 * Trees of different configurations can be built at the same time on the same presort, such
+	 * as the trees of a parameter sweep.
+	 * </p>
+	 * @param dataSet the data set to build the tree with, the presorted data set or a view of it
+	 * @param presort the presort of the data set, or <i>null</i> to prepare one for the tree
+	 * @param pool the pool building the tree, or <i>null</i> to build it sequentially
+	 * @param configuration the parameter setting of the tree, or <i>null</i> to follow the default one
+	 * @see ml.classifier.ParameterSweep
+	 * @see ml.classifier.dt.Configuration#getDefault()
+	 */
+	public DecisionTree(DataSet dataSet, Presort presort, ForkJoinPool pool, Configuration configuration) {
+		if(presort != null && !presort.covers(dataSet)) {
+			throw new IllegalArgumentException("The presort is not prepared on the data set " + dataSet.getName());
+		}
 		this.dataSet = dataSet;
+		this.presort = presort;
+		this.pool = pool;
+		this.configuration = configuration;
 		build();
 		root.setName(dataSet.getName());
 	}
 
+	/**
+	 * Build a decision tree with the specified weight of the train data, testing only the
+	 * specified attributes, such as a member tree of a bagging or random-subspace ensemble.
+	 * <p>
+	 * A bootstrap sample is given as the number of times each train data is drawn, so the tree
+	 * is built on the shared presort of the data set without copying any data. The train data
+	 * of zero weight are left out, and the tree is pruned with the same weight.
+	 * </p>
+	 * @param dataSet the data set to build the tree with, the presorted data set or a view of it
+	 * @param caseWeights the non-negative weight of each train data in the order of the data set
+	 * @param candidateAttributes whether each attribute may be selected as a test attribute,
+	 *        or <i>null</i> for all the attributes
+	 * @param presort the presort of the data set, or <i>null</i> to prepare one for the tree
+	 * @param pool the pool building the tree, or <i>null</i> to build it sequentially
+	 * @param configuration the parameter setting of the tree
+	 * @see ml.classifier.BaggingEnsemble
+	 */
+	public DecisionTree(DataSet dataSet, float[] caseWeights, boolean[] candidateAttributes, Presort presort,
+			ForkJoinPool pool, Configuration configuration) {
+		if(presort != null && !presort.covers(dataSet)) {
+			throw new IllegalArgumentException("The presort is not prepared on the data set " + dataSet.getName());
+		}
+		if(configuration == null) {
+			throw new IllegalArgumentException("The configuration must not be null");
+		}
+		if(caseWeights.length != dataSet.getCaseCount()) {
+			throw new IllegalArgumentException("The weight of " + caseWeights.length + " of " + dataSet.getCaseCount() + " train data");
+		}
+		if(candidateAttributes != null && candidateAttributes.length != dataSet.getAttributeCount()) {
+			throw new IllegalArgumentException("The candidates of " + candidateAttributes.length + " of " + dataSet.getAttributeCount() + " attributes");
+		}
+		this.dataSet = dataSet;
+		this.presort = presort;
+		this.pool = pool;
+		this.configuration = configuration;
+		this.caseWeights = caseWeights;
+		this.candidateAttributes = candidateAttributes;
+		build();
+		root.setName(dataSet.getName());
+	}
+
+	/**
+	 * Initialize a decision tree with a tree built on the specified data set before, such as
+	 * a tree loaded from a model cache, without building it again.
+	 * <p>
+	 * The attribute delegates are only prepared when the tree is pruned or updated, and then
+	 * the ranks of the cuts are found from the cut values.
+	 * </p>
+	 * @param dataSet the data set the tree was built with
+	 * @param presort the presort of the data set, or <i>null</i> to prepare one when needed
+	 * @param pool the pool updating the tree, or <i>null</i> to update it sequentially
+	 * @param root the root of the tree, whose tests refer to the attributes of the data set
+	 * @param pruned whether the tree has been pruned
+	 * @param configuration the parameter setting the tree was built with
+	 * @see ml.classifier.dt.ModelCache
+	 */
+	DecisionTree(DataSet dataSet, Presort presort, ForkJoinPool pool, TreeNode root, boolean pruned, Configuration configuration) {
+		this.dataSet = dataSet;
+		this.presort = presort;
+		this.pool = pool;
+		this.configuration = configuration;
+		this.root = root;
+		this.pruned = pruned;
+		root.setName(dataSet.getName());
+	}
+
+	/**
+	 * Update the tree with the cases appended to its train data set, with the default tolerance.
+	 * @see #update(DataSet dataSet, float tolerance)
+	 * @see ml.classifier.dt.Parameter#UPDATETOLERANCE
+	 */
+	public void update(DataSet dataSet) {
+		update(dataSet, Parameter.UPDATETOLERANCE);
+	}
+
+	/**
+	 * Update the tree with the cases appended to its train data set, in the spirit of ITI
+	 * (Incremental Tree Induction), instead of building it again.
+	 * <p>
+	 * The new cases are distributed down the tree along with the old ones, and the contents of
+	 * the tree nodes they reach are computed again. A leaf whose content changes is grown again.
+	 * An internal tree node keeps its test without evaluating the candidate test attributes, until
+	 * its weight has changed by more than the tolerance since its test attribute was selected; then
+	 * its test is selected again, and only if the test changes, the subtree is built again. A subtree
+	 * is kept as it is if no new case reaches it and its content does not change, which the new cases
+	 * may still change through the weight of the old cases with unknown values on the tests above.
+	 * </p>
+	 * <p>
+	 * With tolerance 0 every test of the tree is selected again, including those of the subtrees no new
+	 * case reaches, whose cuts may be changed by the values of the new cases, so the tree is the one
+	 * built on the whole data set. With a positive tolerance, a test is kept while the weight of its
+	 * tree node changes by less than that ratio, so a tree node may keep a test which is no longer the
+	 * best one, and a kept test keeps its cut; the tests are only evaluated on the subtrees whose weight
+	 * has drifted and on the leaves being grown, so the cost of an update mostly depends on the new
+	 * cases. The data set is still presorted as a whole.
+	 * </p>
+	 * @param dataSet the data set whose first cases are the train data of the tree, in the same order
+	 * @param tolerance the ratio by which the weight of a tree node may change before its test is
+	 *        selected again, 0 to select all the tests again
+	 * @throws IllegalStateException if the tree has been pruned, or built with the weight of its train data
+	 */
+	public void update(DataSet dataSet, float tolerance) {
+		if(pruned) {
+			throw new IllegalStateException("A pruned tree can not be updated");
+		}
+		if(caseWeights != null) {
+			throw new IllegalStateException("A tree built with the weight of its train data can not be updated");
+		}
+		if(tolerance < 0) {
+			throw new IllegalArgumentException("Illegal tolerance: " + tolerance);
+		}
+		if(dataSet.getAttributeCount() != this.dataSet.getAttributeCount()
+				|| dataSet.getCaseCount() < this.dataSet.getCaseCount()) {
+			throw new IllegalArgumentException("The data set " + dataSet.getName() + " does not extend the train data");
+		}
+		int oldCaseCount = this.dataSet.getCaseCount();
+
+		// Presort the data set in the same way as the train data
+		if(presort != null && presort.getBinCount() > 0) presort = new Presort(dataSet, presort.getBinCount());
+		else presort = new Presort(dataSet, presort != null && presort.usesAttributeLists());
+		this.dataSet = dataSet;
+
+		// Mark the new cases in the typed columns
+		boolean[] fresh = new boolean[getColumnLength()];
+		for(int i = oldCaseCount; i < dataSet.getCaseCount(); i ++) fresh[dataSet.getCaseIndex(i)] = true;
+
+		if(evaluatedWeights == null) evaluatedWeights = new HashMap<TreeNode, Float>();
+		build(root, fresh, tolerance);
+		root.setName(dataSet.getName());
+
+		// Forget the weight of the tree nodes no longer in the tree
+		Map<TreeNode, Float> recorded = evaluatedWeights;
+		evaluatedWeights = new HashMap<TreeNode, Float>();
+		retainEvaluatedWeights(root, recorded);
+	}
+
+	private void retainEvaluatedWeights(TreeNode node, Map<TreeNode, Float> recorded) {
+		if(!(node instanceof InternalNode)) return;
+
+		Float weight = recorded.get(node);
+		if(weight != null) evaluatedWeights.put(node, weight);
+		for(TreeNode child : node.getChildren()) {
+			retainEvaluatedWeights(child, recorded);
+		}
+	}
+
+	/**
+	 * Refer the tests of a subtree to the attributes of the data set and the ranks of the attribute delegates,
+	 * for a subtree kept by an update or a tree restored from a model.
+	 */
+	private void referTests(TreeNode node) {
+		if(!(node instanceof InternalNode)) return;
+
+		InternalNode internalNode = (InternalNode)node;
+		int testAttributeIndex = indexOf(internalNode.getTestAttribute().getName(), dataSet.getMetaData().getAttributeNames());
+		internalNode.setTestAttribute(dataSet.getAttributes()[testAttributeIndex]);
+		if(internalNode.getTestAttribute() instanceof ContinuousAttribute) {
+			internalNode.setCutRank(attributeDelegates[testAttributeIndex].findCutRank(internalNode.getCut()));
+		}
+		for(TreeNode child : internalNode.getChildren()) {
+			referTests(child);
+		}
+	}
+
+	/**
+	 * Get the data set the tree is built with.
+	 */
+	DataSet getDataSet() {
+		return dataSet;
+	}
+
+	/**
+	 * Get the presort of the data set, or <i>null</i> if the tree has prepared none yet.
+	 */
+	Presort getPresort() {
+		return presort;
+	}
+
+	/**
+	 * Get the parameter setting the tree is built and pruned with, the current default one for
+	 * a tree built or persisted without its configuration, so that
+	 * {@link ml.classifier.dt.Estimator#setConfidence(float)} still changes the pruning of such a tree.
+	 */
+	public Configuration getConfiguration() {
+		return (configuration == null) ? Configuration.getDefault() : configuration;
+	}
+
+	/**
+	 * Query whether the tree is built with the weight of its train data, or on a subspace of the attributes.
+	 */
+	boolean isWeighted() {
+		return caseWeights != null || candidateAttributes != null;
+	}
+
+	/**
+	 * Query whether the tree has been pruned.
+	 */
+	public boolean isPruned() {
+		return pruned;
+	}
+
+	/**
+	 * Replace the tree with the pruned one restored from a model.
+	 * @see ml.classifier.dt.ModelCache#prune(DecisionTree tree)
+	 */
+	void setPrunedRoot(TreeNode root) {
+		root.setName(dataSet.getName());
+		this.root = root;
+		this.pruned = true;
+		this.evaluatedWeights = null;
+	}
+
 	public int size() {
         return treeSize(root);
 	}
@@ -54,7 +352,7 @@ public class DecisionTree implements TreeClassifier {
 	}
 
 	public int getTrainError() {
-		return getTestError(dataSet.getTrainData());
+		return getTestError(dataSet);
 	}
 
 	public TreeNode getRoot() {
@@ -78,6 +376,101 @@ public class DecisionTree implements TreeClassifier {
 	public double getTestErrorRatio(String[][] testData){
 		return 1.0*getTestError(testData)/testData.length;
 	}
+
+	/**
+	 * Get the classification error on the typed columns of the specified data set.
+	 * @param testSet the data set to be classified, sharing the meta data of the train data set
+	 */
+	public int getTestError(DataSet testSet){
+		return testSet.getClassificationError(classifyOrdinals(testSet));
+	}
+
+	/**
+	 * Get the length of the typed columns of the train data set, which exceeds the number of
+	 * the train data if the train data set is a view of another data set.
+	 * @see ml.dataset.DataSet#getCaseIndex(int index)
+	 */
+	private int getColumnLength() {
+		return dataSet.getAttributes()[dataSet.getClassAttributeIndex()].getValueCount();
+	}
+
+	/**
+	 * Create the sequence of the train data of positive weight, indexed by the cases in the columns.
+	 */
+	private int[] createCases() {
+		int caseCount = dataSet.getCaseCount();
+		int count = caseCount;
+		if(caseWeights != null) {
+			count = 0;
+			for(float caseWeight : caseWeights) if(caseWeight > 0) count ++;
+		}
+		int[] cases = new int[count];
+		for(int i = 0, k = 0; i < caseCount; i ++) {
+			if(caseWeights == null || caseWeights[i] > 0) cases[k ++] = dataSet.getCaseIndex(i);
+		}
+		return cases;
+	}
+
+	/**
+	 * Create the weight of the train data, indexed by the cases in the columns, which a data set
+	 * view shares with its data set.
+	 */
+	private float[] createWeight() {
+		float[] weight = new float[getColumnLength()];
+		if(caseWeights == null) Arrays.fill(weight, 1.0f);
+		else for(int i = 0; i < caseWeights.length; i ++) weight[dataSet.getCaseIndex(i)] = caseWeights[i];
+		return weight;
+	}
+
+	/**
+	 * Compile the built (or pruned) decision tree into flat arrays for fast classification.
+	 * The compiled tree is a snapshot, which does not follow any later pruning.
+	 * @return the compiled tree returning the ordinals of the class values
+	 */
+	public CompiledTree compile() {
+		return new CompiledTree(root, dataSet);
+	}
+
+	/**
+	 * Classify the data of the specified data set on its typed columns, without parsing
+	 * or comparing any String attribute value.
+	 * @param testSet the data set to be classified, sharing the meta data of the train data set
+	 * @return the classification results
+	 */
+	public String[] classify(DataSet testSet) {
+		int[] ordinals = classifyOrdinals(testSet);
+		String[] classValues = dataSet.getClassValues();
+		String[] results = new String[ordinals.length];
+		for(int i = 0; i < ordinals.length; i ++) {
+			results[i] = classValues[ordinals[i]];
+		}
+		return results;
+	}
+
+	/**
+	 * Classify the data of the specified data set on its typed columns into the ordinals of the class values.
+	 */
+	private int[] classifyOrdinals(DataSet testSet) {
+		Attribute[] columns = testSet.getAttributes();
+		int caseCount = testSet.getCaseCount();
+		// Ready to record the classification results
+		int[] results = new int[caseCount];
+		float[] testClassDistribution = new float[dataSet.getClassCount()];
+
+		// The column index of each attribute name
+		String[] attributeNames = dataSet.getMetaData().getAttributeNames();
+		Map<String, Integer> columnIndices = new HashMap<String, Integer>(attributeNames.length * 2);
+		for(int i = 0; i < attributeNames.length; i ++) {
+			columnIndices.put(attributeNames[i], i);
+		}
+
+		for(int i = 0; i < caseCount; i ++) {
+			Arrays.fill(testClassDistribution, 0.0f);
+			classifyDownward(root, columns, columnIndices, testSet.getCaseIndex(i), testClassDistribution, 1.0f);
+			results[i] = selectClass(testClassDistribution);
+		}
+		return results;
+	}
 	
 	public String[] classify(String[][] testData) {
 		// Ready to record the classification results
@@ -100,15 +493,7 @@ public class DecisionTree implements TreeClassifier {
 			classifyDownward(root, testData[testIndex], testClassDistribution, 1.0f);
 
 			// Select the branch whose probability is the greatest as the classification of the test data
-			float max = -1.0f;
-		    int maxIndex = -1;
-			for(int i = 0; i < testClassDistribution.length; i ++) {
-				if(testClassDistribution[i] > max) {
-					maxIndex = i;
-					max = testClassDistribution[i];
-				}
-			}
-			results[testIndex] = classValues[maxIndex];
+			results[testIndex] = classValues[selectClass(testClassDistribution)];
 		}
 
 		return results;
@@ -125,21 +510,7 @@ public class DecisionTree implements TreeClassifier {
 	private void classifyDownward(TreeNode node, String[] record, float[] testClassDistribution, float weight){
 		TreeNodeContent content = node.getContent();
 		if(node instanceof LeafNode) {
-			// If there is no train data distributed on this tree node,
-			// then add the weight of the test data to its corresponding class branch
-			if(content.getTrainWeight() <= 0){
-				// Get the branch index of the tree node's classification
-				int classificationIndex = indexOf(content.getClassification(), dataSet.getClassValues());
-				testClassDistribution[classificationIndex] += weight;
-			}
-			// Otherwise, distribute the weight of the test data with the coefficient
-			// of trainClassDistri[classValueIndex]/trainWeight
-			else {
-				float[] trainClassDistribution = content.getTrainClassDistribution();
-			    for(int i = 0; i < testClassDistribution.length; i ++){
-			    	testClassDistribution[i] += weight * trainClassDistribution[i]/content.getTrainWeight();
-			    }
-			}
+			classifyLeaf(content, testClassDistribution, weight);
 		}
 		// If the current tree node is an InternalNode
 		else {
@@ -159,13 +530,99 @@ public class DecisionTree implements TreeClassifier {
 				TreeNode[] children = node.getChildren();
 				for(int i = 0; i < children.length; i ++) {
 					TreeNodeContent childContent = children[i].getContent();
-					float childWeight = (float)weight*childContent.getTrainWeight()/content.getTrainWeight();
+					float childWeight = weight*childContent.getTrainWeight()/content.getTrainWeight();
 					classifyDownward(children[i], record, testClassDistribution, childWeight);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Classify a case of the typed columns from top to bottom from one tree node to its offspring.
+	 * @param node the current tree node classify the case
+	 * @param columns the typed columns of the data set to be classified
+	 * @param columnIndices the column index of each attribute name
+	 * @param caseIndex the index of the case in the columns
+	 * @param testClassDistribution actually the output of this method, recording the weight
+	 *               distribution of the case in different class values.
+	 * @param weight the weight of the case on the current tree node
+	 * @see #classifyDownward(TreeNode node, String[] record, float[] testClassDistribution, float weight)
+	 */
+	private void classifyDownward(TreeNode node, Attribute[] columns, Map<String, Integer> columnIndices,
+			int caseIndex, float[] testClassDistribution, float weight){
+		TreeNodeContent content = node.getContent();
+		if(node instanceof LeafNode) {
+			classifyLeaf(content, testClassDistribution, weight);
+			return;
+		}
+
+		InternalNode internalNode = (InternalNode)node;
+		Attribute column = columns[columnIndices.get(internalNode.getTestAttribute().getName())];
+		// if the test attribute value of the case is not missing, then
+		// pass it to its child tree node for classification.
+		if(!column.isMissing(caseIndex)) {
+			int branchIndex;
+			if(column instanceof ContinuousAttribute) {
+				float value = ((ContinuousAttribute)column).getValues()[caseIndex];
+				branchIndex = (value < (internalNode.getCut() + Parameter.PRECISION)) ? 0 : 1;
+			}
+			else {
+				branchIndex = ((DiscreteAttribute)column).getCode(caseIndex) - 1;
+			}
+			classifyDownward(node.getChildAt(branchIndex), columns, columnIndices, caseIndex, testClassDistribution, weight);
+		}
+		// Otherwise the case is passed to all the children tree nodes with the partitioned weight
+		else {
+			TreeNode[] children = node.getChildren();
+			for(int i = 0; i < children.length; i ++) {
+				TreeNodeContent childContent = children[i].getContent();
+				float childWeight = weight*childContent.getTrainWeight()/content.getTrainWeight();
+				classifyDownward(children[i], columns, columnIndices, caseIndex, testClassDistribution, childWeight);
+			}
+		}
+	}
+
+	/**
+	 * Distribute the weight of a test data reaching the specified leaf node to the class values.
+	 * @param content the content of the leaf node
+	 * @param testClassDistribution actually the output of this method, recording the weight
+	 *               distribution of the test data in different class values.
+	 * @param weight the weight of the test data on the leaf node
+	 */
+	private void classifyLeaf(TreeNodeContent content, float[] testClassDistribution, float weight) {
+		// If there is no train data distributed on this tree node,
+		// then add the weight of the test data to its corresponding class branch
+		if(content.getTrainWeight() <= 0){
+			// Get the branch index of the tree node's classification
+			int classificationIndex = indexOf(content.getClassification(), dataSet.getClassValues());
+			testClassDistribution[classificationIndex] += weight;
+		}
+		// Otherwise, distribute the weight of the test data with the coefficient
+		// of trainClassDistri[classValueIndex]/trainWeight
+		else {
+			float[] trainClassDistribution = content.getTrainClassDistribution();
+		    for(int i = 0; i < testClassDistribution.length; i ++){
+		    	testClassDistribution[i] += weight * trainClassDistribution[i]/content.getTrainWeight();
+		    }
+		}
+	}
+
+	/**
+	 * Select the class whose probability is the greatest in the specified class distribution.
+	 * @return the index of the selected class value
+	 */
+	private static int selectClass(float[] testClassDistribution) {
+		float max = -1.0f;
+	    int maxIndex = -1;
+		for(int i = 0; i < testClassDistribution.length; i ++) {
+			if(testClassDistribution[i] > max) {
+				maxIndex = i;
+				max = testClassDistribution[i];
+			}
+		}
+		return maxIndex;
+	}
+
 	/**
 	 * Find the branch index of the child tree node to which the parent tree node should
 	 * classify the test data to.
@@ -196,59 +653,116 @@ public class DecisionTree implements TreeClassifier {
 	 * Build a decision tree.
 	 */
 	public void build() {
+		build(null, null, 0);
+	}
+
+	/**
+	 * Build the decision tree, or update the previous one with the new cases.
+	 * @param previousRoot the root of the tree to be updated, or <i>null</i> to build a tree
+	 * @param fresh whether each case in the typed columns is new, only for an update
+	 * @param tolerance the ratio by which the weight of a tree node may change before its test
+	 *        is selected again, only for an update
+	 * @see #update(DataSet dataSet, float tolerance)
+	 */
+	private void build(final TreeNode previousRoot, final boolean[] fresh, final float tolerance) {
 
 		class TreeBuilder {
 			// The sequence of the cases used for tree construction
 			private int[] cases;
 			// The weight of each case used for tree construction
 			private float[] weight;
+			// The attribute delegates working on the above cases and weight
+			private AttributeDelegate[] delegates;
 			// The number of the candidate test attributes
 			private int candidateTestAttrCount;
 			// Whether the attributes are candidate for test attribute selection
 			private boolean[] isCandidateTestAttr;
+			// The evaluation of each attribute, reused by all the tree nodes the builder constructs
+			private SplitEvaluation[] evaluations;
+			// The index of the selected test attribute and the rank of its cut, reused likewise
+			private final int[] testAttributeInfo = new int[2];
 
 			/**
 			 * Initialize a tree builder which build a decision tree.
 			 */
 			TreeBuilder() {
-				// Create Attribute Delegate objects
-				attributeDelegates = new AttributeDelegate[dataSet.getAttributeCount()];
-				int attributeIndex = 0;
-				for(Attribute attribute : dataSet.getAttributes()){
-					if(attribute instanceof ContinuousAttribute)
-						attributeDelegates[attributeIndex] = new ContinuousAttributeDelegate((ContinuousAttribute)attribute);
-				    else
-				    	attributeDelegates[attributeIndex] = new DiscreteAttributeDelegate((DiscreteAttribute)attribute);
-				    attributeIndex ++;
-				}
+				// Prepare the Attribute Delegate objects, unless they are shared with other trees
+				if(presort == null) presort = new Presort(dataSet);
 
 		    	// Initialize the qualification of candidate test attributes
 				candidateTestAttrCount = dataSet.getAttributeCount()-1;
 				this.isCandidateTestAttr = new boolean[dataSet.getAttributeCount()];
 				Arrays.fill(isCandidateTestAttr, true);
 				isCandidateTestAttr[dataSet.getClassAttributeIndex()] = false;
+				// Only the attributes of the subspace of the tree are candidates
+				if(candidateAttributes != null) {
+					for(int i = 0; i < isCandidateTestAttr.length; i ++) {
+						if(isCandidateTestAttr[i] && !candidateAttributes[i]) {
+							isCandidateTestAttr[i] = false;
+							candidateTestAttrCount --;
+						}
+					}
+				}
 
 				// Initialize the data sequence and their weight
 				initializeCasesWeight();
+				this.delegates = attributeDelegates;
+				this.evaluations = createEvaluations(delegates.length);
 
-				root = constructTreeNode(0, dataSet.getCaseCount());
+				if(pool == null) {
+					root = (previousRoot == null) ? constructTreeNode(0, cases.length)
+					                              : updateTreeNode(previousRoot, 0, cases.length);
+				}
+				// Within a task of the pool, such as a fold of a cross validation, the construction joins the task
+				else if(ForkJoinTask.inForkJoinPool()) {
+					root = new SubtreeConstruction(previousRoot, 0, cases.length).invoke();
+				}
+				else {
+					root = pool.invoke(new SubtreeConstruction(previousRoot, 0, cases.length));
+				}
+
+				// The attribute lists are not used by pruning
+				for(AttributeDelegate delegate : delegates) {
+					if(delegate instanceof ContinuousAttributeDelegate) ((ContinuousAttributeDelegate)delegate).releaseList();
+				}
+			}
+
+			/**
+			 * Initialize a tree builder which builds a subtree of the tree being built by the
+			 * specified parent builder.
+			 * <p>
+			 * The builder inherits the candidate test attributes from its parent, and works on
+			 * a disjoint range of the cases and weight of its parent with the same attribute delegates.
+			 * </p>
+			 */
+			TreeBuilder(TreeBuilder parent) {
+				this.cases = parent.cases;
+				this.weight = parent.weight;
+				this.candidateTestAttrCount = parent.candidateTestAttrCount;
+				this.isCandidateTestAttr = parent.isCandidateTestAttr.clone();
+				this.delegates = parent.delegates;
+				this.evaluations = createEvaluations(delegates.length);
+			}
+
+			/**
+			 * Create the evaluation records of the specified number of attributes.
+			 */
+			private SplitEvaluation[] createEvaluations(int count) {
+				SplitEvaluation[] result = new SplitEvaluation[count];
+				for(int i = 0; i < count; i ++) result[i] = new SplitEvaluation();
+				return result;
 			}
 
 			/**
 			 * Initialize the sequence of the train data from 1 to n, and initialize their
-			 * weight with all 1.0.
+			 * weight with all 1.0, or with the weight the tree is built with.
 			 */
 			void initializeCasesWeight(){
-				int caseCount = dataSet.getCaseCount();
-				this.cases = new int[caseCount];
-				for(int i = 0; i < cases.length; i ++) cases[i] = i;
-				this.weight = new float[caseCount];
-				Arrays.fill(weight, 1.0f);
+				this.cases = createCases();
+				this.weight = createWeight();
 
 				// All the attribute delegates share the same cases and weight array
-				for(AttributeDelegate attributeDelegate : attributeDelegates){
-					attributeDelegate.setCasesWeight(cases, weight);
-				}
+				attributeDelegates = presort.share(cases, weight, getConfiguration().getMinWeight());
 			}
 
 			/**
@@ -262,29 +776,139 @@ public class DecisionTree implements TreeClassifier {
 		    private TreeNode constructTreeNode (int first, int last) {
 		    	// Construct an initial Leaf tree node
 		    	TreeNodeContent content = createContent(first, last);
-		    	float errorAsLeafNode = content.getErrorAsLeafNode();
 				// If any of the leaf conditions is satisfied, return the Leaf tree node
-		        if(content.satisfyLeafNode(Parameter.MINWEIGHT) || candidateTestAttrCount <= 0) {
+		        if(content.satisfyLeafNode(getConfiguration().getMinWeight()) || candidateTestAttrCount <= 0) {
 		        	return new LeafNode(content);
 		        }
+		        return growTreeNode(content, first, last);
+		    }
 
+			/**
+			 * Grow a tree node whose content does not satisfy the leaf conditions, by selecting
+			 * its test attribute and constructing its children.
+			 */
+		    private TreeNode growTreeNode(TreeNodeContent content, int first, int last) {
 				// Select a test attribute from all the candidate attributes
-				int[] testAttributeInfo = new int[2];
 				Attribute testAttribute = selectTestAttribute(first, last, testAttributeInfo);
-				int testAttributeIndex, cutRank;
-				float cut;
 				// If no attribute is selected as the final test attribute, return Leaf
 				if(testAttribute == null) {
 					return new LeafNode(content);
 				}
-				else{
-					testAttributeIndex = testAttributeInfo[0];
+				return splitTreeNode(content, testAttribute, testAttributeInfo[0], testAttributeInfo[1], first, last, null);
+			}
+
+			/**
+			 * Update a tree node of the previous tree with the [first, last) cases, some of which are new.
+			 * @param previous the tree node of the previous tree
+			 * @param first the start(inclusive) index of the cases of the tree node
+			 * @param last the end(exclusive) index of the cases of the tree node
+			 * @return the updated tree node
+			 * @see ml.classifier.dt.DecisionTree#update(DataSet dataSet, float tolerance)
+			 */
+			private TreeNode updateTreeNode(TreeNode previous, int first, int last) {
+				return updateTreeNode(previous, createContent(first, last), first, last);
+			}
+
+			/**
+			 * Update a tree node of the previous tree with its content computed on the [first, last) cases.
+			 */
+			private TreeNode updateTreeNode(TreeNode previous, TreeNodeContent content, int first, int last) {
+		        if(content.satisfyLeafNode(getConfiguration().getMinWeight()) || candidateTestAttrCount <= 0) {
+		        	return new LeafNode(content);
+		        }
+				// A leaf whose content changes is grown again
+				if(previous instanceof LeafNode) {
+					return growTreeNode(content, first, last);
+				}
+
+				InternalNode node = (InternalNode)previous;
+				Float recordedWeight = evaluatedWeights.remove(node);
+				float evaluatedWeight = (recordedWeight == null) ? node.getContent().getTrainWeight() : recordedWeight;
+				int testAttributeIndex = indexOf(node.getTestAttribute().getName(), dataSet.getMetaData().getAttributeNames());
+				Attribute testAttribute = dataSet.getAttributes()[testAttributeIndex];
+				int cutRank = -1;
+
+				if(Math.abs(content.getTrainWeight() - evaluatedWeight) >= tolerance * evaluatedWeight) {
+					// Select the test again, and build the subtree again if it changes
+					Attribute selected = selectTestAttribute(first, last, testAttributeInfo);
+					if(selected == null) {
+						return new LeafNode(content);
+					}
+					if(testAttributeInfo[0] != testAttributeIndex || (selected instanceof ContinuousAttribute
+							&& delegates[testAttributeIndex].findCut(testAttributeInfo[1]) != node.getCut())) {
+						return splitTreeNode(content, selected, testAttributeInfo[0], testAttributeInfo[1], first, last, null);
+					}
 					cutRank = testAttributeInfo[1];
+					evaluatedWeight = content.getTrainWeight();
+				}
+				else if(testAttribute instanceof ContinuousAttribute) {
+					cutRank = delegates[testAttributeIndex].findCutRank(node.getCut());
+				}
+
+				TreeNode updated = splitTreeNode(content, testAttribute, testAttributeIndex, cutRank, first, last, node);
+				// The weight of a tree node whose test has just been selected is its own weight
+				if(updated instanceof InternalNode && evaluatedWeight != content.getTrainWeight()) {
+					evaluatedWeights.put(updated, evaluatedWeight);
+				}
+				return updated;
+			}
+
+			/**
+			 * Construct or update a child tree node on the [first, last) cases.
+			 * @param previous the previous tree node being updated, or <i>null</i> to construct
+			 * @param index the index of the child tree node
+			 */
+			private TreeNode constructChild(InternalNode previous, int index, int first, int last) {
+				if(previous == null) {
+					return constructTreeNode(first, last);
 				}
+				TreeNode child = previous.getChildAt(index);
+				TreeNodeContent content = createContent(first, last);
+				// With tolerance 0 the subtree is updated even if its cases have not changed, since a cut
+				// is the greatest value of the whole data set below the split, which a new case may be
+				if(tolerance == 0 || isChanged(child.getContent(), content, first, last)) {
+					return updateTreeNode(child, content, first, last);
+				}
+				// A subtree not changed by the new cases is kept, with its tests referring to the new presort
+				referTests(child);
+				return child;
+			}
+
+			/**
+			 * Query whether the new cases change a tree node of the previous tree, by reaching it or
+			 * by changing the weight of its cases.
+			 * @param previous the content of the tree node of the previous tree
+			 * @param content the content of the tree node on its current cases
+			 */
+			private boolean isChanged(TreeNodeContent previous, TreeNodeContent content, int first, int last) {
+				if(previous.getTrainWeight() != content.getTrainWeight()
+						|| !Arrays.equals(previous.getTrainClassDistribution(), content.getTrainClassDistribution())) {
+					return true;
+				}
+				for(int i = first; i < last; i ++) {
+					if(fresh[cases[i]]) return true;
+				}
+				return false;
+			}
+
+			/**
+			 * Split a tree node on the selected test, and construct its children.
+			 * @param content the content of the tree node
+			 * @param testAttribute the test attribute
+			 * @param testAttributeIndex the index of the test attribute
+			 * @param cutRank the rank of the cut if the test attribute is continuous
+			 * @param first the start(inclusive) index of the cases of the tree node
+			 * @param last the end(exclusive) index of the cases of the tree node
+			 * @param previous the tree node of the previous tree with the same test whose children
+			 *        are updated, or <i>null</i> to construct the children
+			 * @return the constructed tree node, or a leaf if the children make more errors
+			 */
+			private TreeNode splitTreeNode(TreeNodeContent content, Attribute testAttribute, int testAttributeIndex,
+					int cutRank, int first, int last, InternalNode previous) {
 				// Change the type the tree node to an InternalNode
 				InternalNode node = new InternalNode(content, testAttribute);
 
-				AttributeDelegate testAttributeDelegate = attributeDelegates[testAttributeIndex];
+				AttributeDelegate testAttributeDelegate = delegates[testAttributeIndex];
 				// Record the class weight distribution of the selected test attribute
 				float[] testBranchDistri;
 				// If the test attribute is a discrete attribute
@@ -298,7 +922,8 @@ public class DecisionTree implements TreeClassifier {
 				else{
 					// 0 is kept for missing data
 					testBranchDistri = new float[2+1];
-					cut = testAttributeDelegate.findCut(cutRank);
+					// A kept cut may lie below all the known values of the cases
+					float cut = (previous == null) ? testAttributeDelegate.findCut(cutRank) : previous.getCut();
 					node.setCut(cut);
 					node.setCutRank(cutRank);
 				}
@@ -316,9 +941,25 @@ public class DecisionTree implements TreeClassifier {
 				if(testAttributeDelegate.hasMissingData()) {
 					groupBegin = testAttributeDelegate.groupForward(first, last, -1, testBranchDistri);
 				}
+				// Partition the attribute lists among the branches, if the tree keeps them
+				AttributeListPartition partition = !presort.usesAttributeLists() ? null :
+					new AttributeListPartition(delegates, cases, first, last, testAttributeDelegate,
+							testAttribute instanceof ContinuousAttribute ? cutRank : -1);
+
+				// Construct the children tree nodes in parallel if the tree node is large enough and no case
+				// is unknown on the test attribute. Each branch gets the unknown cases in the order its previous
+				// sibling leaves them, so the branches with unknown cases are constructed one after another.
+				if(pool != null && last - first >= PARALLEL_CONSTRUCTION_THRESHOLD && previous == null && groupBegin == first) {
+					int split = testAttribute instanceof ContinuousAttribute ? cutRank : -1;
+					TreeNode[] children = constructChildrenInParallel(content, testAttributeDelegate, split,
+							groupBegin, last, testBranchDistri, partition);
+					for(TreeNode child : children) {
+						node.addChild(child);
+					}
+				}
 				// Classify the [first last) cases to the branches of the test attribute
 				// except for the last branch, to construct the children tree nodes
-				for(int index = 0; index < testBranchDistri.length-1; index ++) {
+				else for(int index = 0; index < testBranchDistri.length-1; index ++) {
 					// For a continuous attribute, the group criterion is cutRank;
 					// For a discrete attribute, the group criterion is the branch value(or index)
 					int split = testAttribute instanceof ContinuousAttribute ? cutRank : index;
@@ -353,9 +994,10 @@ public class DecisionTree implements TreeClassifier {
 						// Update the weight of the cases with unknown value on this test
 						// attribute with the above ratio
 						for(int i = missingBegin; i < groupBegin; i ++) weight[cases[i]] *= ratio;
+						if(partition != null) partition.inherit(index, delegates, missingBegin);
 
 						// Construct a child tree node for this branch recursively
-						aChild = constructTreeNode(missingBegin, nextGroupBegin);
+						aChild = constructChild(previous, index, missingBegin, nextGroupBegin);
 
 						// Restore the original sequence of the cases after the recursive construction
 				        missingBegin = testAttributeDelegate.groupBackward(missingBegin, nextGroupBegin);
@@ -365,7 +1007,8 @@ public class DecisionTree implements TreeClassifier {
 			        // If the test attribute contains no missing data and at the same time
 					// some cases are distributed in this branch
 			        else {
-			        	aChild = constructTreeNode(groupBegin, nextGroupBegin);
+			        	if(partition != null) partition.inherit(index, delegates, groupBegin);
+			        	aChild = constructChild(previous, index, groupBegin, nextGroupBegin);
 			        	//When there is no missing data, missingBegin moves together with groupBegin
 			        	missingBegin = nextGroupBegin;
 			        }
@@ -382,6 +1025,8 @@ public class DecisionTree implements TreeClassifier {
 			   	    isCandidateTestAttr[testAttributeIndex] = true;
 					candidateTestAttrCount ++;
 				}
+				// Record the branch distribution for pruning
+				node.setBranchDistribution(testBranchDistri);
 				// Choose to be a Leaf or InternalNode
 		        if(node.getTrainError() - content.getErrorAsLeafNode() >= -Parameter.PRECISION) {
 		        	return new LeafNode(content);
@@ -390,6 +1035,68 @@ public class DecisionTree implements TreeClassifier {
 			    return node;
 			}
 
+			/**
+			 * Construct the children tree nodes of an internal tree node in parallel, when no case
+			 * is unknown on its test attribute.
+			 * <p>
+			 * All the branches are grouped before any child tree node is constructed, in the same
+			 * order as the sequential construction groups them, so that every child tree node
+			 * gets exactly the same cases as it gets in the sequential construction. The children
+			 * tree nodes are then constructed on disjoint ranges of the shared cases and weight.
+			 * </p>
+			 * @param content the content of the internal tree node
+			 * @param testAttributeDelegate the delegate of the test attribute of the internal tree node
+			 * @param cutRank the rank of the cut value if the test attribute is continuous, otherwise -1
+			 * @param groupBegin the begin index of the cases on the internal tree node
+			 * @param last the end(exclusive) index of the cases on the internal tree node
+			 * @param testBranchDistri the weight distribution of the branches
+			 * @param partition the attribute lists partitioned among the branches, or <i>null</i>
+			 *              if the tree keeps no attribute lists
+			 * @return the constructed children tree nodes
+			 */
+			private TreeNode[] constructChildrenInParallel(TreeNodeContent content, AttributeDelegate testAttributeDelegate,
+					int cutRank, int groupBegin, int last, float[] testBranchDistri, AttributeListPartition partition) {
+				int branchCount = testBranchDistri.length-1;
+
+				// Group all the branches forward, the last branch takes the rest of the weight
+				int[] groupBounds = new int[branchCount+1];
+				groupBounds[0] = groupBegin;
+				for(int index = 0; index < branchCount-1; index ++) {
+					int split = (cutRank >= 0) ? cutRank : index;
+					groupBounds[index+1] = testAttributeDelegate.groupForward(groupBounds[index], last, split, testBranchDistri);
+				}
+				groupBounds[branchCount] = last;
+				float lastWeight = content.getTrainWeight();
+				for(int j = 0; j < testBranchDistri.length-1; j ++) {
+					lastWeight -= testBranchDistri[j];
+				}
+				testBranchDistri[branchCount] = lastWeight;
+
+				TreeNode[] children = new TreeNode[branchCount];
+				SubtreeConstruction[] forked = new SubtreeConstruction[branchCount];
+				for(int index = 0; index < branchCount; index ++) {
+					int begin = groupBounds[index];
+					int end = groupBounds[index+1];
+
+					// If there is no cases distributed in this branch, construct a Leaf with its parent's class
+					if(begin == end) {
+						children[index] = new LeafNode(new TreeNodeContent(0, null, content.getClassification(), 0));
+					}
+					// Otherwise the branch works on its own range of the shared cases
+					else {
+						if(partition != null) partition.inherit(index, delegates, begin);
+						forked[index] = new TreeBuilder(this).new SubtreeConstruction(begin, end);
+						forked[index].fork();
+					}
+				}
+
+				// Wait for the forked branches
+				for(int index = 0; index < branchCount; index ++) {
+					if(forked[index] != null) children[index] = forked[index].join();
+				}
+				return children;
+			}
+
 			/**
 			 * Create a tree node content with the specified data.
 			 * @param first the start(inclusive) index of the train data used for creating
@@ -401,7 +1108,7 @@ public class DecisionTree implements TreeClassifier {
 			private TreeNodeContent createContent(int first, int last) {
 				// Compute the total weight of the cases from first to last
 		        float totalWeight = 0;
-		        AttributeDelegate classAttributeDelegate = attributeDelegates[dataSet.getClassAttributeIndex()];
+		        AttributeDelegate classAttributeDelegate = delegates[dataSet.getClassAttributeIndex()];
 		        // Compute the weight distribution of the cases in different classes
 				float[] totalClassDistri = new float[dataSet.getClassCount()];
 		        Arrays.fill(totalClassDistri, 0);
@@ -444,51 +1151,69 @@ public class DecisionTree implements TreeClassifier {
 			 *              null is returned.
 			 */
 			private Attribute selectTestAttribute(int first, int last, int[] testAttrInfo){
-				// Ready to record the gain and splitInfo of each available attribute
-		        float[] gain = new float[candidateTestAttrCount];
-			    float[] splitInfo = new float[candidateTestAttrCount];
-			    // For continuous attributes, ready to record the two neighboring ranks of the best split
-				int[] splitRank = new int[candidateTestAttrCount];
-			    int[] preSplitRank = new int[candidateTestAttrCount];
+				AttributeDelegate classAttributeDelegate = delegates[dataSet.getClassAttributeIndex()];
+				// Evaluate Gain and SplitInfo for each candidate attribute,
+				// an invalid attribute is evaluated with zero Gain and splitInfo
+				evaluateCandidates(first, last, classAttributeDelegate);
+
+				int bestAttrIndex = selectBestAttribute(false);
+				// Verify the selected split against the one selected with the exact math
+				if(EntropyKernel.isVerification()) {
+					int exactAttrIndex = selectBestAttribute(true);
+					if(bestAttrIndex != exactAttrIndex) {
+						EntropyKernel.mismatch("test attribute", attributeName(bestAttrIndex), attributeName(exactAttrIndex));
+					}
+					SplitEvaluation evaluation = (bestAttrIndex < 0) ? null : evaluations[bestAttrIndex];
+					if(evaluation != null && (evaluation.getSplitRank() != evaluation.getExactSplitRank()
+							|| evaluation.getPreSplitRank() != evaluation.getExactPreSplitRank())) {
+						EntropyKernel.mismatch("cut of " + attributeName(bestAttrIndex), "before rank " + evaluation.getSplitRank(),
+							"before rank " + evaluation.getExactSplitRank());
+					}
+				}
 
+				// If no test attribute is selected
+				if(bestAttrIndex < 0) return null;
+
+				Attribute testAttribute = dataSet.getAttributes()[bestAttrIndex];
+				testAttrInfo[0] = bestAttrIndex;
+				// If the test attribute is continuous, record its cutRank from the two ranks which produce the split value
+				if(testAttribute instanceof ContinuousAttribute){
+					SplitEvaluation evaluation = evaluations[bestAttrIndex];
+					testAttrInfo[1] = delegates[bestAttrIndex].findCutRank(evaluation.getSplitRank(), evaluation.getPreSplitRank());
+				}
+				// Return the test attribute object
+				return testAttribute;
+			}
+
+			/**
+			 * Select the candidate attribute with the maximal GainRatio from the evaluations.
+			 *
+			 * @param exact whether to take the Gain and the splitInfo computed with the exact math
+			 * @return the index of the selected attribute, -1 if there is no test attribute selected
+			 */
+			private int selectBestAttribute(boolean exact) {
 				float averageGain = 0;
 			    // The number of the candidate test attributes with comparable Gain values
 			    int feasibleTestAttr= 0;
 
-				AttributeDelegate classAttributeDelegate = attributeDelegates[dataSet.getClassAttributeIndex()];
-				int gainIndex = 0;
 				int attrIndex = 0;
-				// Evaluate Gain and SplitInfo for each attribute
-			    for(AttributeDelegate attributeDelegate : attributeDelegates) {
+			    for(AttributeDelegate attributeDelegate : delegates) {
 			    	// Omit the unavailable attribute
 			    	if(!isCandidateTestAttr[attrIndex]) {
 			    		attrIndex ++;
 			    		continue;
 			    	}
 
-			    	/* Evaluate Gain and SplitInfo for each attribute
-			    	 * For discrete attributes, just evaluate its nominal values as the test branches
-			    	 * For continuous attributes, select the split test with the maximal Gain value
-			    	 */
-			    	float[] evaluation = attributeDelegate.evaluate(first, last, classAttributeDelegate);
-
-			    	// If the current attribute is valid as test attribute here
-			    	if(evaluation != null) {
-			    		gain[gainIndex] = evaluation[0];
-		            	splitInfo[gainIndex] = evaluation[1];
-		            	splitRank[gainIndex] = (int)evaluation[2];
-		            	preSplitRank[gainIndex] = (int)evaluation[3];
-			    	}
+			    	float gain = exact ? evaluations[attrIndex].getExactGain() : evaluations[attrIndex].getGain();
 
 			    	// If the current attribute is feasible
-		     		if(gain[gainIndex] > 0 && attributeDelegate.getBranchCount() < 0.3*(dataSet.getCaseCount() + 1)) {
+		     		if(gain > 0 && attributeDelegate.getBranchCount() < 0.3*(dataSet.getCaseCount() + 1)) {
 				    	// Increase the number of feasible test attributes
 				    	feasibleTestAttr ++;
 				    	// Prepare to compute the average Gain
-				    	averageGain += gain[gainIndex];
+				    	averageGain += gain;
 				    }
 
-				    gainIndex ++;
 				    attrIndex ++;
 			    }
 
@@ -499,57 +1224,96 @@ public class DecisionTree implements TreeClassifier {
 				// Ready to select the test attribute with the maximal GainRatio
 				float bestValue = -Parameter.EPSILON;
 				int bestAttrIndex = -1;
-				// If the test attribute is continuous, we need to record the two ranks which produce the split value
-				int winSplitIndex = -1, winPreSplitIndex = -1;
 
 				/* Select the best test attribute with the maximal GainRatio value
 				 * attrIndex records the index of the attributes
-				 * gainIndex records the index of the filled gain array  //
 				 */
-				gainIndex = 0;
-				attrIndex = 0;
-				Attribute testAttribute = null;
-				for(Attribute attribute : dataSet.getAttributes()) {
+				for(attrIndex = 0; attrIndex < evaluations.length; attrIndex ++) {
+					SplitEvaluation evaluation = evaluations[attrIndex];
 					// neglect the unavailable attributes
 					if(!isCandidateTestAttr[attrIndex]) {
-						attrIndex ++;
 						continue;
 					}
+					float gain = exact ? evaluation.getExactGain() : evaluation.getGain();
+					float splitInfo = exact ? evaluation.getExactSplitInfo() : evaluation.getSplitInfo();
 					// neglect the attributes with Gain less than 0
-					if(gain[gainIndex] <= -Parameter.EPSILON) {
-						gainIndex ++;
-						attrIndex ++;
+					if(gain <= -Parameter.EPSILON) {
 						continue;
 					}
 					// compute the GainRatio value for feasible candidate attributes
-					float gainRatio = GainCalculator.computeGainRatio(gain[gainIndex], splitInfo[gainIndex], averageGain);
+					float gainRatio = GainCalculator.computeGainRatio(gain, splitInfo, averageGain);
 
 					// Update the best attribute
 					if(gainRatio >= bestValue + Parameter.PRECISION) {
 						// Record the best test attribute index and its GainRatio value
 						bestAttrIndex = attrIndex;
 						bestValue = gainRatio;
-						testAttribute = attribute;
+					}
+				}
+				return bestAttrIndex;
+			}
 
-						// If the selected test attribute is continuous, record the split ranks as well
-						if(testAttribute instanceof ContinuousAttribute) {
-							winSplitIndex = splitRank[gainIndex];
-							winPreSplitIndex = preSplitRank[gainIndex];
+			/**
+			 * Get the name of the attribute of the specified index for the reports, "none" for -1.
+			 */
+			private String attributeName(int attrIndex) {
+				return attrIndex < 0 ? "none" : dataSet.getAttributes()[attrIndex].getName();
+			}
+
+			/**
+			 * Evaluate all the candidate test attributes on the specified data into the evaluations
+			 * of the builder, indexed by the attribute index. The evaluations of the unavailable
+			 * attributes are left as they are.
+			 * <p>
+			 * If a pool is provided and the tree node is large enough, the candidate attributes
+			 * are evaluated in parallel, otherwise one after another.
+			 * </p>
+			 * @param first the start(inclusive) index of the train data to be evaluated
+			 * @param last the end(exclusive) index of the train data to be evaluated
+			 * @param classAttributeDelegate the delegate of the class attribute
+			 */
+			private void evaluateCandidates(int first, int last, AttributeDelegate classAttributeDelegate) {
+				if(pool != null && (long)candidateTestAttrCount * (last - first) >= PARALLEL_EVALUATION_THRESHOLD) {
+					AttributeEvaluation evaluation = new AttributeEvaluation(delegates, isCandidateTestAttr,
+							classAttributeDelegate, first, last, evaluations, 0, delegates.length);
+					// Within a parallel tree construction, the evaluation is already in the pool
+					if(ForkJoinTask.inForkJoinPool()) evaluation.invoke();
+					else pool.invoke(evaluation);
+				}
+				else {
+					/* For discrete attributes, just evaluate its nominal values as the test branches
+					 * For continuous attributes, select the split test with the maximal Gain value
+					 */
+					for(int i = 0; i < delegates.length; i ++) {
+						if(isCandidateTestAttr[i]) {
+							delegates[i].evaluate(first, last, classAttributeDelegate, evaluations[i]);
 						}
 					}
-					gainIndex ++;
-					attrIndex ++;
 				}
-				// If no test attribute is selected
-				if(testAttribute != null) {
-					testAttrInfo[0] = bestAttrIndex;
-					// If the test attribute is continuous, record its cutRank
-					if(testAttribute instanceof ContinuousAttribute){
-						testAttrInfo[1] = attributeDelegates[bestAttrIndex].findCutRank(winSplitIndex, winPreSplitIndex);
-					}
-					// Return the test attribute object
+			}
+
+			/**
+			 * A task constructing the subtree on the [first, last) cases of the tree builder.
+			 */
+			class SubtreeConstruction extends RecursiveTask<TreeNode> {
+				private static final long serialVersionUID = 1L;
+				// The tree node of the previous tree to be updated, null to construct one
+				private final TreeNode previous;
+				private final int first, last;
+
+				SubtreeConstruction(int first, int last) {
+					this(null, first, last);
+				}
+
+				SubtreeConstruction(TreeNode previous, int first, int last) {
+					this.previous = previous;
+					this.first = first;
+					this.last = last;
+				}
+
+				protected TreeNode compute() {
+					return (previous == null) ? constructTreeNode(first, last) : updateTreeNode(previous, first, last);
 				}
-				return testAttribute;
 			}
 		}
 
@@ -560,6 +1324,7 @@ public class DecisionTree implements TreeClassifier {
 	 * Prune the built decision tree.
 	 */
 	public void prune(){
+		pruned = true;
 
 		class TreePruner {
 			// The sequence of the cases used for tree construction
@@ -572,32 +1337,57 @@ public class DecisionTree implements TreeClassifier {
 			 */
 			TreePruner() {
 				// ReInitialize the data sequence and their weight
-				int caseCount = dataSet.getCaseCount();
-				this.cases = new int[caseCount];
-				for(int i = 0; i < cases.length; i ++) cases[i] = i;
-				this.weight = new float[caseCount];
-				Arrays.fill(weight, 1.0f);
+				this.cases = createCases();
+				this.weight = createWeight();
+				int caseCount = cases.length;
+
+				// A tree restored from a model has no attribute delegates yet, nor the ranks of its cuts
+				if(attributeDelegates == null) {
+					if(presort == null) presort = new Presort(dataSet);
+					attributeDelegates = presort.share(cases, weight, getConfiguration().getMinWeight());
+					for(AttributeDelegate delegate : attributeDelegates) {
+						if(delegate instanceof ContinuousAttributeDelegate) ((ContinuousAttributeDelegate)delegate).releaseList();
+					}
+					referTests(root);
+				}
 
 				// Reset the cases and weight array of all attributes delegate objects
 				for(AttributeDelegate attributeDelegate : attributeDelegates){
 					attributeDelegate.setCasesWeight(cases, weight);
 				}
 
-				float errorAfterPrune = ebpPrune(root, 0, caseCount, true);
+				float errorAfterPrune = ebpPrune(root, 0, caseCount, true, true);
 			}
 
 			/**
 			 * Prune the decision tree from top to bottom with EBP strategy.
+			 * <p>
+			 * The tree nodes of the built tree keep the class distributions and the branch distributions
+			 * of their train data, which are the ones the pruning would compute again on the same cases.
+			 * So the actual pruning of the built tree takes the recorded distributions, and only partitions
+			 * the cases of a tree node among its branches if some child is an internal tree node, whose
+			 * subtree-raising is estimated on its cases. The subtree-raising of a leaf is estimated from
+			 * the class distribution of the raised tree node itself, since all its cases reach the leaf.<br>
+			 * The trial of subtree-raising, and the actual pruning of a raised subtree, route the cases
+			 * in another way, so they compute the distributions on the cases.
+			 * </p>
 			 * @param node the current tree node to be pruned
 			 * @param first the start(inclusive) index of the train data used for pruning.
 			 * @param last the end(exclusive) index of the train data used for pruning.
 			 * @param update whether the current pruning is a trial to retrieve the error
 			 *               after pruning (update = false) or an actual pruning (update = true).
+			 * @param recorded whether to prune with the distributions recorded on the tree nodes, only
+			 *               valid for an actual pruning of the tree nodes on the cases they are built with.
+			 *               The cases of a leaf are not needed then.
 			 * @return the estimated error after completing pruning the subtree started from
 			 *         the current tree node.
 			 */
-			private float ebpPrune (TreeNode node, int first, int last, boolean update) {
-				TreeNodeContent content = createContent(first, last, node);
+			private float ebpPrune (TreeNode node, int first, int last, boolean update, boolean recorded) {
+				// A tree restored from a model, or raised by an earlier pruning, may have no recorded branch distributions
+				if(node instanceof InternalNode && ((InternalNode)node).getBranchDistribution() == null) recorded = false;
+
+				TreeNodeContent content = recorded ? createContent(node.getContent().getTrainClassDistribution(), node)
+				                                   : createContent(first, last, node);
 				float estimatedLeafError = content.getErrorAsLeafNode();
 				// If this is an actual pruning instead of an error-estimation, reset the tree node information
 				if(update) node.setContent(content);
@@ -609,6 +1399,8 @@ public class DecisionTree implements TreeClassifier {
 				else {
 					internalNode = (InternalNode)node;
 				}
+				// The branch distribution is not valid after the cases are routed in another way
+				if(update && !recorded) internalNode.setBranchDistribution(null);
 
 				/* Begin to estimate the errors of each branch to get the errorAsInternalNode of the tree node */
 
@@ -619,80 +1411,98 @@ public class DecisionTree implements TreeClassifier {
 				// The maximal branch weight
 				float maxBranchWeight = 0;
 
-				// The index of the test attribute on the tree node
-				int testAttributeIndex = indexOf(internalNode.getTestAttribute().getName(), dataSet.getMetaData().getAttributeNames());
-				AttributeDelegate testAttributeDelegate = attributeDelegates[testAttributeIndex];
-				int testBranchCount = testAttributeDelegate.getBranchCount();
-
-				// Record the class weight distribution of the selected test attribute
-				float[] branchDistri = new float[testBranchCount+1];
-				/* 'missingBegin' records the begin index of the missing data if there is any,
-				 *                otherwise it coordinates with beginIndex;
-				 * 'groupBegin' records the begin index to group the cases for one branch
-				 * 'nextGroupBegin' records the begin index group the cases for next branch
-				 */
-				int missingBegin = first;
-				int groupBegin = first;
-
-				// Group the missing data to the most front
-				if(testAttributeDelegate.hasMissingData()) {
-					groupBegin = testAttributeDelegate.groupForward(first, last, -1, branchDistri);
-				}
-				// Classify the [first last) cases to the branches of the test attribute
-				// except for the last branch, to construct the children tree nodes
-				for(int index = 0; index < testBranchCount; index ++) {
-					// For a continuous attribute, the group criterion is cutRank;
-					// For a discrete attribute, the group criterion is the branch value(or index)
-					int split = testAttributeDelegate instanceof ContinuousAttributeDelegate ? internalNode.getCutRank() : index;
-
-					// For the first several branches, we need to group the specified branch values forward
-					// near "groupBegin" and compute its branch weight
-					int nextGroupBegin;
-					if(index < testBranchCount - 1){
-						nextGroupBegin = testAttributeDelegate.groupForward(groupBegin, last, split, branchDistri);
-					}
-					// For the last branch, the "nextGroupBegin" must be last and its branch weight must be
-					// the rest weight of the total weight.
-					else{
-						nextGroupBegin = last;
-						float lastWeight = content.getTrainWeight();
-						for(int j = 0; j < branchDistri.length-1; j ++) {
-							lastWeight -= branchDistri[j];
+				// Without internal children, the errors of the branches are all taken from the recorded distributions
+				if(recorded && !hasInternalChild(internalNode)) {
+					float[] branchDistri = internalNode.getBranchDistribution();
+					for(int index = 0; index < internalNode.getChildrenCount(); index ++) {
+						TreeNode child = internalNode.getChildAt(index);
+						// If there is no cases distributed in this branch, omit
+						if(child.getContent().getTrainClassDistribution() == null) continue;
+
+						estimatedTreeError += ebpPrune(child, first, last, true, true);
+						// Select the biggest branch with maximal weight for branchError estimation
+						if(branchDistri[index+1] > maxBranchWeight) {
+							maxBranchWeight = branchDistri[index+1];
+							maxBranch = index;
 						}
-						branchDistri[branchDistri.length-1] = lastWeight;
 					}
-
-					// If there is no cases distributed in this branch, omit
-					if(groupBegin == nextGroupBegin){
-						continue;
+				}
+				else {
+					// The index of the test attribute on the tree node
+					int testAttributeIndex = indexOf(internalNode.getTestAttribute().getName(), dataSet.getMetaData().getAttributeNames());
+					AttributeDelegate testAttributeDelegate = attributeDelegates[testAttributeIndex];
+					int testBranchCount = testAttributeDelegate.getBranchCount();
+
+					// Record the class weight distribution of the selected test attribute
+					float[] branchDistri = new float[testBranchCount+1];
+					/* 'missingBegin' records the begin index of the missing data if there is any,
+					 *                otherwise it coordinates with beginIndex;
+					 * 'groupBegin' records the begin index to group the cases for one branch
+					 * 'nextGroupBegin' records the begin index group the cases for next branch
+					 */
+					int missingBegin = first;
+					int groupBegin = first;
+
+					// Group the missing data to the most front
+					if(testAttributeDelegate.hasMissingData()) {
+						groupBegin = testAttributeDelegate.groupForward(first, last, -1, branchDistri);
 					}
-					// If there is missing data
-					else if(groupBegin > missingBegin){
-						// Compute the weight ratio of this branch
-			            float ratio = branchDistri[index+1]/(content.getTrainWeight() - branchDistri[0]);
-						// split the weight of the missing data with by multiplying the ratio
-			            for(int i = missingBegin; i < groupBegin; i ++) weight[cases[i]] *= ratio;
-
-			            // Accumulate the estimated errorAsInternalNode
-			            estimatedTreeError += ebpPrune(internalNode.getChildAt(index), missingBegin, nextGroupBegin, update);
+					// Classify the [first last) cases to the branches of the test attribute
+					// except for the last branch, to construct the children tree nodes
+					for(int index = 0; index < testBranchCount; index ++) {
+						// For a continuous attribute, the group criterion is cutRank;
+						// For a discrete attribute, the group criterion is the branch value(or index)
+						int split = testAttributeDelegate instanceof ContinuousAttributeDelegate ? internalNode.getCutRank() : index;
+
+						// For the first several branches, we need to group the specified branch values forward
+						// near "groupBegin" and compute its branch weight
+						int nextGroupBegin;
+						if(index < testBranchCount - 1){
+							nextGroupBegin = testAttributeDelegate.groupForward(groupBegin, last, split, branchDistri);
+						}
+						// For the last branch, the "nextGroupBegin" must be last and its branch weight must be
+						// the rest weight of the total weight.
+						else{
+							nextGroupBegin = last;
+							float lastWeight = content.getTrainWeight();
+							for(int j = 0; j < branchDistri.length-1; j ++) {
+								lastWeight -= branchDistri[j];
+							}
+							branchDistri[branchDistri.length-1] = lastWeight;
+						}
 
-			            // Restore the original sequence of the cases after the recursive construction
-				        missingBegin = testAttributeDelegate.groupBackward(missingBegin, nextGroupBegin);
-						// Restore the weight of the missing data with by dividing the ratio
-			            for(int i = missingBegin; i < nextGroupBegin; i ++) weight[cases[i]] /= ratio;
-					}
-					else{
-			            estimatedTreeError += ebpPrune(internalNode.getChildAt(index), missingBegin, nextGroupBegin, update);
-						//When there is no missing data, missingBegin moves together with groupBegin
-			        	missingBegin = nextGroupBegin;
-					}
-					// For next branch, group from nextGroupBegin index
-					groupBegin = nextGroupBegin;
+						// If there is no cases distributed in this branch, omit
+						if(groupBegin == nextGroupBegin){
+							continue;
+						}
+						// If there is missing data
+						else if(groupBegin > missingBegin){
+							// Compute the weight ratio of this branch
+				            float ratio = branchDistri[index+1]/(content.getTrainWeight() - branchDistri[0]);
+							// split the weight of the missing data with by multiplying the ratio
+				            for(int i = missingBegin; i < groupBegin; i ++) weight[cases[i]] *= ratio;
+
+				            // Accumulate the estimated errorAsInternalNode
+				            estimatedTreeError += ebpPrune(internalNode.getChildAt(index), missingBegin, nextGroupBegin, update, recorded);
+
+				            // Restore the original sequence of the cases after the recursive construction
+					        missingBegin = testAttributeDelegate.groupBackward(missingBegin, nextGroupBegin);
+							// Restore the weight of the missing data with by dividing the ratio
+				            for(int i = missingBegin; i < nextGroupBegin; i ++) weight[cases[i]] /= ratio;
+						}
+						else{
+				            estimatedTreeError += ebpPrune(internalNode.getChildAt(index), missingBegin, nextGroupBegin, update, recorded);
+							//When there is no missing data, missingBegin moves together with groupBegin
+				        	missingBegin = nextGroupBegin;
+						}
+						// For next branch, group from nextGroupBegin index
+						groupBegin = nextGroupBegin;
 
-					// Select the biggest branch with maximal weight for branchError estimation
-					if(branchDistri[index+1] > maxBranchWeight) {
-						maxBranchWeight = branchDistri[index+1];
-						maxBranch = index;
+						// Select the biggest branch with maximal weight for branchError estimation
+						if(branchDistri[index+1] > maxBranchWeight) {
+							maxBranchWeight = branchDistri[index+1];
+							maxBranch = index;
+						}
 					}
 				}
 
@@ -700,8 +1510,11 @@ public class DecisionTree implements TreeClassifier {
 				// Do not evaluate doubled subtree raising (i.e. subtree-raising of subtree-raising)
 				if(!update) return estimatedTreeError;
 
-				// Estimate the subtree-raising error
-				float estimatedBranchError = ebpPrune(internalNode.getChildAt(maxBranch), first, last, false);
+				// Estimate the subtree-raising error, of a leaf from the class distribution of the tree node
+				TreeNode maxChild = internalNode.getChildAt(maxBranch);
+				float estimatedBranchError = (maxChild instanceof LeafNode)
+					? createContent(content.getTrainClassDistribution(), maxChild).getErrorAsLeafNode()
+					: ebpPrune(maxChild, first, last, false, false);
 
 				TreeNode parent = (InternalNode)internalNode.getParent();
 				// Select a strategy with the minimal error
@@ -716,7 +1529,7 @@ public class DecisionTree implements TreeClassifier {
 					node = newNode;
 				}
 				else if(estimatedBranchError <= estimatedTreeError + 0.1) {
-					ebpPrune(internalNode.getChildAt(maxBranch), first, last, true);
+					ebpPrune(internalNode.getChildAt(maxBranch), first, last, true, false);
 					TreeNode newNode = node.getChildAt(maxBranch);
 					if(parent != null) {
 						int childIndex = parent.indexOfChild(internalNode);
@@ -733,6 +1546,16 @@ public class DecisionTree implements TreeClassifier {
 				return node.getTrainError();
 			}
 
+			/**
+			 * Query whether some child of the specified internal tree node is an internal tree node.
+			 */
+			private boolean hasInternalChild(InternalNode node) {
+				for(TreeNode child : node.getChildren()) {
+					if(child instanceof InternalNode) return true;
+				}
+				return false;
+			}
+
 			/**
 			 * Recreate a tree node content with the specified data based on the tree node's
 			 * existing content.
@@ -745,8 +1568,7 @@ public class DecisionTree implements TreeClassifier {
 			 * @return the recreated tree node content.
 			 */
 			private TreeNodeContent createContent(int first, int last, TreeNode node) {
-				// Compute the total weight and its class distribution of [first last) prune cases
-				float totalWeight = 0;
+				// Compute the class distribution of [first last) prune cases
 				AttributeDelegate classAttributeDelegate = attributeDelegates[dataSet.getClassAttributeIndex()];
 				float[] totalClassDistri = new float[dataSet.getClassCount()];
 		        Arrays.fill(totalClassDistri, 0);
@@ -755,6 +1577,22 @@ public class DecisionTree implements TreeClassifier {
 		        	totalClassDistri[classLabel] += weight[cases[i]];
 		        }
 
+		        return createContent(totalClassDistri, node);
+			}
+
+			/**
+			 * Recreate a tree node content with the specified class distribution of the prune data
+			 * based on the tree node's existing content.
+			 *
+			 * @param classDistri the class distribution of the prune data, which is kept by the created
+			 *              content, or <i>null</i> if there is no prune data.
+			 * @param node the tree node whose content need to be recreated.
+			 * @return the recreated tree node content.
+			 */
+			private TreeNodeContent createContent(float[] classDistri, TreeNode node) {
+				float totalWeight = 0;
+				float[] totalClassDistri = (classDistri == null) ? new float[dataSet.getClassCount()] : classDistri;
+
 				// Find the original classification of the tree node
 				String nodeClassification = node.getContent().getClassification();
 				String[] classValues = dataSet.getClassValues();
@@ -771,7 +1609,7 @@ public class DecisionTree implements TreeClassifier {
 
 				// Estimate the leafError of the tree node with the [first last) prune data
 				float basicLeafError = totalWeight - totalClassDistri[maxClassIndex];
-				float extraLeafError = Estimator.getExtraError(totalWeight, basicLeafError);
+				float extraLeafError = Estimator.getExtraError(totalWeight, basicLeafError, getConfiguration());
 				float estimatedLeafError = basicLeafError + extraLeafError;
 
 				return new TreeNodeContent(totalWeight, totalClassDistri, classification, estimatedLeafError);
@@ -781,6 +1619,56 @@ public class DecisionTree implements TreeClassifier {
 		TreePruner pruner = new TreePruner();
 	}
 
+	/**
+	 * A task evaluating the candidate test attributes within [begin, end) of the attribute
+	 * delegates on the same [first, last) cases.
+	 * <p>
+	 * The task is split in halves until only one attribute is left, so that the idle
+	 * workers can steal the evaluation of the other attributes.
+	 * </p>
+	 */
+	private static class AttributeEvaluation extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final AttributeDelegate[] attributeDelegates;
+		private final boolean[] isCandidateTestAttr;
+		private final AttributeDelegate classAttributeDelegate;
+		private final int first, last;
+		// Actually the output of the task, recording the evaluation result of each attribute
+		private final SplitEvaluation[] evaluations;
+		private final int begin, end;
+
+		AttributeEvaluation(AttributeDelegate[] attributeDelegates, boolean[] isCandidateTestAttr,
+				AttributeDelegate classAttributeDelegate, int first, int last,
+				SplitEvaluation[] evaluations, int begin, int end) {
+			this.attributeDelegates = attributeDelegates;
+			this.isCandidateTestAttr = isCandidateTestAttr;
+			this.classAttributeDelegate = classAttributeDelegate;
+			this.first = first;
+			this.last = last;
+			this.evaluations = evaluations;
+			this.begin = begin;
+			this.end = end;
+		}
+
+		protected void compute() {
+			// Evaluate the attribute directly when there is nothing left to split
+			if(end - begin <= 1) {
+				for(int i = begin; i < end; i ++) {
+					if(isCandidateTestAttr[i]) {
+						attributeDelegates[i].evaluate(first, last, classAttributeDelegate, evaluations[i]);
+					}
+				}
+				return;
+			}
+
+			int middle = (begin + end) >>> 1;
+			invokeAll(new AttributeEvaluation(attributeDelegates, isCandidateTestAttr, classAttributeDelegate,
+							first, last, evaluations, begin, middle),
+					  new AttributeEvaluation(attributeDelegates, isCandidateTestAttr, classAttributeDelegate,
+							first, last, evaluations, middle, end));
+		}
+	}
+
 	/**
 	 * Find the index of a String value in a String array.
 	 */
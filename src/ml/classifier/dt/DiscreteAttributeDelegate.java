@@ -4,7 +4,6 @@
 
 package ml.classifier.dt;
 
-import java.util.Arrays;
 import ml.dataset.DiscreteAttribute;
 
 /**
@@ -27,44 +26,47 @@ public class DiscreteAttributeDelegate extends AttributeDelegate {
 	 */
 	private float[] weight;
 	/**
-	 * The branch index of each train data's value on the corresponding attribute
+	 * The corresponding discrete attribute of the delegate.
+	 * The code of each train data's value on it is used as its branch index.
 	 */
-	private int[] branch;
+	private DiscreteAttribute attribute;
 	/**
-	 * The corresponding discrete attribute of the delegate
+	 * The codes of the train data on the attribute, 0 for missing data, read from the attribute
+	 * or kept elsewhere, such as in a memory-mapped file.
 	 */
-	private DiscreteAttribute attribute;
+	private IntColumn codes;
 
 	/**
 	 * Initialize a delegate for the specified discrete attribute.
 	 * <p>
-	 * The initialization of a discrete attribute delegate is a preprocessing
-	 * of the attribute values on the discrete attribute.<br>
-	 * It mainly extracts the branch indices of the attribute values according to their 
-	 * nominal values. <br>
+	 * The branch indices of the attribute values are the codes of the attribute values
+	 * according to their nominal values, so the initialization only checks whether there
+	 * is any missing data. <br>
 	 * Branch 0 is especially kept for the missing data.
 	 * </p>
 	 * @param attribute The corrsponding discrete attribute
 	 */
 	public DiscreteAttributeDelegate(DiscreteAttribute attribute) {
+		this(attribute, IntColumn.of(attribute));
+	}
+
+	/**
+	 * Initialize a delegate for the specified discrete attribute with the codes of its values
+	 * kept elsewhere, such as in a memory-mapped file.
+	 * @param attribute The corrsponding discrete attribute
+	 * @param codes the codes of the values of the attribute
+	 */
+	DiscreteAttributeDelegate(DiscreteAttribute attribute, IntColumn codes) {
 		super();
 
 		this.attribute = attribute;
-		// Determine the branch index of each data
-		String[] nominalValues = attribute.getNominalValues();
-		String[] data = attribute.getData();
-		this.branch = new int[data.length];
-		for(int i = 0; i < data.length; i ++) {
-			if(data[i].equals("?")){
-				branch[i] = 0;
-				setHasMissingData(true);
-			}
+		this.codes = codes;
+		int valueCount = codes.length();
+		for(int i = 0; i < valueCount; i ++) {
 			// branch 0 is kept for missing data
-			else{
-				for(int j = 0; j < nominalValues.length; j ++) {
-					if(nominalValues[j].equals(data[i]))
-						branch[i] = j+1;
-				}
+			if(codes.get(i) == DiscreteAttribute.MISSING_CODE){
+				setHasMissingData(true);
+				break;
 			}
 		}
 	}
@@ -75,40 +77,31 @@ public class DiscreteAttributeDelegate extends AttributeDelegate {
 	}
 
 	/**
-	 * @return If the attribute is evaluated as an invalid test attribute, then <i>null</i> is returned;<br>
-	 *         Otherwise, a 1-by-4 float array with<br>
-	 *         &nbsp;&nbsp;&nbsp; the 1<sup>st</sup> element recording the Gain,<br>
-	 *         &nbsp;&nbsp;&nbsp; the 2<sup>nd</sup> element recording the splitInfo and<br>
-	 *         &nbsp;&nbsp;&nbsp; the 3<sup>rd</sup> and 4<sup>th</sup> elements recording invalid indices
-	 *             to keep consistency with ContinuousAttributeDelegate.
+	 * A valid evaluation records invalid split ranks to keep consistency with ContinuousAttributeDelegate.
 	 *
 	 * @see ml.classifier.dt.GainCalculator
 	 */
-	public float[] evaluate(int first, int last, AttributeDelegate classAttributeDelegate) {
+	public boolean evaluate(int first, int last, AttributeDelegate classAttributeDelegate, SplitEvaluation evaluation) {
 		// This variable records the total weight of the [first last) cases
 		float totalWeight = 0.0f;
 		// Get the number of split branches if the corresponding attribute is evaluated as a test attribute
 		int branchCount = attribute.getNominalValuesCount();
 	    // This variable records the weight distribution of the [first last)
 	    // cases in different branches of the current attribute
-		float[] branchDistri = new float[branchCount+1];
+		// They are kept cleared by the workspace of the current thread
+		EvaluationWorkspace workspace = EvaluationWorkspace.get();
+		float[] branchDistri = workspace.getBranchDistribution(branchCount+1);
 		// This variable records the weight distribution of the [first last)
      	// cases in different classes of the different branches of the attribute
-		float[][] branchClassDistri = new float[branchCount+1][classAttributeDelegate.getBranchCount()];
+		float[][] branchClassDistri = workspace.getBranchClassDistribution(branchCount+1, classAttributeDelegate.getBranchCount());
 		// The minimal weight of the known cases
-		float minKnownWeight = Parameter.MINWEIGHT;
-
-		// Initialize branchDistri and branchClassDistri
-		Arrays.fill(branchDistri, 0);
- 		for(int i = 0; i < branchClassDistri.length; i ++) {
- 			Arrays.fill(branchClassDistri[i], 0f);
- 		}
+		float minKnownWeight = minWeight;
 
 		// Compute branchDistri and its branchClassDistri
 	    // Here branch index 0 means missing data
 		for(int i = first ; i < last; i ++)  {
 			totalWeight += weight[cases[i]];
- 			int branchIndex = branch[cases[i]];
+ 			int branchIndex = codes.get(cases[i]);
  			branchDistri[branchIndex] += weight[cases[i]];
  			// The class attribute has no missing value
  			int classLabel = classAttributeDelegate.getClassBranch(cases[i]);
@@ -119,26 +112,33 @@ public class DiscreteAttributeDelegate extends AttributeDelegate {
  		float knownWeight = totalWeight - branchDistri[0];
 		// If there is too much missing data on this attribute, return nothing
 		// to try the next attribute
-        if(knownWeight < 2 * minKnownWeight)
-        	return null;
+        if(knownWeight < 2 * minKnownWeight) {
+        	evaluation.invalidate();
+        	return false;
+        }
 
 		// Compute the ratio of the unknown weight
         float unknownRatio = branchDistri[0] / totalWeight;
 
-		// Construct the result array recording gain and splitInfo
-		float[] result = new float[4];
 		/**
 		 * Compute the entropy of the tree node as a Leaf
 		 * Then compute the gain and splitInfo of the tree node as an
 		 * InternalNode with the current attribute as its test attribute
 		 */
     	float stateEntropy = GainCalculator.computeStateEntropy(branchClassDistri, knownWeight);
-	    float gain = GainCalculator.computeGain(stateEntropy, branchDistri, branchClassDistri, unknownRatio);
+	    float gain = GainCalculator.computeGain(stateEntropy, branchDistri, branchClassDistri, unknownRatio, minWeight, false);
 		float splitInfo = GainCalculator.computeSplitInfo(branchDistri, totalWeight);
 
 		// The last two -1 are filled for the consistency output with ContinuousAttributeDelegate's evaluate
 		// It means there are no valid split ranks for discrete attribute
-		return new float[]{gain, splitInfo, -1, -1};
+		evaluation.set(gain, splitInfo, -1, -1);
+		// Evaluate the split with the exact math as well to verify the entropy kernels
+		if(EntropyKernel.isVerification()) {
+			float exactStateEntropy = GainCalculator.computeStateEntropy(branchClassDistri, knownWeight, true);
+			evaluation.setExact(GainCalculator.computeGain(exactStateEntropy, branchDistri, branchClassDistri, unknownRatio, minWeight, true),
+				GainCalculator.computeSplitInfo(branchDistri, totalWeight, true), -1, -1);
+		}
+		return true;
 	}
 
 	public int groupForward(int first, int last, int groupBranch, float[] branchDistri) {
@@ -147,11 +147,11 @@ public class DiscreteAttributeDelegate extends AttributeDelegate {
 
 		int i, j;
 		for(i = first, j = last - 1; i <= j; ) {
-			while(i <= j && branch[cases[i]] == branchIndex) {
+			while(i <= j && codes.get(cases[i]) == branchIndex) {
 				branchDistri[branchIndex] += weight[cases[i]];
 				i ++;
 			}
-			while(i <= j && branch[cases[j]] != branchIndex) {
+			while(i <= j && codes.get(cases[j]) != branchIndex) {
 				j --;
 			}
 
@@ -174,10 +174,10 @@ public class DiscreteAttributeDelegate extends AttributeDelegate {
 		int branchIndex = 0;
 
 		for(i = last-1, j = first; i >= j; ) {
-			while(i >= j && branch[cases[i]] == branchIndex) {
+			while(i >= j && codes.get(cases[i]) == branchIndex) {
 				i --;
 			}
-			while(i >= j && branch[cases[j]] != branchIndex) {
+			while(i >= j && codes.get(cases[j]) != branchIndex) {
 				j ++;
 			}
 
@@ -193,12 +193,19 @@ public class DiscreteAttributeDelegate extends AttributeDelegate {
 		return i + 1;
 	}
 
+	/**
+	 * @return the code of the value of the specified data, 0 for missing data
+	 */
+	public int findBranch(int caseIndex, int cutRank) {
+		return codes.get(caseIndex);
+	}
+
 	/**
 	 * Get the branch index of the class attribute value of the specified data. 
 	 */
 	public int getClassBranch(int caseIndex) {
 		//Class attribute never has missing data, therefore branch 0 is not valid
-		return branch[caseIndex]-1;
+		return codes.get(caseIndex)-1;
 	}
 
 	public int getBranchCount() {
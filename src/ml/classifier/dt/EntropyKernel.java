@@ -0,0 +1,148 @@
+/**
+ * @(#)EntropyKernel.java        1.6 26/10/18
+ */
+
+package ml.classifier.dt;
+
+/**
+ * The kernels of the entropy computations: the information n*log<sub>2</sub>(n) of a weight.
+ * <p>
+ * Every term of every entropy in the evaluation of a split is the information of a weight, so the
+ * kernels avoid the logarithm of the exact math, which takes most of the time of the threshold scan
+ * of a continuous attribute.
+ * <ul>
+ * <li>{@link Mode#TABLE TABLE}, the default, looks up the information of an integral weight in a
+ * precomputed table, which is the common case without missing data, and computes the information
+ * of a fractional weight with the exact math. The table is filled with the exact math itself, so the
+ * results and the built trees are exactly those of the exact math.</li>
+ * <li>{@link Mode#FAST FAST} also computes the logarithm of a fractional weight by interpolating a table
+ * of log<sub>2</sub> over the mantissa, whose error is below 2<sup>-21</sup>. It is an opt-in approximation,
+ * which may select another split where two splits are nearly as good.</li>
+ * <li>{@link Mode#EXACT EXACT} computes every logarithm with the exact math.</li>
+ * </ul>
+ * In the verification mode the attribute delegates evaluate every split with the exact math as well,
+ * and the tree builder throws an IllegalStateException once the kernels select another test attribute
+ * or another cut for a tree node.
+ * </p>
+ * <p>
+ * The mode and the verification are global settings, which are set before the trees are built, and
+ * must not change while any tree is being built.
+ * </p>
+ *
+ * @see ml.classifier.dt.GainCalculator
+ */
+public final class EntropyKernel {
+	/**
+	 * The ways the kernels compute the information of a weight.
+	 */
+	public enum Mode {EXACT, TABLE, FAST};
+
+	// The number of the integral weights whose information is precomputed
+	private static final int TABLE_SIZE = 1 << 16;
+	// The information of the integral weights, filled with the exact math
+	private static final float[] INFORMATION = new float[TABLE_SIZE];
+	// The number of the high bits of the mantissa indexing the table of log2
+	private static final int MANTISSA_BITS = 10;
+	private static final int FRACTION_BITS = 23 - MANTISSA_BITS;
+	private static final float FRACTION_SCALE = 1.0f / (1 << FRACTION_BITS);
+	// The log2 of 1 + i / 2^MANTISSA_BITS, for the interpolation of the logarithm of a mantissa
+	private static final float[] MANTISSA_LOG = new float[(1 << MANTISSA_BITS) + 1];
+
+	static {
+		for(int i = 0; i < TABLE_SIZE; i ++) {
+			INFORMATION[i] = i * GainCalculator.log(i);
+		}
+		for(int i = 0; i < MANTISSA_LOG.length; i ++) {
+			MANTISSA_LOG[i] = (float)(Math.log(1 + (double)i / (1 << MANTISSA_BITS)) / Math.log(2));
+		}
+	}
+
+	// The current mode and whether to verify the splits, set before the trees are built like the confidence level,
+	// volatile for the threads of a ForkJoinPool building the trees afterwards
+	private static volatile Mode mode = Mode.TABLE;
+	private static volatile boolean verification = false;
+
+	private EntropyKernel() {
+	}
+
+	/**
+	 * Get the way the kernels compute the information of a weight.
+	 */
+	public static Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Set the way the kernels compute the information of a weight, for the trees built afterwards.
+	 * Changing the mode while a tree is being built is unsupported, since the tree nodes built
+	 * before and after the change would be evaluated in different ways.
+	 */
+	public static void setMode(Mode mode) {
+		if(mode == null) {
+			throw new IllegalArgumentException("The mode must not be null");
+		}
+		EntropyKernel.mode = mode;
+	}
+
+	/**
+	 * Query whether the splits are verified against the exact math.
+	 */
+	public static boolean isVerification() {
+		return verification;
+	}
+
+	/**
+	 * Set whether to verify the splits against the exact math, for the trees built afterwards.
+	 * Changing it while a tree is being built is unsupported.
+	 */
+	public static void setVerification(boolean verification) {
+		EntropyKernel.verification = verification;
+	}
+
+	/**
+	 * Compute weight*log<sub>2</sub>(weight) in the current mode, 0 for a weight not above 0.
+	 */
+	static float information(float weight) {
+		Mode current = mode;
+		int n = (int)weight;
+		if(n == weight && n >= 0 && n < TABLE_SIZE) {
+			if(current != Mode.EXACT) return INFORMATION[n];
+		}
+		else if(current == Mode.FAST && weight > 0) {
+			return weight * fastLog(weight);
+		}
+		return weight * GainCalculator.log(weight);
+	}
+
+	/**
+	 * Compute weight*log<sub>2</sub>(weight) with the exact math, 0 for a weight not above 0.
+	 */
+	static float exactInformation(float weight) {
+		return weight * GainCalculator.log(weight);
+	}
+
+	/**
+	 * Compute log<sub>2</sub>(value) of a positive value, by interpolating the logarithm of its mantissa.
+	 * The error is below 2<sup>-21</sup>.
+	 */
+	static float fastLog(float value) {
+		int bits = Float.floatToRawIntBits(value);
+		int exponent = (bits >>> 23) & 0xFF;
+		// The subnormal values, the infinity and NaN
+		if(exponent == 0 || exponent == 0xFF) return GainCalculator.log(value);
+
+		int index = (bits & 0x7FFFFF) >>> FRACTION_BITS;
+		float fraction = (bits & ((1 << FRACTION_BITS) - 1)) * FRACTION_SCALE;
+		float low = MANTISSA_LOG[index];
+		return (exponent - 127) + low + fraction * (MANTISSA_LOG[index + 1] - low);
+	}
+
+	/**
+	 * Report a split selected by the kernels which is not the one selected by the exact math.
+	 * @throws IllegalStateException always
+	 */
+	static void mismatch(String split, Object selected, Object exact) {
+		throw new IllegalStateException("The " + mode + " entropy kernel selects the " + split + " " + selected
+			+ " instead of " + exact);
+	}
+}
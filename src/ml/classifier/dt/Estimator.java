@@ -23,41 +23,44 @@ public class Estimator {
 	private static final float[] confidenceLevels = {0f, 0.001f, 0.005f, 0.01f, 0.05f, 0.10f, 0.2f, 0.4f, 1.00f};
 	private static final float[] standardDeviations = {4.0f,  3.09f,  2.58f,  2.33f, 1.65f, 1.28f, 0.84f, 0.25f, 0.00f};
 
-	// The default CONFIDENCE and its corresponding squared standard deviation
-	private static float CONFIDENCE = Parameter.CONFIDENCE;
-	private static float SQUAREDSTD = Parameter.SQUAREDSTD;
-
  	private Estimator(){
  	}
 
 	/**
-	 * Get the pruning confidence level
+	 * Get the pruning confidence level of the default configuration
 	 */
 	public static float getConfidence(){
-		return CONFIDENCE;
+		return Configuration.getDefault().getConfidence();
 	}
 
 	/**
-	 * Set the pruning confidence level with the specified value.
+	 * Set the pruning confidence level of the default configuration with the specified value.
+	 * @see ml.classifier.dt.Configuration#setDefault(Configuration configuration)
 	 */
 	public static void setConfidence(float confidence) {
+		Configuration.setDefault(Configuration.getDefault().withConfidence(confidence));
+	}
+
+	/**
+	 * Compute the squared standard deviation corresponding to the specified confidence level.
+	 */
+	static float computeSquaredStd(float confidence) {
 		// Testify the validation of input argument
-		if(confidence < 0 || confidence > 1) {
+		if(!(confidence > 0 && confidence <= 1)) {
 			throw new IllegalArgumentException("Confidence level must belong to (0,1)");
 		}
-		CONFIDENCE = confidence;
 
-		// Find the index range that the specified CONFIDENCE belongs to
+		// Find the index range that the specified confidence belongs to
 		int i = 0;
-		while(CONFIDENCE > confidenceLevels[i]) {
+		while(confidence > confidenceLevels[i]) {
 			i ++;
 		}
 
-		// Interpolate the standard standardDeviations of the specified CONFIDENCE
+		// Interpolate the standard standardDeviations of the specified confidence
 		float std = standardDeviations[i-1] + (standardDeviations[i] - standardDeviations[i-1]) *
-		           (CONFIDENCE - confidenceLevels[i-1]) /(confidenceLevels[i] - confidenceLevels[i-1]);
+		           (confidence - confidenceLevels[i-1]) /(confidenceLevels[i] - confidenceLevels[i-1]);
 		// The squared value of std
-		SQUAREDSTD = std * std;
+		return std * std;
 	}
 
 	/**
@@ -69,21 +72,56 @@ public class Estimator {
 	 * @return The estimated extra error ratio of the data.
 	 */
 	public static float getExtraError(float totalWeight, float leafError) {
+		return getExtraError(totalWeight, leafError, Configuration.getDefault());
+	}
+
+	/**
+	 * Estimate the extra error ratio for the specified basic error ratio of the data,
+	 * with the confidence level of the specified configuration.
+	 *
+	 * @param totalWeight the total weight of data distributed on the tree node.
+	 * @param leafError the leaf error of the tree node when considered as a leaf node.
+	 * @param configuration the configuration of the pruned tree
+	 * @return The estimated extra error ratio of the data.
+	 */
+	public static float getExtraError(float totalWeight, float leafError, Configuration configuration) {
 		if(leafError < Parameter.PRECISION) {
-			return totalWeight * (1 - (float)Math.exp(Math.log(CONFIDENCE) / totalWeight));
+			return getZeroError(totalWeight, configuration);
 		}
 		else if (leafError < 1-Parameter.PRECISION) {
-			float val = totalWeight * (1 - (float)Math.exp(Math.log(CONFIDENCE) / totalWeight));
-			return val + leafError * (getExtraError(totalWeight, 1.0f) - val);
+			float val = getZeroError(totalWeight, configuration);
+			return val + leafError * (getExtraError(totalWeight, 1.0f, configuration) - val);
 		}
 		else if(leafError + 0.5f >= totalWeight) {
 			return 0.67f * (totalWeight - leafError);
 		}
 		else {
+			float SQUAREDSTD = configuration.getSquaredStd();
 			float Pr = (leafError + 0.5f + SQUAREDSTD/2 + (float)Math.sqrt(SQUAREDSTD * ((leafError + 0.5f)
 		        	 * (1 - (leafError + 0.5f)/totalWeight) + SQUAREDSTD/4))) / (totalWeight + SQUAREDSTD);
 		    return (totalWeight * Pr - leafError);
 		}
 	}
+
+	/**
+	 * Estimate the extra error of the data without leaf error, looked up for an integral weight
+	 * since it takes a logarithm and an exponential.
+	 */
+	private static float getZeroError(float totalWeight, Configuration configuration) {
+		float[] table = configuration.getZeroErrors();
+		int n = (int)totalWeight;
+		if(n == totalWeight && n >= 0 && n < table.length) {
+			float error = table[n];
+			if(error != error) {
+				error = table[n] = computeZeroError(totalWeight, configuration.getConfidence());
+			}
+			return error;
+		}
+		return computeZeroError(totalWeight, configuration.getConfidence());
+	}
+
+	private static float computeZeroError(float totalWeight, float confidence) {
+		return totalWeight * (1 - (float)Math.exp(Math.log(confidence) / totalWeight));
+	}
 }
 
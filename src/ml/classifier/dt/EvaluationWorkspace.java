@@ -0,0 +1,112 @@
+/**
+ * @(#)EvaluationWorkspace.java        1.6 26/10/18
+ */
+
+package ml.classifier.dt;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The arrays used by the evaluations of the attribute delegates in a thread.
+ * <p>
+ * The arrays are kept per thread rather than per attribute, so that several attributes can be
+ * evaluated at the same time by different workers, and reused by all the attributes and the tree
+ * nodes a thread evaluates, so that an evaluation allocates nothing once they are big enough.<br>
+ * The distributions are cleared when they are got, while the buckets and the bins are left cleared
+ * by every evaluation, since only the evaluation knows the small range it fills.
+ * </p>
+ *
+ * @see ml.classifier.dt.AttributeDelegate#evaluate(int first, int last, AttributeDelegate classAttributeDelegate, SplitEvaluation evaluation)
+ */
+final class EvaluationWorkspace {
+	private static final ThreadLocal<EvaluationWorkspace> workspaces = new ThreadLocal<EvaluationWorkspace>() {
+		protected EvaluationWorkspace initialValue() {
+			return new EvaluationWorkspace();
+		}
+	};
+
+	// The branch distributions and the class distributions of the branches, indexed by the number of the branches
+	private float[][] branchDistributions = new float[0][];
+	private float[][][] branchClassDistributions = new float[0][][];
+	// The buckets for bucket-sorting, left cleared by every evaluation
+	final BitSet buckets = new BitSet();
+	// The ranks of the known cases
+	private int[] ranks = new int[0];
+	// The weight and the class distribution of the bins, left cleared by every evaluation
+	private float[] binWeight = new float[0];
+	private float[] binClassDistribution = new float[0];
+
+	private EvaluationWorkspace() {
+	}
+
+	/**
+	 * Get the workspace of the current thread.
+	 */
+	static EvaluationWorkspace get() {
+		return workspaces.get();
+	}
+
+	/**
+	 * Get the cleared array for the weight distribution of the specified number of branches.
+	 */
+	float[] getBranchDistribution(int branchCount) {
+		if(branchDistributions.length <= branchCount) {
+			branchDistributions = Arrays.copyOf(branchDistributions, branchCount + 1);
+		}
+		float[] distribution = branchDistributions[branchCount];
+		if(distribution == null) {
+			distribution = branchDistributions[branchCount] = new float[branchCount];
+		}
+		else Arrays.fill(distribution, 0.0f);
+		return distribution;
+	}
+
+	/**
+	 * Get the cleared array for the class distribution of the specified number of branches.
+	 */
+	float[][] getBranchClassDistribution(int branchCount, int classCount) {
+		if(branchClassDistributions.length <= branchCount) {
+			branchClassDistributions = Arrays.copyOf(branchClassDistributions, branchCount + 1);
+		}
+		float[][] distribution = branchClassDistributions[branchCount];
+		if(distribution == null || distribution[0].length != classCount) {
+			distribution = branchClassDistributions[branchCount] = new float[branchCount][classCount];
+		}
+		else for(float[] row : distribution) Arrays.fill(row, 0.0f);
+		return distribution;
+	}
+
+	/**
+	 * Get the array for the ranks of the specified number of cases.
+	 */
+	int[] getRanks(int count) {
+		if(ranks.length < count) ranks = new int[Math.max(count, ranks.length + (ranks.length >> 1))];
+		return ranks;
+	}
+
+	/**
+	 * Get the cleared array for the weight of the specified number of bins.
+	 */
+	float[] getBinWeight(int count) {
+		if(binWeight.length < count) binWeight = new float[count];
+		return binWeight;
+	}
+
+	/**
+	 * Get the cleared array for the class distribution of the bins, of the specified length.
+	 */
+	float[] getBinClassDistribution(int length) {
+		if(binClassDistribution.length < length) binClassDistribution = new float[length];
+		return binClassDistribution;
+	}
+
+	/**
+	 * Clear the bins from minBin to maxBin (inclusive), the only ones an evaluation fills.
+	 */
+	void clearBins(int minBin, int maxBin, int classCount) {
+		if(minBin > maxBin) return;
+		Arrays.fill(binWeight, minBin, maxBin + 1, 0.0f);
+		Arrays.fill(binClassDistribution, minBin * classCount, (maxBin + 1) * classCount, 0.0f);
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * @(#)FloatColumn.java        1.6 26/10/18
+ */
+
+package ml.classifier.dt;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A read only column of floats processed by an attribute delegate, kept on the heap
+ * or in a memory-mapped file.
+ *
+ * @see ml.classifier.dt.IntColumn
+ */
+abstract class FloatColumn {
+	/**
+	 * Get the float at the specified index.
+	 */
+	abstract float get(int index);
+
+	/**
+	 * Get the number of the floats.
+	 */
+	abstract int length();
+
+	/**
+	 * Create a column of the specified array.
+	 */
+	static FloatColumn of(final float[] values) {
+		return new FloatColumn() {
+			float get(int index) {
+				return values[index];
+			}
+
+			int length() {
+				return values.length;
+			}
+		};
+	}
+
+	/**
+	 * Create a column of the floats in the mapped regions of a file, each float occupying 4 bytes
+	 * at the specified offset of its record.
+	 * @see ml.classifier.dt.IntColumn#map(ByteBuffer[] regions, int regionShift, int recordSize, int offset, int width, int length)
+	 */
+	static FloatColumn map(final ByteBuffer[] regions, final int regionShift, final int recordSize,
+			final int offset, final int length) {
+		final int mask = (1 << regionShift) - 1;
+		return new FloatColumn() {
+			float get(int index) {
+				return regions[index >>> regionShift].getFloat((index & mask) * recordSize + offset);
+			}
+
+			int length() {
+				return length;
+			}
+		};
+	}
+}
@@ -6,10 +6,14 @@ package ml.classifier.dt;
 
 /**
  * A calculator specifically used to compute Gain, GainRatio and Entropy criteria for different data distribution.
+ * <p>
+ * The information terms are computed by the entropy kernels in their current mode, unless the exact
+ * math is asked for, which the verification of the kernels does.
+ * </p>
  *
  * @author Ping He
  * @author Xiaohua Xu
-
+ * @see ml.classifier.dt.EntropyKernel
  */
 public class GainCalculator {
 
@@ -26,15 +30,24 @@ public class GainCalculator {
 	 * @return Gain value of the specified data distribution
 	 */
 	public static float computeGain(float stateEntropy, float[] branchDistribution, float[][] classDistribution, float unknownRatio) {
+		return computeGain(stateEntropy, branchDistribution, classDistribution, unknownRatio, Configuration.getDefault().getMinWeight(), false);
+	}
+
+	/**
+	 * Compute Gain for the specified data distribution, with the specified minimal weight of a reasonable
+	 * branch, and with the exact math if exact is true
+	 */
+	static float computeGain(float stateEntropy, float[] branchDistribution, float[][] classDistribution, float unknownRatio,
+			float minWeight, boolean exact) {
 		int reasonableSubset = 0;
      	for(int i = 1 ; i < branchDistribution.length; i ++) {
-    		if(branchDistribution[i] > Parameter.MINWEIGHT - Parameter.PRECISION) reasonableSubset ++;
+    		if(branchDistribution[i] > minWeight - Parameter.PRECISION) reasonableSubset ++;
     	}
 		if (reasonableSubset < 2) {
     		return -Parameter.EPSILON;
     	}
 
-		float x  = computeStandardEntropy(branchDistribution, classDistribution);
+		float x  = computeStandardEntropy(branchDistribution, classDistribution, exact);
 		float gain = (1 - unknownRatio) * (stateEntropy - x);
 
 		return gain;
@@ -48,6 +61,13 @@ public class GainCalculator {
 	 * @return Entropy of the specified data distribution
 	 */
  	public static float computeStateEntropy(float[][] classDistribution, float knownWeight) {
+ 		return computeStateEntropy(classDistribution, knownWeight, false);
+ 	}
+
+	/**
+	 * Compute Entropy of the specified data distribution, with the exact math if exact is true
+	 */
+ 	static float computeStateEntropy(float[][] classDistribution, float knownWeight, boolean exact) {
 
 		float informationSum = 0.0f;
 		for(int i = 0; i < classDistribution[0].length; i ++) {
@@ -55,10 +75,10 @@ public class GainCalculator {
 			for(int j = 1; j < classDistribution.length; j ++) {
 				classFrequency += classDistribution[j][i];
 			}
-			informationSum += classFrequency *log(classFrequency);
+			informationSum += information(classFrequency, exact);
 		}
 
-		return (knownWeight*log(knownWeight) - informationSum)/knownWeight;
+		return (information(knownWeight, exact) - informationSum)/knownWeight;
  	}
 
 	/**
@@ -68,7 +88,14 @@ public class GainCalculator {
 	 * @return splitInfo value of the data distribution
 	 */
  	public static float computeSplitInfo(float[] branchDistribution, float totalWeight) {
- 		return computeTotalInformation(branchDistribution, totalWeight)/totalWeight;
+ 		return computeSplitInfo(branchDistribution, totalWeight, false);
+ 	}
+
+	/**
+	 * Compute splitInfo for the specified data distribution, with the exact math if exact is true
+	 */
+ 	static float computeSplitInfo(float[] branchDistribution, float totalWeight, boolean exact) {
+ 		return computeTotalInformation(branchDistribution, totalWeight, exact)/totalWeight;
  	}
 
 	/**
@@ -77,14 +104,21 @@ public class GainCalculator {
 	 * @param totalWeight the total weight of all the cases
 	 * @return the splitInfo evaluation
 	 */
-	private static float computeTotalInformation(float[] branchDistribution, float totalWeight) {
+	private static float computeTotalInformation(float[] branchDistribution, float totalWeight, boolean exact) {
  		float informationSum = 0;
 		for(float frequency : branchDistribution)  {
-			informationSum += frequency *log(frequency);
+			informationSum += information(frequency, exact);
 		}
-		return totalWeight*log(totalWeight) - informationSum;
+		return information(totalWeight, exact) - informationSum;
  	}
 
+	/**
+	 * Compute weight*log<sub>2</sub>(weight) by the entropy kernels, or with the exact math if exact is true
+	 */
+	private static float information(float weight, boolean exact) {
+		return exact ? EntropyKernel.exactInformation(weight) : EntropyKernel.information(weight);
+	}
+
 	/**
 	 * Compute GainRatio for the provided Gain and splitInfo value
 	 * @param gain Gain of the data
@@ -112,12 +146,12 @@ public class GainCalculator {
 	 * @param classDistribution the weight distribution of the cases in different classes
 	 *        among each different branch value.
 	 */
-	private static float computeStandardEntropy(float[] branchDistribution, float[][] classDistribution) {
+	private static float computeStandardEntropy(float[] branchDistribution, float[][] classDistribution, boolean exact) {
 		float informationSum = 0.0f;
 		float knownWeight = 0f;
 
 		for(int i = 1; i < branchDistribution.length; i ++) {
-			float infoPart = (branchDistribution[i] == 0) ? 0 : computeTotalInformation(classDistribution[i], branchDistribution[i]);
+			float infoPart = (branchDistribution[i] == 0) ? 0 : computeTotalInformation(classDistribution[i], branchDistribution[i], exact);
 			informationSum += infoPart;
 		    knownWeight += branchDistribution[i];
 		}
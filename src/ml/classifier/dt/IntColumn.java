@@ -0,0 +1,90 @@
+/**
+ * @(#)IntColumn.java        1.6 26/10/18
+ */
+
+package ml.classifier.dt;
+
+import java.nio.ByteBuffer;
+import ml.dataset.DiscreteAttribute;
+
+/**
+ * A read only column of integers processed by an attribute delegate, kept on the heap
+ * or in a memory-mapped file.
+ *
+ * @see ml.classifier.dt.FloatColumn
+ * @see ml.classifier.dt.Presort#Presort(ml.dataset.DataSet dataSet, java.io.File directory, boolean attributeLists, int binCount)
+ */
+abstract class IntColumn {
+	/**
+	 * Get the integer at the specified index.
+	 */
+	abstract int get(int index);
+
+	/**
+	 * Get the number of the integers.
+	 */
+	abstract int length();
+
+	/**
+	 * Create a column of the specified array.
+	 */
+	static IntColumn of(final int[] values) {
+		return new IntColumn() {
+			int get(int index) {
+				return values[index];
+			}
+
+			int length() {
+				return values.length;
+			}
+		};
+	}
+
+	/**
+	 * Create a column of the codes of the specified discrete attribute.
+	 */
+	static IntColumn of(final DiscreteAttribute attribute) {
+		return new IntColumn() {
+			int get(int index) {
+				return attribute.getCode(index);
+			}
+
+			int length() {
+				return attribute.getValueCount();
+			}
+		};
+	}
+
+	/**
+	 * Create a column of the integers in the mapped regions of a file, each integer occupying
+	 * 1 or 4 bytes at the specified offset of its record.
+	 * @param regions the mapped regions, each holding the same number of records but the last
+	 * @param regionShift the binary logarithm of the number of the records in a region
+	 * @param recordSize the number of the bytes of a record
+	 * @param offset the offset of the integer in a record
+	 * @param width the width of the integer, 1 for an unsigned byte or 4
+	 * @param length the number of the records
+	 */
+	static IntColumn map(final ByteBuffer[] regions, final int regionShift, final int recordSize,
+			final int offset, int width, final int length) {
+		final int mask = (1 << regionShift) - 1;
+		if(width == 1) return new IntColumn() {
+			int get(int index) {
+				return regions[index >>> regionShift].get((index & mask) * recordSize + offset) & 0xFF;
+			}
+
+			int length() {
+				return length;
+			}
+		};
+		return new IntColumn() {
+			int get(int index) {
+				return regions[index >>> regionShift].getInt((index & mask) * recordSize + offset);
+			}
+
+			int length() {
+				return length;
+			}
+		};
+	}
+}
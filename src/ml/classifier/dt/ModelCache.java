@@ -0,0 +1,560 @@
+/**
+ * @(#)ModelCache.java        1.6 26/10/18
+ */
+
+package ml.classifier.dt;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import ml.dataset.Attribute;
+import ml.dataset.ContinuousAttribute;
+import ml.dataset.DataSet;
+import ml.dataset.DiscreteAttribute;
+import ml.dataset.MetaData;
+import ml.tree.InternalNode;
+import ml.tree.LeafNode;
+import ml.tree.TreeNode;
+import ml.tree.TreeNodeContent;
+
+/**
+ * An on-disk cache of the decision trees built and pruned on the data sets.
+ * <p>
+ * A tree is keyed by the fingerprint of its train data and of the parameters it is built with:
+ * the meta data and the typed columns of the data set in the order of its cases, the
+ * parameters of C4.5 and the number of the bins of the presort. A pruned tree is further keyed
+ * by the confidence level of the error estimation. The typed columns are fingerprinted instead
+ * of the input files, so that the trees of the folds of a cross validation, built on the views
+ * of a data set, are cached as well. A tree built on a view only takes its cuts from the cases
+ * of the view, but the quantile bins of a presort with approximate splits are taken from the
+ * whole columns, so those columns are part of the key of such a tree. The attribute lists and
+ * the pool build the same tree, so they are not part of the key.
+ * </p>
+ * <p>
+ * Each tree is kept in its own file (<i>key.tree</i>) in the cache directory, written into a
+ * temporary file first and then renamed. Once the files exceed the size bound of the cache,
+ * the least recently used ones are evicted, the use of a file being recorded by its
+ * modification time. A corrupted or mismatched file is taken as a miss.
+ * </p>
+ * <p>
+ * The cut ranks are not kept, since they depend on the presort; a restored tree finds them
+ * from the cut values when it is pruned or updated.
+ * </p>
+ *
+ * @see ml.classifier.dt.DecisionTree
+ */
+public class ModelCache {
+	// The magic number of the tree file, "C45T"
+	private static final int MAGIC = 0x43343554;
+	// The version of the tree file format and of the fingerprint
+	private static final int VERSION = 3;
+	// The suffix of the tree files
+	private static final String SUFFIX = ".tree";
+	/**
+	 * The default size bound of the cache, in bytes.
+	 */
+	public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+	// The directory of the tree files
+	private final File directory;
+	// The size bound of the tree files, in bytes
+	private final long maxBytes;
+	// The number of the trees loaded from the cache and the number of the trees missed
+	private final AtomicInteger hitCount = new AtomicInteger();
+	private final AtomicInteger missCount = new AtomicInteger();
+	// The fingerprints of the trees built or loaded by the cache, to key their pruning
+	private final Map<DecisionTree, byte[]> fingerprints =
+		Collections.synchronizedMap(new WeakHashMap<DecisionTree, byte[]>());
+
+	/**
+	 * Initialize a cache in the specified directory, with the default size bound.
+	 * @see #DEFAULT_MAX_BYTES
+	 */
+	public ModelCache(File directory) {
+		this(directory, DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * Initialize a cache in the specified directory.
+	 * @param directory the directory of the tree files, created if absent
+	 * @param maxBytes the size bound of the tree files, in bytes
+	 */
+	public ModelCache(File directory, long maxBytes) {
+		if(maxBytes <= 0) {
+			throw new IllegalArgumentException("Illegal size bound: " + maxBytes);
+		}
+		directory.mkdirs();
+		if(!directory.isDirectory()) {
+			throw new IllegalArgumentException("Not a directory: " + directory);
+		}
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Get the decision tree built with the specified data set and presort, loading it from the
+	 * cache, or building and storing it on a miss.
+	 * @param dataSet the data set to build the tree with
+	 * @param presort the presort of the data set, or <i>null</i> to prepare one when needed
+	 * @param pool the pool building the tree, or <i>null</i> to build it sequentially
+	 * @see ml.classifier.dt.DecisionTree#DecisionTree(DataSet dataSet, Presort presort, ForkJoinPool pool)
+	 */
+	public DecisionTree build(DataSet dataSet, Presort presort, ForkJoinPool pool) {
+		return build(dataSet, presort, pool, Configuration.getDefault());
+	}
+
+	/**
+	 * Build a decision tree with the specified configuration like
+	 * {@link #build(DataSet dataSet, Presort presort, ForkJoinPool pool)}.
+	 * @param configuration the parameter setting of the tree
+	 */
+	public DecisionTree build(DataSet dataSet, Presort presort, ForkJoinPool pool, Configuration configuration) {
+		int binCount = (presort == null) ? 0 : presort.getBinCount();
+		DecisionTree tree = load(dataSet, presort, binCount, pool, configuration);
+		if(tree == null) {
+			tree = new DecisionTree(dataSet, presort, pool, configuration);
+			store(tree);
+		}
+		return tree;
+	}
+
+	/**
+	 * Load the decision tree built with the specified data set and number of bins from the cache,
+	 * without preparing a presort unless the tree is pruned or updated.
+	 * @param dataSet the data set the tree was built with
+	 * @param binCount the number of the bins of the presort, or 0 for the exact presort
+	 * @param pool the pool updating the tree, or <i>null</i> to update it sequentially
+	 * @return the loaded tree, or <i>null</i> on a miss
+	 */
+	public DecisionTree load(DataSet dataSet, int binCount, ForkJoinPool pool) {
+		return load(dataSet, null, binCount, pool, Configuration.getDefault());
+	}
+
+	/**
+	 * Load the decision tree built with the specified data set, number of bins and configuration
+	 * like {@link #load(DataSet dataSet, int binCount, ForkJoinPool pool)}.
+	 * @param configuration the parameter setting the tree was built with
+	 */
+	public DecisionTree load(DataSet dataSet, int binCount, ForkJoinPool pool, Configuration configuration) {
+		return load(dataSet, null, binCount, pool, configuration);
+	}
+
+	private DecisionTree load(DataSet dataSet, Presort presort, int binCount, ForkJoinPool pool, Configuration configuration) {
+		byte[] fingerprint = fingerprint(dataSet, binCount, configuration);
+		TreeNode root = read(dataSet, fingerprint, false, configuration);
+		if(root == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+		DecisionTree tree = new DecisionTree(dataSet, presort, pool, root, false, configuration);
+		fingerprints.put(tree, fingerprint);
+		return tree;
+	}
+
+	/**
+	 * Store the specified decision tree, built but not pruned, into the cache.
+	 */
+	public void store(DecisionTree tree) {
+		if(tree.isPruned()) {
+			throw new IllegalArgumentException("The tree has been pruned");
+		}
+		if(tree.isWeighted()) {
+			throw new IllegalArgumentException("The tree built with the weight of its train data or on a subspace is not cached");
+		}
+		byte[] fingerprint = fingerprint(tree);
+		write(tree, fingerprint, false);
+	}
+
+	/**
+	 * Prune the specified decision tree, loading the pruned tree from the cache, or pruning it
+	 * and storing the pruned tree on a miss. A pruned tree is left as it is.
+	 * @see ml.classifier.dt.DecisionTree#prune()
+	 */
+	public void prune(DecisionTree tree) {
+		if(tree.isPruned()) return;
+		if(tree.isWeighted()) {
+			throw new IllegalArgumentException("The tree built with the weight of its train data or on a subspace is not cached");
+		}
+
+		byte[] fingerprint = fingerprint(tree);
+		TreeNode root = read(tree.getDataSet(), fingerprint, true, tree.getConfiguration());
+		if(root != null) {
+			hitCount.incrementAndGet();
+			tree.setPrunedRoot(root);
+			return;
+		}
+		missCount.incrementAndGet();
+		tree.prune();
+		write(tree, fingerprint, true);
+	}
+
+	/**
+	 * Get the number of the trees loaded from the cache.
+	 */
+	public int getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * Get the number of the trees missed by the cache.
+	 */
+	public int getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Get the directory of the cache.
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	public String toString() {
+		return "model cache : " + getHitCount() + " hits, " + getMissCount() + " misses";
+	}
+
+	/**
+	 * Get the fingerprint of the train data and the parameters of a built decision tree.
+	 */
+	private byte[] fingerprint(DecisionTree tree) {
+		byte[] fingerprint = fingerprints.get(tree);
+		if(fingerprint == null) {
+			Presort presort = tree.getPresort();
+			fingerprint = fingerprint(tree.getDataSet(), (presort == null) ? 0 : presort.getBinCount(), tree.getConfiguration());
+			fingerprints.put(tree, fingerprint);
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Compute the fingerprint of the specified data set and the parameters of tree building.
+	 */
+	private static byte[] fingerprint(DataSet dataSet, int binCount, Configuration configuration) {
+		Digest digest = new Digest();
+		digest.putInt(VERSION);
+
+		// The meta data
+		MetaData metaData = dataSet.getMetaData();
+		Attribute[] attributes = dataSet.getAttributes();
+		int caseCount = dataSet.getCaseCount();
+		digest.putInt(dataSet.getClassAttributeIndex());
+		digest.putInt(attributes.length);
+		digest.putInt(caseCount);
+		for(int i = 0; i < attributes.length; i ++) {
+			digest.putString(attributes[i].getName());
+			digest.putInt(metaData.isAttributeContinuousAt(i) ? 1 : 0);
+			if(!metaData.isAttributeContinuousAt(i)) {
+				String[] nominalValues = metaData.getAttributeNominalValuesAt(i);
+				digest.putInt(nominalValues.length);
+				for(String nominalValue : nominalValues) digest.putString(nominalValue);
+			}
+		}
+
+		// The typed columns in the order of the cases
+		for(Attribute attribute : attributes) {
+			if(attribute instanceof ContinuousAttribute) {
+				float[] values = ((ContinuousAttribute)attribute).getValues();
+				for(int i = 0; i < caseCount; i ++) digest.putInt(Float.floatToIntBits(values[dataSet.getCaseIndex(i)]));
+			}
+			else {
+				DiscreteAttribute discreteAttribute = (DiscreteAttribute)attribute;
+				for(int i = 0; i < caseCount; i ++) digest.putInt(discreteAttribute.getCode(dataSet.getCaseIndex(i)));
+			}
+		}
+
+		// The quantile bins are taken from the whole columns the data set views, not only from its cases
+		if(binCount > 0) {
+			for(Attribute attribute : attributes) {
+				if(!(attribute instanceof ContinuousAttribute)) continue;
+				float[] values = ((ContinuousAttribute)attribute).getValues();
+				digest.putInt(values.length);
+				for(float value : values) digest.putInt(Float.floatToIntBits(value));
+			}
+		}
+
+		// The parameters of tree building
+		digest.putInt(Float.floatToIntBits(Parameter.EPSILON));
+		digest.putLong(Double.doubleToLongBits(Parameter.PRECISION));
+		digest.putInt(Float.floatToIntBits(configuration.getMinWeight()));
+		digest.putInt(binCount);
+		// The exact and the table entropy kernels build the same trees, the fast one may not
+		digest.putInt(EntropyKernel.getMode() == EntropyKernel.Mode.FAST ? 1 : 0);
+		return digest.digest();
+	}
+
+	/**
+	 * Get the tree file of the specified fingerprint, of the built tree or of the tree pruned with the configuration.
+	 */
+	private File fileOf(byte[] fingerprint, boolean pruned, Configuration configuration) {
+		Digest digest = new Digest();
+		digest.put(fingerprint);
+		if(pruned) {
+			// The pruned tree further depends on the confidence level of the error estimation
+			digest.putInt(1);
+			digest.putInt(Float.floatToIntBits(configuration.getConfidence()));
+		}
+		else digest.putInt(0);
+
+		StringBuilder name = new StringBuilder();
+		for(byte b : digest.digest()) {
+			name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return new File(directory, name.append(SUFFIX).toString());
+	}
+
+	/**
+	 * Read the tree of the specified fingerprint, and refer its tests to the attributes of the data set.
+	 * @return the root of the tree, or <i>null</i> if the tree file is absent, corrupted or mismatched
+	 */
+	private TreeNode read(DataSet dataSet, byte[] fingerprint, boolean pruned, Configuration configuration) {
+		File file = fileOf(fingerprint, pruned, configuration);
+		if(!file.isFile()) return null;
+
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				byte[] recorded = new byte[fingerprint.length];
+				if(in.readInt() != MAGIC || in.readInt() != VERSION || in.readBoolean() != pruned) return null;
+				in.readFully(recorded);
+				if(!Arrays.equals(recorded, fingerprint)) return null;
+
+				TreeNode root = readNode(in, dataSet);
+				if(in.read() != -1) return null;
+
+				// Record the use of the tree file for the eviction
+				file.setLastModified(System.currentTimeMillis());
+				return root;
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch(IOException e) {
+			return null;
+		}
+		catch(RuntimeException e) {
+			// A corrupted tree file is simply built again
+			return null;
+		}
+	}
+
+	/**
+	 * Write the specified tree into its tree file, and evict the least recently used tree files
+	 * beyond the size bound.
+	 */
+	private void write(DecisionTree tree, byte[] fingerprint, boolean pruned) {
+		File file = fileOf(fingerprint, pruned, tree.getConfiguration());
+		File tempFile = null;
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeBoolean(pruned);
+			out.write(fingerprint);
+			writeNode(out, tree.getRoot(), tree.getDataSet().getMetaData().getAttributeNames());
+			out.close();
+
+			tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+			FileOutputStream stream = new FileOutputStream(tempFile);
+			try {
+				bytes.writeTo(stream);
+			}
+			finally {
+				stream.close();
+			}
+
+			try {
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch(AtomicMoveNotSupportedException e) {
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			tempFile = null;
+		}
+		catch(IOException e) {
+			System.err.println(e);
+		}
+		finally {
+			if(tempFile != null) tempFile.delete();
+		}
+		evict();
+	}
+
+	/**
+	 * Delete the least recently used tree files until the others are within the size bound.
+	 */
+	private synchronized void evict() {
+		File[] files = directory.listFiles();
+		if(files == null) return;
+
+		final long[] lastModified = new long[files.length];
+		Integer[] order = new Integer[files.length];
+		long totalBytes = 0;
+		for(int i = 0; i < files.length; i ++) {
+			order[i] = i;
+			if(!files[i].getName().endsWith(SUFFIX)) continue;
+			lastModified[i] = files[i].lastModified();
+			totalBytes += files[i].length();
+		}
+		if(totalBytes <= maxBytes) return;
+
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer i, Integer j) {
+				return Long.compare(lastModified[i], lastModified[j]);
+			}
+		});
+		for(int i = 0; i < order.length && totalBytes > maxBytes; i ++) {
+			File file = files[order[i]];
+			if(!file.getName().endsWith(SUFFIX)) continue;
+			// The file may have been evicted by another cache on the same directory
+			long length = file.length();
+			if(file.delete() || !file.exists()) totalBytes -= length;
+		}
+	}
+
+	/**
+	 * Write a tree node in pre-order.
+	 * <p>
+	 * A tree node is written as its kind (0 for a leaf, 1 for an internal tree node) and its
+	 * content, followed by the train error, the index of the test attribute, the cut, the
+	 * recorded branch distribution and the children of an internal tree node. An absent class
+	 * distribution or branch distribution is written as the length -1.
+	 * </p>
+	 */
+	private static void writeNode(DataOutputStream out, TreeNode node, String[] attributeNames) throws IOException {
+		TreeNodeContent content = node.getContent();
+		out.writeByte((node instanceof InternalNode) ? 1 : 0);
+		out.writeFloat(content.getTrainWeight());
+		// The class distribution of a tree node without cases is absent
+		float[] distribution = content.getTrainClassDistribution();
+		out.writeInt((distribution == null) ? -1 : distribution.length);
+		if(distribution != null) for(float weight : distribution) out.writeFloat(weight);
+		out.writeUTF(content.getClassification());
+		out.writeFloat(content.getErrorAsLeafNode());
+		if(!(node instanceof InternalNode)) return;
+
+		InternalNode internalNode = (InternalNode)node;
+		out.writeFloat(internalNode.getTrainError());
+		out.writeInt(Arrays.asList(attributeNames).indexOf(internalNode.getTestAttribute().getName()));
+		out.writeFloat(internalNode.getCut());
+		float[] branchDistribution = internalNode.getBranchDistribution();
+		out.writeInt((branchDistribution == null) ? -1 : branchDistribution.length);
+		if(branchDistribution != null) for(float weight : branchDistribution) out.writeFloat(weight);
+		for(TreeNode child : internalNode.getChildren()) {
+			writeNode(out, child, attributeNames);
+		}
+	}
+
+	/**
+	 * Read a tree node written by {@link #writeNode(DataOutputStream, TreeNode, String[])},
+	 * with its test referring to the attributes of the data set.
+	 */
+	private static TreeNode readNode(DataInputStream in, DataSet dataSet) throws IOException {
+		int kind = in.readByte();
+		float trainWeight = in.readFloat();
+		int classCount = in.readInt();
+		float[] distribution = null;
+		if(classCount >= 0) {
+			if(classCount != dataSet.getClassCount()) {
+				throw new IOException("Mismatched class distribution");
+			}
+			distribution = new float[classCount];
+			for(int i = 0; i < classCount; i ++) distribution[i] = in.readFloat();
+		}
+		String classification = in.readUTF();
+		float errorAsLeaf = in.readFloat();
+		TreeNodeContent content = new TreeNodeContent(trainWeight, distribution, classification, errorAsLeaf);
+		if(kind == 0) return new LeafNode(content);
+
+		float trainError = in.readFloat();
+		int testAttributeIndex = in.readInt();
+		if(kind != 1 || testAttributeIndex == dataSet.getClassAttributeIndex()) {
+			throw new IOException("Corrupted tree node");
+		}
+		InternalNode node = new InternalNode(content, dataSet.getAttributes()[testAttributeIndex]);
+		node.setCut(in.readFloat());
+		int branchCount = in.readInt();
+		if(branchCount >= 0) {
+			if(branchCount != node.getChildrenCount() + 1) {
+				throw new IOException("Mismatched branch distribution");
+			}
+			float[] branchDistribution = new float[branchCount];
+			for(int i = 0; i < branchCount; i ++) branchDistribution[i] = in.readFloat();
+			node.setBranchDistribution(branchDistribution);
+		}
+		for(int i = 0; i < node.getChildrenCount(); i ++) {
+			node.addChild(readNode(in, dataSet));
+		}
+		node.setTrainError(trainError);
+		return node;
+	}
+
+	/**
+	 * A SHA-256 digest fed through a buffer.
+	 */
+	private static class Digest {
+		private final MessageDigest digest;
+		private final ByteBuffer buffer = ByteBuffer.allocate(1 << 13);
+
+		Digest() {
+			try {
+				this.digest = MessageDigest.getInstance("SHA-256");
+			}
+			catch(NoSuchAlgorithmException e) {
+				// Every Java platform supports SHA-256
+				throw new IllegalStateException(e);
+			}
+		}
+
+		void putInt(int value) {
+			if(buffer.remaining() < 4) flush();
+			buffer.putInt(value);
+		}
+
+		void putLong(long value) {
+			if(buffer.remaining() < 8) flush();
+			buffer.putLong(value);
+		}
+
+		void putString(String value) {
+			putInt(value.length());
+			for(int i = 0; i < value.length(); i ++) putInt(value.charAt(i));
+		}
+
+		void put(byte[] bytes) {
+			flush();
+			digest.update(bytes);
+		}
+
+		byte[] digest() {
+			flush();
+			return digest.digest();
+		}
+
+		private void flush() {
+			buffer.flip();
+			digest.update(buffer);
+			buffer.clear();
+		}
+	}
+}
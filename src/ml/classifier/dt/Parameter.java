@@ -6,9 +6,14 @@ package ml.classifier.dt;
 
 /**
  * The default parameter setting in the implementation of C4.5 algorithm
+ * <p>
+ * MINWEIGHT and CONFIDENCE are the setting of the default configuration, which a tree
+ * built with its own configuration overrides.
+ * </p>
  *
  * @author Ping He
  * @author Xiaohua Xu
+ * @see ml.classifier.dt.Configuration
  */
 
 public class Parameter {
@@ -29,8 +34,9 @@ public class Parameter {
 	 * The default confidence level in c4.5's error-based pruning. 
 	 * <p>
 	 * CONFIDENCE must be changed together with SQUAREDSTD parameter.
-	 * The setConfidence(float confidence) method in ml.classifier.dt.Estimator  
-	 * can be used to reset confidence and its corresponding SQUAREDSTD.
+	 * A ml.classifier.dt.Configuration computes the SQUAREDSTD of its own confidence,
+	 * and the setConfidence(float confidence) method in ml.classifier.dt.Estimator  
+	 * can be used to reset the confidence of the default configuration.
 	 * </p>
 	 */
 	public static final float CONFIDENCE = 0.25f;
@@ -38,11 +44,19 @@ public class Parameter {
 	 * The default squared standard deviation value corresponding to the default CONFIDENCE.
 	 * <p>
 	 * SQUAREDSTD must be changed together with CONFIDENCE parameter.
-	 * The setConfidence(float confidence) method in ml.classifier.dt.Estimator  
-	 * can be used to reset confidence and its corresponding SQUAREDSTD.
+	 * A ml.classifier.dt.Configuration computes the SQUAREDSTD of its own confidence,
+	 * and the setConfidence(float confidence) method in ml.classifier.dt.Estimator  
+	 * can be used to reset the confidence of the default configuration.
 	 * </p>
 	 */
 	public static final float SQUAREDSTD = 0.47955623f;
+
+	/**
+	 * The default ratio by which the weight of a tree node may change in the updates of a tree
+	 * before its test is selected again.
+	 * @see ml.classifier.dt.DecisionTree#update(ml.dataset.DataSet dataSet, float tolerance)
+	 */
+	public static final float UPDATETOLERANCE = 0.05f;
 	
 	private Parameter(){
 	}
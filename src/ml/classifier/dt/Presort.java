@@ -0,0 +1,327 @@
+/**
+ * @(#)Presort.java        1.6 26/10/18
+ */
+
+package ml.classifier.dt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import ml.dataset.Attribute;
+import ml.dataset.ContinuousAttribute;
+import ml.dataset.DataSet;
+import ml.dataset.DiscreteAttribute;
+
+/**
+ * The attribute delegates of a data set, prepared once and shared by all the decision trees
+ * built on the views of the data set.
+ * <p>
+ * The delegates of the continuous attributes hold the attribute values gathered in the order
+ * of the presort of the whole data set. A subset of a sorted sequence is still sorted, and the
+ * delegates evaluate any subset of the cases by their ranks in the whole data set, so the trees
+ * of all the folds and repeats of a cross validation can be built on one presort, instead of
+ * sorting and gathering every continuous attribute again for each tree.<br>
+ * The delegates are read only during tree building, so a presort can be shared by
+ * trees built at the same time.
+ * </p>
+ * <p>
+ * A presort with attribute lists builds the trees in the manner of SPRINT: the tree being built
+ * keeps the cases of each tree node in the order of each continuous attribute, and partitions
+ * the attribute lists stably among the children when the tree node splits, so each child inherits
+ * sorted lists and no tree node sorts its cases. It costs an attribute list per continuous attribute
+ * and the partitioned lists of the tree nodes being constructed, and pays off on tall deep trees,
+ * whose lower tree nodes have too few cases for the bucket sort over the whole range of ranks.
+ * Both ways select the same test attributes and cuts, so the built trees are identical.
+ * </p>
+ * <p>
+ * A presort with approximate splits divides the known values of each continuous attribute into
+ * quantile bins, and the trees only try the cuts between the bins. Each tree node then scans the
+ * class distributions of the bins instead of its sorted cases, at the cost of thresholds which
+ * may differ from the exact ones of C4.5.
+ * </p>
+ * <p>
+ * An out-of-core presort keeps the processed information of the delegates in a memory-mapped file
+ * instead of the heap, so the page cache of the operating system holds as much of it as the memory
+ * affords. The file is laid out for the access patterns of tree building: the values and the case
+ * ids of a continuous attribute are interleaved in the order of the ranks, so the scan of the sorted
+ * cases reads both from the same page, the ranks of the cases are kept in a column scanned together
+ * with the weight, and the codes of a discrete attribute take a single byte unless there are more
+ * than 255 nominal values.
+ * </p>
+ *
+ * @see ml.classifier.dt.DecisionTree#DecisionTree(DataSet dataSet, Presort presort, java.util.concurrent.ForkJoinPool pool)
+ * @see ml.dataset.DataSetView
+ */
+public class Presort {
+	// The attributes whose delegates are prepared
+	private final Attribute[] attributes;
+	// The delegates of the attributes
+	private final AttributeDelegate[] delegates;
+	// Whether the trees keep attribute lists of the continuous attributes
+	private final boolean attributeLists;
+	// The maximal number of the quantile bins of each continuous attribute, 0 for exact splits
+	private final int binCount;
+
+	// The binary logarithm of the maximal number of bytes mapped as a region
+	private static final int REGION_SHIFT = 30;
+	// The maximal number of bytes buffered at a time when writing the mapped file
+	private static final int BLOCK_SIZE = 1 << 22;
+
+	/**
+	 * Prepare the attribute delegates of the specified data set.
+	 */
+	public Presort(DataSet dataSet) {
+		this(dataSet, false, 0);
+	}
+
+	/**
+	 * Prepare the attribute delegates of the specified data set, for the trees sorting the cases
+	 * of each tree node or the trees keeping attribute lists.
+	 * @param dataSet the data set to be presorted
+	 * @param attributeLists whether the trees keep attribute lists instead of sorting the cases
+	 *        of each tree node
+	 */
+	public Presort(DataSet dataSet, boolean attributeLists) {
+		this(dataSet, attributeLists, 0);
+	}
+
+	/**
+	 * Prepare the attribute delegates of the specified data set, for the trees trying only the cuts
+	 * between at most the specified number of quantile bins of each continuous attribute.
+	 * @param dataSet the data set to be presorted
+	 * @param binCount the maximal number of the bins of each continuous attribute, or 0 to try
+	 *        the cuts between all the distinct values
+	 */
+	public Presort(DataSet dataSet, int binCount) {
+		this(dataSet, false, binCount);
+	}
+
+	/**
+	 * Prepare the attribute delegates of the specified data set out of core, keeping their processed
+	 * information in a memory-mapped file in the specified directory. The file is deleted as soon as
+	 * it is mapped, or on exit where a mapped file can not be deleted.
+	 * @param dataSet the data set to be presorted
+	 * @param directory the directory of the mapped file, or <i>null</i> for the temporary directory
+	 * @param attributeLists whether the trees keep attribute lists instead of sorting the cases
+	 *        of each tree node
+	 * @param binCount the maximal number of the bins of each continuous attribute, or 0 to try
+	 *        the cuts between all the distinct values
+	 * @throws IOException if the mapped file can not be written
+	 */
+	public Presort(DataSet dataSet, File directory, boolean attributeLists, int binCount) throws IOException {
+		this.attributeLists = attributeLists;
+		this.binCount = checkBinCount(binCount);
+		this.attributes = dataSet.getAttributes();
+		this.delegates = map(directory);
+	}
+
+	private Presort(DataSet dataSet, boolean attributeLists, int binCount) {
+		this.attributeLists = attributeLists;
+		this.binCount = checkBinCount(binCount);
+		this.attributes = dataSet.getAttributes();
+		this.delegates = new AttributeDelegate[attributes.length];
+		for(int i = 0; i < attributes.length; i ++) {
+			if(attributes[i] instanceof ContinuousAttribute && binCount > 0)
+				delegates[i] = new ContinuousAttributeDelegate((ContinuousAttribute)attributes[i], binCount);
+			else if(attributes[i] instanceof ContinuousAttribute)
+				delegates[i] = new ContinuousAttributeDelegate((ContinuousAttribute)attributes[i]);
+			else
+				delegates[i] = new DiscreteAttributeDelegate((DiscreteAttribute)attributes[i]);
+		}
+	}
+
+	private static int checkBinCount(int binCount) {
+		if(binCount < 0) {
+			throw new IllegalArgumentException("Illegal number of bins: " + binCount);
+		}
+		return binCount;
+	}
+
+	/**
+	 * Write the processed information of the attributes into a file in the specified directory,
+	 * and create the delegates reading it from the mapped file.
+	 */
+	private AttributeDelegate[] map(File directory) throws IOException {
+		AttributeDelegate[] mappedDelegates = new AttributeDelegate[attributes.length];
+		File file = File.createTempFile("presort", ".map", directory);
+		try {
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+			try {
+				FileChannel channel = randomAccessFile.getChannel();
+				ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_SIZE).order(ByteOrder.nativeOrder());
+				long position = 0;
+				for(int i = 0; i < attributes.length; i ++) {
+					int length = attributes[i].getValueCount();
+					if(attributes[i] instanceof ContinuousAttribute) {
+						ContinuousAttribute attribute = (ContinuousAttribute)attributes[i];
+						float[] values = attribute.getValues();
+						// The presort lives only in the mapped file: it is computed for the write, and the one
+						// the attribute may hold, such as loaded from a data cache, is released
+						int[][] presort = attribute.sort();
+						attribute.setPresort(null, null);
+						int[] sortedIds = presort[0];
+						int[] ranks = presort[1];
+
+						// The values and the case ids interleaved in the order of the ranks
+						for(int j = 0; j < length; j ++) {
+							if(buffer.remaining() < 8) position = flush(channel, buffer, position);
+							float value = values[sortedIds[j]];
+							buffer.putFloat(Float.isNaN(value) ? Float.NEGATIVE_INFINITY : value).putInt(sortedIds[j]);
+						}
+						long sortedPosition = position;
+						position = flush(channel, buffer, position);
+						ByteBuffer[] sorted = mapRegions(channel, sortedPosition, length, 8);
+
+						// The ranks of the cases
+						for(int j = 0; j < length; j ++) {
+							if(buffer.remaining() < 4) position = flush(channel, buffer, position);
+							buffer.putInt(ranks[j]);
+						}
+						long rankPosition = position;
+						position = flush(channel, buffer, position);
+						ByteBuffer[] rank = mapRegions(channel, rankPosition, length, 4);
+
+						ContinuousAttributeDelegate delegate = new ContinuousAttributeDelegate(
+								FloatColumn.map(sorted, REGION_SHIFT - 3, 8, 0, length),
+								IntColumn.map(sorted, REGION_SHIFT - 3, 8, 4, 4, length),
+								IntColumn.map(rank, REGION_SHIFT - 2, 4, 0, 4, length));
+						if(binCount > 0) delegate.createBins(binCount);
+						mappedDelegates[i] = delegate;
+					}
+					else {
+						DiscreteAttribute attribute = (DiscreteAttribute)attributes[i];
+						int width = (attribute.getNominalValuesCount() <= 0xFF) ? 1 : 4;
+						for(int j = 0; j < length; j ++) {
+							if(buffer.remaining() < width) position = flush(channel, buffer, position);
+							if(width == 1) buffer.put((byte)attribute.getCode(j));
+							else buffer.putInt(attribute.getCode(j));
+						}
+						long codePosition = position;
+						position = flush(channel, buffer, position);
+						ByteBuffer[] codes = mapRegions(channel, codePosition, length, width);
+
+						int shift = (width == 1) ? REGION_SHIFT : REGION_SHIFT - 2;
+						mappedDelegates[i] = new DiscreteAttributeDelegate(attribute,
+								IntColumn.map(codes, shift, width, 0, width, length));
+					}
+				}
+			}
+			finally {
+				randomAccessFile.close();
+			}
+		}
+		finally {
+			// A mapped file stays readable once deleted, but can not be deleted on some platforms
+			if(!file.delete()) file.deleteOnExit();
+		}
+		return mappedDelegates;
+	}
+
+	/**
+	 * Write the buffered bytes at the specified position of the file.
+	 * @return the position following the written bytes
+	 */
+	private static long flush(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+		buffer.clear();
+		return position;
+	}
+
+	/**
+	 * Map the records of a column from the specified position of the file, in regions of at most
+	 * 2<sup>REGION_SHIFT</sup> bytes.
+	 * @param length the number of the records
+	 * @param recordSize the number of the bytes of a record, a power of 2
+	 */
+	private static ByteBuffer[] mapRegions(FileChannel channel, long position, int length, int recordSize) throws IOException {
+		int recordsPerRegion = (1 << REGION_SHIFT) / recordSize;
+		ByteBuffer[] regions = new ByteBuffer[Math.max(1, (int)((length + (long)recordsPerRegion - 1) / recordsPerRegion))];
+		for(int r = 0; r < regions.length; r ++) {
+			long size = Math.min(recordsPerRegion, length - (long)r * recordsPerRegion) * recordSize;
+			regions[r] = channel.map(FileChannel.MapMode.READ_ONLY, position + (long)r * recordsPerRegion * recordSize,
+					size).order(ByteOrder.nativeOrder());
+		}
+		return regions;
+	}
+
+	/**
+	 * Query whether the presort is prepared on the typed columns of the specified data set,
+	 * <i>ie</i> whether the data set is the presorted data set or a view of it.
+	 */
+	public boolean covers(DataSet dataSet) {
+		return dataSet.getAttributes() == attributes;
+	}
+
+	/**
+	 * Query whether the trees keep attribute lists of the continuous attributes.
+	 */
+	public boolean usesAttributeLists() {
+		return attributeLists;
+	}
+
+	/**
+	 * Get the maximal number of the quantile bins of each continuous attribute, 0 for exact splits.
+	 */
+	public int getBinCount() {
+		return binCount;
+	}
+
+	/**
+	 * Create the delegates of a tree, sharing the prepared delegates but working on the specified
+	 * sequence and weight of the data, with the attribute lists of the cases if the trees keep them.
+	 */
+	AttributeDelegate[] share(int[] cases, float[] weight) {
+		return share(cases, weight, Configuration.getDefault().getMinWeight());
+	}
+
+	/**
+	 * Create the delegates of a tree like {@link #share(int[] cases, float[] weight)}, with the
+	 * minimal weight of the configuration of the tree.
+	 * <p>
+	 * If the cases are only a part of the presorted data set, such as the train data of a fold of
+	 * a cross validation or the drawn cases of a bootstrap sample, the delegates are told which cases
+	 * are the train data, so that the cuts are the values of the train data alone, as if the train
+	 * data were presorted by themselves.
+	 * </p>
+	 */
+	AttributeDelegate[] share(int[] cases, float[] weight, float minWeight) {
+		boolean[] isTrainData = findTrainData(cases, weight.length);
+		AttributeDelegate[] shared = new AttributeDelegate[delegates.length];
+		for(int i = 0; i < delegates.length; i ++) {
+			shared[i] = delegates[i].share(cases, weight);
+			shared[i].setMinWeight(minWeight);
+			if(shared[i] instanceof ContinuousAttributeDelegate) {
+				((ContinuousAttributeDelegate)shared[i]).setTrainData(isTrainData);
+			}
+			if(attributeLists && shared[i] instanceof ContinuousAttributeDelegate) {
+				((ContinuousAttributeDelegate)shared[i]).createList();
+			}
+		}
+		return shared;
+	}
+
+	/**
+	 * Mark the specified cases among all the cases of the presorted data set, in linear time.
+	 * @param cases the cases of a tree
+	 * @param columnLength the number of all the cases of the presorted data set
+	 * @return whether each case of the presorted data set is one of the cases, or <i>null</i> if
+	 *         all of them are
+	 */
+	private static boolean[] findTrainData(int[] cases, int columnLength) {
+		boolean[] isTrainData = new boolean[columnLength];
+		int count = 0;
+		for(int caseIndex : cases) {
+			if(!isTrainData[caseIndex]) {
+				isTrainData[caseIndex] = true;
+				count ++;
+			}
+		}
+		return (count == columnLength) ? null : isTrainData;
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * @(#)SplitEvaluation.java        1.6 26/10/18
+ */
+
+package ml.classifier.dt;
+
+/**
+ * The evaluation of an attribute as the test attribute of a tree node.
+ * <p>
+ * An evaluation record is filled by the attribute delegates in place, so that a tree builder
+ * can reuse the same records for all the tree nodes it constructs.
+ * </p>
+ *
+ * @see ml.classifier.dt.AttributeDelegate#evaluate(int first, int last, AttributeDelegate classAttributeDelegate, SplitEvaluation evaluation)
+ */
+public final class SplitEvaluation {
+	// Whether the attribute is valid as a test attribute
+	private boolean valid;
+	// The Gain and the splitInfo of the split
+	private float gain;
+	private float splitInfo;
+	// The Gain, the splitInfo and the two ranks of the split computed with the exact math,
+	// for the verification of the entropy kernels
+	private float exactGain;
+	private float exactSplitInfo;
+	private int exactSplitRank;
+	private int exactPreSplitRank;
+	// The two ranks the average of whose values is the best cut, only for continuous attributes
+	private int splitRank;
+	private int preSplitRank;
+
+	/**
+	 * Create an invalid evaluation.
+	 */
+	public SplitEvaluation() {
+		invalidate();
+	}
+
+	/**
+	 * Record a valid evaluation, which is also taken as the one of the exact math.
+	 * @param gain the Gain of the split
+	 * @param splitInfo the splitInfo of the split
+	 * @param splitRank the rank after the best cut, -1 for discrete attributes
+	 * @param preSplitRank the rank before the best cut, -1 for discrete attributes
+	 */
+	void set(float gain, float splitInfo, int splitRank, int preSplitRank) {
+		this.valid = true;
+		this.gain = gain;
+		this.splitInfo = splitInfo;
+		this.splitRank = splitRank;
+		this.preSplitRank = preSplitRank;
+		setExact(gain, splitInfo, splitRank, preSplitRank);
+	}
+
+	/**
+	 * Record the split computed with the exact math, after the evaluation is recorded.
+	 * Zero Gain and splitInfo record that the attribute is invalid with the exact math.
+	 * @see ml.classifier.dt.EntropyKernel#isVerification()
+	 */
+	void setExact(float exactGain, float exactSplitInfo, int exactSplitRank, int exactPreSplitRank) {
+		this.exactGain = exactGain;
+		this.exactSplitInfo = exactSplitInfo;
+		this.exactSplitRank = exactSplitRank;
+		this.exactPreSplitRank = exactPreSplitRank;
+	}
+
+	/**
+	 * Record that the attribute is invalid as a test attribute, with zero Gain and splitInfo.
+	 */
+	void invalidate() {
+		set(0, 0, -1, -1);
+		this.valid = false;
+	}
+
+	/**
+	 * Query whether the attribute is valid as a test attribute.
+	 */
+	public boolean isValid() {
+		return valid;
+	}
+
+	public float getGain() {
+		return gain;
+	}
+
+	public float getSplitInfo() {
+		return splitInfo;
+	}
+
+	/**
+	 * Get the Gain of the split computed with the exact math, which is the Gain unless the entropy kernels are verified.
+	 */
+	public float getExactGain() {
+		return exactGain;
+	}
+
+	/**
+	 * Get the splitInfo of the split computed with the exact math, which is the splitInfo unless the entropy kernels are verified.
+	 */
+	public float getExactSplitInfo() {
+		return exactSplitInfo;
+	}
+
+	public int getExactSplitRank() {
+		return exactSplitRank;
+	}
+
+	public int getExactPreSplitRank() {
+		return exactPreSplitRank;
+	}
+
+	public int getSplitRank() {
+		return splitRank;
+	}
+
+	public int getPreSplitRank() {
+		return preSplitRank;
+	}
+}
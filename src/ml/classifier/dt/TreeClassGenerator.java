@@ -0,0 +1,215 @@
+/**
+ * @(#)TreeClassGenerator.java        1.6 26/10/18
+ */
+
+package ml.classifier.dt;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import ml.util.ClassFileEmitter;
+
+/**
+ * A generator turning a decision tree into a JVM class, so that the JIT compiler sees the
+ * thresholds as constants and the tests as straight-line compares.
+ * <p>
+ * The generated class extends {@link CompiledClassifier} and overrides its <i>select</i> method.
+ * The tests of the tree nodes are inlined as nested branches into a static method; a subtree
+ * is generated into a method of its own once the inlined code would exceed the size beyond
+ * which HotSpot does not JIT-compile a method.<br>
+ * The generated code only follows the cases with known test attribute values. A case
+ * missing the value of a test attribute is handed back with the number of the node, and
+ * distributed from there by the compiled tree, so the missing values keep their fractional
+ * semantics.<br>
+ * If the tree is too large for the limits of a class file, the compiled tree is
+ * interpreted instead.
+ * </p>
+ * <p>
+ * The generated code pays off for pruned trees of moderate size; for unpruned trees of
+ * tens of thousands of nodes, the sheer amount of generated code may well make it slower
+ * than interpreting the compiled tree.
+ * </p>
+ *
+ * @see ml.classifier.dt.CompiledClassifier
+ */
+public class TreeClassGenerator {
+	// The bytecode length of a generated method, beyond which HotSpot does not JIT-compile the method
+	private static final int METHOD_SIZE_LIMIT = 8000;
+	// The upper bounds of the bytecode lengths of the generated code
+	private static final int LEAF_SIZE = 4;
+	private static final int CALL_SIZE = 5;
+	private static final int CONTINUOUS_TEST_SIZE = 25;
+	private static final int DISCRETE_TEST_SIZE = 26;
+
+	private static final String SUPER_NAME = "ml/classifier/dt/CompiledClassifier";
+	private static final String CONSTRUCTOR_DESCRIPTOR = "(Lml/classifier/dt/CompiledTree;)V";
+	private static final String METHOD_DESCRIPTOR = "([F)I";
+
+	// The number of the generated classes, which names the next generated class
+	private static final AtomicInteger classCount = new AtomicInteger();
+
+	/**
+	 * Generate a classifier for the specified decision tree.
+	 * @return the generated classifier, or a classifier interpreting the compiled tree
+	 *         if the tree is too large to be generated
+	 */
+	public static CompiledClassifier generate(DecisionTree tree) {
+		return generate(tree.compile());
+	}
+
+	/**
+	 * Generate a classifier for the specified compiled tree.
+	 * @return the generated classifier, or a classifier interpreting the compiled tree
+	 *         if the tree is too large to be generated
+	 */
+	public static CompiledClassifier generate(CompiledTree tree) {
+		String className = "ml.classifier.dt.GeneratedTree" + classCount.incrementAndGet();
+		byte[] classFile;
+		try {
+			classFile = emit(tree, className.replace('.', '/'));
+		}
+		catch(IllegalStateException e) {
+			// The tree exceeds the limits of a class file
+			classFile = null;
+		}
+		if(classFile == null) return new CompiledClassifier(tree);
+
+		try {
+			Class<? extends CompiledClassifier> generatedClass =
+				new GeneratedClassLoader().define(className, classFile).asSubclass(CompiledClassifier.class);
+			return generatedClass.getConstructor(CompiledTree.class).newInstance(tree);
+		}
+		catch(ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Emit the class file of the generated classifier.
+	 * @return the class file, or null if a method of the class is too large
+	 */
+	private static byte[] emit(CompiledTree tree, String className) {
+		int nodeCount = tree.getNodeCount();
+		int[] inlineSizes = new int[nodeCount];
+		boolean[] outlined = new boolean[nodeCount];
+
+		// Decide the subtrees generated into methods of their own, from the bottom up.
+		// The children are always numbered after their parents.
+		for(int node = nodeCount - 1; node >= 0; node --) {
+			if(tree.getTestAttribute(node) < 0) {
+				inlineSizes[node] = LEAF_SIZE;
+				continue;
+			}
+
+			int firstChild = tree.getFirstChild(node);
+			int childCount = tree.getChildCount(node);
+			int size = tree.isContinuousTest(node) ? CONTINUOUS_TEST_SIZE : DISCRETE_TEST_SIZE + 4 * childCount;
+			for(int child = firstChild; child < firstChild + childCount; child ++) {
+				size += inlineSizes[child];
+			}
+			// Outline the largest subtrees until the inlined code fits
+			while(size > METHOD_SIZE_LIMIT) {
+				int largest = -1;
+				for(int child = firstChild; child < firstChild + childCount; child ++) {
+					if(!outlined[child] && inlineSizes[child] > CALL_SIZE
+							&& (largest < 0 || inlineSizes[child] > inlineSizes[largest])) {
+						largest = child;
+					}
+				}
+				if(largest < 0) break;
+				outlined[largest] = true;
+				size -= inlineSizes[largest] - CALL_SIZE;
+			}
+			// Beyond the limit of a branch offset
+			if(size > Short.MAX_VALUE) return null;
+			inlineSizes[node] = size;
+		}
+
+		ClassFileEmitter emitter = new ClassFileEmitter(ClassFileEmitter.ACC_PUBLIC | ClassFileEmitter.ACC_FINAL
+				| ClassFileEmitter.ACC_SUPER, className, SUPER_NAME);
+
+		ClassFileEmitter.Code constructor = emitter.addMethod(ClassFileEmitter.ACC_PUBLIC, "<init>", CONSTRUCTOR_DESCRIPTOR, 2, 2);
+		constructor.op(ClassFileEmitter.ALOAD_0).op(ClassFileEmitter.ALOAD_1)
+		           .invokeSpecial(SUPER_NAME, "<init>", CONSTRUCTOR_DESCRIPTOR)
+		           .op(ClassFileEmitter.RETURN);
+
+		ClassFileEmitter.Code select = emitter.addMethod(ClassFileEmitter.ACC_PROTECTED, "select", METHOD_DESCRIPTOR, 1, 2);
+		select.op(ClassFileEmitter.ALOAD_1).invokeStatic(className, methodName(0), METHOD_DESCRIPTOR)
+		      .op(ClassFileEmitter.IRETURN);
+
+		for(int node = 0; node < nodeCount; node ++) {
+			if(node == 0 || outlined[node]) {
+				ClassFileEmitter.Code code = emitter.addMethod(ClassFileEmitter.ACC_PRIVATE | ClassFileEmitter.ACC_STATIC,
+						methodName(node), METHOD_DESCRIPTOR, 2, 2);
+				emitNode(code, tree, className, outlined, node, node);
+			}
+		}
+		return emitter.toByteArray();
+	}
+
+	/**
+	 * Emit the inlined code of a subtree, with the record in local 0 and the attribute value in local 1.
+	 * @param node the root of the subtree
+	 * @param methodRoot the root of the subtree generated into the method
+	 */
+	private static void emitNode(ClassFileEmitter.Code code, CompiledTree tree, String className,
+			boolean[] outlined, int node, int methodRoot) {
+		// Call the method of an outlined subtree
+		if(node != methodRoot && outlined[node]) {
+			code.op(ClassFileEmitter.ALOAD_0).invokeStatic(className, methodName(node), METHOD_DESCRIPTOR)
+			    .op(ClassFileEmitter.IRETURN);
+			return;
+		}
+
+		int attribute = tree.getTestAttribute(node);
+		if(attribute < 0) {
+			code.pushInt(tree.getLeafClass(node)).op(ClassFileEmitter.IRETURN);
+			return;
+		}
+
+		int firstChild = tree.getFirstChild(node);
+		int missing = code.newLabel();
+		if(tree.isContinuousTest(node)) {
+			int right = code.newLabel();
+			// value != value means the value is missing
+			code.op(ClassFileEmitter.ALOAD_0).pushInt(attribute).op(ClassFileEmitter.FALOAD)
+			    .op(ClassFileEmitter.FSTORE_1).op(ClassFileEmitter.FLOAD_1).op(ClassFileEmitter.FLOAD_1)
+			    .op(ClassFileEmitter.FCMPL).jump(ClassFileEmitter.IFNE, missing);
+			code.op(ClassFileEmitter.FLOAD_1).pushFloat(tree.getThreshold(node))
+			    .op(ClassFileEmitter.FCMPG).jump(ClassFileEmitter.IFGE, right);
+			emitNode(code, tree, className, outlined, firstChild, methodRoot);
+			code.mark(right);
+			emitNode(code, tree, className, outlined, firstChild + 1, methodRoot);
+		}
+		else {
+			// The codes from 1 on select the children, and the missing code 0 falls to the default
+			int[] branches = new int[tree.getChildCount(node)];
+			for(int k = 0; k < branches.length; k ++) {
+				branches[k] = code.newLabel();
+			}
+			code.op(ClassFileEmitter.ALOAD_0).pushInt(attribute).op(ClassFileEmitter.FALOAD)
+			    .op(ClassFileEmitter.F2I).tableSwitch(1, missing, branches);
+			for(int k = 0; k < branches.length; k ++) {
+				code.mark(branches[k]);
+				emitNode(code, tree, className, outlined, firstChild + k, methodRoot);
+			}
+		}
+		code.mark(missing);
+		code.pushInt(-2 - node).op(ClassFileEmitter.IRETURN);
+	}
+
+	private static String methodName(int node) {
+		return "n" + node;
+	}
+
+	/**
+	 * A class loader defining a generated class, so that the class can be unloaded with its classifier.
+	 */
+	private static class GeneratedClassLoader extends ClassLoader {
+		GeneratedClassLoader() {
+			super(CompiledClassifier.class.getClassLoader());
+		}
+
+		Class<?> define(String name, byte[] classFile) {
+			return defineClass(name, classFile, 0, classFile.length);
+		}
+	}
+}
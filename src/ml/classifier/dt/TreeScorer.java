@@ -0,0 +1,247 @@
+/**
+ * @(#)TreeScorer.java        1.6 26/10/18
+ */
+
+package ml.classifier.dt;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import ml.dataset.Attribute;
+import ml.dataset.DataSet;
+
+/**
+ * A scorer classifying test data with a compiled classifier, safe for any number of concurrent callers.
+ * <p>
+ * The scorer writes the ordinals of the class values, or the probabilities of the class values,
+ * into arrays supplied by the caller. The probabilities of a batch are written row by row,
+ * the probability of the j<sup>th</sup> class value of the i<sup>th</sup> case at
+ * <i>i*classCount+j</i>.<br>
+ * Each thread encodes its test data and distributes its cases with missing values in scratch
+ * arrays of its own, which are reused from call to call, so the scoring neither locks nor
+ * allocates per case. Large batches are split across the ForkJoinPool of the scorer.
+ * </p>
+ *
+ * @see ml.classifier.dt.CompiledClassifier
+ */
+public class TreeScorer {
+	// The number of the cases, below which a batch is scored by a single thread
+	private static final int SPLIT_THRESHOLD = 1 << 11;
+
+	// The classifier scoring the records
+	private final CompiledClassifier classifier;
+	// The compiled tree of the classifier, encoding the records and predicting the probabilities
+	private final CompiledTree tree;
+	// The pool of the threads scoring large batches
+	private final ForkJoinPool pool;
+	// The scratch arrays of each thread
+	private final ThreadLocal<Scratch> scratches = new ThreadLocal<Scratch>(){
+		protected Scratch initialValue(){
+			return new Scratch();
+		}
+	};
+
+	/**
+	 * Initialize a scorer splitting large batches across the common ForkJoinPool.
+	 */
+	public TreeScorer(CompiledClassifier classifier) {
+		this(classifier, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Initialize a scorer splitting large batches across the specified ForkJoinPool,
+	 * or scoring them in the calling thread if the pool is <i>null</i>.
+	 */
+	public TreeScorer(CompiledClassifier classifier, ForkJoinPool pool) {
+		this.classifier = classifier;
+		this.tree = classifier.getCompiledTree();
+		this.pool = pool;
+	}
+
+	/**
+	 * Initialize a scorer for the specified decision tree, with the bytecode generated for it.
+	 * @see ml.classifier.dt.TreeClassGenerator#generate(DecisionTree tree)
+	 */
+	public TreeScorer(DecisionTree tree, ForkJoinPool pool) {
+		this(TreeClassGenerator.generate(tree), pool);
+	}
+
+	/**
+	 * Get the number of the class values, <i>ie</i> the length of a probability vector.
+	 */
+	public int getClassCount() {
+		return tree.getClassCount();
+	}
+
+	/**
+	 * Get the class values, indexed by the class ordinals.
+	 */
+	public String[] getClassValues() {
+		return tree.getClassValues();
+	}
+
+	/**
+	 * Classify a single test data.
+	 * @return the ordinal of the class value
+	 */
+	public int classify(String[] data) {
+		Scratch scratch = scratches.get();
+		return classifier.classify(tree.encode(data, scratch.record), scratch.distribution);
+	}
+
+	/**
+	 * Classify a single record of encoded attribute values.
+	 * @return the ordinal of the class value
+	 */
+	public int classify(float[] record) {
+		return classifier.classify(record, scratches.get().distribution);
+	}
+
+	/**
+	 * Predict the probabilities of the class values for a single test data.
+	 * @param probabilities the array receiving the probabilities
+	 * @param offset the index in the array of the probability of the first class value
+	 */
+	public void predict(String[] data, float[] probabilities, int offset) {
+		tree.predict(tree.encode(data, scratches.get().record), probabilities, offset);
+	}
+
+	/**
+	 * Classify a batch of test data.
+	 * @param results the array receiving the ordinals of the class values
+	 */
+	public void classify(String[][] testData, int[] results) {
+		checkLength(results.length, testData.length);
+		score(new Scoring(testData, null, null, results, null, 0, testData.length));
+	}
+
+	/**
+	 * Classify a batch of records of encoded attribute values.
+	 * @param results the array receiving the ordinals of the class values
+	 */
+	public void classify(float[][] records, int[] results) {
+		checkLength(results.length, records.length);
+		score(new Scoring(null, records, null, results, null, 0, records.length));
+	}
+
+	/**
+	 * Classify the cases of the typed columns of a data set.
+	 * @param testSet the data set to be classified, sharing the meta data of the train data set
+	 * @param results the array receiving the ordinals of the class values
+	 */
+	public void classify(DataSet testSet, int[] results) {
+		checkLength(results.length, testSet.getCaseCount());
+		score(new Scoring(null, null, testSet, results, null, 0, testSet.getCaseCount()));
+	}
+
+	/**
+	 * Predict the probabilities of the class values for a batch of test data.
+	 * @param probabilities the array receiving the probabilities row by row
+	 */
+	public void predict(String[][] testData, float[] probabilities) {
+		checkLength(probabilities.length, (long)testData.length * getClassCount());
+		score(new Scoring(testData, null, null, null, probabilities, 0, testData.length));
+	}
+
+	/**
+	 * Predict the probabilities of the class values for a batch of records of encoded attribute values.
+	 * @param probabilities the array receiving the probabilities row by row
+	 */
+	public void predict(float[][] records, float[] probabilities) {
+		checkLength(probabilities.length, (long)records.length * getClassCount());
+		score(new Scoring(null, records, null, null, probabilities, 0, records.length));
+	}
+
+	/**
+	 * Predict the probabilities of the class values for the cases of the typed columns of a data set.
+	 * @param testSet the data set to be classified, sharing the meta data of the train data set
+	 * @param probabilities the array receiving the probabilities row by row
+	 */
+	public void predict(DataSet testSet, float[] probabilities) {
+		checkLength(probabilities.length, (long)testSet.getCaseCount() * getClassCount());
+		score(new Scoring(null, null, testSet, null, probabilities, 0, testSet.getCaseCount()));
+	}
+
+	/**
+	 * Score a batch in the current thread if the batch is small or the scorer has no pool,
+	 * otherwise across the pool.
+	 */
+	private void score(Scoring scoring) {
+		if(pool == null || scoring.last - scoring.first < SPLIT_THRESHOLD) scoring.score();
+		else if(ForkJoinTask.inForkJoinPool()) scoring.invoke();
+		else pool.invoke(scoring);
+	}
+
+	private static void checkLength(long length, long requiredLength) {
+		if(length < requiredLength) {
+			throw new IllegalArgumentException("The result array holds " + length + " of " + requiredLength + " results");
+		}
+	}
+
+	/**
+	 * The scratch arrays of a thread.
+	 */
+	private class Scratch {
+		// The record of encoded attribute values
+		private final float[] record = new float[tree.getAttributeCount()];
+		// The class distribution of a case with missing values
+		private final float[] distribution = new float[tree.getClassCount()];
+	}
+
+	/**
+	 * A task scoring the cases from first to last(exclusive) of a batch,
+	 * which is given as either test data, records or a data set.
+	 */
+	private class Scoring extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final String[][] testData;
+		private final float[][] records;
+		private final DataSet testSet;
+		private final Attribute[] columns;
+		// The array receiving the ordinals of the class values, or null if the probabilities are predicted
+		private final int[] results;
+		// The array receiving the probabilities of the class values, or null if the ordinals are classified
+		private final float[] probabilities;
+		private final int first;
+		private final int last;
+
+		Scoring(String[][] testData, float[][] records, DataSet testSet, int[] results,
+				float[] probabilities, int first, int last) {
+			this.testData = testData;
+			this.records = records;
+			this.testSet = testSet;
+			this.columns = (testSet != null) ? testSet.getAttributes() : null;
+			this.results = results;
+			this.probabilities = probabilities;
+			this.first = first;
+			this.last = last;
+		}
+
+		protected void compute() {
+			if(last - first < SPLIT_THRESHOLD) {
+				score();
+				return;
+			}
+			int middle = (first + last) >>> 1;
+			invokeAll(new Scoring(testData, records, testSet, results, probabilities, first, middle),
+					new Scoring(testData, records, testSet, results, probabilities, middle, last));
+		}
+
+		void score() {
+			Scratch scratch = scratches.get();
+			int classCount = tree.getClassCount();
+			for(int i = first; i < last; i ++) {
+				if(columns != null) {
+					int caseIndex = testSet.getCaseIndex(i);
+					if(results != null) results[i] = tree.classify(columns, caseIndex, scratch.distribution);
+					else tree.predict(columns, caseIndex, probabilities, i * classCount);
+					continue;
+				}
+
+				float[] record = (records != null) ? records[i] : tree.encode(testData[i], scratch.record);
+				if(results != null) results[i] = classifier.classify(record, scratch.distribution);
+				else tree.predict(record, probabilities, i * classCount);
+			}
+		}
+	}
+}
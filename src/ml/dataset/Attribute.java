@@ -5,26 +5,32 @@ package ml.dataset;
 
 /**
  * An attribute wrapping its attribute values.
+ * <p>
+ * The attribute values are kept in a typed column by the subclasses, so that they
+ * need not be parsed again whenever they are used.
+ * </p>
  *
  * @author 	    Ping He
  * @author 	    Xiaohua Xu
+ * @see         ml.dataset.ContinuousAttribute
+ * @see         ml.dataset.DiscreteAttribute
  */
-public class Attribute{
+public abstract class Attribute{
 	/**
-	 * The name of the attribute
+	 * The String exhibition of a missing attribute value
 	 */
-	protected String name;
+	public static final String MISSING_VALUE = "?";
+
 	/**
-	 * The attribute values
+	 * The name of the attribute
 	 */
-	protected String[] data;
+	protected String name;
 
 	/**
-	 * Initialize an attribute with the specified name and attribute values
+	 * Initialize an attribute with the specified name
 	 */
-	public Attribute(String name, String[] data){
+	protected Attribute(String name){
 		this.name = name;
-		this.data = data;
 	}
 
 	/**
@@ -42,17 +48,34 @@ public class Attribute{
 	}
 
 	/**
-	 * Get the attribute values on the attribute
+	 * Get the number of the attribute values on the attribute
 	 */
-	public String[] getData(){
-		return this.data;
-	}
+	public abstract int getValueCount();
 
 	/**
-	 * Set the attribute values on the attribute
+	 * Query whether the attribute value of the specified case is missing
 	 */
-	public void setData(String[] data) {
-		this.data = data;
+	public abstract boolean isMissing(int caseIndex);
+
+	/**
+	 * Get the String exhibition of the attribute value of the specified case
+	 * @return the attribute value, or {@link #MISSING_VALUE} if it is missing
+	 */
+	public abstract String getValue(int caseIndex);
+
+	/**
+	 * Get the attribute values on the attribute.
+	 * <p>
+	 * The values are exhibited as Strings from the typed column on every call,
+	 * the typed column should be preferred whenever possible.
+	 * </p>
+	 */
+	public String[] getData(){
+		String[] data = new String[getValueCount()];
+		for(int i = 0; i < data.length; i ++) {
+			data[i] = getValue(i);
+		}
+		return data;
 	}
 
 	/**
@@ -61,4 +84,4 @@ public class Attribute{
 	public String toString() {
 		return name;
 	}
-}
\ No newline at end of file
+}
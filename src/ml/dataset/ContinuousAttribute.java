@@ -3,22 +3,215 @@
  */
 package ml.dataset;
 
+import ml.util.Statistics;
+
 /**
  * A continuous attribute wrapping its continuous attribute values.
+ * <p>
+ * The attribute values are kept in a <i>float</i> column, with missing values
+ * kept as <i>Float.NaN</i>.
+ * </p>
  *
  * @author 	    Ping He
  * @author 	    Xiaohua Xu
  */
 public class ContinuousAttribute extends Attribute {
+	// The attribute values on the attribute, NaN for missing values
+	private float[] values;
+	// The exact float values of 10^0 to 10^10
+	private static final float[] POWERS_OF_TEN = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+	// The case ids in the ascending order of their attribute values, missing values sorted to the most front
+	private transient int[] sortedIds;
+	// The ranks of the cases in the sorted case ids, -1 for missing values
+	private transient int[] ranks;
+
 	/**
 	 * Initialize a continuous attribute
 	 * @param name the name of the attribute
+	 * @param values the attribute values on the attribute, <i>Float.NaN</i> for missing values
+	 */
+	public ContinuousAttribute(String name, float[] values) {
+		super(name);
+		this.values = values;
+	}
+
+	/**
+	 * Initialize a continuous attribute with the String exhibition of its attribute values
+	 * @param name the name of the attribute
 	 * @param data the attribute values on the attribute
 	 */
 	public ContinuousAttribute(String name, String[] data) {
-		super(name, data);
+		this(name, new float[data.length]);
+		for(int i = 0; i < data.length; i ++) {
+			values[i] = parseValue(data[i]);
+		}
+	}
+
+	/**
+	 * Parse a continuous attribute value from its String exhibition.
+	 * @return the parsed value, or <i>Float.NaN</i> if the value is missing
+	 */
+	public static float parseValue(String value) {
+		if(value.equals(MISSING_VALUE)) return Float.NaN;
+		float parsed = parseDecimal(value, 0, value.length());
+		return (parsed == parsed) ? parsed : Float.parseFloat(value);
+	}
+
+	/**
+	 * Parse a plain decimal number within [from, to) of the characters without allocating any
+	 * object. The value is computed with a single correctly rounded float operation whenever its
+	 * decimal digits and exponent allow, so the result is the same as <i>Float.parseFloat</i>.
+	 * @return the parsed value, or <i>Float.NaN</i> if the number is not plain enough, which is
+	 *         left to <i>Float.parseFloat</i>
+	 * @see ml.dataset.UciDataParser
+	 */
+	static float parseDecimal(CharSequence value, int from, int to) {
+		int i = from;
+		boolean negative = false;
+		char c = (i < to) ? value.charAt(i) : 0;
+		if(c == '-' || c == '+') {
+			negative = (c == '-');
+			i ++;
+		}
+
+		long mantissa = 0;
+		int exponent = 0;
+		boolean hasDigit = false, afterPoint = false;
+		for(; i < to; i ++) {
+			c = value.charAt(i);
+			if(c >= '0' && c <= '9') {
+				// Too many digits for the fast path
+				if(mantissa >= 100000000000000000L) return Float.NaN;
+				mantissa = mantissa * 10 + (c - '0');
+				if(afterPoint) exponent --;
+				hasDigit = true;
+			}
+			else if(c == '.' && !afterPoint) afterPoint = true;
+			else break;
+		}
+		if(!hasDigit) return Float.NaN;
+
+		// Parse the exponent
+		if(i < to && (c == 'e' || c == 'E')) {
+			i ++;
+			boolean negativeExponent = false;
+			if(i < to && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+				negativeExponent = (value.charAt(i) == '-');
+				i ++;
+			}
+			int power = 0;
+			boolean hasExponentDigit = false;
+			for(; i < to && power < 1000; i ++) {
+				c = value.charAt(i);
+				if(c < '0' || c > '9') break;
+				power = power * 10 + (c - '0');
+				hasExponentDigit = true;
+			}
+			if(!hasExponentDigit) return Float.NaN;
+			exponent += negativeExponent ? -power : power;
+		}
+
+		if(i != to || mantissa > (1L << 24) || exponent < -10 || exponent > 10) return Float.NaN;
+		float parsed = (exponent >= 0) ? (float)mantissa * POWERS_OF_TEN[exponent]
+		                               : (float)mantissa / POWERS_OF_TEN[-exponent];
+		return negative ? -parsed : parsed;
+	}
+
+	/**
+	 * Get the attribute values on the attribute, <i>Float.NaN</i> for missing values
+	 */
+	public float[] getValues() {
+		return this.values;
 	}
-	
+
+	/**
+	 * Set the attribute values on the attribute, <i>Float.NaN</i> for missing values
+	 */
+	public void setValues(float[] values) {
+		this.values = values;
+		this.sortedIds = null;
+		this.ranks = null;
+	}
+
+	/**
+	 * Get the case ids in the ascending order of their attribute values,
+	 * with the cases of missing values sorted to the most front.
+	 */
+	public int[] getSortedIds() {
+		if(sortedIds == null) presort();
+		return this.sortedIds;
+	}
+
+	/**
+	 * Get the ranks of the cases in the sorted case ids, with -1 for the cases of missing values,
+	 * so that <i>getSortedIds()[getRanks()[i]] = i</i> for the cases of known values.
+	 */
+	public int[] getRanks() {
+		if(ranks == null) presort();
+		return this.ranks;
+	}
+
+	/**
+	 * Set the presort of the attribute values, as computed by {@link #getSortedIds()} and {@link #getRanks()}.
+	 */
+	public void setPresort(int[] sortedIds, int[] ranks) {
+		this.sortedIds = sortedIds;
+		this.ranks = ranks;
+	}
+
+	/**
+	 * Sort the attribute values and compute the sorted case ids and the ranks of the cases.
+	 */
+	private synchronized void presort() {
+		if(sortedIds != null && ranks != null) return;
+
+		int[][] presort = sort();
+		this.ranks = presort[1];
+		this.sortedIds = presort[0];
+	}
+
+	/**
+	 * Compute the presort of the attribute values like {@link #getSortedIds()} and {@link #getRanks()},
+	 * without keeping it on the attribute, such as for writing it out of core.
+	 * @return the sorted case ids and the ranks of the cases
+	 */
+	public int[][] sort() {
+		// Copy the attribute values to be sorted, missing data are sorted to the most front
+		float[] sortedData = new float[values.length];
+		for(int i = 0; i < sortedData.length; i ++) {
+			sortedData[i] = Float.isNaN(values[i]) ? Float.NEGATIVE_INFINITY : values[i];
+		}
+
+		// id records the new arrangement of the original data
+		int[] id = Statistics.indirectSort(sortedData);
+		// rank records the ranks of each original data
+		int[] rank = new int[sortedData.length];
+		// If there are missing data, their ranks are set all -1
+		int knownIndex = 0;
+		for(int i = 0; i < sortedData.length && sortedData[i] == Float.NEGATIVE_INFINITY; i ++) {
+			knownIndex ++;
+			rank[id[i]] = -1;
+		}
+		// For the rest of the known data, their rank values start from the knownIndex
+		// to make sure rank[id[j]] = j, so that bucket sorting can be correctly executed
+		for(int j = knownIndex; j < id.length; j ++) {
+			rank[id[j]] = j;
+		}
+		return new int[][] {id, rank};
+	}
+
+	public int getValueCount() {
+		return values.length;
+	}
+
+	public boolean isMissing(int caseIndex) {
+		return Float.isNaN(values[caseIndex]);
+	}
+
+	public String getValue(int caseIndex) {
+		return isMissing(caseIndex) ? MISSING_VALUE : Float.toString(values[caseIndex]);
+	}
+
 	/**
 	 * The String exhibition of the continuous attribute
 	 * @return the String exhibition of the discrete attribute
@@ -28,4 +221,4 @@ public class ContinuousAttribute extends Attribute {
 		return name + " : continuous";
 	}
 
-}
\ No newline at end of file
+}
@@ -3,6 +3,8 @@
  */
 package ml.dataset;
 
+import java.util.Map;
+
 /**
  * A data set wrapping all the data.
  *
@@ -24,9 +26,14 @@ public abstract class DataSet {
 	 */
 	protected int classAttributeIndex;
 	/**
-	 * The data of the data set
+	 * The data of the data set, materialized from the attributes on demand
+	 * if the data set is loaded into the attributes directly
 	 */
 	protected String[][] trainData;
+	/**
+	 * The number of the data in the data set
+	 */
+	protected int caseCount;
 	/**
 	 * The meta data of the data set
 	 */
@@ -45,6 +52,13 @@ public abstract class DataSet {
 		load(baseName);
     }
 
+	/**
+	 * Initialize a data set to be filled by a subclass, without loading any input file.
+	 * @see ml.dataset.DataSetView
+	 */
+	protected DataSet() {
+	}
+
 	/**
 	 * Load data set from the specified input files.
 	 * @param baseName the base name of the input files (.names and .data).
@@ -53,21 +67,35 @@ public abstract class DataSet {
     public abstract void load(String baseName);
 
 	/**
-	 * Add a column set view (<i>ie</i> attribute view) for the data set
+	 * Add a column set view (<i>ie</i> attribute view) for the data set.
+	 * <p>
+	 * The data is stored into typed columns: the continuous attribute values are parsed
+	 * into <i>float</i> columns and the discrete attribute values are encoded against
+	 * their nominal values.
+	 * </p>
 	 */
     public void addColumnSetView(){
     	int attributeCount = metaData.getAttributeCount();
 		this.attributes = new Attribute[attributeCount];
 
-		String[][] transposedTrainData = transpose(getTrainData());
+		String[][] trainData = getTrainData();
 		for(int i = 0; i < attributeCount; i ++) {
 			String name = metaData.getAttributeNameAt(i);
 			if(metaData.isAttributeContinuousAt(i)) {
-				attributes[i] = new ContinuousAttribute(name, transposedTrainData[i]);
+				float[] values = new float[trainData.length];
+				for(int j = 0; j < trainData.length; j ++) {
+					values[j] = ContinuousAttribute.parseValue(trainData[j][i]);
+				}
+				attributes[i] = new ContinuousAttribute(name, values);
 			}
 			else{
 				String[] nominalValues = metaData.getAttributeNominalValuesAt(i);
-				attributes[i] = new DiscreteAttribute(name, nominalValues, transposedTrainData[i]);
+				Map<String, Integer> dictionary = DiscreteAttribute.createDictionary(nominalValues);
+				int[] codes = new int[trainData.length];
+				for(int j = 0; j < trainData.length; j ++) {
+					codes[j] = DiscreteAttribute.encode(dictionary, trainData[j][i]);
+				}
+				attributes[i] = new DiscreteAttribute(name, nominalValues, codes);
 			}
 		}
     }
@@ -105,12 +133,23 @@ public abstract class DataSet {
      */
 	public void setTrainData(String[][] trainData){
 		this.trainData = trainData;
+		this.caseCount = trainData.length;
 	}
 
 	/**
 	 * Get the data of the data set
 	 */
     public String[][] getTrainData(){
+    	if(trainData == null && attributes != null) {
+    		// Materialize the data from the attributes
+    		String[][] data = new String[caseCount][attributes.length];
+    		for(int i = 0; i < attributes.length; i ++) {
+    			for(int j = 0; j < caseCount; j ++) {
+    				data[j][i] = attributes[i].getValue(getCaseIndex(j));
+    			}
+    		}
+    		this.trainData = data;
+    	}
         return this.trainData;
     }
 
@@ -119,6 +158,9 @@ public abstract class DataSet {
 	 */
     public void setAttributes(Attribute[] attributes) {
         this.attributes = attributes;
+        if(attributes.length > 0) {
+        	this.caseCount = attributes[0].getValueCount();
+        }
     }
 
 	/**
@@ -146,7 +188,16 @@ public abstract class DataSet {
 	 * Get the number of the data in the data set
 	 */
 	public int getCaseCount(){
-		return this.trainData.length;
+		return this.caseCount;
+	}
+
+	/**
+	 * Get the index in the typed columns of the specified case of the data set.
+	 * It is the index itself, unless the data set is a view sharing the columns of another data set.
+	 * @see ml.dataset.DataSetView
+	 */
+	public int getCaseIndex(int index) {
+		return index;
 	}
 
 	/**
@@ -170,14 +221,18 @@ public abstract class DataSet {
 		return ((DiscreteAttribute)attributes[classAttributeIndex]).getNominalValuesCount();
 	}
 
-    // Transpose a 2D String array
-	private static String[][] transpose(String[][] from) {
-		String[][] to = new String[from[0].length][from.length];
-		for(int i = 0; i < from.length; i ++) {
-			for(int j = 0; j < from[0].length; j ++) {
-				to[j][i] = from[i][j];
-			}
+	/**
+	 * Get the classification error of the specified classification results of the data set,
+	 * counting the data of a missing class value as misclassified.
+	 * @param classOrdinals the ordinal of the class value selected for each data of the data set
+	 */
+	public int getClassificationError(int[] classOrdinals){
+		DiscreteAttribute classAttribute = (DiscreteAttribute)attributes[classAttributeIndex];
+		int error = 0;
+		for(int i = 0; i < classOrdinals.length; i ++) {
+			int classCode = classAttribute.getCode(getCaseIndex(i));
+			if(classCode == DiscreteAttribute.MISSING_CODE || classOrdinals[i] != classCode - 1) error ++;
 		}
-		return to;
+		return error;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+/**
+ * @(#)DataSetView.java        1.6 26/10/18
+ */
+package ml.dataset;
+
+/**
+ * An immutable view of a subset of the data of a data set.
+ * <p>
+ * The view shares the meta data and the typed columns (<i>ie</i> the attributes) of its data set,
+ * and keeps nothing but the indices of its cases in the columns, so many views of a single
+ * data set, such as the train data and test data of the folds of a cross validation, can be
+ * used at the same time.
+ * </p>
+ *
+ * @see         ml.dataset.DataSet#getCaseIndex(int index)
+ */
+public class DataSetView extends DataSet {
+	// The data set being viewed
+	private final DataSet dataSet;
+	// The indices of the cases of the view in the typed columns
+	private final int[] caseIndices;
+
+	/**
+	 * Initialize a view of the specified cases of a data set.
+	 * @param dataSet the data set to be viewed
+	 * @param indices the indices of the viewed cases in the data set
+	 */
+	public DataSetView(DataSet dataSet, int[] indices) {
+		super();
+		this.dataSet = dataSet;
+		this.name = dataSet.getName();
+		this.metaData = dataSet.getMetaData();
+		this.attributes = dataSet.getAttributes();
+		this.classAttributeIndex = dataSet.getClassAttributeIndex();
+		this.caseCount = indices.length;
+
+		// A view of a view shares the columns of the innermost data set
+		this.caseIndices = new int[indices.length];
+		for(int i = 0; i < indices.length; i ++) {
+			caseIndices[i] = dataSet.getCaseIndex(indices[i]);
+		}
+	}
+
+	/**
+	 * Get the data set being viewed
+	 */
+	public DataSet getDataSet() {
+		return dataSet;
+	}
+
+	public int getCaseIndex(int index) {
+		return caseIndices[index];
+	}
+
+	public void load(String baseName) {
+		throw new UnsupportedOperationException("A data set view cannot be loaded");
+	}
+
+	public void addColumnSetView() {
+		throw new UnsupportedOperationException("A data set view is immutable");
+	}
+
+	public void setName(String name) {
+		throw new UnsupportedOperationException("A data set view is immutable");
+	}
+
+	public void setMetaData(MetaData metaData) {
+		throw new UnsupportedOperationException("A data set view is immutable");
+	}
+
+	public void setTrainData(String[][] trainData) {
+		throw new UnsupportedOperationException("A data set view is immutable");
+	}
+
+	public void setAttributes(Attribute[] attributes) {
+		throw new UnsupportedOperationException("A data set view is immutable");
+	}
+
+	public void setClassAttributeIndex(int classAttributeIndex) {
+		throw new UnsupportedOperationException("A data set view is immutable");
+	}
+}
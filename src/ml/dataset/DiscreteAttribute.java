@@ -4,25 +4,92 @@
 
 package ml.dataset;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * A discrete attribute wrapping its discrete attribute values.
+ * <p>
+ * The attribute values are dictionary-encoded against the nominal values: code 0 is kept
+ * for missing values and code <i>j+1</i> stands for the j<sup>th</sup> nominal value.
+ * The codes are kept in a <i>byte</i> column if there are no more than 255 nominal values,
+ * otherwise in an <i>int</i> column.
+ * </p>
  *
  * @author 	    Ping He
  * @author 	    Xiaohua Xu
  */
 public class DiscreteAttribute extends Attribute {
+	/**
+	 * The code of missing values
+	 */
+	public static final int MISSING_CODE = 0;
+
 	// The nominal discrete attribute values of the attribute
 	private String[] nominalValues;
+	// The codes of the attribute values if there are no more than 255 nominal values
+	private byte[] byteCodes;
+	// The codes of the attribute values if there are more than 255 nominal values
+	private int[] intCodes;
 
 	/**
-	 * Initialize a discrete attribute. 
+	 * Initialize a discrete attribute.
+	 * @param name the name of the attribute
+	 * @param nominalValues the nominal values of the attribute
+	 * @param codes the codes of the attribute values on the attribute
+	 */
+	public DiscreteAttribute(String name, String[] nominalValues, int[] codes) {
+		super(name);
+		this.nominalValues = nominalValues;
+		setCodes(codes);
+	}
+
+	/**
+	 * Initialize a discrete attribute with the <i>byte</i> column of its codes,
+	 * which requires no more than 255 nominal values.
+	 */
+	DiscreteAttribute(String name, String[] nominalValues, byte[] codes) {
+		super(name);
+		this.nominalValues = nominalValues;
+		this.byteCodes = codes;
+	}
+
+	/**
+	 * Initialize a discrete attribute with the String exhibition of its attribute values.
 	 * @param name the name of the attribute
 	 * @param nominalValues the nominal values of the attribute
 	 * @param data the attribute values on the attribute
 	 */
 	public DiscreteAttribute(String name, String[] nominalValues, String[] data) {
-		super(name, data);
+		super(name);
 		this.nominalValues = nominalValues;
+		Map<String, Integer> dictionary = createDictionary(nominalValues);
+		int[] codes = new int[data.length];
+		for(int i = 0; i < data.length; i ++) {
+			codes[i] = encode(dictionary, data[i]);
+		}
+		setCodes(codes);
+	}
+
+	/**
+	 * Create the dictionary mapping the nominal values to their codes.
+	 */
+	public static Map<String, Integer> createDictionary(String[] nominalValues) {
+		Map<String, Integer> dictionary = new HashMap<String, Integer>(nominalValues.length * 2);
+		for(int j = 0; j < nominalValues.length; j ++) {
+			dictionary.put(nominalValues[j], j+1);
+		}
+		return dictionary;
+	}
+
+	/**
+	 * Encode the String exhibition of a discrete attribute value with the specified dictionary.
+	 * @return the code of the value, or {@link #MISSING_CODE} if the value is missing
+	 *         or not declared.
+	 */
+	public static int encode(Map<String, Integer> dictionary, String value) {
+		Integer code = dictionary.get(value);
+		return (code == null) ? MISSING_CODE : code;
 	}
 
 	/**
@@ -46,10 +113,63 @@ public class DiscreteAttribute extends Attribute {
 		return nominalValues.length;
 	}
 
+	/**
+	 * Get the code of the attribute value of the specified case.
+	 * @return {@link #MISSING_CODE} if the value is missing, otherwise the index of
+	 *         the value in the nominal values plus 1.
+	 */
+	public int getCode(int caseIndex) {
+		return (byteCodes != null) ? byteCodes[caseIndex] & 0xFF : intCodes[caseIndex];
+	}
+
+	/**
+	 * Set the codes of the attribute values on the attribute.
+	 */
+	public void setCodes(int[] codes) {
+		if(nominalValues.length <= 0xFF) {
+			this.byteCodes = new byte[codes.length];
+			for(int i = 0; i < codes.length; i ++) {
+				byteCodes[i] = (byte)codes[i];
+			}
+			this.intCodes = null;
+		}
+		else {
+			this.intCodes = codes;
+			this.byteCodes = null;
+		}
+	}
+
+	/**
+	 * Get the <i>byte</i> column of the codes, or null if the codes are kept in an <i>int</i> column.
+	 */
+	byte[] getByteCodes() {
+		return this.byteCodes;
+	}
+
+	/**
+	 * Get the <i>int</i> column of the codes, or null if the codes are kept in a <i>byte</i> column.
+	 */
+	int[] getIntCodes() {
+		return this.intCodes;
+	}
+
+	public int getValueCount() {
+		return (byteCodes != null) ? byteCodes.length : intCodes.length;
+	}
+
+	public boolean isMissing(int caseIndex) {
+		return getCode(caseIndex) == MISSING_CODE;
+	}
+
+	public String getValue(int caseIndex) {
+		int code = getCode(caseIndex);
+		return (code == MISSING_CODE) ? MISSING_VALUE : nominalValues[code-1];
+	}
+
 	/**
 	 * The String exhibition of the discrete attribute
 	 */
 	public String toString() {
 		return name + " : " + java.util.Arrays.toString(nominalValues);
 	}
-}
\ No newline at end of file
+}
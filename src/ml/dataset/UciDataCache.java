@@ -0,0 +1,339 @@
+/**
+ * @(#)UciDataCache.java        1.6 26/10/18
+ */
+package ml.dataset;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A binary columnar cache of a UCI-format data set.
+ * <p>
+ * The cache file (<i>name.cache</i>, after the file name of the data set) is written into the cache
+ * directory the first time the data set is loaded. It keeps the meta data, the typed columns and the presort of the continuous attributes,
+ * so that later loadings memory-map the cache instead of parsing the data file and sorting
+ * the continuous attributes.<br>
+ * The cache is invalidated once the size or the modification time of the .names or .data
+ * file changes, or when the cache file was written for another data set of the same name.
+ * </p>
+ * <p>
+ * The cache file begins with a magic number, a version and the length of the header.
+ * The header records the path of the .data file, the sizes and modification times of the source
+ * files, the index of the class attribute, the number of the cases and the meta data of each attribute.
+ * Then follow the columns of the attributes in order: the values, the sorted case ids and
+ * the ranks of a continuous attribute, or the width (1 or 4 bytes) and the codes of a
+ * discrete attribute.
+ * </p>
+ *
+ * @see         ml.dataset.UciDataSet
+ */
+public class UciDataCache {
+	// The magic number of the cache file, "C45C"
+	private static final int MAGIC = 0x43343543;
+	// The version of the cache file format
+	private static final int VERSION = 2;
+	// The maximal number of bytes mapped or buffered at a time
+	private static final int BLOCK_SIZE = 1 << 26;
+
+	// The .names file of the data set
+	private final File namesFile;
+	// The .data file of the data set
+	private final File dataFile;
+	// The cache file of the data set
+	private final File cacheFile;
+
+	/**
+	 * Initialize the cache of a UCI data set in the specified directory.
+	 * @param baseName the base name of the input files (.names and .data).
+	 * @param directory the directory of the cache file
+	 * @see ml.dataset.UciDataSet#setCacheDirectory(File directory)
+	 */
+	public UciDataCache(String baseName, File directory) {
+		this.namesFile = new File(baseName + ".names");
+		this.dataFile = new File(baseName + ".data");
+		this.cacheFile = new File(directory, new File(baseName).getName() + ".cache");
+	}
+
+	/**
+	 * Load the data set from the cache file.
+	 * @return true if the data set is loaded, or false if the cache file is absent, out of date or corrupted.
+	 */
+	public boolean read(DataSet dataSet) {
+		if(!cacheFile.isFile()) return false;
+
+		try {
+			RandomAccessFile file = new RandomAccessFile(cacheFile, "r");
+			try {
+				FileChannel channel = file.getChannel();
+				ByteBuffer prologue = ByteBuffer.allocate(12);
+				while(prologue.hasRemaining() && channel.read(prologue) >= 0);
+				prologue.flip();
+				if(prologue.remaining() < 12 || prologue.getInt() != MAGIC || prologue.getInt() != VERSION) {
+					return false;
+				}
+
+				byte[] header = new byte[prologue.getInt()];
+				ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+				while(headerBuffer.hasRemaining() && channel.read(headerBuffer) >= 0);
+				if(headerBuffer.hasRemaining()) return false;
+
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+				if(!in.readUTF().equals(dataFile.getAbsolutePath())
+						|| in.readLong() != namesFile.length() || in.readLong() != namesFile.lastModified()
+						|| in.readLong() != dataFile.length() || in.readLong() != dataFile.lastModified()) {
+					return false;
+				}
+
+				int classAttributeIndex = in.readInt();
+				int caseCount = in.readInt();
+				int attributeCount = in.readInt();
+				String[] names = new String[attributeCount];
+				boolean[] isContinuous = new boolean[attributeCount];
+				String[][] nominalValues = new String[attributeCount][];
+				for(int i = 0; i < attributeCount; i ++) {
+					names[i] = in.readUTF();
+					isContinuous[i] = in.readBoolean();
+					if(!isContinuous[i]) {
+						nominalValues[i] = new String[in.readInt()];
+						for(int j = 0; j < nominalValues[i].length; j ++) {
+							nominalValues[i][j] = in.readUTF();
+						}
+					}
+				}
+
+				// Map the columns following the header
+				long position = 12 + header.length;
+				Attribute[] attributes = new Attribute[attributeCount];
+				for(int i = 0; i < attributeCount; i ++) {
+					if(isContinuous[i]) {
+						float[] values = new float[caseCount];
+						int[] sortedIds = new int[caseCount];
+						int[] ranks = new int[caseCount];
+						position = readFloats(channel, position, values);
+						position = readInts(channel, position, sortedIds);
+						position = readInts(channel, position, ranks);
+
+						ContinuousAttribute attribute = new ContinuousAttribute(names[i], values);
+						attribute.setPresort(sortedIds, ranks);
+						attributes[i] = attribute;
+					}
+					else {
+						int width = channel.map(FileChannel.MapMode.READ_ONLY, position, 1).get();
+						position ++;
+						if(width == 1) {
+							byte[] codes = new byte[caseCount];
+							position = readBytes(channel, position, codes);
+							attributes[i] = new DiscreteAttribute(names[i], nominalValues[i], codes);
+						}
+						else {
+							int[] codes = new int[caseCount];
+							position = readInts(channel, position, codes);
+							attributes[i] = new DiscreteAttribute(names[i], nominalValues[i], codes);
+						}
+					}
+				}
+				if(position != channel.size()) return false;
+
+				dataSet.setMetaData(new MetaData(names, isContinuous, nominalValues));
+				dataSet.setClassAttributeIndex(classAttributeIndex);
+				dataSet.setAttributes(attributes);
+				return true;
+			}
+			finally {
+				file.close();
+			}
+		}
+		catch(IOException e) {
+			return false;
+		}
+		catch(RuntimeException e) {
+			// A corrupted cache file is simply reloaded from the source files
+			return false;
+		}
+	}
+
+	/**
+	 * Write the loaded data set into the cache file, presorting its continuous attributes.
+	 * <p>
+	 * The cache file is written into a temporary file first and then renamed,
+	 * so that a partially written cache file is never read.
+	 * </p>
+	 */
+	public void write(DataSet dataSet) {
+		File tempFile = null;
+		try {
+			MetaData metaData = dataSet.getMetaData();
+			Attribute[] attributes = dataSet.getAttributes();
+			int caseCount = dataSet.getCaseCount();
+
+			ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(headerBytes);
+			out.writeUTF(dataFile.getAbsolutePath());
+			out.writeLong(namesFile.length());
+			out.writeLong(namesFile.lastModified());
+			out.writeLong(dataFile.length());
+			out.writeLong(dataFile.lastModified());
+			out.writeInt(dataSet.getClassAttributeIndex());
+			out.writeInt(caseCount);
+			out.writeInt(attributes.length);
+			for(int i = 0; i < attributes.length; i ++) {
+				out.writeUTF(attributes[i].getName());
+				out.writeBoolean(metaData.isAttributeContinuousAt(i));
+				if(!metaData.isAttributeContinuousAt(i)) {
+					String[] nominalValues = metaData.getAttributeNominalValuesAt(i);
+					out.writeInt(nominalValues.length);
+					for(String nominalValue : nominalValues) {
+						out.writeUTF(nominalValue);
+					}
+				}
+			}
+			out.close();
+			byte[] header = headerBytes.toByteArray();
+
+			tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getAbsoluteFile().getParentFile());
+			RandomAccessFile file = new RandomAccessFile(tempFile, "rw");
+			try {
+				FileChannel channel = file.getChannel();
+				ByteBuffer prologue = ByteBuffer.allocate(12 + header.length);
+				prologue.putInt(MAGIC).putInt(VERSION).putInt(header.length).put(header);
+				prologue.flip();
+				writeFully(channel, prologue);
+
+				ByteBuffer buffer = ByteBuffer.allocateDirect((int)Math.min(BLOCK_SIZE, Math.max(8, 4L * caseCount)));
+				for(int i = 0; i < attributes.length; i ++) {
+					if(attributes[i] instanceof ContinuousAttribute) {
+						ContinuousAttribute attribute = (ContinuousAttribute)attributes[i];
+						writeFloats(channel, buffer, attribute.getValues());
+						writeInts(channel, buffer, attribute.getSortedIds());
+						writeInts(channel, buffer, attribute.getRanks());
+					}
+					else {
+						DiscreteAttribute attribute = (DiscreteAttribute)attributes[i];
+						buffer.clear();
+						if(attribute.getByteCodes() != null) {
+							buffer.put((byte)1).flip();
+							writeFully(channel, buffer);
+							writeBytes(channel, buffer, attribute.getByteCodes());
+						}
+						else {
+							buffer.put((byte)4).flip();
+							writeFully(channel, buffer);
+							writeInts(channel, buffer, attribute.getIntCodes());
+						}
+					}
+				}
+			}
+			finally {
+				file.close();
+			}
+
+			try {
+				Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch(AtomicMoveNotSupportedException e) {
+				Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			tempFile = null;
+		}
+		catch(IOException e) {
+			System.err.println(e);
+		}
+		finally {
+			if(tempFile != null) tempFile.delete();
+		}
+	}
+
+	/**
+	 * Delete the cache file.
+	 */
+	public void invalidate() {
+		cacheFile.delete();
+	}
+
+	private static long readFloats(FileChannel channel, long position, float[] values) throws IOException {
+		for(int offset = 0; offset < values.length; ) {
+			int length = Math.min(values.length - offset, BLOCK_SIZE / 4);
+			map(channel, position, 4L * length).asFloatBuffer().get(values, offset, length);
+			offset += length;
+			position += 4L * length;
+		}
+		return position;
+	}
+
+	private static long readInts(FileChannel channel, long position, int[] values) throws IOException {
+		for(int offset = 0; offset < values.length; ) {
+			int length = Math.min(values.length - offset, BLOCK_SIZE / 4);
+			map(channel, position, 4L * length).asIntBuffer().get(values, offset, length);
+			offset += length;
+			position += 4L * length;
+		}
+		return position;
+	}
+
+	private static long readBytes(FileChannel channel, long position, byte[] values) throws IOException {
+		for(int offset = 0; offset < values.length; ) {
+			int length = Math.min(values.length - offset, BLOCK_SIZE);
+			map(channel, position, length).get(values, offset, length);
+			offset += length;
+			position += length;
+		}
+		return position;
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		if(position + size > channel.size()) {
+			throw new IOException("Truncated cache file");
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+	}
+
+	private static void writeFloats(FileChannel channel, ByteBuffer buffer, float[] values) throws IOException {
+		for(int offset = 0; offset < values.length; ) {
+			int length = Math.min(values.length - offset, buffer.capacity() / 4);
+			buffer.clear();
+			buffer.asFloatBuffer().put(values, offset, length);
+			buffer.limit(4 * length);
+			writeFully(channel, buffer);
+			offset += length;
+		}
+	}
+
+	private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+		for(int offset = 0; offset < values.length; ) {
+			int length = Math.min(values.length - offset, buffer.capacity() / 4);
+			buffer.clear();
+			buffer.asIntBuffer().put(values, offset, length);
+			buffer.limit(4 * length);
+			writeFully(channel, buffer);
+			offset += length;
+		}
+	}
+
+	private static void writeBytes(FileChannel channel, ByteBuffer buffer, byte[] values) throws IOException {
+		for(int offset = 0; offset < values.length; ) {
+			int length = Math.min(values.length - offset, buffer.capacity());
+			buffer.clear();
+			buffer.put(values, offset, length);
+			buffer.flip();
+			writeFully(channel, buffer);
+			offset += length;
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+}
@@ -0,0 +1,455 @@
+/**
+ * @(#)UciDataGenerator.java        1.6 26/10/18
+ */
+package ml.dataset;
+
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+
+/**
+ * A generator of synthetic UCI-format data sets of any size, for load and scaling tests.
+ * <p>
+ * A generated data set has the specified numbers of continuous and discrete attributes, followed
+ * by the class attribute. The class of a case is decided by a planted concept, a random decision
+ * tree of the specified depth over the attributes, except for the noisy cases labeled at random.
+ * The continuous values are approximately normally distributed with three decimals, and a share of them is
+ * drawn from a small pool of values of each attribute, so that they are duplicated. Each
+ * attribute value is missing with the specified ratio, after the class has been decided.
+ * </p>
+ * <p>
+ * The generation is deterministic: the planted concept, the value pools and every block of cases
+ * are seeded from the seed of the generator alone, so the same settings write the same files on
+ * any machine. The cases are formatted straight into a byte buffer, so the files are streamed
+ * out as fast as they can be written.
+ * </p>
+ * <p>
+ * Usage: java ml.dataset.UciDataGenerator baseName -rows count [-test count] [-continuous count]
+ * [-discrete count] [-cardinality count] [-classes count] [-depth depth] [-duplicates ratio]
+ * [-missing ratio] [-noise ratio] [-seed seed]
+ * </p>
+ *
+ * @see         ml.dataset.UciDataSet
+ */
+public class UciDataGenerator {
+	// The number of the cases generated from a seed of their own
+	private static final int BLOCK_SIZE = 1 << 16;
+	// The size of the output buffer
+	private static final int BUFFER_SIZE = 1 << 20;
+	// The standard deviation of the continuous values
+	private static final double DEVIATION = 100.0;
+	// The number of the pooled values of a continuous attribute, which the duplicated values are drawn from
+	private static final int POOL_SIZE = 32;
+	// The maximal number of the nodes of the planted concept
+	private static final int MAX_CONCEPT_SIZE = 1 << 24;
+
+	// The numbers of the continuous and the discrete attributes
+	private int continuousCount = 5;
+	private int discreteCount = 5;
+	// The number of the nominal values of each discrete attribute
+	private int cardinality = 5;
+	// The number of the class values
+	private int classCount = 2;
+	// The depth of the planted concept
+	private int depth = 5;
+	// The ratios of the duplicated continuous values, the missing values and the noisy cases
+	private double duplicateRatio = 0.0;
+	private double missingRatio = 0.0;
+	private double noiseRatio = 0.1;
+	// The seed of the generation
+	private final long seed;
+
+	// The planted concept, a tree whose nodes are numbered in preorder: the tested attribute of
+	// each node (-1 for leaf nodes), the threshold of each continuous test in thousandths,
+	// the first child of each internal node, and the class of each leaf node
+	private int[] conceptAttributes;
+	private long[] conceptThresholds;
+	private int[] conceptChildren;
+	private int[] conceptClasses;
+	// The pooled values of each continuous attribute in thousandths
+	private long[][] pools;
+
+	/**
+	 * Initialize a generator with the specified seed.
+	 */
+	public UciDataGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	public void setContinuousCount(int continuousCount) {
+		this.continuousCount = continuousCount;
+	}
+
+	public void setDiscreteCount(int discreteCount) {
+		this.discreteCount = discreteCount;
+	}
+
+	public void setCardinality(int cardinality) {
+		this.cardinality = cardinality;
+	}
+
+	public void setClassCount(int classCount) {
+		this.classCount = classCount;
+	}
+
+	public void setDepth(int depth) {
+		this.depth = depth;
+	}
+
+	public void setDuplicateRatio(double duplicateRatio) {
+		this.duplicateRatio = duplicateRatio;
+	}
+
+	public void setMissingRatio(double missingRatio) {
+		this.missingRatio = missingRatio;
+	}
+
+	public void setNoiseRatio(double noiseRatio) {
+		this.noiseRatio = noiseRatio;
+	}
+
+	/**
+	 * Write the .names file, and the .data and .test files of the specified numbers of cases.
+	 * The .test file is not written if it has no case.
+	 * @param baseName the base name of the files
+	 */
+	public void generate(String baseName, long rows, long testRows) throws IOException {
+		if(continuousCount < 0 || discreteCount < 0 || continuousCount + discreteCount == 0) {
+			throw new IllegalArgumentException("There must be at least one attribute besides the class attribute");
+		}
+		if(cardinality < 1 || classCount < 1 || depth < 0) {
+			throw new IllegalArgumentException("The cardinality and the number of the classes must be positive");
+		}
+
+		plant();
+		writeNames(baseName + ".names");
+		// The cases of the .data and .test files are generated from different seeds
+		writeData(baseName + ".data", rows, 0);
+		if(testRows > 0) writeData(baseName + ".test", testRows, 1);
+	}
+
+	/**
+	 * Plant the concept and the pools of the continuous values.
+	 */
+	private void plant() {
+		Stream random = new Stream(seed);
+		this.pools = new long[continuousCount][POOL_SIZE];
+		for(int j = 0; j < continuousCount; j ++) {
+			for(int k = 0; k < POOL_SIZE; k ++) {
+				// The pooled values are integers, like the values a sensor or a form would repeat
+				pools[j][k] = Math.round(random.nextGaussian() * DEVIATION) * 1000;
+			}
+		}
+
+		// The size of a full tree of the depth bounds the number of the nodes
+		int maxChildren = Math.max(2, cardinality);
+		long size = 1;
+		for(long level = 0, width = 1; level < depth; level ++) {
+			width *= maxChildren;
+			size += width;
+			if(size > MAX_CONCEPT_SIZE) {
+				throw new IllegalArgumentException("The planted concept is too deep for the cardinality");
+			}
+		}
+		this.conceptAttributes = new int[(int)size];
+		this.conceptThresholds = new long[(int)size];
+		this.conceptChildren = new int[(int)size];
+		this.conceptClasses = new int[(int)size];
+		plantNode(random, 0, 0, 1);
+	}
+
+	/**
+	 * Plant a subtree of the concept from the specified node.
+	 * @param next the number of the next free node
+	 * @return the number of the next free node after the subtree
+	 */
+	private int plantNode(Stream random, int node, int level, int next) {
+		if(level == depth) {
+			conceptAttributes[node] = -1;
+			conceptClasses[node] = random.nextInt(classCount);
+			return next;
+		}
+
+		int attribute = random.nextInt(continuousCount + discreteCount);
+		conceptAttributes[node] = attribute;
+		int childCount = 2;
+		if(attribute < continuousCount) {
+			// Thresholds near the center split the cases into sizable branches
+			conceptThresholds[node] = Math.round(random.nextGaussian() * DEVIATION * 500);
+		}
+		else childCount = cardinality;
+
+		int firstChild = next;
+		conceptChildren[node] = firstChild;
+		next += childCount;
+		for(int k = 0; k < childCount; k ++) {
+			next = plantNode(random, firstChild + k, level + 1, next);
+		}
+		return next;
+	}
+
+	/**
+	 * Classify a case with the planted concept.
+	 * @param values the continuous values in thousandths and the indices of the discrete values
+	 */
+	private int classify(long[] values) {
+		int node = 0;
+		while(conceptAttributes[node] >= 0) {
+			int attribute = conceptAttributes[node];
+			int branch;
+			if(attribute < continuousCount) branch = (values[attribute] < conceptThresholds[node]) ? 0 : 1;
+			else branch = (int)values[attribute];
+			node = conceptChildren[node] + branch;
+		}
+		return conceptClasses[node];
+	}
+
+	private void writeNames(String filename) throws IOException {
+		PrintWriter names = new PrintWriter(new FileWriter(filename));
+		try {
+			names.println("the target attribute: class");
+			for(int j = 0; j < continuousCount; j ++) {
+				names.println("c" + j + ": continuous");
+			}
+			for(int j = 0; j < discreteCount; j ++) {
+				names.println("d" + j + ": " + join("v", cardinality));
+			}
+			names.println("class: " + join("k", classCount));
+		}
+		finally {
+			names.close();
+		}
+	}
+
+	/**
+	 * Write the specified number of the cases into a data file.
+	 * @param file the index of the file, which seeds its cases together with the generator seed
+	 */
+	private void writeData(String filename, long rows, int file) throws IOException {
+		int attributeCount = continuousCount + discreteCount;
+		long[] values = new long[attributeCount];
+		byte[][] nominalValues = encode("v", cardinality);
+		byte[][] classValues = encode("k", classCount);
+		Stream random = new Stream(0);
+
+		Output out = new Output(new FileOutputStream(filename));
+		try {
+			for(long row = 0; row < rows; row ++) {
+				// Seed every block of the cases on its own
+				if(row % BLOCK_SIZE == 0) random = new Stream(seed ^ Stream.mix(((long)file << 48) + row / BLOCK_SIZE + 1));
+
+				for(int j = 0; j < continuousCount; j ++) {
+					if(duplicateRatio > 0 && random.nextDouble() < duplicateRatio) values[j] = pools[j][random.nextInt(POOL_SIZE)];
+					else values[j] = Math.round(random.nextGaussian() * DEVIATION * 1000);
+				}
+				for(int j = continuousCount; j < attributeCount; j ++) {
+					values[j] = random.nextInt(cardinality);
+				}
+				int classIndex = (noiseRatio > 0 && random.nextDouble() < noiseRatio) ? random.nextInt(classCount)
+				                                                                      : classify(values);
+
+				for(int j = 0; j < attributeCount; j ++) {
+					if(missingRatio > 0 && random.nextDouble() < missingRatio) out.write('?');
+					else if(j < continuousCount) out.writeThousandths(values[j]);
+					else out.write(nominalValues[(int)values[j]]);
+					out.write(',');
+				}
+				out.write(classValues[classIndex]);
+				out.write('\n');
+			}
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private static String join(String prefix, int count) {
+		StringBuilder values = new StringBuilder();
+		for(int k = 0; k < count; k ++) {
+			if(k > 0) values.append(", ");
+			values.append(prefix).append(k);
+		}
+		return values.toString();
+	}
+
+	private static byte[][] encode(String prefix, int count) {
+		byte[][] values = new byte[count][];
+		for(int k = 0; k < count; k ++) {
+			values[k] = (prefix + k).getBytes();
+		}
+		return values;
+	}
+
+	/**
+	 * A stream of pseudorandom numbers, the SplitMix64 generator, defined here so that the
+	 * numbers never change with the Java platform.
+	 */
+	private static class Stream {
+		private static final double SQRT3 = Math.sqrt(3);
+		private long state;
+
+		Stream(long seed) {
+			this.state = seed;
+		}
+
+		static long mix(long z) {
+			z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+			z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+			return z ^ (z >>> 31);
+		}
+
+		long nextLong() {
+			return mix(state += 0x9e3779b97f4a7c15L);
+		}
+
+		/**
+		 * A double uniformly distributed in [0, 1).
+		 */
+		double nextDouble() {
+			return (nextLong() >>> 11) * 0x1.0p-53;
+		}
+
+		/**
+		 * An int uniformly distributed in [0, bound).
+		 */
+		int nextInt(int bound) {
+			return (int)(((nextLong() >>> 33) * bound) >>> 31);
+		}
+
+		/**
+		 * An approximately standard normal number: the sum of four uniform numbers of 16 bits
+		 * (the Irwin-Hall distribution), scaled to the unit variance. It takes no transcendental
+		 * function, which would dominate the generation and might differ from platform to platform.
+		 */
+		double nextGaussian() {
+			long bits = nextLong();
+			long sum = (bits & 0xffff) + ((bits >>> 16) & 0xffff) + ((bits >>> 32) & 0xffff) + (bits >>> 48);
+			return ((sum + 2) / 65536.0 - 2) * SQRT3;
+		}
+	}
+
+	/**
+	 * A buffered output formatting the values straight into bytes.
+	 */
+	private static class Output {
+		private final OutputStream out;
+		private final byte[] buffer = new byte[BUFFER_SIZE];
+		private int position;
+
+		Output(OutputStream out) {
+			this.out = out;
+		}
+
+		void write(int b) throws IOException {
+			if(position == buffer.length) flush();
+			buffer[position ++] = (byte)b;
+		}
+
+		void write(byte[] bytes) throws IOException {
+			if(position + bytes.length > buffer.length) flush();
+			System.arraycopy(bytes, 0, buffer, position, bytes.length);
+			position += bytes.length;
+		}
+
+		/**
+		 * Write a value given in thousandths with three decimals.
+		 */
+		void writeThousandths(long value) throws IOException {
+			// A long has at most 20 digits, plus the sign and the point
+			if(position + 24 > buffer.length) flush();
+			if(value < 0) {
+				buffer[position ++] = '-';
+				value = -value;
+			}
+			long integer = value / 1000;
+			int fraction = (int)(value % 1000);
+
+			int end = position + digitCount(integer);
+			for(int i = end - 1; i >= position; i --) {
+				buffer[i] = (byte)('0' + integer % 10);
+				integer /= 10;
+			}
+			position = end;
+			buffer[position ++] = '.';
+			buffer[position ++] = (byte)('0' + fraction / 100);
+			buffer[position ++] = (byte)('0' + fraction / 10 % 10);
+			buffer[position ++] = (byte)('0' + fraction % 10);
+		}
+
+		private static int digitCount(long value) {
+			int count = 1;
+			while(value >= 10) {
+				value /= 10;
+				count ++;
+			}
+			return count;
+		}
+
+		void flush() throws IOException {
+			out.write(buffer, 0, position);
+			position = 0;
+		}
+
+		void close() throws IOException {
+			try {
+				flush();
+			}
+			finally {
+				out.close();
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if(args.length < 1 || args[0].equalsIgnoreCase("-h") || args[0].equalsIgnoreCase("-help")) {
+			usage();
+			return;
+		}
+
+		String baseName = args[0];
+		long rows = -1, testRows = 0, seed = 1;
+		int continuousCount = 5, discreteCount = 5, cardinality = 5, classCount = 2, depth = 5;
+		double duplicateRatio = 0, missingRatio = 0, noiseRatio = 0.1;
+		for(int i = 1; i < args.length - 1; i += 2) {
+			String option = args[i], value = args[i+1];
+			if(option.equals("-rows")) rows = Long.parseLong(value);
+			else if(option.equals("-test")) testRows = Long.parseLong(value);
+			else if(option.equals("-continuous")) continuousCount = Integer.parseInt(value);
+			else if(option.equals("-discrete")) discreteCount = Integer.parseInt(value);
+			else if(option.equals("-cardinality")) cardinality = Integer.parseInt(value);
+			else if(option.equals("-classes")) classCount = Integer.parseInt(value);
+			else if(option.equals("-depth")) depth = Integer.parseInt(value);
+			else if(option.equals("-duplicates")) duplicateRatio = Double.parseDouble(value);
+			else if(option.equals("-missing")) missingRatio = Double.parseDouble(value);
+			else if(option.equals("-noise")) noiseRatio = Double.parseDouble(value);
+			else if(option.equals("-seed")) seed = Long.parseLong(value);
+			else {
+				usage();
+				return;
+			}
+		}
+		if(rows < 0) {
+			usage();
+			return;
+		}
+
+		UciDataGenerator generator = new UciDataGenerator(seed);
+		generator.setContinuousCount(continuousCount);
+		generator.setDiscreteCount(discreteCount);
+		generator.setCardinality(cardinality);
+		generator.setClassCount(classCount);
+		generator.setDepth(depth);
+		generator.setDuplicateRatio(duplicateRatio);
+		generator.setMissingRatio(missingRatio);
+		generator.setNoiseRatio(noiseRatio);
+		generator.generate(baseName, rows, testRows);
+	}
+
+	private static void usage() {
+		System.out.println("Usage: java ml.dataset.UciDataGenerator baseName -rows count [-test count]"
+				+ " [-continuous count] [-discrete count] [-cardinality count] [-classes count] [-depth depth]"
+				+ " [-duplicates ratio] [-missing ratio] [-noise ratio] [-seed seed]");
+	}
+}
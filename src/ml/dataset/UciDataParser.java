@@ -0,0 +1,415 @@
+/**
+ * @(#)UciDataParser.java        1.6 26/10/18
+ */
+package ml.dataset;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A parser loading the data file of a UCI-format data set directly into typed columns.
+ * <p>
+ * The data file is memory-mapped and split into line-aligned chunks, which are parsed
+ * in parallel. The attribute values are parsed straight from the bytes into the columns of
+ * each chunk without creating any String, and the columns of all the chunks are stitched
+ * together at the end.<br>
+ * The data file is interpreted in the same way as {@link UciDataSet#loadData(String filename)}
+ * does: blank lines are omitted, the values are separated with commas, empty values between
+ * two adjacent commas are omitted and the values are trimmed.
+ * </p>
+ *
+ * @see         ml.dataset.UciDataSet
+ */
+public class UciDataParser {
+	// The minimal size of a chunk, smaller files are parsed in fewer chunks
+	private static final int MIN_CHUNK_SIZE = 1 << 20;
+	// The maximal size of a chunk, which must be mapped by a single MappedByteBuffer
+	private static final int MAX_CHUNK_SIZE = 1 << 30;
+
+	// The meta data of the data set to be parsed
+	private final MetaData metaData;
+	// The charset of the data file, the same as FileReader uses
+	private final Charset charset;
+	// The dictionaries of the discrete attributes, null for continuous attributes
+	private final ByteDictionary[] dictionaries;
+
+	/**
+	 * Initialize a parser for the data set with the specified meta data.
+	 */
+	public UciDataParser(MetaData metaData) {
+		this.metaData = metaData;
+		this.charset = Charset.defaultCharset();
+
+		int attributeCount = metaData.getAttributeCount();
+		this.dictionaries = new ByteDictionary[attributeCount];
+		for(int i = 0; i < attributeCount; i ++) {
+			if(!metaData.isAttributeContinuousAt(i)) {
+				dictionaries[i] = new ByteDictionary(metaData.getAttributeNominalValuesAt(i), charset);
+			}
+		}
+	}
+
+	/**
+	 * Parse the specified data file into the typed columns of the attributes.
+	 * @param filename the name of the data file
+	 * @return the attributes wrapping the parsed columns
+	 */
+	public Attribute[] parse(String filename) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		List<ChunkParsing> chunks = new ArrayList<ChunkParsing>();
+		try {
+			FileChannel channel = file.getChannel();
+			long[] bounds = splitChunks(channel);
+			for(int i = 0; i < bounds.length - 1; i ++) {
+				if(bounds[i] < bounds[i+1]) {
+					chunks.add(new ChunkParsing(channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i+1] - bounds[i]), bounds[i]));
+				}
+			}
+		}
+		finally {
+			// The mapped chunks remain valid after the file is closed
+			file.close();
+		}
+
+		// Parse the chunks on all the cores
+		if(chunks.size() > 1) {
+			if(ForkJoinTask.inForkJoinPool()) ForkJoinTask.invokeAll(chunks);
+			else ForkJoinPool.commonPool().invoke(new ChunksParsing(chunks));
+		}
+		else for(ChunkParsing chunk : chunks) {
+			chunk.invoke();
+		}
+
+		return stitch(chunks);
+	}
+
+	/**
+	 * Split the data file into line-aligned chunks.
+	 * @return the bounds of the chunks, the i<sup>th</sup> chunk ranging from the i<sup>th</sup>
+	 *         (inclusive) to the (i+1)<sup>th</sup> (exclusive) bound
+	 */
+	private long[] splitChunks(FileChannel channel) throws IOException {
+		long size = channel.size();
+		int parallelism = ForkJoinPool.getCommonPoolParallelism();
+		long chunkCount = Math.max(Math.min(size / MIN_CHUNK_SIZE, 4L * parallelism), (size + MAX_CHUNK_SIZE/2 - 1) / (MAX_CHUNK_SIZE/2));
+		chunkCount = Math.max(chunkCount, 1);
+
+		long[] bounds = new long[(int)chunkCount + 1];
+		for(int i = 1; i < chunkCount; i ++) {
+			bounds[i] = Math.max(bounds[i-1], nextLineBegin(channel, size / chunkCount * i));
+		}
+		bounds[(int)chunkCount] = size;
+		return bounds;
+	}
+
+	/**
+	 * Find the begin index of the first line following the specified position.
+	 */
+	private static long nextLineBegin(FileChannel channel, long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		long size = channel.size();
+		while(position < size) {
+			buffer.clear();
+			int count = channel.read(buffer, position);
+			for(int i = 0; i < count; i ++) {
+				byte b = buffer.get(i);
+				if(b == '\n' || b == '\r') return position + i + 1;
+			}
+			position += count;
+		}
+		return size;
+	}
+
+	/**
+	 * Stitch the columns of all the chunks together.
+	 */
+	private Attribute[] stitch(List<ChunkParsing> chunks) {
+		int caseCount = 0;
+		for(ChunkParsing chunk : chunks) {
+			caseCount += chunk.rowCount;
+		}
+
+		int attributeCount = metaData.getAttributeCount();
+		Attribute[] attributes = new Attribute[attributeCount];
+		for(int i = 0; i < attributeCount; i ++) {
+			String name = metaData.getAttributeNameAt(i);
+			int offset = 0;
+			if(metaData.isAttributeContinuousAt(i)) {
+				float[] values = new float[caseCount];
+				for(ChunkParsing chunk : chunks) {
+					System.arraycopy(chunk.values[i], 0, values, offset, chunk.rowCount);
+					offset += chunk.rowCount;
+				}
+				attributes[i] = new ContinuousAttribute(name, values);
+			}
+			else {
+				String[] nominalValues = metaData.getAttributeNominalValuesAt(i);
+				int[] codes = new int[caseCount];
+				for(ChunkParsing chunk : chunks) {
+					System.arraycopy(chunk.codes[i], 0, codes, offset, chunk.rowCount);
+					offset += chunk.rowCount;
+				}
+				attributes[i] = new DiscreteAttribute(name, nominalValues, codes);
+			}
+		}
+		return attributes;
+	}
+
+	/**
+	 * Parse a continuous attribute value from the bytes within [from, to) of the buffer,
+	 * through {@link ContinuousAttribute#parseDecimal(CharSequence, int, int)} whenever the value
+	 * is plain enough, otherwise through <i>Float.parseFloat</i>.
+	 */
+	private float parseFloat(ByteBuffer buffer, ByteSequence bytes, int from, int to) {
+		if(to - from == 1 && buffer.get(from) == '?') {
+			return Float.NaN;
+		}
+		float value = ContinuousAttribute.parseDecimal(bytes, from, to);
+		return (value == value) ? value : Float.parseFloat(decode(buffer, from, to));
+	}
+
+	/**
+	 * Decode the bytes within [from, to) of the buffer into a String.
+	 */
+	private String decode(ByteBuffer buffer, int from, int to) {
+		byte[] bytes = new byte[to - from];
+		for(int i = 0; i < bytes.length; i ++) {
+			bytes[i] = buffer.get(from + i);
+		}
+		return new String(bytes, charset);
+	}
+
+	/**
+	 * A task parsing all the chunks.
+	 */
+	private static class ChunksParsing extends RecursiveTask<Void> {
+		private static final long serialVersionUID = 1L;
+		private final List<ChunkParsing> chunks;
+
+		ChunksParsing(List<ChunkParsing> chunks) {
+			this.chunks = chunks;
+		}
+
+		protected Void compute() {
+			invokeAll(chunks);
+			return null;
+		}
+	}
+
+	/**
+	 * A task parsing a line-aligned chunk of the data file into its own columns.
+	 */
+	private class ChunkParsing extends RecursiveTask<Void> {
+		private static final long serialVersionUID = 1L;
+		// The mapped bytes of the chunk
+		private final ByteBuffer buffer;
+		// The mapped bytes of the chunk as the characters of the decimal parser
+		private final ByteSequence bytes;
+		// The position of the chunk in the data file
+		private final long position;
+		// The number of the parsed rows
+		private int rowCount;
+		// The parsed columns of the continuous attributes, null for discrete attributes
+		private float[][] values;
+		// The parsed columns of the discrete attributes, null for continuous attributes
+		private int[][] codes;
+
+		ChunkParsing(ByteBuffer buffer, long position) {
+			this.buffer = buffer;
+			this.bytes = new ByteSequence(buffer);
+			this.position = position;
+		}
+
+		protected Void compute() {
+			int attributeCount = metaData.getAttributeCount();
+			int capacity = 1024;
+			this.values = new float[attributeCount][];
+			this.codes = new int[attributeCount][];
+			for(int i = 0; i < attributeCount; i ++) {
+				if(dictionaries[i] == null) values[i] = new float[capacity];
+				else codes[i] = new int[capacity];
+			}
+
+			int limit = buffer.limit();
+			int lineBegin = 0;
+			while(lineBegin < limit) {
+				int lineEnd = lineBegin;
+				while(lineEnd < limit && buffer.get(lineEnd) != '\n' && buffer.get(lineEnd) != '\r') {
+					lineEnd ++;
+				}
+
+				if(!isBlank(lineBegin, lineEnd)) {
+					if(rowCount == capacity) {
+						capacity *= 2;
+						grow(capacity);
+					}
+					parseLine(lineBegin, lineEnd);
+					rowCount ++;
+				}
+				lineBegin = lineEnd + 1;
+			}
+			return null;
+		}
+
+		/**
+		 * Query whether the line within [from, to) has nothing but white spaces
+		 */
+		private boolean isBlank(int from, int to) {
+			for(int i = from; i < to; i ++) {
+				if((buffer.get(i) & 0xFF) > ' ') return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Parse the attribute values of the line within [from, to) into the current row.
+		 */
+		private void parseLine(int from, int to) {
+			int attributeIndex = 0;
+			int attributeCount = values.length;
+			int fieldBegin = from;
+			for(int j = from; j <= to && attributeIndex < attributeCount; j ++) {
+				if(j < to && buffer.get(j) != ',') continue;
+
+				// Empty values between two adjacent commas are omitted
+				if(fieldBegin != j) {
+					// Trim the value
+					int begin = fieldBegin, end = j;
+					while(begin < end && (buffer.get(begin) & 0xFF) <= ' ') begin ++;
+					while(end > begin && (buffer.get(end-1) & 0xFF) <= ' ') end --;
+
+					if(dictionaries[attributeIndex] == null) {
+						if(begin == end) {
+							throw new NumberFormatException("Empty value \"" + decode(buffer, fieldBegin, j) + "\" of the attribute "
+									+ metaData.getAttributeNames()[attributeIndex] + " at byte " + (position + fieldBegin));
+						}
+						values[attributeIndex][rowCount] = parseFloat(buffer, bytes, begin, end);
+					}
+					else {
+						codes[attributeIndex][rowCount] = dictionaries[attributeIndex].lookup(buffer, begin, end);
+					}
+					attributeIndex ++;
+				}
+				fieldBegin = j + 1;
+			}
+
+			if(attributeIndex < attributeCount) {
+				throw new IllegalArgumentException("Only " + attributeIndex + " of " + attributeCount
+						+ " attribute values are found in the line at byte " + (position + from));
+			}
+		}
+
+		/**
+		 * Grow the columns of the chunk to the specified capacity.
+		 */
+		private void grow(int capacity) {
+			for(int i = 0; i < values.length; i ++) {
+				if(values[i] != null) {
+					float[] grown = new float[capacity];
+					System.arraycopy(values[i], 0, grown, 0, rowCount);
+					values[i] = grown;
+				}
+				else {
+					int[] grown = new int[capacity];
+					System.arraycopy(codes[i], 0, grown, 0, rowCount);
+					codes[i] = grown;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The bytes of a buffer read as the characters of the decimal parser, each byte a character.
+	 * @see ml.dataset.ContinuousAttribute#parseDecimal(CharSequence, int, int)
+	 */
+	private static final class ByteSequence implements CharSequence {
+		private final ByteBuffer buffer;
+
+		ByteSequence(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		public int length() {
+			return buffer.limit();
+		}
+
+		public char charAt(int index) {
+			return (char)(buffer.get(index) & 0xFF);
+		}
+
+		public CharSequence subSequence(int start, int end) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * A dictionary mapping the encoded bytes of the nominal values of a discrete attribute
+	 * to their codes.
+	 * @see ml.dataset.DiscreteAttribute#getCode(int caseIndex)
+	 */
+	private static class ByteDictionary {
+		// The open-addressing hash table of the encoded nominal values and their codes
+		private final byte[][] keys;
+		private final int[] codes;
+		private final int mask;
+
+		ByteDictionary(String[] nominalValues, Charset charset) {
+			int capacity = Integer.highestOneBit(Math.max(2, nominalValues.length) * 4 - 1);
+			this.keys = new byte[capacity][];
+			this.codes = new int[capacity];
+			this.mask = capacity - 1;
+
+			for(int j = 0; j < nominalValues.length; j ++) {
+				byte[] key = nominalValues[j].getBytes(charset);
+				int slot = hash(ByteBuffer.wrap(key), 0, key.length) & mask;
+				while(keys[slot] != null && !matches(keys[slot], ByteBuffer.wrap(key), 0, key.length)) {
+					slot = (slot + 1) & mask;
+				}
+				// The code of the last duplicate is kept, as the nominal values are scanned forward
+				keys[slot] = key;
+				codes[slot] = j + 1;
+			}
+		}
+
+		/**
+		 * Look up the code of the value within [from, to) of the buffer
+		 * @return the code of the value, or 0 if the value is missing or not declared
+		 */
+		int lookup(ByteBuffer buffer, int from, int to) {
+			if(to - from == 1 && buffer.get(from) == '?') {
+				return DiscreteAttribute.MISSING_CODE;
+			}
+
+			int slot = hash(buffer, from, to) & mask;
+			while(keys[slot] != null) {
+				if(matches(keys[slot], buffer, from, to)) return codes[slot];
+				slot = (slot + 1) & mask;
+			}
+			return DiscreteAttribute.MISSING_CODE;
+		}
+
+		private static int hash(ByteBuffer buffer, int from, int to) {
+			int h = 0;
+			for(int i = from; i < to; i ++) {
+				h = 31 * h + buffer.get(i);
+			}
+			return h ^ (h >>> 16);
+		}
+
+		private static boolean matches(byte[] key, ByteBuffer buffer, int from, int to) {
+			if(key.length != to - from) return false;
+			for(int i = 0; i < key.length; i ++) {
+				if(key[i] != buffer.get(from + i)) return false;
+			}
+			return true;
+		}
+	}
+}
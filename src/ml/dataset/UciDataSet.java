@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.StringTokenizer;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.FileReader;
 
@@ -18,6 +19,8 @@ import java.io.FileReader;
  * @see         ml.dataset.UciDataSet
  */
 public class UciDataSet extends DataSet{
+	// The directory of the binary columnar caches of the data sets, null not to cache them
+	private static volatile File cacheDirectory = null;
 
 	/**
 	 * Initialize a UCI data set.
@@ -25,12 +28,47 @@ public class UciDataSet extends DataSet{
 	 */
 	public UciDataSet(String baseName){
 		super(baseName);
-		addColumnSetView();
 	}
 
+	/**
+	 * Get the directory of the binary columnar caches of the data sets, or <i>null</i> if the data sets are not cached.
+	 */
+	public static File getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	/**
+	 * Set the directory of the binary columnar caches of the data sets loaded afterwards,
+	 * or <i>null</i> not to cache them, which is the default.
+	 * @see ml.dataset.UciDataCache
+	 */
+	public static void setCacheDirectory(File directory) {
+		UciDataSet.cacheDirectory = directory;
+	}
+
+	/**
+	 * Load the data set from its binary columnar cache if the data sets are cached and the
+	 * cache is up to date. Otherwise load the meta data, parse the data straight into the
+	 * typed columns, and write the cache if the data sets are cached.
+	 * @see ml.dataset.UciDataCache
+	 * @see ml.dataset.UciDataParser
+	 */
 	public void load(String baseName){
+		File directory = cacheDirectory;
+		UciDataCache cache = (directory == null) ? null : new UciDataCache(baseName, directory);
+		if(cache != null && cache.read(this)) return;
+
 		setMetaData(loadMetaData(baseName + ".names"));
-		setTrainData(loadData(baseName + ".data"));
+		try {
+			setAttributes(new UciDataParser(metaData).parse(baseName + ".data"));
+		}
+		catch(IOException e) {
+			System.err.println(e);
+			setTrainData(new String[0][]);
+			addColumnSetView();
+			return;
+		}
+		if(cache != null) cache.write(this);
     }
 
 	/**
@@ -91,7 +129,7 @@ public class UciDataSet extends DataSet{
 	        			while(token.hasMoreTokens()) {
 	        				values.add(token.nextToken().trim());
 	        			}
-	        			tempNominalValues.add((String[])values.toArray(new String[0]));
+	        			tempNominalValues.add(values.toArray(new String[0]));
 	        		}
 
 	        		attributeIndex ++;
@@ -104,8 +142,8 @@ public class UciDataSet extends DataSet{
  		}
 
 		// Transform the ArrayList to arrays
-		String[] attributeNames = (String[])tempAttributeNames.toArray(new String[0]);
-		String[][] nominalValues = (String[][])tempNominalValues.toArray(new String[0][]);
+		String[] attributeNames = tempAttributeNames.toArray(new String[0]);
+		String[][] nominalValues = tempNominalValues.toArray(new String[0][]);
 		boolean[] isContinuous = new boolean[tempIsContinuous.size()];
 		for(int i = 0; i < isContinuous.length; i ++) {
 			isContinuous[i] = tempIsContinuous.get(i);
@@ -138,7 +176,7 @@ public class UciDataSet extends DataSet{
         }
 
         // Transform the dynamic ArrayList to static Array
-        return (String[][])testList.toArray(new String[0][]);
+        return testList.toArray(new String[0][]);
     }
 
 	/**
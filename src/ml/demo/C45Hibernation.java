@@ -4,9 +4,11 @@
 
 package ml.demo;
 
+import java.io.File;
 import ml.dataset.DataSet;
 import ml.dataset.UciDataSet;
 import ml.classifier.dt.DecisionTree;
+import ml.classifier.dt.ModelCache;
 import ml.util.Persistence;
 
 /**
@@ -33,13 +35,24 @@ public class C45Hibernation {
 	    String dataSetName = args[0];
 	    DataSet dataSet = new UciDataSet(dataSetName);
 
+	    // Load the tree from the cache if one is specified
+	    DecisionTree tree;
+	    if (args.length > 2 && (args[1].equals("-cache") || args[1].equals("-c"))) {
+	    	ModelCache cache = new ModelCache(new File(args[2]));
+	    	tree = cache.build(dataSet, null, null);
+	    	System.err.println(cache);
+	    }
+	    else {
+	    	tree = new DecisionTree(dataSet);
+	    }
+
 	    //to xml string
-		String xml = Persistence.toXml(new DecisionTree(dataSet));
+		String xml = Persistence.toXml(tree);
 		System.out.println(xml);
 	}
 
 	private static void usage(String... messages) {
- 	    System.out.println("Usage: java " + C45Hibernation.class + " dataSetName ");
+ 	    System.out.println("Usage: java " + C45Hibernation.class + " dataSetName [-cache directory]");
  	    for (String line : messages) {
  	    	System.out.println(line);
  	    }
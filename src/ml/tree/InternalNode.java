@@ -33,6 +33,12 @@ public class InternalNode extends TreeNode {
 	 * This is used for the speedup of C45 algorithm.
 	 */
 	private int cutRank;
+	/**
+	 * The weight distribution of the train data on the branches of the test, whose first
+	 * element is the weight of the train data with unknown value on the test attribute.
+	 * This is recorded when the tree node is split, for the speedup of pruning.
+	 */
+	private float[] branchDistribution;
 
 	/**
 	 * Initialize an internal tree node.
@@ -87,6 +93,22 @@ public class InternalNode extends TreeNode {
 		this.cutRank = cutRank;
 	}
 
+	/**
+	 * Get the weight distribution of the train data on the branches recorded when the internal
+	 * node was split, or <i>null</i> if none is recorded
+	 */
+	public float[] getBranchDistribution() {
+		return this.branchDistribution;
+	}
+
+	/**
+	 * Set the weight distribution of the train data on the branches, whose first element is the
+	 * weight of the train data with unknown value on the test attribute
+	 */
+	public void setBranchDistribution(float[] branchDistribution) {
+		this.branchDistribution = branchDistribution;
+	}
+
 	/**
 	 * Get the test attribute of the internal node
 	 */
@@ -0,0 +1,439 @@
+/**
+ * @(#)ClassFileEmitter.java        1.6 26/10/18
+ */
+
+package ml.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal emitter of JVM class files.
+ * <p>
+ * It supports what a generated classifier needs: a class with a super class and interfaces,
+ * methods with their bytecode, and a constant pool of class, method, integer and float
+ * constants. The class files are emitted in version 49.0, which requires no stack map frames.
+ * </p>
+ */
+public class ClassFileEmitter {
+	public static final int ACC_PUBLIC = 0x0001;
+	public static final int ACC_PRIVATE = 0x0002;
+	public static final int ACC_PROTECTED = 0x0004;
+	public static final int ACC_STATIC = 0x0008;
+	public static final int ACC_FINAL = 0x0010;
+	public static final int ACC_SUPER = 0x0020;
+
+	public static final int ICONST_0 = 0x03;
+	public static final int BIPUSH = 0x10;
+	public static final int SIPUSH = 0x11;
+	public static final int LDC = 0x12;
+	public static final int LDC_W = 0x13;
+	public static final int ALOAD_0 = 0x2a;
+	public static final int ALOAD_1 = 0x2b;
+	public static final int FLOAD_1 = 0x23;
+	public static final int FALOAD = 0x30;
+	public static final int FSTORE_1 = 0x44;
+	public static final int F2I = 0x8b;
+	public static final int FCMPL = 0x95;
+	public static final int FCMPG = 0x96;
+	public static final int IFNE = 0x9a;
+	public static final int IFLT = 0x9b;
+	public static final int IFGE = 0x9c;
+	public static final int GOTO = 0xa7;
+	public static final int TABLESWITCH = 0xaa;
+	public static final int IRETURN = 0xac;
+	public static final int RETURN = 0xb1;
+	public static final int INVOKESPECIAL = 0xb7;
+	public static final int INVOKESTATIC = 0xb8;
+
+	// The constant pool limit of a class file
+	public static final int MAX_CONSTANTS = 0xFFFF;
+	// The code length limit of a method
+	public static final int MAX_CODE_LENGTH = 0xFFFF;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_FLOAT = 4;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	// The entries of the constant pool, each entry beginning with its tag
+	private final ByteArrayOutputStream constants = new ByteArrayOutputStream();
+	private final DataOutputStream constantsOut = new DataOutputStream(constants);
+	// The indices of the emitted constants
+	private final Map<String, Integer> constantIndices = new HashMap<String, Integer>();
+	// The next index of the constant pool
+	private int constantCount = 1;
+
+	private final int access;
+	private final int codeAttribute;
+	private final int thisClass;
+	private final int superClass;
+	private final int[] interfaces;
+	private final List<Code> methods = new ArrayList<Code>();
+
+	/**
+	 * Initialize a class file.
+	 * @param access the access flags of the class
+	 * @param className the internal name of the class, <i>eg</i> ml/classifier/dt/Generated
+	 * @param superName the internal name of the super class
+	 * @param interfaceNames the internal names of the implemented interfaces
+	 */
+	public ClassFileEmitter(int access, String className, String superName, String... interfaceNames) {
+		this.access = access;
+		this.codeAttribute = utf8Constant("Code");
+		this.thisClass = classConstant(className);
+		this.superClass = classConstant(superName);
+		this.interfaces = new int[interfaceNames.length];
+		for(int i = 0; i < interfaceNames.length; i ++) {
+			interfaces[i] = classConstant(interfaceNames[i]);
+		}
+	}
+
+	/**
+	 * Get the number of the entries in the constant pool.
+	 */
+	public int getConstantCount() {
+		return constantCount;
+	}
+
+	/**
+	 * Get the number of the methods.
+	 */
+	public int getMethodCount() {
+		return methods.size();
+	}
+
+	/**
+	 * Add a method to the class
+	 * @param access the access flags of the method
+	 * @param name the name of the method
+	 * @param descriptor the descriptor of the method, <i>eg</i> ([F)I
+	 * @param maxStack the maximal depth of the operand stack
+	 * @param maxLocals the number of the local variables, including the parameters
+	 * @return the code of the method to be emitted
+	 */
+	public Code addMethod(int access, String name, String descriptor, int maxStack, int maxLocals) {
+		Code code = new Code(access, utf8Constant(name), utf8Constant(descriptor), maxStack, maxLocals);
+		methods.add(code);
+		return code;
+	}
+
+	/**
+	 * Emit the class file.
+	 * @throws IllegalStateException if the class exceeds the limits of a class file
+	 */
+	public byte[] toByteArray() {
+		if(constantCount > MAX_CONSTANTS) {
+			throw new IllegalStateException("Too many constants: " + constantCount);
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(49);
+			out.writeShort(constantCount);
+			constantsOut.flush();
+			constants.writeTo(out);
+
+			out.writeShort(access);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(interfaces.length);
+			for(int anInterface : interfaces) {
+				out.writeShort(anInterface);
+			}
+			// No fields
+			out.writeShort(0);
+
+			out.writeShort(methods.size());
+			for(Code method : methods) {
+				byte[] code = method.toByteArray();
+				out.writeShort(method.access);
+				out.writeShort(method.name);
+				out.writeShort(method.descriptor);
+				// The Code attribute only
+				out.writeShort(1);
+				out.writeShort(codeAttribute);
+				out.writeInt(12 + code.length);
+				out.writeShort(method.maxStack);
+				out.writeShort(method.maxLocals);
+				out.writeInt(code.length);
+				out.write(code);
+				// No exception table or attributes
+				out.writeShort(0);
+				out.writeShort(0);
+			}
+			// No class attributes
+			out.writeShort(0);
+		}
+		catch(IOException e) {
+			throw new InternalError(e.toString());
+		}
+		return bytes.toByteArray();
+	}
+
+	private int utf8Constant(String value) {
+		Integer index = constantIndices.get("U" + value);
+		if(index != null) return index;
+		try {
+			constantsOut.writeByte(CONSTANT_UTF8);
+			constantsOut.writeUTF(value);
+		}
+		catch(IOException e) {
+			throw new InternalError(e.toString());
+		}
+		return newConstant("U" + value, 1);
+	}
+
+	private int classConstant(String name) {
+		Integer index = constantIndices.get("C" + name);
+		if(index != null) return index;
+		int nameIndex = utf8Constant(name);
+		try {
+			constantsOut.writeByte(CONSTANT_CLASS);
+			constantsOut.writeShort(nameIndex);
+		}
+		catch(IOException e) {
+			throw new InternalError(e.toString());
+		}
+		return newConstant("C" + name, 1);
+	}
+
+	private int methodConstant(String owner, String name, String descriptor) {
+		String key = "M" + owner + '.' + name + descriptor;
+		Integer index = constantIndices.get(key);
+		if(index != null) return index;
+		int classIndex = classConstant(owner);
+		int nameIndex = utf8Constant(name);
+		int descriptorIndex = utf8Constant(descriptor);
+		writeConstant(CONSTANT_NAME_AND_TYPE, (nameIndex << 16) | descriptorIndex);
+		int nameAndTypeIndex = newConstant("N" + name + descriptor, 1);
+		writeConstant(CONSTANT_METHODREF, (classIndex << 16) | nameAndTypeIndex);
+		return newConstant(key, 1);
+	}
+
+	private int intConstant(int value) {
+		Integer index = constantIndices.get("I" + value);
+		if(index != null) return index;
+		writeConstant(CONSTANT_INTEGER, value);
+		return newConstant("I" + value, 1);
+	}
+
+	private int floatConstant(float value) {
+		int bits = Float.floatToIntBits(value);
+		Integer index = constantIndices.get("F" + bits);
+		if(index != null) return index;
+		writeConstant(CONSTANT_FLOAT, bits);
+		return newConstant("F" + bits, 1);
+	}
+
+	private void writeConstant(int tag, int value) {
+		try {
+			constantsOut.writeByte(tag);
+			constantsOut.writeInt(value);
+		}
+		catch(IOException e) {
+			throw new InternalError(e.toString());
+		}
+	}
+
+	private int newConstant(String key, int size) {
+		int index = constantCount;
+		constantIndices.put(key, index);
+		constantCount += size;
+		return index;
+	}
+
+	/**
+	 * The bytecode of a method, with forward labels resolved when the method is emitted.
+	 */
+	public class Code {
+		private final int access;
+		private final int name;
+		private final int descriptor;
+		private final int maxStack;
+		private final int maxLocals;
+
+		private byte[] code = new byte[256];
+		private int length;
+		// The positions of the labels, -1 for unmarked labels
+		private int[] labels = new int[16];
+		private int labelCount;
+		// The pending branches: the position of the instruction, the position of the offset, the label and the offset width
+		private final List<int[]> branches = new ArrayList<int[]>();
+
+		private Code(int access, int name, int descriptor, int maxStack, int maxLocals) {
+			this.access = access;
+			this.name = name;
+			this.descriptor = descriptor;
+			this.maxStack = maxStack;
+			this.maxLocals = maxLocals;
+		}
+
+		/**
+		 * Get the length of the emitted bytecode.
+		 */
+		public int length() {
+			return length;
+		}
+
+		/**
+		 * Emit an instruction without operands.
+		 */
+		public Code op(int opcode) {
+			u1(opcode);
+			return this;
+		}
+
+		/**
+		 * Push an int constant with the shortest instruction.
+		 */
+		public Code pushInt(int value) {
+			if(value >= -1 && value <= 5) u1(ICONST_0 + value);
+			else if(value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+				u1(BIPUSH);
+				u1(value);
+			}
+			else if(value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+				u1(SIPUSH);
+				u2(value);
+			}
+			else ldc(intConstant(value));
+			return this;
+		}
+
+		/**
+		 * Push a float constant.
+		 */
+		public Code pushFloat(float value) {
+			ldc(floatConstant(value));
+			return this;
+		}
+
+		/**
+		 * Invoke a static method.
+		 */
+		public Code invokeStatic(String owner, String name, String descriptor) {
+			u1(INVOKESTATIC);
+			u2(methodConstant(owner, name, descriptor));
+			return this;
+		}
+
+		/**
+		 * Invoke a constructor or a super class method.
+		 */
+		public Code invokeSpecial(String owner, String name, String descriptor) {
+			u1(INVOKESPECIAL);
+			u2(methodConstant(owner, name, descriptor));
+			return this;
+		}
+
+		/**
+		 * Create a new label to be marked later.
+		 */
+		public int newLabel() {
+			if(labelCount == labels.length) labels = Arrays.copyOf(labels, labelCount * 2);
+			labels[labelCount] = -1;
+			return labelCount ++;
+		}
+
+		/**
+		 * Mark the label at the current position.
+		 */
+		public Code mark(int label) {
+			labels[label] = length;
+			return this;
+		}
+
+		/**
+		 * Emit a branch instruction with a 16-bit offset to the label.
+		 */
+		public Code jump(int opcode, int label) {
+			int position = length;
+			u1(opcode);
+			branches.add(new int[]{position, length, label, 2});
+			u2(0);
+			return this;
+		}
+
+		/**
+		 * Emit a tableswitch instruction.
+		 * @param low the least key
+		 * @param defaultLabel the label of the keys out of the range
+		 * @param caseLabels the labels of the keys from <i>low</i> on
+		 */
+		public Code tableSwitch(int low, int defaultLabel, int[] caseLabels) {
+			int position = length;
+			u1(TABLESWITCH);
+			while(length % 4 != 0) u1(0);
+			branches.add(new int[]{position, length, defaultLabel, 4});
+			u4(0);
+			u4(low);
+			u4(low + caseLabels.length - 1);
+			for(int label : caseLabels) {
+				branches.add(new int[]{position, length, label, 4});
+				u4(0);
+			}
+			return this;
+		}
+
+		private byte[] toByteArray() {
+			if(length > MAX_CODE_LENGTH) {
+				throw new IllegalStateException("Too long code: " + length);
+			}
+			for(int[] branch : branches) {
+				int offset = labels[branch[2]] - branch[0];
+				if(labels[branch[2]] < 0) throw new IllegalStateException("Unmarked label");
+				if(branch[3] == 2) {
+					if(offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+						throw new IllegalStateException("Too far branch: " + offset);
+					}
+					code[branch[1]] = (byte)(offset >> 8);
+					code[branch[1] + 1] = (byte)offset;
+				}
+				else {
+					code[branch[1]] = (byte)(offset >> 24);
+					code[branch[1] + 1] = (byte)(offset >> 16);
+					code[branch[1] + 2] = (byte)(offset >> 8);
+					code[branch[1] + 3] = (byte)offset;
+				}
+			}
+			return Arrays.copyOf(code, length);
+		}
+
+		private void ldc(int index) {
+			if(index <= 0xFF) {
+				u1(LDC);
+				u1(index);
+			}
+			else {
+				u1(LDC_W);
+				u2(index);
+			}
+		}
+
+		private void u1(int value) {
+			if(length == code.length) code = Arrays.copyOf(code, length * 2);
+			code[length ++] = (byte)value;
+		}
+
+		private void u2(int value) {
+			u1(value >> 8);
+			u1(value);
+		}
+
+		private void u4(int value) {
+			u2(value >> 16);
+			u2(value);
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * @(#)EnsembleTests.java        1.6 26/10/18
+ */
+
+package ml.classifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import ml.classifier.dt.CompiledTree;
+import ml.classifier.dt.Configuration;
+import ml.classifier.dt.Presort;
+import ml.dataset.DataSet;
+import ml.dataset.DataSetView;
+import ml.dataset.UciDataSet;
+import ml.test.TestCase;
+import ml.test.TestData;
+
+/**
+ * The tests of the ensembles of decision trees built on the views of a data set.
+ */
+public class EnsembleTests {
+	// The seed of the synthetic data sets and of the shuffles
+	private static final long SEED = 20090423L;
+	// The number of the rows of the synthetic data sets
+	private static final int ROWS = 10000;
+	// The number of the boosting rounds
+	private static final int ROUNDS = 5;
+
+	/**
+	 * Create the tests: boosting on a view of a data set.
+	 */
+	public static List<TestCase> create() {
+		return Arrays.<TestCase>asList(new BoostedView("boostedView"));
+	}
+
+	/**
+	 * Boosting on a view of the data set and the presort of the whole data set builds the rounds
+	 * built on the cases of the view alone.
+	 */
+	private static class BoostedView extends TestCase {
+		BoostedView(String name) {
+			super(name);
+		}
+
+		@Override
+		public void run() throws Exception {
+			for(double missingRate : new double[]{0, 0.05}) {
+				String baseName = TestData.generate(SEED, ROWS, missingRate);
+				DataSet dataSet = new UciDataSet(baseName);
+				List<String> rows = TestData.readRows(baseName);
+				int[] indices = TestData.createTrainData(rows.size(), new Random(SEED));
+
+				DataSet alone = new UciDataSet(TestData.writeRows(baseName, rows, indices));
+				Configuration configuration = Configuration.getDefault();
+				BoostingEnsemble viewEnsemble = new BoostingEnsemble(new DataSetView(dataSet, indices), ROUNDS, 0,
+						new Presort(dataSet), null, configuration);
+				BoostingEnsemble aloneEnsemble = new BoostingEnsemble(alone, ROUNDS, 0, new Presort(alone), null, configuration);
+				String message = "boosting, missing rate " + missingRate;
+				assertEquals(message + ", tree sizes", aloneEnsemble.getTreeSizes(), viewEnsemble.getTreeSizes());
+				assertEquals(message + ", error ratios", aloneEnsemble.getErrorRatios(), viewEnsemble.getErrorRatios());
+				if(!Arrays.equals(aloneEnsemble.getTrainErrors(), viewEnsemble.getTrainErrors())) {
+					throw new AssertionError(message + ", train errors: expected " + Arrays.toString(aloneEnsemble.getTrainErrors())
+							+ " but were " + Arrays.toString(viewEnsemble.getTrainErrors()));
+				}
+
+				// The trees of the rounds, with their cuts, are written the same
+				for(int i = 0; i < aloneEnsemble.getRoundCount(); i ++) {
+					if(!Arrays.equals(write(aloneEnsemble.getForest().getTree(i)), write(viewEnsemble.getForest().getTree(i)))) {
+						throw new AssertionError(message + ", the tree of round " + (i + 1) + " differs");
+					}
+				}
+			}
+		}
+
+		private static byte[] write(CompiledTree tree) throws IOException {
+			File file = File.createTempFile("test", ".tree");
+			try {
+				tree.write(file.getPath());
+				return Files.readAllBytes(file.toPath());
+			}
+			finally {
+				file.delete();
+			}
+		}
+
+		private static void assertEquals(String message, float[] expected, float[] actual) {
+			if(!Arrays.equals(expected, actual)) {
+				throw new AssertionError(message + ": expected " + Arrays.toString(expected) + " but were " + Arrays.toString(actual));
+			}
+		}
+	}
+}
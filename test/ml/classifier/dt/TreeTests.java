@@ -0,0 +1,171 @@
+/**
+ * @(#)TreeTests.java        1.6 26/10/18
+ */
+
+package ml.classifier.dt;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import ml.dataset.DataSet;
+import ml.dataset.DataSetView;
+import ml.dataset.UciDataSet;
+import ml.test.TestCase;
+import ml.test.TestData;
+import ml.util.PlainTreeView;
+
+/**
+ * The tests of building decision trees on the views of a data set.
+ */
+public class TreeTests {
+	// The seed of the synthetic data sets and of the shuffles
+	private static final long SEED = 20090423L;
+	// The number of the rows of the synthetic data sets
+	private static final int ROWS = 20000;
+
+	// The number of the updates of a tree, and the ratio of the rows appended by all of them
+	private static final int UPDATES = 4;
+	private static final double APPENDED = 0.02;
+
+	/**
+	 * Create the tests: building and pruning the tree of a cross validation fold, by sorting the cases
+	 * of each tree node and by keeping attribute lists, and with the configurations of a parameter
+	 * sweep, building and pruning a member tree of a bagging ensemble, and updating a tree with
+	 * tolerance 0, by sorting the cases of each tree node and by keeping attribute lists.
+	 */
+	public static List<TestCase> create() {
+		Configuration[] defaultConfiguration = {Configuration.getDefault()};
+		Configuration[] sweptConfigurations = {new Configuration(5, 0.1f), new Configuration(10, 0.25f)};
+		return Arrays.<TestCase>asList(new FoldTree("foldTree", false, defaultConfiguration),
+				new FoldTree("foldTreeAttributeLists", true, defaultConfiguration),
+				new FoldTree("foldTreeConfigurations", false, sweptConfigurations), new BaggedTree("baggedTree"),
+				new UpdatedTree("updateTree", false), new UpdatedTree("updateTreeAttributeLists", true));
+	}
+
+	/**
+	 * The tree of a fold, built on a view of the data set and the presort of the whole data set
+	 * as CrossValidator and ParameterSweep build it, is the tree built on the train data of the
+	 * fold alone, before and after pruning.
+	 */
+	private static class FoldTree extends TestCase {
+		private final boolean attributeLists;
+		private final Configuration[] configurations;
+
+		FoldTree(String name, boolean attributeLists, Configuration[] configurations) {
+			super(name);
+			this.attributeLists = attributeLists;
+			this.configurations = configurations;
+		}
+
+		@Override
+		public void run() throws Exception {
+			for(double missingRate : new double[]{0, 0.05}) {
+				String baseName = TestData.generate(SEED, ROWS, missingRate);
+				DataSet dataSet = new UciDataSet(baseName);
+				List<String> rows = TestData.readRows(baseName);
+
+				int[] indices = TestData.createTrainData(rows.size(), new Random(SEED));
+				DataSet fold = new DataSetView(dataSet, indices);
+				DataSet alone = new UciDataSet(TestData.writeRows(baseName, rows, indices));
+				Presort presort = new Presort(dataSet, attributeLists);
+				ForkJoinPool pool = new ForkJoinPool(2);
+				for(Configuration configuration : configurations) {
+					String message = "fold tree of " + configuration + ", missing rate " + missingRate;
+					DecisionTree foldTree = new DecisionTree(fold, presort, pool, configuration);
+					DecisionTree aloneTree = new DecisionTree(alone, null, null, configuration);
+					TestData.assertSameTree(message, new PlainTreeView(aloneTree).toString(),
+							new PlainTreeView(foldTree).toString());
+					foldTree.prune();
+					aloneTree.prune();
+					TestData.assertSameTree("pruned " + message, new PlainTreeView(aloneTree).toString(),
+							new PlainTreeView(foldTree).toString());
+				}
+				pool.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * A member tree of a bagging ensemble, built on the presort of the whole data set with the
+	 * number of times each case is drawn as its weight, is the tree built with the same weight
+	 * on the drawn cases alone, before and after pruning.
+	 */
+	private static class BaggedTree extends TestCase {
+		BaggedTree(String name) {
+			super(name);
+		}
+
+		@Override
+		public void run() throws Exception {
+			for(double missingRate : new double[]{0, 0.05}) {
+				String baseName = TestData.generate(SEED, ROWS, missingRate);
+				DataSet dataSet = new UciDataSet(baseName);
+				List<String> rows = TestData.readRows(baseName);
+
+				// Draw a bootstrap sample, and gather the weight of the drawn cases
+				float[] caseWeights = new float[rows.size()];
+				Random random = new Random(SEED);
+				for(int i = 0; i < caseWeights.length; i ++) caseWeights[random.nextInt(caseWeights.length)] ++;
+				int drawnCount = 0;
+				for(float caseWeight : caseWeights) if(caseWeight > 0) drawnCount ++;
+				int[] indices = new int[drawnCount];
+				float[] drawnWeights = new float[drawnCount];
+				for(int i = 0, j = 0; i < caseWeights.length; i ++) {
+					if(caseWeights[i] == 0) continue;
+					indices[j] = i;
+					drawnWeights[j ++] = caseWeights[i];
+				}
+
+				DataSet alone = new UciDataSet(TestData.writeRows(baseName, rows, indices));
+				Configuration configuration = Configuration.getDefault();
+				DecisionTree baggedTree = new DecisionTree(dataSet, caseWeights, null, new Presort(dataSet), null, configuration);
+				DecisionTree aloneTree = new DecisionTree(alone, drawnWeights, null, null, null, configuration);
+				String message = "bagged tree, missing rate " + missingRate;
+				TestData.assertSameTree(message, new PlainTreeView(aloneTree).toString(), new PlainTreeView(baggedTree).toString());
+				baggedTree.prune();
+				aloneTree.prune();
+				TestData.assertSameTree("pruned " + message, new PlainTreeView(aloneTree).toString(),
+						new PlainTreeView(baggedTree).toString());
+			}
+		}
+	}
+
+	/**
+	 * A tree updated with tolerance 0 is the tree built on the whole data set, even where the
+	 * values of the appended cases fall below the cuts of the subtrees they do not reach.
+	 */
+	private static class UpdatedTree extends TestCase {
+		private final boolean attributeLists;
+
+		UpdatedTree(String name, boolean attributeLists) {
+			super(name);
+			this.attributeLists = attributeLists;
+		}
+
+		@Override
+		public void run() throws Exception {
+			for(double missingRate : new double[]{0, 0.05}) {
+				DataSet dataSet = new UciDataSet(TestData.generate(SEED, ROWS, missingRate));
+				int oldCaseCount = (int)(ROWS * (1 - APPENDED));
+				DataSet trainData = prefix(dataSet, oldCaseCount);
+				DecisionTree tree = new DecisionTree(trainData, new Presort(trainData, attributeLists), null);
+				for(int update = 1; update <= UPDATES; update ++) {
+					int caseCount = oldCaseCount + (ROWS - oldCaseCount) * update / UPDATES;
+					DataSet updateData = prefix(dataSet, caseCount);
+					tree.update(updateData, 0);
+					String rebuiltTree = new PlainTreeView(
+							new DecisionTree(updateData, new Presort(updateData, attributeLists), null)).toString();
+					TestData.assertSameTree("updated tree of " + caseCount + " cases, missing rate " + missingRate,
+							rebuiltTree, new PlainTreeView(tree).toString());
+				}
+			}
+		}
+
+		private static DataSet prefix(DataSet dataSet, int caseCount) {
+			int[] indices = new int[caseCount];
+			for(int i = 0; i < caseCount; i ++) indices[i] = i;
+			return new DataSetView(dataSet, indices);
+		}
+	}
+}
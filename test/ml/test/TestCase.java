@@ -0,0 +1,38 @@
+/**
+ * @(#)TestCase.java        1.6 26/10/18
+ */
+
+package ml.test;
+
+/**
+ * A test of the behaviour of the classifiers, run by {@link TestRunner}.
+ * <p>
+ * A test passes when <i>run</i> returns, and fails when it throws, an AssertionError
+ * reporting the broken expectation.
+ * </p>
+ *
+ * @see ml.test.TestRunner
+ */
+public abstract class TestCase {
+	// The name of the test
+	private final String name;
+
+	/**
+	 * Initialize a test with the specified name.
+	 */
+	protected TestCase(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Get the name of the test.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Run the test once.
+	 */
+	public abstract void run() throws Exception;
+}
@@ -0,0 +1,106 @@
+/**
+ * @(#)TestData.java        1.6 26/10/18
+ */
+
+package ml.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import ml.dataset.UciDataGenerator;
+
+/**
+ * The synthetic data sets of the tests, and the comparison of the trees built on them.
+ * <p>
+ * The files of the data sets are written into temporary directories, deleted on exit.
+ * </p>
+ */
+public class TestData {
+	/**
+	 * Generate a synthetic data set of 5 continuous and 5 discrete attributes and 2 classes.
+	 * @return the base name of the files of the data set
+	 */
+	public static String generate(long seed, int rowCount, double missingRate) throws IOException {
+		String baseName = createBaseName();
+		UciDataGenerator generator = new UciDataGenerator(seed);
+		generator.setContinuousCount(5);
+		generator.setDiscreteCount(5);
+		generator.setClassCount(2);
+		generator.setMissingRatio(missingRate);
+		generator.generate(baseName, rowCount, 0);
+		return baseName;
+	}
+
+	/**
+	 * Read the rows of the .data file of a data set, leaving the blank lines out.
+	 */
+	public static List<String> readRows(String baseName) throws IOException {
+		List<String> rows = new ArrayList<String>();
+		for(String line : Files.readAllLines(new File(baseName + ".data").toPath(), StandardCharsets.UTF_8)) {
+			if(line.trim().length() > 0) rows.add(line);
+		}
+		return rows;
+	}
+
+	/**
+	 * Write the specified rows of a data set, in the specified order, as a data set of its own
+	 * with the same attributes.
+	 * @param indices the indices of the rows to be written
+	 * @return the base name of the files of the new data set
+	 */
+	public static String writeRows(String baseName, List<String> rows, int[] indices) throws IOException {
+		String subsetName = createBaseName();
+		Files.copy(new File(baseName + ".names").toPath(), new File(subsetName + ".names").toPath());
+		List<String> subset = new ArrayList<String>(indices.length);
+		for(int index : indices) subset.add(rows.get(index));
+		Files.write(new File(subsetName + ".data").toPath(), subset, StandardCharsets.UTF_8);
+		return subsetName;
+	}
+
+	/**
+	 * Create the train data of a fold of ten, shuffled as the cross validation does.
+	 * @return the indices of the rows of the train data
+	 */
+	public static int[] createTrainData(int rowCount, Random random) {
+		int[] indices = new int[rowCount - (rowCount + 6) / 10];
+		for(int i = 0, j = 0; i < rowCount; i ++) {
+			if(i % 10 != 3) indices[j ++] = i;
+		}
+		for(int i = indices.length-1; i > 0; i --) {
+			int selectedIndex = random.nextInt(i+1);
+			int index = indices[selectedIndex];
+			indices[selectedIndex] = indices[i];
+			indices[i] = index;
+		}
+		return indices;
+	}
+
+	/**
+	 * Check that two printed trees are the same, reporting the first line in which they differ.
+	 */
+	public static void assertSameTree(String message, String expected, String actual) {
+		String[] expectedLines = expected.split("\n"), actualLines = actual.split("\n");
+		for(int i = 0; i < Math.max(expectedLines.length, actualLines.length); i ++) {
+			String expectedLine = i < expectedLines.length ? expectedLines[i] : "<end>";
+			String actualLine = i < actualLines.length ? actualLines[i] : "<end>";
+			if(!expectedLine.equals(actualLine)) {
+				throw new AssertionError(message + ", line " + (i + 1) + ": expected [" + expectedLine.trim()
+						+ "] but was [" + actualLine.trim() + "]");
+			}
+		}
+	}
+
+	private static String createBaseName() throws IOException {
+		File directory = Files.createTempDirectory("test").toFile();
+		directory.deleteOnExit();
+		String baseName = new File(directory, "syn").getPath();
+		for(String extension : new String[]{".names", ".data", ".cache"}) {
+			new File(baseName + extension).deleteOnExit();
+		}
+		return baseName;
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ * @(#)TestRunner.java        1.6 26/10/18
+ */
+
+package ml.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import ml.classifier.EnsembleTests;
+import ml.classifier.dt.TreeTests;
+
+/**
+ * The runner of the tests, which prints the result of each test and exits with status 1
+ * if any of them fails.
+ * <p>
+ * Usage: java ml.test.TestRunner [test ...]
+ * </p>
+ *
+ * @see ml.test.TestCase
+ */
+public class TestRunner {
+	/**
+	 * All the tests.
+	 */
+	public static List<TestCase> createTests() {
+		List<TestCase> tests = new ArrayList<TestCase>();
+		tests.addAll(TreeTests.create());
+		tests.addAll(EnsembleTests.create());
+		return tests;
+	}
+
+	public static void main(String[] args) {
+		List<String> names = new ArrayList<String>();
+		for(String arg : args) {
+			if(arg.equals("-h") || arg.equals("-help")) {
+				usage();
+				return;
+			}
+			names.add(arg);
+		}
+
+		int run = 0, failed = 0;
+		for(TestCase test : createTests()) {
+			if(!names.isEmpty() && !names.contains(test.getName())) continue;
+			run ++;
+			long start = System.currentTimeMillis();
+			try {
+				test.run();
+				System.out.printf("%-30s passed in %d ms\n", test.getName(), System.currentTimeMillis() - start);
+			}
+			catch(Throwable e) {
+				failed ++;
+				System.out.printf("%-30s FAILED: %s\n", test.getName(), e);
+			}
+		}
+		if(run == 0) {
+			usage();
+			return;
+		}
+		System.out.println((run - failed) + " of " + run + " tests passed");
+		if(failed > 0) System.exit(1);
+	}
+
+	private static void usage() {
+		System.out.println("Usage: java ml.test.TestRunner [test ...]");
+		StringBuilder line = new StringBuilder("Tests:");
+		for(TestCase test : createTests()) {
+			line.append(' ').append(test.getName());
+		}
+		System.out.println(line);
+	}
+}